@@ -32,6 +32,7 @@ from ActualConfigHandler import ActualConfigHandler
 from CommandStatusDict import CommandStatusDict
 from CustomServiceOrchestrator import CustomServiceOrchestrator
 from ambari_agent.BackgroundCommandExecutionHandle import BackgroundCommandExecutionHandle
+from ambari_agent.ClusterHostInfoCache import ClusterHostInfoCache
 
 
 logger = logging.getLogger()
@@ -74,6 +75,7 @@ class ActionQueue(threading.Thread):
     self.config = config
     self.controller = controller
     self.configTags = {}
+    self.clusterHostInfoCache = ClusterHostInfoCache()
     self._stop = threading.Event()
     self.tmpdir = config.get('agent', 'prefix')
     self.customServiceOrchestrator = CustomServiceOrchestrator(config, controller)
@@ -96,6 +98,7 @@ class ActionQueue(threading.Thread):
       self.statusCommandQueue.put(command)
 
   def put(self, commands):
+    self.clusterHostInfoCache.resolve(commands)
     for command in commands:
       if not command.has_key('serviceName'):
         command['serviceName'] = "null"
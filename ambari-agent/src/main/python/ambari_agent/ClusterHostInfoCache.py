@@ -0,0 +1,77 @@
+#!/usr/bin/env python
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+import logging
+import threading
+
+logger = logging.getLogger()
+
+class ClusterHostInfoCache():
+  """
+  Keeps the clusterHostInfo maps of the latest stages by hash. The server sends
+  the map of a stage only with the first command, and leaves it out of the
+  commands whose hash the agent reported in its heartbeat.
+  """
+
+  HASH_KEY = 'clusterHostInfoHash'
+  INFO_KEY = 'clusterHostInfo'
+
+  def __init__(self, max_size=10):
+    self.max_size = max_size
+    self.infos = {}
+    self.order = [] # hashes, least recently used first
+    self.lock = threading.RLock()
+
+  def resolve(self, commands):
+    """
+    Stores the maps carried by the commands, then fills in the maps left out
+    of the other commands. Maps are evicted only after the whole batch was
+    resolved, so a command can always use a map reported with its heartbeat.
+    """
+    with self.lock:
+      for command in commands:
+        info_hash = command.get(self.HASH_KEY)
+        if info_hash and command.get(self.INFO_KEY):
+          self.infos[info_hash] = command[self.INFO_KEY]
+          self.touch(info_hash)
+
+      for command in commands:
+        info_hash = command.get(self.HASH_KEY)
+        if info_hash and not command.get(self.INFO_KEY):
+          if info_hash in self.infos:
+            command[self.INFO_KEY] = self.infos[info_hash].copy()
+            self.touch(info_hash)
+          else:
+            logger.error("clusterHostInfo with hash %s is not known, task %s", info_hash, command.get('taskId'))
+
+      while len(self.order) > self.max_size:
+        del self.infos[self.order.pop(0)]
+
+  def hashes(self):
+    """
+    Returns the hashes of the kept maps, to report in the heartbeat.
+    """
+    with self.lock:
+      return list(self.order)
+
+  def touch(self, info_hash):
+    if info_hash in self.order:
+      self.order.remove(info_hash)
+    self.order.append(info_hash)
@@ -0,0 +1,81 @@
+#!/usr/bin/env python
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+import json
+import logging
+
+logger = logging.getLogger()
+
+class ComponentStatusTracker():
+  """
+  Reduces the component status reports of heartbeats to the components whose
+  report changed since the last heartbeat the server acknowledged.
+  Every full_snapshot_interval-th heartbeat with status reports, and every
+  heartbeat that does not follow the last one (registration, restart), carries
+  all the reports. An interval of 0 always sends all the reports.
+  """
+
+  def __init__(self, full_snapshot_interval=10):
+    self.full_snapshot_interval = full_snapshot_interval
+    self.acknowledged = {} # component key -> report fingerprint
+    self.pending = {}
+    self.last_response_id = None
+    self.status_rounds = 0
+
+  def filter(self, response_id, component_statuses):
+    """
+    Returns the reports to send in the heartbeat with the given response id,
+    and whether they are a delta of the acknowledged reports.
+    """
+    response_id = int(response_id)
+    if self.last_response_id is not None and response_id == self.last_response_id + 1:
+      # the server answered the last heartbeat, so it applied its reports
+      self.acknowledged.update(self.pending)
+    else:
+      self.acknowledged = {}
+    self.pending = {}
+    self.last_response_id = response_id
+
+    if not component_statuses:
+      return component_statuses, False
+
+    self.status_rounds += 1
+    full_snapshot = self.full_snapshot_interval <= 0 or not self.acknowledged or \
+                    self.status_rounds % self.full_snapshot_interval == 0
+
+    changed = []
+    for report in component_statuses:
+      key = self.get_key(report)
+      fingerprint = self.get_fingerprint(report)
+      self.pending[key] = fingerprint
+      if full_snapshot or 'alerts' in report or self.acknowledged.get(key) != fingerprint:
+        changed.append(report)
+
+    if full_snapshot:
+      return component_statuses, False
+
+    logger.debug("Sending %s of %s component status reports", len(changed), len(component_statuses))
+    return changed, True
+
+  def get_key(self, report):
+    return (report.get('clusterName'), report.get('serviceName'), report.get('componentName'))
+
+  def get_fingerprint(self, report):
+    return json.dumps(report, sort_keys=True, default=str)
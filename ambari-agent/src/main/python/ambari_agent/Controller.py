@@ -69,11 +69,13 @@ class Controller(threading.Thread):
     self.registerUrl = server_secured_url + '/agent/v1/register/' + self.hostname
     self.heartbeatUrl = server_secured_url + '/agent/v1/heartbeat/' + self.hostname
     self.componentsUrl = server_secured_url + '/agent/v1/components/'
+    self.commandsUrl = server_secured_url + '/agent/v1/commands/' + self.hostname
     self.netutil = NetUtil(heartbeat_stop_callback)
     self.responseId = -1
     self.repeatRegistration = False
     self.isRegistered = False
     self.cachedconnect = None
+    self.commandsThread = None
     self.range = range
     self.hasMappedComponents = True
     # Event is used for synchronizing heartbeat iterations (to make possible
@@ -207,6 +209,48 @@ class Controller(threading.Thread):
   def trigger_heartbeat(self):
     self.heartbeat_stop_callback.set_heartbeat()
 
+  # Server side limit of a long poll request, below the socket timeout
+  LONG_POLL_TIMEOUT_SEC = 30
+
+  def waitForCommands(self):
+    """
+    Long polls the server and triggers a heartbeat as soon as commands are
+    queued for this host, instead of waiting for the next heartbeat. Stops
+    when the server does not support long polling (disabled or older server).
+    """
+    connection = None
+    url = self.commandsUrl + '?timeout=' + str(self.LONG_POLL_TIMEOUT_SEC)
+
+    while not self.DEBUG_STOP_HEARTBEATING:
+      try:
+        if connection is None:
+          connection = security.CachedHTTPSConnection(self.config)
+        response = connection.request(urllib2.Request(url))
+        pendingCommands = int(json.loads(response)['pendingCommands'])
+      except (ValueError, KeyError, TypeError):
+        logger.info("Long polling for commands is not enabled on %s", self.serverHostname)
+        return
+      except Exception, err:
+        logger.debug("Long poll request to %s failed: %s", self.commandsUrl, str(err))
+        connection = None
+        time.sleep(randint(0, self.range))
+        continue
+
+      if pendingCommands > 0:
+        logger.debug("%s commands are pending, triggering heartbeat", pendingCommands)
+        self.trigger_heartbeat()
+        # let the heartbeat pick the commands up before asking again
+        time.sleep(self.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS * 10)
+
+  def startWaitingForCommands(self):
+    # the thread survives re-registration
+    if self.commandsThread is not None and self.commandsThread.isAlive():
+      return
+    self.commandsThread = threading.Thread(target=self.waitForCommands,
+                                           name="LongPollCommands")
+    self.commandsThread.daemon = True
+    self.commandsThread.start()
+
   def heartbeatWithServer(self):
     self.DEBUG_HEARTBEAT_RETRIES = 0
     self.DEBUG_SUCCESSFULL_HEARTBEATS = 0
@@ -360,6 +404,8 @@ class Controller(threading.Thread):
         callback()
 
       time.sleep(self.netutil.HEARTBEAT_IDDLE_INTERVAL_SEC)
+      if registerResponse.get('longPollCommands'):
+        self.startWaitingForCommands()
       self.heartbeatWithServer()
 
   def restartAgent(self):
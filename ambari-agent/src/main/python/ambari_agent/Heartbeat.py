@@ -27,6 +27,7 @@ from pprint import pformat
 from ambari_agent.hostname import hostname
 from ambari_agent.HostInfo import HostInfo
 from ambari_agent.Hardware import Hardware
+from ambari_agent.ComponentStatusTracker import ComponentStatusTracker
 
 
 logger = logging.getLogger()
@@ -39,6 +40,10 @@ class Heartbeat:
     self.config = config
     self.reports = []
     self.collector = alert_collector
+    full_snapshot_interval = 10
+    if config is not None:
+      full_snapshot_interval = int(config.get('heartbeat', 'status_full_snapshot_interval', '10'))
+    self.componentStatusTracker = ComponentStatusTracker(full_snapshot_interval)
 
   def build(self, id='-1', state_interval=-1, componentsMapped=False):
     global clusterId, clusterDefinitionRevision, firstContact
@@ -52,7 +57,8 @@ class Heartbeat:
     heartbeat = { 'responseId'        : int(id),
                   'timestamp'         : timestamp,
                   'hostname'          : hostname(self.config),
-                  'nodeStatus'        : nodeStatus
+                  'nodeStatus'        : nodeStatus,
+                  'clusterHostInfoHashes' : self.actionQueue.clusterHostInfoCache.hashes()
                 }
 
     commandsInProgress = False
@@ -61,7 +67,11 @@ class Heartbeat:
 
     if len(queueResult) != 0:
       heartbeat['reports'] = queueResult['reports']
-      heartbeat['componentStatus'] = queueResult['componentStatus']
+      componentStatus, isDelta = self.componentStatusTracker.filter(id, queueResult['componentStatus'])
+      heartbeat['componentStatus'] = componentStatus
+      if isDelta:
+        # unchanged components are left out; the server keeps their state
+        heartbeat['componentStatusDelta'] = True
       if len(heartbeat['reports']) > 0:
         # There may be IN_PROGRESS tasks
         commandsInProgress = True
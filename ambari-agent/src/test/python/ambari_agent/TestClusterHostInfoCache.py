@@ -0,0 +1,79 @@
+#!/usr/bin/env python
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+from unittest import TestCase
+from ambari_agent.ClusterHostInfoCache import ClusterHostInfoCache
+
+class TestClusterHostInfoCache(TestCase):
+
+  info = {'all_hosts': ['h1', 'h2'], 'namenode_host': ['0']}
+
+  def command(self, task_id, info_hash, info=None):
+    command = {'taskId': task_id, 'clusterHostInfoHash': info_hash}
+    if info is not None:
+      command['clusterHostInfo'] = info
+    return command
+
+  def test_left_out_info_is_filled_in(self):
+    cache = ClusterHostInfoCache()
+    self.assertEquals([], cache.hashes())
+
+    first = self.command(1, 'a', self.info)
+    second = self.command(2, 'a', {})
+    cache.resolve([first, second])
+    self.assertEquals(self.info, second['clusterHostInfo'])
+    self.assertEquals(['a'], cache.hashes())
+
+    # a later heartbeat response
+    third = self.command(3, 'a')
+    cache.resolve([third])
+    self.assertEquals(self.info, third['clusterHostInfo'])
+
+  def test_unknown_hash(self):
+    cache = ClusterHostInfoCache()
+    command = self.command(1, 'a', {})
+    cache.resolve([command])
+    self.assertEquals({}, command['clusterHostInfo'])
+    self.assertEquals([], cache.hashes())
+
+  def test_commands_without_hash(self):
+    cache = ClusterHostInfoCache()
+    command = {'taskId': 1, 'clusterHostInfo': self.info}
+    cache.resolve([command])
+    self.assertEquals(self.info, command['clusterHostInfo'])
+    self.assertEquals([], cache.hashes())
+
+  def test_least_recently_used_is_evicted(self):
+    cache = ClusterHostInfoCache(2)
+    cache.resolve([self.command(1, 'a', self.info)])
+    cache.resolve([self.command(2, 'b', self.info)])
+    cache.resolve([self.command(3, 'a')])
+    cache.resolve([self.command(4, 'c', self.info)])
+    self.assertEquals(['a', 'c'], cache.hashes())
+
+  def test_batch_is_resolved_before_eviction(self):
+    cache = ClusterHostInfoCache(1)
+    cache.resolve([self.command(1, 'a', self.info)])
+
+    # the heartbeat reported 'a', so the server left it out
+    command = self.command(3, 'a')
+    cache.resolve([self.command(2, 'b', self.info), command])
+    self.assertEquals(self.info, command['clusterHostInfo'])
+    self.assertEquals(['a'], cache.hashes())
@@ -0,0 +1,81 @@
+#!/usr/bin/env python
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+from unittest import TestCase
+from ambari_agent.ComponentStatusTracker import ComponentStatusTracker
+
+class TestComponentStatusTracker(TestCase):
+
+  datanode = {'clusterName': 'c1', 'serviceName': 'HDFS',
+              'componentName': 'DATANODE', 'status': 'STARTED'}
+  namenode = {'clusterName': 'c1', 'serviceName': 'HDFS',
+              'componentName': 'NAMENODE', 'status': 'STARTED'}
+
+  def test_only_changed_reports_are_sent(self):
+    tracker = ComponentStatusTracker(10)
+
+    # nothing acknowledged yet, so all the reports are sent
+    reports, delta = tracker.filter(1, [self.datanode, self.namenode])
+    self.assertEquals([self.datanode, self.namenode], reports)
+    self.assertFalse(delta)
+
+    reports, delta = tracker.filter(2, [self.datanode, self.namenode])
+    self.assertEquals([], reports)
+    self.assertTrue(delta)
+
+    stopped = dict(self.namenode, status='INSTALLED')
+    reports, delta = tracker.filter(3, [self.datanode, stopped])
+    self.assertEquals([stopped], reports)
+    self.assertTrue(delta)
+
+    # heartbeats without status reports keep what was acknowledged
+    reports, delta = tracker.filter(4, [])
+    self.assertEquals([], reports)
+    self.assertFalse(delta)
+
+    reports, delta = tracker.filter(5, [self.datanode, stopped])
+    self.assertEquals([], reports)
+    self.assertTrue(delta)
+
+  def test_full_snapshot(self):
+    tracker = ComponentStatusTracker(3)
+    tracker.filter(1, [self.datanode])
+    tracker.filter(2, [self.datanode])
+
+    reports, delta = tracker.filter(3, [self.datanode])
+    self.assertEquals([self.datanode], reports)
+    self.assertFalse(delta)
+
+  def test_response_id_gap_sends_all_reports(self):
+    tracker = ComponentStatusTracker(10)
+    tracker.filter(1, [self.datanode])
+
+    # the agent registered again
+    reports, delta = tracker.filter(0, [self.datanode])
+    self.assertEquals([self.datanode], reports)
+    self.assertFalse(delta)
+
+  def test_disabled(self):
+    tracker = ComponentStatusTracker(0)
+    tracker.filter(1, [self.datanode])
+
+    reports, delta = tracker.filter(2, [self.datanode])
+    self.assertEquals([self.datanode], reports)
+    self.assertFalse(delta)
@@ -604,6 +604,36 @@ class TestController(unittest.TestCase):
     self.assertEquals(LiveStatus_mock.COMPONENTS, components_expected)
 
 
+  @patch("time.sleep")
+  @patch.object(Controller.security, "CachedHTTPSConnection")
+  def test_waitForCommands(self, CachedHTTPSConnection_mock, sleepMock):
+    connection = MagicMock()
+    CachedHTTPSConnection_mock.return_value = connection
+    trigger_heartbeat = MagicMock()
+    self.controller.trigger_heartbeat = trigger_heartbeat
+
+    # nothing pending, commands pending, then an older server
+    connection.request.side_effect = ['{"pendingCommands":0}',
+                                      '{"pendingCommands":2}',
+                                      '<html>Not Found</html>']
+    self.controller.waitForCommands()
+
+    self.assertEqual(3, connection.request.call_count)
+    self.assertEqual(1, trigger_heartbeat.call_count)
+    self.assertTrue(connection.request.call_args[0][0].get_full_url()
+                    .endswith('/agent/v1/commands/test_hostname?timeout=30'))
+
+    # connection errors are retried with a new connection
+    CachedHTTPSConnection_mock.reset_mock()
+    connection.request.side_effect = [IOError("Connection refused"),
+                                      '{"pendingCommands":1}',
+                                      '{}']
+    self.controller.waitForCommands()
+
+    self.assertEqual(2, CachedHTTPSConnection_mock.call_count)
+    self.assertEqual(2, trigger_heartbeat.call_count)
+
+
 if __name__ == "__main__":
   unittest.main(verbosity=2)
 
@@ -46,6 +46,7 @@ public abstract class AbstractTimelineMetricsSink {
     mapper = new ObjectMapper();
     AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
     mapper.setAnnotationIntrospector(introspector);
+    mapper.registerModule(new TimelineMetricValuesModule());
     mapper.getSerializationConfig()
         .setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
   }
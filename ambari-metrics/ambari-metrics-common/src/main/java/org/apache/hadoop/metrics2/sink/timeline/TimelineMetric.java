@@ -18,7 +18,6 @@
 package org.apache.hadoop.metrics2.sink.timeline;
 
 import java.util.Map;
-import java.util.TreeMap;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -41,7 +40,7 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long timestamp;
   private long startTime;
   private String type;
-  private Map<Long, Double> metricValues = new TreeMap<Long, Double>();
+  private TimelineMetricValues metricValues = new TimelineMetricValues();
 
   @XmlElement(name = "metricname")
   public String getMetricName() {
@@ -106,13 +105,37 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     this.type = type;
   }
 
+  /**
+   * Serialized property for the values, typed so that JSON is read straight
+   * into the primitive series.
+   */
   @XmlElement(name = "metrics")
+  public TimelineMetricValues getMetricValueSeries() {
+    return metricValues;
+  }
+
+  public void setMetricValueSeries(TimelineMetricValues metricValues) {
+    this.metricValues = metricValues != null ?
+      metricValues : new TimelineMetricValues();
+  }
+
+  /**
+   * Map view of the values, backed by {@link #getMetricValueSeries()}.
+   */
   public Map<Long, Double> getMetricValues() {
     return metricValues;
   }
 
+  /**
+   * Values are copied unless the map is already a
+   * {@link TimelineMetricValues}.
+   */
   public void setMetricValues(Map<Long, Double> metricValues) {
-    this.metricValues = metricValues;
+    if (metricValues instanceof TimelineMetricValues) {
+      this.metricValues = (TimelineMetricValues) metricValues;
+    } else {
+      this.metricValues = new TimelineMetricValues(metricValues);
+    }
   }
 
   public void addMetricValues(Map<Long, Double> metricValues) {
@@ -0,0 +1,435 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Time series of metric values kept sorted by timestamp in parallel
+ * primitive arrays. Appending in time order, which is what sinks and the
+ * collector do, is amortized O(1) and allocates no per point objects.
+ * <p/>
+ * The class also implements {@link Map} so existing code that works on
+ * Map&lt;Long, Double&gt; keeps working; iteration is always in time order.
+ * Null values are accepted for compatibility and are stored as a reserved
+ * NaN, {@link #getValue(int)} returns NaN for them.
+ * <p/>
+ * Not thread safe.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class TimelineMetricValues extends AbstractMap<Long, Double> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final long NULL_VALUE_BITS = 0x7ff8dead0000beefL;
+  private static final double NULL_VALUE = Double.longBitsToDouble(NULL_VALUE_BITS);
+
+  private long[] timestamps;
+  private double[] values;
+  private int size;
+  private int modCount;
+  private transient Set<Map.Entry<Long, Double>> entrySet;
+
+  public TimelineMetricValues() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricValues(int initialCapacity) {
+    timestamps = new long[Math.max(initialCapacity, 1)];
+    values = new double[timestamps.length];
+  }
+
+  public TimelineMetricValues(Map<Long, Double> metricValues) {
+    this(metricValues == null ? DEFAULT_CAPACITY : metricValues.size());
+    if (metricValues != null) {
+      putAll(metricValues);
+    }
+  }
+
+  /**
+   * Wrap existing, sorted arrays without copying.
+   */
+  public static TimelineMetricValues wrap(long[] timestamps, double[] values, int size) {
+    if (timestamps.length < size || values.length < size) {
+      throw new IllegalArgumentException("Arrays shorter than size " + size);
+    }
+    for (int i = 1; i < size; i++) {
+      if (timestamps[i] <= timestamps[i - 1]) {
+        throw new IllegalArgumentException("Timestamps must be strictly increasing");
+      }
+    }
+    TimelineMetricValues series = new TimelineMetricValues(1);
+    series.timestamps = timestamps;
+    series.values = values;
+    series.size = size;
+    return series;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /**
+   * @return value at index, NaN if a null value was stored.
+   */
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public boolean isNullValue(int index) {
+    checkIndex(index);
+    return Double.doubleToRawLongBits(values[index]) == NULL_VALUE_BITS;
+  }
+
+  public long getFirstTimestamp() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return timestamps[0];
+  }
+
+  public long getLastTimestamp() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return timestamps[size - 1];
+  }
+
+  /**
+   * @return index of the timestamp, or (-(insertion point) - 1) if absent.
+   */
+  public int indexOf(long timestamp) {
+    return Arrays.binarySearch(timestamps, 0, size, timestamp);
+  }
+
+  /**
+   * Add a datapoint, replacing the value of an existing timestamp.
+   */
+  public void append(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      modCount++;
+      return;
+    }
+
+    int index = indexOf(timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+
+    int insertAt = -index - 1;
+    ensureCapacity(size + 1);
+    System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+    System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+    timestamps[insertAt] = timestamp;
+    values[insertAt] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Copy of the datapoints with startTime <= timestamp < endTime.
+   */
+  public TimelineMetricValues slice(long startTime, long endTime) {
+    int from = lowerBound(startTime);
+    int to = lowerBound(endTime);
+    if (to < from) {
+      to = from;
+    }
+    TimelineMetricValues slice = new TimelineMetricValues(to - from);
+    System.arraycopy(timestamps, from, slice.timestamps, 0, to - from);
+    System.arraycopy(values, from, slice.values, 0, to - from);
+    slice.size = to - from;
+    return slice;
+  }
+
+  /**
+   * Merge another series into this one in a single linear pass. Values
+   * from the other series win on equal timestamps.
+   */
+  public void merge(TimelineMetricValues other) {
+    if (other == null || other.size == 0) {
+      return;
+    }
+    if (size == 0 || other.timestamps[0] > timestamps[size - 1]) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+      modCount++;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + other.size];
+    double[] mergedValues = new double[size + other.size];
+    int i = 0, j = 0, k = 0;
+    while (i < size && j < other.size) {
+      long left = timestamps[i];
+      long right = other.timestamps[j];
+      if (left < right) {
+        mergedTimestamps[k] = left;
+        mergedValues[k++] = values[i++];
+      } else if (left > right) {
+        mergedTimestamps[k] = right;
+        mergedValues[k++] = other.values[j++];
+      } else {
+        mergedTimestamps[k] = right;
+        mergedValues[k++] = other.values[j++];
+        i++;
+      }
+    }
+    while (i < size) {
+      mergedTimestamps[k] = timestamps[i];
+      mergedValues[k++] = values[i++];
+    }
+    while (j < other.size) {
+      mergedTimestamps[k] = other.timestamps[j];
+      mergedValues[k++] = other.values[j++];
+    }
+
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    size = k;
+    modCount++;
+  }
+
+  @Override
+  public Double get(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    int index = indexOf((Long) key);
+    return index >= 0 ? boxed(values[index]) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Long && indexOf((Long) key) >= 0;
+  }
+
+  @Override
+  public Double put(Long key, Double value) {
+    if (key == null) {
+      throw new NullPointerException("Timestamp cannot be null");
+    }
+    int index = indexOf(key);
+    Double previous = index >= 0 ? boxed(values[index]) : null;
+    append(key, value == null ? NULL_VALUE : value);
+    return previous;
+  }
+
+  @Override
+  public void putAll(Map<? extends Long, ? extends Double> map) {
+    if (map instanceof TimelineMetricValues) {
+      merge((TimelineMetricValues) map);
+    } else {
+      ensureCapacity(size + map.size());
+      for (Map.Entry<? extends Long, ? extends Double> entry : map.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  @Override
+  public Double remove(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    int index = indexOf((Long) key);
+    if (index < 0) {
+      return null;
+    }
+    Double previous = boxed(values[index]);
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Set<Map.Entry<Long, Double>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private void removeAt(int index) {
+    int moved = size - index - 1;
+    if (moved > 0) {
+      System.arraycopy(timestamps, index + 1, timestamps, index, moved);
+      System.arraycopy(values, index + 1, values, index, moved);
+    }
+    size--;
+    modCount++;
+  }
+
+  private int lowerBound(long timestamp) {
+    int index = indexOf(timestamp);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1) + 1);
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  private static Double boxed(double value) {
+    return Double.doubleToRawLongBits(value) == NULL_VALUE_BITS ? null : value;
+  }
+
+  private class EntrySet extends AbstractSet<Map.Entry<Long, Double>> {
+    @Override
+    public Iterator<Map.Entry<Long, Double>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      TimelineMetricValues.this.clear();
+    }
+  }
+
+  private class EntryIterator implements Iterator<Map.Entry<Long, Double>> {
+    private int next = 0;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<Long, Double> next() {
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new Entry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  private class Entry implements Map.Entry<Long, Double> {
+    private final int index;
+
+    Entry(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Long getKey() {
+      return timestamps[index];
+    }
+
+    @Override
+    public Double getValue() {
+      return boxed(values[index]);
+    }
+
+    @Override
+    public Double setValue(Double value) {
+      Double previous = getValue();
+      values[index] = value == null ? NULL_VALUE : value;
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      Double value = getValue();
+      return getKey().equals(other.getKey())
+        && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      Double value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
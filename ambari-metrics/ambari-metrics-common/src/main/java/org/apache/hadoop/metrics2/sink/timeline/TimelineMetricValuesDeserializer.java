@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+
+/**
+ * Reads a {"timestamp": value, ...} object directly into
+ * {@link TimelineMetricValues} without boxing keys or values.
+ */
+public class TimelineMetricValuesDeserializer
+    extends JsonDeserializer<TimelineMetricValues> {
+
+  @Override
+  public TimelineMetricValues deserialize(JsonParser jp,
+                                          DeserializationContext ctxt)
+      throws IOException {
+    JsonToken token = jp.getCurrentToken();
+    if (token == JsonToken.START_OBJECT) {
+      token = jp.nextToken();
+    }
+
+    TimelineMetricValues series = new TimelineMetricValues();
+    for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+      String fieldName = jp.getCurrentName();
+      long timestamp;
+      try {
+        timestamp = Long.parseLong(fieldName.trim());
+      } catch (NumberFormatException e) {
+        throw ctxt.weirdKeyException(Long.class, fieldName,
+          "not a valid timestamp");
+      }
+
+      token = jp.nextToken();
+      switch (token) {
+        case VALUE_NULL:
+          series.put(timestamp, null);
+          break;
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT:
+          series.append(timestamp, jp.getDoubleValue());
+          break;
+        case VALUE_STRING:
+          // non numeric values such as "NaN" are written quoted
+          try {
+            series.append(timestamp, Double.parseDouble(jp.getText().trim()));
+          } catch (NumberFormatException e) {
+            throw ctxt.weirdStringException(Double.class, "not a valid double");
+          }
+          break;
+        default:
+          throw ctxt.mappingException(TimelineMetricValues.class, token);
+      }
+    }
+
+    if (token != JsonToken.END_OBJECT) {
+      throw ctxt.mappingException(TimelineMetricValues.class, token);
+    }
+    return series;
+  }
+}
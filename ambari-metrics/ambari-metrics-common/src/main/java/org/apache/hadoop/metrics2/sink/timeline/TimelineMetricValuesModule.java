@@ -0,0 +1,35 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.module.SimpleModule;
+
+/**
+ * Registers the primitive {@link TimelineMetricValues} serializers with an
+ * ObjectMapper. The mappers used for metrics only consult JAXB annotations,
+ * so the serializers have to be installed explicitly.
+ */
+public class TimelineMetricValuesModule extends SimpleModule {
+
+  public TimelineMetricValuesModule() {
+    super("TimelineMetricValuesModule", new Version(1, 0, 0, null));
+    addSerializer(TimelineMetricValues.class, new TimelineMetricValuesSerializer());
+    addDeserializer(TimelineMetricValues.class, new TimelineMetricValuesDeserializer());
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+
+/**
+ * Writes {@link TimelineMetricValues} straight from the primitive arrays
+ * using the same shape as a serialized Map&lt;Long, Double&gt;:
+ * {"timestamp": value, ...}.
+ */
+public class TimelineMetricValuesSerializer
+    extends JsonSerializer<TimelineMetricValues> {
+
+  @Override
+  public void serialize(TimelineMetricValues series, JsonGenerator jgen,
+                        SerializerProvider provider) throws IOException {
+    jgen.writeStartObject();
+    for (int i = 0; i < series.size(); i++) {
+      jgen.writeFieldName(Long.toString(series.getTimestamp(i)));
+      if (series.isNullValue(i)) {
+        jgen.writeNull();
+      } else {
+        jgen.writeNumber(series.getValue(i));
+      }
+    }
+    jgen.writeEndObject();
+  }
+
+  @Override
+  public Class<TimelineMetricValues> handledType() {
+    return TimelineMetricValues.class;
+  }
+}
@@ -88,7 +88,7 @@ public class TimelineMetrics {
     }
 
     if (metricToMerge != null) {
-      metricToMerge.addMetricValues(metric.getMetricValues());
+      metricToMerge.getMetricValueSeries().merge(metric.getMetricValueSeries());
       if (metricToMerge.getTimestamp() > metric.getTimestamp()) {
         metricToMerge.setTimestamp(metric.getTimestamp());
       }
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricValuesTest {
+
+  private static final double delta = 0.00001;
+
+  @Test
+  public void testAppendOutOfOrderKeepsSortedOrder() throws Exception {
+    TimelineMetricValues values = new TimelineMetricValues(2);
+    values.append(30L, 3.0);
+    values.append(10L, 1.0);
+    values.append(20L, 2.0);
+    values.append(20L, 2.5);
+
+    assertEquals(3, values.size());
+    assertEquals(10L, values.getFirstTimestamp());
+    assertEquals(30L, values.getLastTimestamp());
+    assertEquals(2.5, values.get(20L), delta);
+
+    Iterator<Long> timestamps = values.keySet().iterator();
+    assertEquals(10L, timestamps.next().longValue());
+    assertEquals(20L, timestamps.next().longValue());
+    assertEquals(30L, timestamps.next().longValue());
+    assertFalse(timestamps.hasNext());
+  }
+
+  @Test
+  public void testSliceAndMerge() throws Exception {
+    TimelineMetricValues values = new TimelineMetricValues();
+    for (long i = 0; i < 10; i++) {
+      values.append(i * 10, i);
+    }
+
+    TimelineMetricValues slice = values.slice(15, 40);
+    assertEquals(2, slice.size());
+    assertEquals(20L, slice.getTimestamp(0));
+    assertEquals(30L, slice.getTimestamp(1));
+
+    TimelineMetricValues other = new TimelineMetricValues();
+    other.append(5L, 0.5);
+    other.append(20L, 99.0);
+    other.append(200L, 1.0);
+    values.merge(other);
+
+    assertEquals(12, values.size());
+    assertEquals(0.5, values.get(5L), delta);
+    assertEquals(99.0, values.get(20L), delta);
+    assertEquals(200L, values.getLastTimestamp());
+  }
+
+  @Test
+  public void testMapCompatibility() throws Exception {
+    Map<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(1L, 1.0);
+    expected.put(2L, null);
+    expected.put(3L, 3.0);
+
+    TimelineMetricValues values = new TimelineMetricValues(expected);
+    assertEquals(expected, values);
+    assertEquals(values, expected);
+    assertEquals(expected.hashCode(), values.hashCode());
+    assertNull(values.get(2L));
+    assertTrue(values.isNullValue(1));
+    assertTrue(Double.isNaN(values.getValue(1)));
+
+    for (Map.Entry<Long, Double> entry : values.entrySet()) {
+      if (entry.getValue() == null) {
+        entry.setValue(2.0);
+      }
+    }
+    assertEquals(2.0, values.get(2L), delta);
+    assertEquals(1.0, values.remove(1L), delta);
+    assertEquals(2, values.size());
+  }
+
+  @Test
+  public void testJsonWireFormat() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
+    mapper.setAnnotationIntrospector(introspector);
+    mapper.registerModule(new TimelineMetricValuesModule());
+
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("mem_free");
+    metric.getMetricValueSeries().append(2000L, 2.0);
+    metric.getMetricValueSeries().append(1000L, 1.5);
+
+    String json = mapper.writeValueAsString(metric);
+    assertTrue(json.contains("\"metrics\":{\"1000\":1.5,\"2000\":2.0}"));
+
+    TimelineMetric read = mapper.readValue(
+      "{\"metricname\":\"mem_free\",\"metrics\":{\"2000\":2,\"1000\":1.5}}",
+      TimelineMetric.class);
+    assertEquals(metric.getMetricValues(), read.getMetricValues());
+    assertEquals(1000L, read.getMetricValueSeries().getFirstTimestamp());
+  }
+}
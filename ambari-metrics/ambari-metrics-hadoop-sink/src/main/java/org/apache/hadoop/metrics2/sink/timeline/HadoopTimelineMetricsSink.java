@@ -181,7 +181,7 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
         timelineMetric.setAppId(serviceName);
         timelineMetric.setStartTime(startTime);
         timelineMetric.setType(ClassUtils.getShortCanonicalName(value, "Number"));
-        timelineMetric.getMetricValues().put(startTime, value.doubleValue());
+        timelineMetric.getMetricValueSeries().append(startTime, value.doubleValue());
         // Put intermediate values into the cache until it is time to send
         boolean isCounter = MetricType.COUNTER == metric.type();
         metricsCache.putTimelineMetric(timelineMetric, isCounter);
@@ -220,7 +220,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink im
       timelineMetric.setAppId(component);
       timelineMetric.setStartTime(currentTimeMillis);
       timelineMetric.setType(ClassUtils.getShortCanonicalName(attributeValue, "Number"));
-      timelineMetric.getMetricValues().put(currentTimeMillis, attributeValue.doubleValue());
+      timelineMetric.getMetricValueSeries().append(currentTimeMillis, attributeValue.doubleValue());
       return timelineMetric;
     }
 
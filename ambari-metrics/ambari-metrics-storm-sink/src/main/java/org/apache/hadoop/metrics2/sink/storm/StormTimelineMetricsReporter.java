@@ -142,7 +142,7 @@ public class StormTimelineMetricsReporter extends AbstractTimelineMetricsSink
     timelineMetric.setStartTime(currentTimeMillis);
     timelineMetric.setType(ClassUtils.getShortCanonicalName(
       attributeValue, "Number"));
-    timelineMetric.getMetricValues().put(currentTimeMillis, Double.parseDouble(attributeValue));
+    timelineMetric.getMetricValueSeries().append(currentTimeMillis, Double.parseDouble(attributeValue));
     return timelineMetric;
   }
 
@@ -112,7 +112,7 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     timelineMetric.setStartTime(currentTimeMillis);
     timelineMetric.setType(ClassUtils.getShortCanonicalName(
         attributeValue, "Number"));
-    timelineMetric.getMetricValues().put(currentTimeMillis, Double.parseDouble(attributeValue));
+    timelineMetric.getMetricValueSeries().append(currentTimeMillis, Double.parseDouble(attributeValue));
     return timelineMetric;
   }
 
@@ -30,7 +30,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
@@ -40,7 +50,11 @@ public abstract class AbstractTimelineAggregator implements Runnable {
   protected final PhoenixHBaseAccessor hBaseAccessor;
   private final Log LOG;
 
+  private static final String PARTITION_STATE_SUFFIX = ".partitions";
+
   private Clock clock;
+  private ExecutorService executor;
+  private int partitionCount = 1;
   protected final long checkpointDelayMillis;
   protected final Integer resultsetFetchSize;
   protected Configuration metricsConf;
@@ -197,9 +211,95 @@ public abstract class AbstractTimelineAggregator implements Runnable {
     LOG.info("Start aggregation cycle @ " + new Date() + ", " +
       "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
 
+    List<String> boundaries = null;
+    if (executor != null && partitionCount > 1) {
+      boundaries = hBaseAccessor.getMetricNamePartitioner()
+        .getBoundaries(partitionCount);
+    }
+    if (boundaries == null || boundaries.isEmpty()) {
+      boolean success = doWorkOnPartition(startTime, endTime, null, null);
+      LOG.info("End aggregation cycle @ " + new Date());
+      return success;
+    }
+    return doWorkOnPartitions(startTime, endTime, boundaries);
+  }
+
+  /**
+   * Aggregate the metric name partitions in parallel on the shared
+   * executor. Partitions that finished are recorded next to the checkpoint,
+   * so when the window is retried after a failure only the failed
+   * partitions run again, with the same boundaries.
+   */
+  private boolean doWorkOnPartitions(final long startTime, final long endTime,
+                                     List<String> boundaries) {
+    PartitionState state = readPartitionState();
+    if (state == null || state.startTime != startTime
+        || state.endTime != endTime) {
+      state = new PartitionState(startTime, endTime, boundaries);
+    } else {
+      LOG.info("Resuming aggregation of window, completed partitions: " +
+        state.completed);
+    }
+
+    int partitions = state.boundaries.size() + 1;
+    Map<Integer, Future<Boolean>> results =
+      new TreeMap<Integer, Future<Boolean>>();
+    for (int i = 0; i < partitions; i++) {
+      if (state.completed.contains(i)) {
+        continue;
+      }
+      final String from = i == 0 ? null : state.boundaries.get(i - 1);
+      final String to = i == partitions - 1 ? null : state.boundaries.get(i);
+      results.put(i, executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return doWorkOnPartition(startTime, endTime, from, to);
+        }
+      }));
+    }
+
+    boolean success = true;
+    for (Map.Entry<Integer, Future<Boolean>> result : results.entrySet()) {
+      try {
+        if (result.getValue().get()) {
+          state.completed.add(result.getKey());
+        } else {
+          success = false;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        success = false;
+      } catch (ExecutionException e) {
+        LOG.error("Exception during aggregating partition " +
+          result.getKey(), e.getCause());
+        success = false;
+      }
+    }
+
+    if (success) {
+      deletePartitionState();
+    } else {
+      LOG.warn("Aggregated " + state.completed.size() + " of " + partitions +
+        " partitions, the rest will be retried.");
+      savePartitionState(state);
+    }
+    LOG.info("End aggregation cycle @ " + new Date());
+    return success;
+  }
+
+  /**
+   * Aggregate the metrics with names in [metricNameFrom, metricNameTo),
+   * null bounds are open.
+   */
+  protected boolean doWorkOnPartition(long startTime, long endTime,
+                                      String metricNameFrom,
+                                      String metricNameTo) {
     boolean success = true;
     PhoenixTransactSQL.Condition condition =
       prepareMetricQueryCondition(startTime, endTime);
+    if (metricNameFrom != null || metricNameTo != null) {
+      condition.setMetricNameRange(metricNameFrom, metricNameTo);
+    }
 
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -215,7 +315,6 @@ public abstract class AbstractTimelineAggregator implements Runnable {
       LOG.debug("Query returned @: " + new Date());
 
       aggregate(rs, startTime, endTime);
-      LOG.info("End aggregation cycle @ " + new Date());
 
     } catch (SQLException e) {
       LOG.error("Exception during aggregating metrics.", e);
@@ -247,10 +346,98 @@ public abstract class AbstractTimelineAggregator implements Runnable {
       }
     }
 
-    LOG.info("End aggregation cycle @ " + new Date());
     return success;
   }
 
+  private String getPartitionStateLocation() {
+    return getCheckpointLocation() + PARTITION_STATE_SUFFIX;
+  }
+
+  private PartitionState readPartitionState() {
+    File file = new File(getPartitionStateLocation());
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      return PartitionState.fromLines(FileUtils.readLines(file));
+    } catch (IOException io) {
+      LOG.warn("Unable to read partition state, aggregating all partitions.",
+        io);
+    } catch (RuntimeException e) {
+      LOG.warn("Malformed partition state, aggregating all partitions.", e);
+    }
+    return null;
+  }
+
+  private void savePartitionState(PartitionState state) {
+    try {
+      FileUtils.writeLines(new File(getPartitionStateLocation()),
+        state.toLines());
+    } catch (IOException io) {
+      LOG.warn("Unable to save partition state, the whole window will be " +
+        "aggregated again.", io);
+    }
+  }
+
+  private void deletePartitionState() {
+    File file = new File(getPartitionStateLocation());
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Unable to delete partition state " + file);
+    }
+  }
+
+  /**
+   * Run partitions of each aggregation pass on the given executor. The
+   * executor is shared between aggregators and must not be used for tasks
+   * that wait on other tasks of the same executor.
+   */
+  public void setExecutor(ExecutorService executor, int partitionCount) {
+    this.executor = executor;
+    this.partitionCount = partitionCount;
+  }
+
+  /**
+   * Metric name partitions of a window and which of them are done.
+   * Stored one value per line: start time, end time, number of
+   * boundaries, the boundaries, then the completed partition indexes.
+   */
+  static class PartitionState {
+    final long startTime;
+    final long endTime;
+    final List<String> boundaries;
+    final Set<Integer> completed = new TreeSet<Integer>();
+
+    PartitionState(long startTime, long endTime, List<String> boundaries) {
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.boundaries = boundaries;
+    }
+
+    List<String> toLines() {
+      List<String> lines = new ArrayList<String>();
+      lines.add(String.valueOf(startTime));
+      lines.add(String.valueOf(endTime));
+      lines.add(String.valueOf(boundaries.size()));
+      lines.addAll(boundaries);
+      for (Integer partition : completed) {
+        lines.add(String.valueOf(partition));
+      }
+      return lines;
+    }
+
+    static PartitionState fromLines(List<String> lines) {
+      long startTime = Long.parseLong(lines.get(0));
+      long endTime = Long.parseLong(lines.get(1));
+      int count = Integer.parseInt(lines.get(2));
+      PartitionState state = new PartitionState(startTime, endTime,
+        new ArrayList<String>(lines.subList(3, 3 + count)));
+      for (String line : lines.subList(3 + count, lines.size())) {
+        state.completed.add(Integer.parseInt(line));
+      }
+      return state;
+    }
+  }
+
   protected abstract PhoenixTransactSQL.Condition
   prepareMetricQueryCondition(long startTime, long endTime);
 
@@ -18,14 +18,14 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
 
 
-import java.util.Map;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 
 /**
  *
  */
 public class AggregatorUtils {
 
-  public static double[] calculateAggregates(Map<Long, Double> metricValues) {
+  public static double[] calculateAggregates(TimelineMetricValues metricValues) {
     double[] values = new double[4];
     double max = Double.MIN_VALUE;
     double min = Double.MAX_VALUE;
@@ -33,9 +33,10 @@ public class AggregatorUtils {
     int metricCount = 0;
 
     if (metricValues != null && !metricValues.isEmpty()) {
-      for (Double value : metricValues.values()) {
+      for (int i = 0; i < metricValues.size(); i++) {
         // TODO: Some nulls in data - need to investigate null values from host
-        if (value != null) {
+        if (!metricValues.isNullValue(i)) {
+          double value = metricValues.getValue(i);
           if (value > max) {
             max = value;
           }
@@ -45,7 +46,7 @@ public class AggregatorUtils {
           sum += value;
         }
       }
-      metricCount = metricValues.values().size();
+      metricCount = metricValues.size();
     }
     // BR: WHY ZERO is a good idea?
     values[0] = sum;
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+
+import java.util.Map;
+
+/**
+ * Folds the host rows of one cluster metric into per time slice sum, max,
+ * min and host count kept in primitive arrays. Rows are sliced in place,
+ * so memory depends only on the number of slices in the aggregation
+ * window, not on the number of hosts.
+ * <p/>
+ * A row contributes one value per slice it has datapoints in: successive
+ * datapoints of the row in the same slice are averaged pairwise, the same
+ * as the map based aggregation does.
+ * <p/>
+ * Not thread safe, meant to be reused by one aggregator for every metric.
+ */
+class ClusterMetricSliceAccumulator {
+  private final long startTime;
+  private final long sliceInterval;
+  private final int numberOfSlices;
+
+  private final double[] sum;
+  private final double[] max;
+  private final double[] min;
+  private final int[] numberOfHosts;
+
+  // Per row scratch space
+  private final double[] rowValue;
+  private final boolean[] rowHasValue;
+  private final int[] rowSlices;
+
+  private String metricName;
+  private String appId;
+  private String type;
+
+  ClusterMetricSliceAccumulator(long startTime, long endTime,
+                                long sliceInterval) {
+    this.startTime = startTime;
+    this.sliceInterval = sliceInterval;
+    this.numberOfSlices = endTime > startTime ?
+      (int) ((endTime - startTime + sliceInterval - 1) / sliceInterval) : 0;
+
+    sum = new double[numberOfSlices];
+    max = new double[numberOfSlices];
+    min = new double[numberOfSlices];
+    numberOfHosts = new int[numberOfSlices];
+    rowValue = new double[numberOfSlices];
+    rowHasValue = new boolean[numberOfSlices];
+    rowSlices = new int[numberOfSlices];
+  }
+
+  /**
+   * @return true if the row belongs to the metric currently accumulated.
+   */
+  boolean isSameMetric(String metricName, String appId) {
+    return this.metricName != null && this.metricName.equals(metricName)
+      && (this.appId == null ? appId == null : this.appId.equals(appId));
+  }
+
+  boolean isEmpty() {
+    return metricName == null;
+  }
+
+  /**
+   * Start accumulating a new metric, discarding the current state.
+   */
+  void reset(String metricName, String appId, String type) {
+    this.metricName = metricName;
+    this.appId = appId;
+    this.type = type;
+    for (int i = 0; i < numberOfSlices; i++) {
+      numberOfHosts[i] = 0;
+    }
+  }
+
+  void addRow(TimelineMetricValues metricValues) {
+    int touched = 0;
+
+    for (int i = 0; i < metricValues.size(); i++) {
+      // TODO: investigate null values - pre filter
+      if (metricValues.isNullValue(i)) {
+        continue;
+      }
+      int slice = getSlice(metricValues.getTimestamp(i));
+      if (slice < 0) {
+        continue;
+      }
+      double value = metricValues.getValue(i);
+      if (rowHasValue[slice]) {
+        rowValue[slice] = (rowValue[slice] + value) / 2;
+      } else {
+        rowHasValue[slice] = true;
+        rowValue[slice] = value;
+        rowSlices[touched++] = slice;
+      }
+    }
+
+    for (int i = 0; i < touched; i++) {
+      int slice = rowSlices[i];
+      double value = rowValue[slice];
+      rowHasValue[slice] = false;
+
+      if (numberOfHosts[slice] == 0) {
+        sum[slice] = value;
+        max[slice] = value;
+        min[slice] = value;
+      } else {
+        sum[slice] += value;
+        if (value > max[slice]) {
+          max[slice] = value;
+        }
+        if (value < min[slice]) {
+          min[slice] = value;
+        }
+      }
+      numberOfHosts[slice]++;
+    }
+  }
+
+  /**
+   * Add an aggregate for every slice that received values.
+   *
+   * @return number of aggregates added
+   */
+  int drainTo(Map<TimelineClusterMetric, MetricClusterAggregate> aggregates) {
+    if (metricName == null) {
+      return 0;
+    }
+    int count = 0;
+    for (int i = 0; i < numberOfSlices; i++) {
+      if (numberOfHosts[i] == 0) {
+        continue;
+      }
+      TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
+        metricName, appId, null, startTime + i * sliceInterval, type);
+      aggregates.put(clusterMetric, new MetricClusterAggregate(sum[i],
+        numberOfHosts[i], null, max[i], min[i]));
+      numberOfHosts[i] = 0;
+      count++;
+    }
+    metricName = null;
+    appId = null;
+    type = null;
+    return count;
+  }
+
+  private int getSlice(long timestamp) {
+    if (timestamp < startTime) {
+      return -1;
+    }
+    long slice = (timestamp - startTime) / sliceInterval;
+    return slice < numberOfSlices ? (int) slice : -1;
+  }
+}
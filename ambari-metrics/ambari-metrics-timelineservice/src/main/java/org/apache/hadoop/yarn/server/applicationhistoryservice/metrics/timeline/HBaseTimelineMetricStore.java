@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.service.AbstractService;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
@@ -32,9 +33,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.Condition;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.DefaultCondition;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_PARTITIONS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_ENABLED;
 
 public class HBaseTimelineMetricStore extends AbstractService
     implements TimelineMetricStore {
@@ -42,6 +49,9 @@ public class HBaseTimelineMetricStore extends AbstractService
   static final Log LOG = LogFactory.getLog(HBaseTimelineMetricStore.class);
   private final TimelineMetricConfiguration configuration;
   private PhoenixHBaseAccessor hBaseAccessor;
+  private TimelineMetricsWritePipeline writePipeline;
+  private ExecutorService aggregatorExecutor;
+  private RecentMetricsCache recentMetricsCache;
 
   /**
    * Construct the service.
@@ -52,6 +62,14 @@ public class HBaseTimelineMetricStore extends AbstractService
     this.configuration = configuration;
   }
 
+  HBaseTimelineMetricStore(TimelineMetricConfiguration configuration,
+                           PhoenixHBaseAccessor hBaseAccessor,
+                           RecentMetricsCache recentMetricsCache) {
+    this(configuration);
+    this.hBaseAccessor = hBaseAccessor;
+    this.recentMetricsCache = recentMetricsCache;
+  }
+
   @Override
   protected void serviceInit(Configuration conf) throws Exception {
     super.serviceInit(conf);
@@ -62,11 +80,40 @@ public class HBaseTimelineMetricStore extends AbstractService
                                    Configuration metricsConf) {
     hBaseAccessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf);
     hBaseAccessor.initMetricSchema();
+    hBaseAccessor.getWriteMetrics().register();
+
+    if (metricsConf.getBoolean(CACHE_ENABLED, true)) {
+      recentMetricsCache = new RecentMetricsCache(metricsConf);
+      recentMetricsCache.getMetrics().register();
+    }
+
+    writePipeline = new TimelineMetricsWritePipeline(hBaseAccessor,
+      metricsConf, recentMetricsCache);
+    writePipeline.start();
+
+    int aggregatorThreads = metricsConf.getInt(AGGREGATOR_THREADS, 4);
+    int aggregatorPartitions =
+      metricsConf.getInt(AGGREGATOR_PARTITIONS, aggregatorThreads);
+    if (aggregatorThreads > 1 && aggregatorPartitions > 1) {
+      aggregatorExecutor = Executors.newFixedThreadPool(aggregatorThreads,
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "timeline-metrics-aggregator-" +
+              count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    }
 
     // Start the cluster aggregator
     TimelineMetricClusterAggregator minuteClusterAggregator =
       new TimelineMetricClusterAggregator(hBaseAccessor, metricsConf);
     if (!minuteClusterAggregator.isDisabled()) {
+      minuteClusterAggregator.setExecutor(aggregatorExecutor, aggregatorPartitions);
       Thread aggregatorThread = new Thread(minuteClusterAggregator);
       aggregatorThread.start();
     }
@@ -75,6 +122,7 @@ public class HBaseTimelineMetricStore extends AbstractService
     TimelineMetricClusterAggregatorHourly hourlyClusterAggregator =
       new TimelineMetricClusterAggregatorHourly(hBaseAccessor, metricsConf);
     if (!hourlyClusterAggregator.isDisabled()) {
+      hourlyClusterAggregator.setExecutor(aggregatorExecutor, aggregatorPartitions);
       Thread aggregatorThread = new Thread(hourlyClusterAggregator);
       aggregatorThread.start();
     }
@@ -84,6 +132,7 @@ public class HBaseTimelineMetricStore extends AbstractService
       TimelineMetricAggregatorFactory.createTimelineMetricAggregatorMinute
         (hBaseAccessor, metricsConf);
     if (!minuteHostAggregator.isDisabled()) {
+      minuteHostAggregator.setExecutor(aggregatorExecutor, aggregatorPartitions);
       Thread minuteAggregatorThread = new Thread(minuteHostAggregator);
       minuteAggregatorThread.start();
     }
@@ -93,6 +142,7 @@ public class HBaseTimelineMetricStore extends AbstractService
       TimelineMetricAggregatorFactory.createTimelineMetricAggregatorHourly
         (hBaseAccessor, metricsConf);
     if (!hourlyHostAggregator.isDisabled()) {
+      hourlyHostAggregator.setExecutor(aggregatorExecutor, aggregatorPartitions);
       Thread aggregatorHourlyThread = new Thread(hourlyHostAggregator);
       aggregatorHourlyThread.start();
     }
@@ -100,6 +150,12 @@ public class HBaseTimelineMetricStore extends AbstractService
 
   @Override
   protected void serviceStop() throws Exception {
+    if (writePipeline != null) {
+      writePipeline.stop();
+    }
+    if (aggregatorExecutor != null) {
+      aggregatorExecutor.shutdownNow();
+    }
     super.serviceStop();
   }
 
@@ -134,8 +190,82 @@ public class HBaseTimelineMetricStore extends AbstractService
       return postProcessMetrics(metrics);
     }
 
-    return postProcessMetrics(
-      hBaseAccessor.getMetricRecords(condition, metricFunctions));
+    return postProcessMetrics(getMetricRecords(condition, metricFunctions));
+  }
+
+  /**
+   * Host metric records, served from the recent metrics cache for the part
+   * of the time range it covers.
+   */
+  private TimelineMetrics getMetricRecords(Condition condition,
+      Map<String, List<Function>> metricFunctions)
+      throws SQLException, IOException {
+
+    if (recentMetricsCache == null || !recentMetricsCache.canServe(condition)) {
+      return hBaseAccessor.getMetricRecords(condition, metricFunctions);
+    }
+
+    long startTime = condition.getStartTime();
+    long endTime = condition.getEndTime();
+    long coveredFrom = recentMetricsCache.getCoveredFrom(condition);
+
+    if (coveredFrom >= endTime) {
+      recentMetricsCache.recordMiss();
+      return hBaseAccessor.getMetricRecords(condition, metricFunctions);
+    }
+
+    TimelineMetrics cached = recentMetricsCache.getMetricRecords(condition,
+      Math.max(startTime, coveredFrom), endTime);
+    if (startTime >= coveredFrom) {
+      if (isWithinLimit(cached, condition.getLimit())) {
+        recentMetricsCache.recordHit();
+        return cached;
+      }
+      recentMetricsCache.recordMiss();
+      return hBaseAccessor.getMetricRecords(condition, metricFunctions);
+    }
+
+    // Phoenix selects rows by SERVER_TIME, the time of the write, and a row
+    // holds datapoints up to the write lag older than that. Rows written up
+    // to the lag after coveredFrom can still hold datapoints the cache does
+    // not, the overlap with the cache is merged away below.
+    long olderEndTime = Math.min(endTime,
+      coveredFrom + recentMetricsCache.getMaxWriteLag());
+    Condition olderCondition = new DefaultCondition(
+      condition.getMetricNames(), condition.getHostname(),
+      condition.getAppId(), condition.getInstanceId(), startTime,
+      olderEndTime, Precision.SECONDS, condition.getLimit(), true);
+    TimelineMetrics metrics =
+      hBaseAccessor.getMetricRecords(olderCondition, metricFunctions);
+    for (TimelineMetric metric : cached.getMetrics()) {
+      metrics.addOrMergeTimelineMetric(metric);
+    }
+    if (isWithinLimit(metrics, condition.getLimit())) {
+      recentMetricsCache.recordPartialHit();
+      return metrics;
+    }
+    recentMetricsCache.recordMiss();
+    return hBaseAccessor.getMetricRecords(condition, metricFunctions);
+  }
+
+  /**
+   * The Phoenix query limits rows, each holding one or more datapoints of a
+   * metric, so a result with fewer datapoints than the limit was not cut by
+   * it, neither in Phoenix nor in the older part of a partial hit. Results
+   * reaching the limit are read from Phoenix, which cuts them by rows.
+   */
+  static boolean isWithinLimit(TimelineMetrics metrics, Integer limit) {
+    if (limit == null) {
+      return true;
+    }
+    int datapoints = 0;
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      datapoints += metric.getMetricValueSeries().size();
+      if (datapoints >= limit) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private TimelineMetrics postProcessMetrics(TimelineMetrics metrics) {
@@ -144,33 +274,28 @@ public class HBaseTimelineMetricStore extends AbstractService
     for (TimelineMetric metric: metricsList){
       String name = metric.getMetricName();
       if (name.contains("._rate")){
-        updateValueAsRate(metric.getMetricValues());
+        metric.setMetricValueSeries(
+          updateValueAsRate(metric.getMetricValueSeries()));
       }
     }
 
     return metrics;
   }
 
-  private Map<Long, Double> updateValueAsRate(Map<Long, Double> metricValues) {
-    Long prevTime = null;
-    long step;
+  private TimelineMetricValues updateValueAsRate(TimelineMetricValues metricValues) {
+    TimelineMetricValues rates = new TimelineMetricValues(metricValues.size());
 
-    for (Map.Entry<Long, Double> timeValueEntry : metricValues.entrySet()) {
-      Long currTime = timeValueEntry.getKey();
-      Double currVal = timeValueEntry.getValue();
-
-      if (prevTime != null) {
-        step = currTime - prevTime;
-        Double rate = currVal / step;
-        timeValueEntry.setValue(rate);
+    for (int i = 0; i < metricValues.size(); i++) {
+      long currTime = metricValues.getTimestamp(i);
+      if (i > 0) {
+        long step = currTime - metricValues.getTimestamp(i - 1);
+        rates.append(currTime, metricValues.getValue(i) / step);
       } else {
-        timeValueEntry.setValue(0.0);
+        rates.append(currTime, 0.0);
       }
-
-      prevTime = currTime;
     }
 
-    return metricValues;
+    return rates;
   }
 
   public static HashMap<String, List<Function>>
@@ -232,8 +357,7 @@ public class HBaseTimelineMetricStore extends AbstractService
     Condition condition = new DefaultCondition(
       new ArrayList<String>(metricFunctions.keySet()), hostname, applicationId,
       instanceId, startTime, endTime, precision, limit, true);
-    TimelineMetrics metrics = hBaseAccessor.getMetricRecords(condition,
-      metricFunctions);
+    TimelineMetrics metrics = getMetricRecords(condition, metricFunctions);
 
     metrics = postProcessMetrics(metrics);
 
@@ -247,11 +371,11 @@ public class HBaseTimelineMetricStore extends AbstractService
       metric.setHostName(metricList.get(0).getHostName());
       // Assumption that metrics are ordered by start time
       metric.setStartTime(metricList.get(0).getStartTime());
-      Map<Long, Double> metricRecords = new TreeMap<Long, Double>();
+      TimelineMetricValues metricRecords = new TimelineMetricValues();
       for (TimelineMetric timelineMetric : metricList) {
-        metricRecords.putAll(timelineMetric.getMetricValues());
+        metricRecords.merge(timelineMetric.getMetricValueSeries());
       }
-      metric.setMetricValues(metricRecords);
+      metric.setMetricValueSeries(metricRecords);
     }
 
     return metric;
@@ -262,10 +386,11 @@ public class HBaseTimelineMetricStore extends AbstractService
   public TimelinePutResponse putMetrics(TimelineMetrics metrics)
     throws SQLException, IOException {
 
-    // Error indicated by the Sql exception
+    // Queued puts are acknowledged before they are written, their write
+    // errors are only logged and counted by the write pipeline
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecords(metrics);
+    writePipeline.putMetrics(metrics);
 
     return response;
   }
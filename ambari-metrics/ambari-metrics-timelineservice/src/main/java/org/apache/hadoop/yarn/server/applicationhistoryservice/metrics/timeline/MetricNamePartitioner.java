@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits the metric name space into ranges of roughly equal numbers of
+ * metric names, based on the names seen on the write path. The ranges
+ * always cover the whole space, names that were never observed simply
+ * fall into one of them, so the split only affects balance, never
+ * correctness.
+ */
+public class MetricNamePartitioner {
+
+  /**
+   * Bound on tracked names, the distinct metric names of a cluster are
+   * normally a few thousand.
+   */
+  private static final int MAX_TRACKED_NAMES = 100000;
+
+  private final ConcurrentSkipListSet<String> metricNames =
+    new ConcurrentSkipListSet<String>();
+  private final AtomicInteger trackedNames = new AtomicInteger();
+
+  public void observe(String metricName) {
+    if (metricName == null || metricNames.contains(metricName)
+        || trackedNames.get() >= MAX_TRACKED_NAMES) {
+      return;
+    }
+    if (metricNames.add(metricName)) {
+      trackedNames.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return sorted, distinct split points. Partition i covers
+   * [boundaries[i - 1], boundaries[i]) with open first and last ranges, so
+   * n boundaries give n + 1 partitions. Empty if nothing was observed.
+   */
+  public List<String> getBoundaries(int partitions) {
+    List<String> boundaries = new ArrayList<String>();
+    if (partitions <= 1) {
+      return boundaries;
+    }
+
+    String[] names = metricNames.toArray(new String[0]);
+    if (names.length == 0) {
+      return boundaries;
+    }
+
+    for (int i = 1; i < partitions; i++) {
+      int index = (int) ((long) i * names.length / partitions);
+      if (index == 0) {
+        continue;
+      }
+      String boundary = names[index];
+      if (boundaries.isEmpty() ||
+          !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+        boundaries.add(boundary);
+      }
+    }
+    return boundaries;
+  }
+}
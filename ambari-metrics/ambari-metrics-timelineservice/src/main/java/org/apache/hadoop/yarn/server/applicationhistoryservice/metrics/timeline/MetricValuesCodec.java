@@ -0,0 +1,365 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compact encoding of the time series stored in the METRICS column.
+ * Timestamps are written as delta-of-deltas and values as XOR against the
+ * previous value, both bit packed, with all timestamps written before all
+ * values. The encoded bytes are stored as Base64 text prefixed with
+ * {@link #BINARY_PREFIX} so that the existing VARCHAR column can hold both
+ * this format and the legacy JSON map.
+ */
+public class MetricValuesCodec {
+
+  /**
+   * Marks a METRICS column value as binary encoded. JSON maps always start
+   * with '{', so the prefix never collides with legacy rows.
+   */
+  public static final char BINARY_PREFIX = '~';
+
+  private static final int VERSION = 1;
+
+  private MetricValuesCodec() {}
+
+  public static boolean isBinaryEncoded(String columnValue) {
+    return columnValue != null && columnValue.length() > 0
+      && columnValue.charAt(0) == BINARY_PREFIX;
+  }
+
+  /**
+   * Encode metric values for storage in the METRICS column.
+   *
+   * @return encoded string or null if the values contain nulls and can
+   * only be represented as JSON.
+   */
+  public static String encodeToString(Map<Long, Double> metricValues) {
+    byte[] bytes = encode(metricValues);
+    if (bytes == null) {
+      return null;
+    }
+    return BINARY_PREFIX + DatatypeConverter.printBase64Binary(bytes);
+  }
+
+  public static TimelineMetricValues decodeFromString(String columnValue)
+    throws IOException {
+    if (!isBinaryEncoded(columnValue)) {
+      throw new IOException("Column value is not binary encoded.");
+    }
+    byte[] bytes;
+    try {
+      bytes = DatatypeConverter.parseBase64Binary(columnValue.substring(1));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Malformed metric values.", e);
+    }
+    return decode(bytes);
+  }
+
+  /**
+   * @return encoded bytes or null if any value is null.
+   */
+  static byte[] encode(Map<Long, Double> metricValues) {
+    if (metricValues instanceof TimelineMetricValues) {
+      return encode((TimelineMetricValues) metricValues);
+    }
+    int size = metricValues == null ? 0 : metricValues.size();
+    long[] timestamps = new long[size];
+    double[] values = new double[size];
+
+    if (size > 0) {
+      int i = 0;
+      for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+        if (entry.getKey() == null || entry.getValue() == null) {
+          return null;
+        }
+        timestamps[i] = entry.getKey();
+        values[i] = entry.getValue();
+        i++;
+      }
+      sortByTimestamp(timestamps, values);
+    }
+
+    return encode(timestamps, values, size);
+  }
+
+  static byte[] encode(TimelineMetricValues series) {
+    int size = series.size();
+    long[] timestamps = new long[size];
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      if (series.isNullValue(i)) {
+        return null;
+      }
+      timestamps[i] = series.getTimestamp(i);
+      values[i] = series.getValue(i);
+    }
+    return encode(timestamps, values, size);
+  }
+
+  static byte[] encode(long[] timestamps, double[] values, int size) {
+    BitWriter writer = new BitWriter(16 + size * 4);
+    writer.writeBits(VERSION, 8);
+    writer.writeBits(size, 32);
+
+    if (size > 0) {
+      writeTimestamps(writer, timestamps, size);
+      writeValues(writer, values, size);
+    }
+
+    return writer.toByteArray();
+  }
+
+  static TimelineMetricValues decode(byte[] bytes) throws IOException {
+    BitReader reader = new BitReader(bytes);
+    int version = (int) reader.readBits(8);
+    if (version != VERSION) {
+      throw new IOException("Unsupported metric values encoding version: "
+        + version);
+    }
+    int size = (int) reader.readBits(32);
+    if (size < 0) {
+      throw new IOException("Malformed metric values, size = " + size);
+    }
+
+    long[] timestamps = new long[size];
+    double[] values = new double[size];
+
+    if (size > 0) {
+      readTimestamps(reader, timestamps);
+      readValues(reader, values);
+    }
+
+    try {
+      return TimelineMetricValues.wrap(timestamps, values, size);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Malformed metric values.", e);
+    }
+  }
+
+  private static void writeTimestamps(BitWriter writer, long[] timestamps,
+                                      int size) {
+    writer.writeBits(timestamps[0], 64);
+    long prevDelta = 0;
+    for (int i = 1; i < size; i++) {
+      long delta = timestamps[i] - timestamps[i - 1];
+      long dod = delta - prevDelta;
+      prevDelta = delta;
+
+      // zig-zag so that small negative jitter stays small
+      long zz = (dod << 1) ^ (dod >> 63);
+      if (zz == 0) {
+        writer.writeBit(false);
+      } else if (zz >>> 7 == 0) {
+        writer.writeBits(0x2, 2);
+        writer.writeBits(zz, 7);
+      } else if (zz >>> 9 == 0) {
+        writer.writeBits(0x6, 3);
+        writer.writeBits(zz, 9);
+      } else if (zz >>> 12 == 0) {
+        writer.writeBits(0xE, 4);
+        writer.writeBits(zz, 12);
+      } else {
+        writer.writeBits(0xF, 4);
+        writer.writeBits(zz, 64);
+      }
+    }
+  }
+
+  private static void readTimestamps(BitReader reader, long[] timestamps)
+    throws IOException {
+    timestamps[0] = reader.readBits(64);
+    long prevDelta = 0;
+    for (int i = 1; i < timestamps.length; i++) {
+      long zz;
+      if (!reader.readBit()) {
+        zz = 0;
+      } else if (!reader.readBit()) {
+        zz = reader.readBits(7);
+      } else if (!reader.readBit()) {
+        zz = reader.readBits(9);
+      } else if (!reader.readBit()) {
+        zz = reader.readBits(12);
+      } else {
+        zz = reader.readBits(64);
+      }
+      long dod = (zz >>> 1) ^ -(zz & 1);
+      long delta = prevDelta + dod;
+      timestamps[i] = timestamps[i - 1] + delta;
+      prevDelta = delta;
+    }
+  }
+
+  private static void writeValues(BitWriter writer, double[] values,
+                                  int size) {
+    long prev = Double.doubleToRawLongBits(values[0]);
+    writer.writeBits(prev, 64);
+    int prevLeading = -1;
+    int prevTrailing = 0;
+
+    for (int i = 1; i < size; i++) {
+      long current = Double.doubleToRawLongBits(values[i]);
+      long xor = current ^ prev;
+      prev = current;
+
+      if (xor == 0) {
+        writer.writeBit(false);
+        continue;
+      }
+      writer.writeBit(true);
+
+      int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      int trailing = Long.numberOfTrailingZeros(xor);
+
+      if (prevLeading != -1 && leading >= prevLeading
+          && trailing >= prevTrailing) {
+        // meaningful bits fit in the previous window
+        writer.writeBit(false);
+        writer.writeBits(xor >>> prevTrailing,
+          64 - prevLeading - prevTrailing);
+      } else {
+        int meaningful = 64 - leading - trailing;
+        writer.writeBit(true);
+        writer.writeBits(leading, 5);
+        writer.writeBits(meaningful - 1, 6);
+        writer.writeBits(xor >>> trailing, meaningful);
+        prevLeading = leading;
+        prevTrailing = trailing;
+      }
+    }
+  }
+
+  private static void readValues(BitReader reader, double[] values)
+    throws IOException {
+    long prev = reader.readBits(64);
+    values[0] = Double.longBitsToDouble(prev);
+    int prevLeading = 0;
+    int prevTrailing = 0;
+
+    for (int i = 1; i < values.length; i++) {
+      if (reader.readBit()) {
+        long xor;
+        if (!reader.readBit()) {
+          int meaningful = 64 - prevLeading - prevTrailing;
+          xor = reader.readBits(meaningful) << prevTrailing;
+        } else {
+          int leading = (int) reader.readBits(5);
+          int meaningful = (int) reader.readBits(6) + 1;
+          int trailing = 64 - leading - meaningful;
+          xor = reader.readBits(meaningful) << trailing;
+          prevLeading = leading;
+          prevTrailing = trailing;
+        }
+        prev ^= xor;
+      }
+      values[i] = Double.longBitsToDouble(prev);
+    }
+  }
+
+  /**
+   * Insertion sort on the parallel arrays; sink payloads are almost always
+   * already in time order, so this is effectively a single pass.
+   */
+  static void sortByTimestamp(long[] timestamps, double[] values) {
+    for (int i = 1; i < timestamps.length; i++) {
+      long ts = timestamps[i];
+      double value = values[i];
+      int j = i - 1;
+      while (j >= 0 && timestamps[j] > ts) {
+        timestamps[j + 1] = timestamps[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      timestamps[j + 1] = ts;
+      values[j + 1] = value;
+    }
+  }
+
+  private static class BitWriter {
+    private byte[] buffer;
+    private int bitPosition = 0;
+
+    BitWriter(int initialBytes) {
+      buffer = new byte[Math.max(initialBytes, 16)];
+    }
+
+    void writeBit(boolean bit) {
+      ensureCapacity(1);
+      if (bit) {
+        buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+      }
+      bitPosition++;
+    }
+
+    /**
+     * Writes the lowest numBits of value, most significant bit first.
+     */
+    void writeBits(long value, int numBits) {
+      ensureCapacity(numBits);
+      for (int i = numBits - 1; i >= 0; i--) {
+        if (((value >>> i) & 1) != 0) {
+          buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+      }
+    }
+
+    private void ensureCapacity(int numBits) {
+      int required = (bitPosition + numBits + 7) >>> 3;
+      if (required > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+  }
+
+  private static class BitReader {
+    private final byte[] buffer;
+    private int bitPosition = 0;
+
+    BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    boolean readBit() throws IOException {
+      if ((bitPosition >>> 3) >= buffer.length) {
+        throw new IOException("Unexpected end of encoded metric values.");
+      }
+      boolean bit = (buffer[bitPosition >>> 3] & (0x80 >>> (bitPosition & 7))) != 0;
+      bitPosition++;
+      return bit;
+    }
+
+    long readBits(int numBits) throws IOException {
+      long value = 0;
+      for (int i = 0; i < numBits; i++) {
+        value = (value << 1) | (readBit() ? 1 : 0);
+      }
+      return value;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.RetryCounter;
 import org.apache.hadoop.hbase.util.RetryCounterFactory;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.phoenix.exception.SQLExceptionCode;
@@ -38,7 +39,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.ALTER_SQL;
@@ -69,7 +69,9 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HBASE_ENCODING_SCHEME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_HOUR_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_MINUTE_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.METRIC_VALUES_STORAGE_FORMAT;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BATCH_SIZE;
 
 /**
  * Provides a facade over the Phoenix API to access HBase schema
@@ -81,8 +83,20 @@ public class PhoenixHBaseAccessor {
   private final Configuration hbaseConf;
   private final Configuration metricsConf;
   private final RetryCounterFactory retryCounterFactory;
+  private final boolean binaryValuesFormat;
+  private final int writeBatchSize;
+  private final TimelineMetricsWriteMetrics writeMetrics =
+    new TimelineMetricsWriteMetrics();
+  private final MetricNamePartitioner metricNamePartitioner =
+    new MetricNamePartitioner();
 
   static final int PHOENIX_MAX_MUTATION_STATE_SIZE = 50000;
+  /**
+   * Values for {@link TimelineMetricConfiguration#METRIC_VALUES_STORAGE_FORMAT}.
+   * Reads always accept both formats.
+   */
+  static final String JSON_VALUES_FORMAT = "json";
+  static final String BINARY_VALUES_FORMAT = "binary";
   /**
    * 4 metrics/min * 60 * 24: Retrieve data for 1 day.
    */
@@ -116,6 +130,20 @@ public class PhoenixHBaseAccessor {
     this.retryCounterFactory = new RetryCounterFactory(
       metricsConf.getInt(GLOBAL_MAX_RETRIES, 10),
       (int) SECONDS.toMillis(metricsConf.getInt(GLOBAL_RETRY_INTERVAL, 5)));
+    this.binaryValuesFormat = BINARY_VALUES_FORMAT.equalsIgnoreCase(
+      metricsConf.get(METRIC_VALUES_STORAGE_FORMAT, JSON_VALUES_FORMAT).trim());
+    this.writeBatchSize = metricsConf.getInt(WRITE_BATCH_SIZE, 1000);
+  }
+
+  public TimelineMetricsWriteMetrics getWriteMetrics() {
+    return writeMetrics;
+  }
+
+  /**
+   * Tracks the metric names written, used to partition aggregation.
+   */
+  public MetricNamePartitioner getMetricNamePartitioner() {
+    return metricNamePartitioner;
   }
 
 
@@ -153,7 +181,7 @@ public class PhoenixHBaseAccessor {
     throws SQLException, IOException {
     TimelineMetric metric = timelineMetricReader
       .getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs.getString("METRICS")));
 
     return metric;
   }
@@ -192,15 +220,26 @@ public class PhoenixHBaseAccessor {
 
     metric.setMetricName(rs.getString("METRIC_NAME") + f.getSuffix());
 
-    Map<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(rs.getLong("SERVER_TIME"), value);
-    metric.setMetricValues(valueMap);
+    TimelineMetricValues valueMap = new TimelineMetricValues(1);
+    valueMap.append(rs.getLong("SERVER_TIME"), value);
+    metric.setMetricValueSeries(valueMap);
     return metric;
   }
 
-  private static Map<Long, Double> readLastMetricValueFromJSON(String json)
+  private static Map<Long, Double> readLastMetricValue(String columnValue)
     throws IOException {
-    Map<Long, Double> values = readMetricFromJSON(json);
+    if (MetricValuesCodec.isBinaryEncoded(columnValue)) {
+      TimelineMetricValues values =
+        MetricValuesCodec.decodeFromString(columnValue);
+      TimelineMetricValues lastValue = new TimelineMetricValues(1);
+      if (!values.isEmpty()) {
+        int last = values.size() - 1;
+        lastValue.append(values.getTimestamp(last), values.getValue(last));
+      }
+      return lastValue;
+    }
+
+    Map<Long, Double> values = readMetricFromJSON(columnValue);
     Long lastTimeStamp = Collections.max(values.keySet());
 
     HashMap<Long, Double> valueMap = new HashMap<Long, Double>(1);
@@ -208,6 +247,18 @@ public class PhoenixHBaseAccessor {
     return valueMap;
   }
 
+  /**
+   * Read the METRICS column regardless of whether it was written as JSON or
+   * with {@link MetricValuesCodec}.
+   */
+  public static TimelineMetricValues readMetricValues(String columnValue)
+    throws IOException {
+    if (MetricValuesCodec.isBinaryEncoded(columnValue)) {
+      return MetricValuesCodec.decodeFromString(columnValue);
+    }
+    return new TimelineMetricValues(readMetricFromJSON(columnValue));
+  }
+
   @SuppressWarnings("unchecked")
   public static Map<Long, Double>  readMetricFromJSON(String json)
     throws IOException {
@@ -344,6 +395,8 @@ public class PhoenixHBaseAccessor {
     try {
       metricRecordStmt = conn.prepareStatement(String.format(
         UPSERT_METRICS_SQL, METRICS_RECORD_TABLE_NAME));
+      UpsertBatch batch = new UpsertBatch(conn, metricRecordStmt,
+        writeBatchSize, writeMetrics);
 
       for (TimelineMetric metric : timelineMetrics) {
         metricRecordStmt.clearParameters();
@@ -354,7 +407,9 @@ public class PhoenixHBaseAccessor {
             "values: " + metric.getMetricValues());
         }
         double[] aggregates =  AggregatorUtils.calculateAggregates(
-          metric.getMetricValues());
+          metric.getMetricValueSeries());
+
+        metricNamePartitioner.observe(metric.getMetricName());
 
         metricRecordStmt.setString(1, metric.getMetricName());
         metricRecordStmt.setString(2, metric.getHostName());
@@ -367,18 +422,12 @@ public class PhoenixHBaseAccessor {
         metricRecordStmt.setDouble(9, aggregates[1]);
         metricRecordStmt.setDouble(10, aggregates[2]);
         metricRecordStmt.setLong(11, (long)aggregates[3]);
-        String json =
-          TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        metricRecordStmt.setString(12, encodeMetricValues(metric));
 
-        try {
-          metricRecordStmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
-        }
+        batch.addRow();
       }
 
-      conn.commit();
+      batch.flush();
 
     } finally {
       if (metricRecordStmt != null) {
@@ -398,6 +447,18 @@ public class PhoenixHBaseAccessor {
     }
   }
 
+  private String encodeMetricValues(TimelineMetric metric) throws IOException {
+    if (binaryValuesFormat) {
+      String encoded =
+        MetricValuesCodec.encodeToString(metric.getMetricValueSeries());
+      // null values cannot be represented, fall back to JSON
+      if (encoded != null) {
+        return encoded;
+      }
+    }
+    return TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
+  }
+
   @SuppressWarnings("unchecked")
   public TimelineMetrics getMetricRecords(
     final Condition condition, Map<String, List<Function>> metricFunctions)
@@ -668,9 +729,9 @@ public class PhoenixHBaseAccessor {
 
     metric.setMetricName(rs.getString("METRIC_NAME") + f.getSuffix());
 
-    Map<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(rs.getLong("SERVER_TIME"), value);
-    metric.setMetricValues(valueMap);
+    TimelineMetricValues valueMap = new TimelineMetricValues(1);
+    valueMap.append(rs.getLong("SERVER_TIME"), value);
+    metric.setMetricValueSeries(valueMap);
 
     return metric;
   }
@@ -704,9 +765,9 @@ public class PhoenixHBaseAccessor {
 
     metric.setMetricName(rs.getString("METRIC_NAME") + f.getSuffix());
 
-    Map<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(rs.getLong("SERVER_TIME"), value);
-    metric.setMetricValues(valueMap);
+    TimelineMetricValues valueMap = new TimelineMetricValues(1);
+    valueMap.append(rs.getLong("SERVER_TIME"), value);
+    metric.setMetricValueSeries(valueMap);
 
     return metric;
   }
@@ -730,11 +791,12 @@ public class PhoenixHBaseAccessor {
     PreparedStatement stmt = null;
 
     long start = System.currentTimeMillis();
-    int rowCount = 0;
 
     try {
       stmt = conn.prepareStatement(
         String.format(UPSERT_AGGREGATE_RECORD_SQL, phoenixTableName));
+      UpsertBatch batch = new UpsertBatch(conn, stmt, writeBatchSize,
+        writeMetrics);
 
       for (Map.Entry<TimelineMetric, MetricHostAggregate> metricAggregate :
         hostAggregateMap.entrySet()) {
@@ -742,7 +804,6 @@ public class PhoenixHBaseAccessor {
         TimelineMetric metric = metricAggregate.getKey();
         MetricHostAggregate hostAggregate = metricAggregate.getValue();
 
-        rowCount++;
         stmt.clearParameters();
         stmt.setString(1, metric.getMetricName());
         stmt.setString(2, metric.getHostName());
@@ -755,20 +816,10 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(9, hostAggregate.getMin());
         stmt.setDouble(10, hostAggregate.getNumberOfSamples());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
-
+        batch.addRow();
       }
 
-      conn.commit();
+      batch.flush();
 
     } finally {
       if (stmt != null) {
@@ -815,7 +866,8 @@ public class PhoenixHBaseAccessor {
     PreparedStatement stmt = null;
     try {
       stmt = conn.prepareStatement(UPSERT_CLUSTER_AGGREGATE_SQL);
-      int rowCount = 0;
+      UpsertBatch batch = new UpsertBatch(conn, stmt, writeBatchSize,
+        writeMetrics);
 
       for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate>
         aggregateEntry : records.entrySet()) {
@@ -827,7 +879,6 @@ public class PhoenixHBaseAccessor {
             "aggregate = " + aggregate);
         }
 
-        rowCount++;
         stmt.clearParameters();
         stmt.setString(1, clusterMetric.getMetricName());
         stmt.setString(2, clusterMetric.getAppId());
@@ -839,20 +890,10 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(8, aggregate.getMax());
         stmt.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        batch.addRow();
       }
 
-      conn.commit();
+      batch.flush();
 
     } finally {
       if (stmt != null) {
@@ -899,7 +940,8 @@ public class PhoenixHBaseAccessor {
     try {
       stmt = conn.prepareStatement(String.format
         (UPSERT_CLUSTER_AGGREGATE_TIME_SQL, tableName));
-      int rowCount = 0;
+      UpsertBatch batch = new UpsertBatch(conn, stmt, writeBatchSize,
+        writeMetrics);
 
       for (Map.Entry<TimelineClusterMetric, MetricHostAggregate>
         aggregateEntry : records.entrySet()) {
@@ -911,7 +953,6 @@ public class PhoenixHBaseAccessor {
             "aggregate = " + aggregate);
         }
 
-        rowCount++;
         stmt.clearParameters();
         stmt.setString(1, clusterMetric.getMetricName());
         stmt.setString(2, clusterMetric.getAppId());
@@ -924,20 +965,10 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(8, aggregate.getMax());
         stmt.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        batch.addRow();
       }
 
-      conn.commit();
+      batch.flush();
 
     } finally {
       if (stmt != null) {
@@ -307,6 +307,12 @@ public class PhoenixTransactSQL {
         stmt.setString(pos, condition.getMetricNames().get(pos - 1));
       }
     }
+    if (condition.getMetricNameFrom() != null) {
+      stmt.setString(pos++, condition.getMetricNameFrom());
+    }
+    if (condition.getMetricNameTo() != null) {
+      stmt.setString(pos++, condition.getMetricNameTo());
+    }
     if (condition.getHostname() != null) {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Setting pos: " + pos + ", value: " + condition.getHostname());
@@ -590,6 +596,14 @@ public class PhoenixTransactSQL {
     void setFetchSize(Integer fetchSize);
     void addOrderByColumn(String column);
     void setNoLimit();
+
+    /**
+     * Restrict the condition to metric names in [from, to), a null bound is
+     * open. Used by the aggregators to partition the metric name space.
+     */
+    void setMetricNameRange(String from, String to);
+    String getMetricNameFrom();
+    String getMetricNameTo();
   }
 
   static class DefaultCondition implements Condition {
@@ -605,6 +619,8 @@ public class PhoenixTransactSQL {
     boolean noLimit = false;
     Integer fetchSize;
     String statement;
+    String metricNameFrom;
+    String metricNameTo;
     Set<String> orderByColumns = new LinkedHashSet<String>();
 
     DefaultCondition(List<String> metricNames, String hostname, String appId,
@@ -676,6 +692,8 @@ public class PhoenixTransactSQL {
         }
       }
 
+      appendConjunction = append(sb, appendConjunction, getMetricNameFrom(), " METRIC_NAME >= ?");
+      appendConjunction = append(sb, appendConjunction, getMetricNameTo(), " METRIC_NAME < ?");
       appendConjunction = append(sb, appendConjunction, getHostname(), " HOSTNAME = ?");
       appendConjunction = append(sb, appendConjunction, getAppId(), " APP_ID = ?");
       appendConjunction = append(sb, appendConjunction, getInstanceId(), " INSTANCE_ID = ?");
@@ -790,6 +808,19 @@ public class PhoenixTransactSQL {
       orderByColumns.add(column);
     }
 
+    public void setMetricNameRange(String from, String to) {
+      this.metricNameFrom = from;
+      this.metricNameTo = to;
+    }
+
+    public String getMetricNameFrom() {
+      return metricNameFrom;
+    }
+
+    public String getMetricNameTo() {
+      return metricNameTo;
+    }
+
     public String getOrderByClause(boolean asc) {
       String orderByStr = " ORDER BY ";
       if (!orderByColumns.isEmpty()) {
@@ -822,6 +853,8 @@ public class PhoenixTransactSQL {
         ", grouped=" + grouped +
         ", orderBy=" + orderByColumns +
         ", noLimit=" + noLimit +
+        ", metricNameFrom=" + metricNameFrom +
+        ", metricNameTo=" + metricNameTo +
         '}';
     }
   }
@@ -900,6 +933,10 @@ public class PhoenixTransactSQL {
         appendConjunction = true;
       }
 
+      appendConjunction = DefaultCondition.append(sb, appendConjunction,
+        getMetricNameFrom(), " METRIC_NAME >= ?");
+      appendConjunction = DefaultCondition.append(sb, appendConjunction,
+        getMetricNameTo(), " METRIC_NAME < ?");
       appendConjunction = DefaultCondition.append(sb, appendConjunction,
         getHostname(), " HOSTNAME = ?");
       appendConjunction = DefaultCondition.append(sb, appendConjunction,
@@ -959,6 +996,21 @@ public class PhoenixTransactSQL {
       adaptee.setNoLimit();
     }
 
+    @Override
+    public void setMetricNameRange(String from, String to) {
+      adaptee.setMetricNameRange(from, to);
+    }
+
+    @Override
+    public String getMetricNameFrom() {
+      return adaptee.getMetricNameFrom();
+    }
+
+    @Override
+    public String getMetricNameTo() {
+      return adaptee.getMetricNameTo();
+    }
+
     public List<String> getOriginalMetricNames() {
       return adaptee.getMetricNames();
     }
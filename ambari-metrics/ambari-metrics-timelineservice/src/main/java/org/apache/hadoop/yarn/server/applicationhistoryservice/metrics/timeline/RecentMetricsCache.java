@@ -0,0 +1,528 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.util.Clock;
+import org.apache.hadoop.yarn.util.SystemClock;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.Condition;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.HOUR;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_MAX_MEMORY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_OFFHEAP;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_SERIES_CAPACITY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_WINDOW;
+
+/**
+ * Keeps the most recent datapoints of every (metric, host, app, instance)
+ * series in a fixed size ring buffer, filled by the write pipeline once
+ * the metrics are written to Phoenix. Host level
+ * queries at seconds precision that fall inside the cached window are
+ * answered without going to Phoenix; queries reaching further back only
+ * read the older part from Phoenix.
+ * <p/>
+ * A series is complete from its first cached datapoint, or from just
+ * after the last evicted one. Data written before the collector started is
+ * only in Phoenix, so nothing before the first put is ever served from
+ * the cache. Series that do not fit in the memory bound are not cached and
+ * their metric names go to Phoenix until no series of that name was turned
+ * away for a whole window. Series that received no datapoint within the
+ * window, for example of decommissioned hosts, are dropped to make room.
+ * <p/>
+ * Datapoints are stored as 16 byte (timestamp, value) pairs in a heap or
+ * direct {@link ByteBuffer} per series.
+ */
+public class RecentMetricsCache {
+  private static final Log LOG = LogFactory.getLog(RecentMetricsCache.class);
+
+  private static final int BYTES_PER_DATAPOINT = 16;
+  private static final int MAX_UNCACHED_METRIC_NAMES = 10000;
+  private static final long IDLE_EVICTION_INTERVAL = 60000L;
+
+  private final long windowMillis;
+  private final int seriesCapacity;
+  private final int maxSeries;
+  private final boolean offHeap;
+  private final Clock clock;
+  private final RecentMetricsCacheMetrics metrics =
+    new RecentMetricsCacheMetrics();
+
+  private final ConcurrentMap<MetricHostKey, List<Series>> cache =
+    new ConcurrentHashMap<MetricHostKey, List<Series>>();
+  /**
+   * Metric names with uncached series, to the last time one was turned away.
+   */
+  private final ConcurrentMap<String, Long> uncachedMetricNames =
+    new ConcurrentHashMap<String, Long>();
+  private final AtomicInteger seriesCount = new AtomicInteger();
+  private volatile long cacheStartTime = -1;
+  private final AtomicLong maxWriteLag = new AtomicLong();
+  private final AtomicLong lastIdleEviction = new AtomicLong();
+
+  public RecentMetricsCache(Configuration metricsConf) {
+    this(metricsConf, new SystemClock());
+  }
+
+  RecentMetricsCache(Configuration metricsConf, Clock clock) {
+    this.clock = clock;
+    this.windowMillis = SECONDS.toMillis(metricsConf.getLong(CACHE_WINDOW, 7200));
+    this.seriesCapacity = Math.max(1, metricsConf.getInt(CACHE_SERIES_CAPACITY, 720));
+    long maxMemory = metricsConf.getLong(CACHE_MAX_MEMORY, 128) * 1024 * 1024;
+    this.maxSeries = (int) Math.min(Integer.MAX_VALUE,
+      maxMemory / ((long) seriesCapacity * BYTES_PER_DATAPOINT));
+    this.offHeap = metricsConf.getBoolean(CACHE_OFFHEAP, false);
+    LOG.info("Recent metrics cache: window = " + windowMillis + " ms, " +
+      "series capacity = " + seriesCapacity + ", max series = " + maxSeries +
+      ", off heap = " + offHeap);
+  }
+
+  public RecentMetricsCacheMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void putMetrics(TimelineMetrics timelineMetrics) {
+    if (timelineMetrics.getMetrics() == null) {
+      return;
+    }
+    long now = clock.getTime();
+    if (cacheStartTime == -1) {
+      cacheStartTime = now;
+      lastIdleEviction.set(now);
+    }
+    long evictBefore = now - windowMillis;
+
+    long lastEviction = lastIdleEviction.get();
+    if (now - lastEviction >= IDLE_EVICTION_INTERVAL
+        && lastIdleEviction.compareAndSet(lastEviction, now)) {
+      evictIdleSeries(evictBefore);
+    }
+
+    for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+      TimelineMetricValues values = metric.getMetricValueSeries();
+      if (metric.getMetricName() == null || values.isEmpty()) {
+        continue;
+      }
+      long writeLag = Math.min(windowMillis, now - values.getFirstTimestamp());
+      long lag = maxWriteLag.get();
+      while (writeLag > lag && !maxWriteLag.compareAndSet(lag, writeLag)) {
+        lag = maxWriteLag.get();
+      }
+      Series series = getOrCreateSeries(metric, now);
+      if (series != null) {
+        series.lastPutTime = now;
+        series.append(values, evictBefore);
+      }
+    }
+  }
+
+  /**
+   * @return largest time seen between a datapoint and the write holding it,
+   * bounded by the cache window. Phoenix rows are keyed by the write time,
+   * so a row written up to this long after a datapoint can hold it.
+   */
+  public long getMaxWriteLag() {
+    return maxWriteLag.get();
+  }
+
+  /**
+   * @return true if the query reads raw host datapoints the cache holds.
+   */
+  public boolean canServe(Condition condition) {
+    if (condition.isPointInTime() || !condition.isGrouped()
+        || condition.getHostname() == null
+        || condition.getMetricNames() == null) {
+      return false;
+    }
+    if (condition.getPrecision() == null) {
+      if (condition.getEndTime() - condition.getStartTime() > 10 * HOUR) {
+        return false;
+      }
+    } else if (condition.getPrecision() != Precision.SECONDS) {
+      return false;
+    }
+    for (String metricName : condition.getMetricNames()) {
+      if (metricName.contains("%") || uncachedMetricNames.containsKey(metricName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return time from which every series matching the condition is held
+   * completely, Long.MAX_VALUE if the cache cannot answer the query.
+   */
+  public long getCoveredFrom(Condition condition) {
+    long coveredFrom = cacheStartTime;
+    if (coveredFrom == -1) {
+      return Long.MAX_VALUE;
+    }
+    boolean found = false;
+    for (String metricName : condition.getMetricNames()) {
+      List<Series> seriesList = cache.get(
+        new MetricHostKey(metricName, condition.getHostname()));
+      if (seriesList == null) {
+        continue;
+      }
+      for (Series series : seriesList) {
+        if (series.matches(condition)) {
+          found = true;
+          coveredFrom = Math.max(coveredFrom, series.getCompleteFrom());
+        }
+      }
+    }
+    return found ? coveredFrom : Long.MAX_VALUE;
+  }
+
+  /**
+   * Datapoints of the series matching the condition with
+   * startTime <= timestamp < endTime, one metric per series.
+   */
+  public TimelineMetrics getMetricRecords(Condition condition, long startTime,
+                                          long endTime) {
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    for (String metricName : condition.getMetricNames()) {
+      List<Series> seriesList = cache.get(
+        new MetricHostKey(metricName, condition.getHostname()));
+      if (seriesList == null) {
+        continue;
+      }
+      for (Series series : seriesList) {
+        if (!series.matches(condition)) {
+          continue;
+        }
+        TimelineMetricValues values = series.read(startTime, endTime);
+        if (values.isEmpty()) {
+          continue;
+        }
+        TimelineMetric metric = new TimelineMetric();
+        metric.setMetricName(series.metricName);
+        metric.setHostName(series.hostName);
+        metric.setAppId(series.appId);
+        metric.setInstanceId(series.instanceId);
+        metric.setType(series.type);
+        metric.setTimestamp(values.getFirstTimestamp());
+        metric.setStartTime(values.getFirstTimestamp());
+        metric.setMetricValueSeries(values);
+        timelineMetrics.getMetrics().add(metric);
+      }
+    }
+    return timelineMetrics;
+  }
+
+  void recordHit() {
+    metrics.hits.incr();
+  }
+
+  void recordPartialHit() {
+    metrics.partialHits.incr();
+  }
+
+  void recordMiss() {
+    metrics.misses.incr();
+  }
+
+  private Series getOrCreateSeries(TimelineMetric metric, long now) {
+    MetricHostKey key = new MetricHostKey(metric.getMetricName(),
+      metric.getHostName());
+    while (true) {
+      List<Series> seriesList = cache.get(key);
+      if (seriesList == null) {
+        List<Series> newList = new CopyOnWriteArrayList<Series>();
+        seriesList = cache.putIfAbsent(key, newList);
+        if (seriesList == null) {
+          seriesList = newList;
+        }
+      }
+
+      for (Series series : seriesList) {
+        if (series.isSeriesOf(metric)) {
+          return series;
+        }
+      }
+
+      synchronized (seriesList) {
+        // Dropped by the idle series eviction in the meantime
+        if (cache.get(key) != seriesList) {
+          continue;
+        }
+        for (Series series : seriesList) {
+          if (series.isSeriesOf(metric)) {
+            return series;
+          }
+        }
+        if (seriesCount.incrementAndGet() > maxSeries) {
+          seriesCount.decrementAndGet();
+          if (uncachedMetricNames.size() < MAX_UNCACHED_METRIC_NAMES
+              || uncachedMetricNames.containsKey(metric.getMetricName())) {
+            uncachedMetricNames.put(metric.getMetricName(), now);
+          }
+          metrics.uncachedSeries.incr();
+          return null;
+        }
+        Series series = new Series(metric, seriesCapacity, offHeap);
+        series.lastPutTime = now;
+        seriesList.add(series);
+        updateSizeMetrics();
+        return series;
+      }
+    }
+  }
+
+  /**
+   * Drop the series that received no datapoint since the given time, and
+   * forget the uncached metric names whose series were last turned away
+   * before it, since none of their datapoints since then is missing.
+   */
+  private void evictIdleSeries(long idleBefore) {
+    int evicted = 0;
+    for (Map.Entry<MetricHostKey, List<Series>> entry : cache.entrySet()) {
+      List<Series> seriesList = entry.getValue();
+      synchronized (seriesList) {
+        for (Series series : seriesList) {
+          if (series.lastPutTime < idleBefore) {
+            seriesList.remove(series);
+            seriesCount.decrementAndGet();
+            evicted++;
+          }
+        }
+        if (seriesList.isEmpty()) {
+          cache.remove(entry.getKey(), seriesList);
+        }
+      }
+    }
+
+    for (Iterator<Long> iterator = uncachedMetricNames.values().iterator();
+         iterator.hasNext(); ) {
+      if (iterator.next() < idleBefore) {
+        iterator.remove();
+      }
+    }
+
+    if (evicted > 0) {
+      metrics.idleSeries.incr(evicted);
+      updateSizeMetrics();
+      LOG.debug("Dropped " + evicted + " idle series from the recent metrics cache.");
+    }
+  }
+
+  private void updateSizeMetrics() {
+    int count = seriesCount.get();
+    metrics.series.set(count);
+    metrics.memoryBytes.set((long) count * seriesCapacity * BYTES_PER_DATAPOINT);
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static class MetricHostKey {
+    private final String metricName;
+    private final String hostName;
+
+    MetricHostKey(String metricName, String hostName) {
+      this.metricName = metricName;
+      this.hostName = hostName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      MetricHostKey that = (MetricHostKey) o;
+      return metricName.equals(that.metricName)
+        && equal(hostName, that.hostName);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = metricName.hashCode();
+      result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+      return result;
+    }
+  }
+
+  /**
+   * Ring buffer of one series, datapoints in time order.
+   */
+  static class Series {
+    final String metricName;
+    final String hostName;
+    final String appId;
+    final String instanceId;
+    volatile String type;
+    volatile long lastPutTime;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private int head = 0;
+    private int size = 0;
+    private long completeFrom = Long.MAX_VALUE;
+
+    Series(TimelineMetric metric, int capacity, boolean offHeap) {
+      this.metricName = metric.getMetricName();
+      this.hostName = metric.getHostName();
+      this.appId = metric.getAppId();
+      this.instanceId = metric.getInstanceId();
+      this.type = metric.getType();
+      this.capacity = capacity;
+      this.buffer = offHeap ?
+        ByteBuffer.allocateDirect(capacity * BYTES_PER_DATAPOINT) :
+        ByteBuffer.allocate(capacity * BYTES_PER_DATAPOINT);
+    }
+
+    boolean isSeriesOf(TimelineMetric metric) {
+      return equal(appId, metric.getAppId())
+        && equal(instanceId, metric.getInstanceId());
+    }
+
+    /**
+     * Same filtering as the SQL query on APP_ID and INSTANCE_ID.
+     */
+    boolean matches(Condition condition) {
+      return (condition.getAppId() == null || condition.getAppId().equals(appId))
+        && (condition.getInstanceId() == null
+          || condition.getInstanceId().equals(instanceId));
+    }
+
+    synchronized long getCompleteFrom() {
+      return completeFrom;
+    }
+
+    synchronized void append(TimelineMetricValues values, long evictBefore) {
+      if (size == 0 && completeFrom == Long.MAX_VALUE) {
+        completeFrom = values.getFirstTimestamp();
+      }
+      for (int i = 0; i < values.size(); i++) {
+        long timestamp = values.getTimestamp(i);
+        // Older than what the cache knows completely, Phoenix has it
+        if (timestamp < completeFrom) {
+          continue;
+        }
+        insert(timestamp, values.getValue(i));
+      }
+      while (size > 0 && timestampAt(0) < evictBefore) {
+        evictOldest();
+      }
+    }
+
+    synchronized TimelineMetricValues read(long startTime, long endTime) {
+      int from = lowerBound(startTime);
+      int to = lowerBound(endTime);
+      TimelineMetricValues values =
+        new TimelineMetricValues(Math.max(0, to - from));
+      for (int i = from; i < to; i++) {
+        values.append(timestampAt(i), valueAt(i));
+      }
+      return values;
+    }
+
+    private void insert(long timestamp, double value) {
+      if (size > 0 && timestamp <= timestampAt(size - 1)) {
+        int index = indexOf(timestamp);
+        if (index >= 0) {
+          write(index, timestamp, value);
+          return;
+        }
+        if (size == capacity) {
+          evictOldest();
+          if (timestamp < completeFrom) {
+            return;
+          }
+          index = indexOf(timestamp);
+        }
+        int insertAt = -index - 1;
+        for (int i = size; i > insertAt; i--) {
+          write(i, timestampAt(i - 1), valueAt(i - 1));
+        }
+        size++;
+        write(insertAt, timestamp, value);
+        return;
+      }
+
+      if (size == capacity) {
+        evictOldest();
+      }
+      size++;
+      write(size - 1, timestamp, value);
+    }
+
+    private void evictOldest() {
+      completeFrom = timestampAt(0) + 1;
+      head = (head + 1) % capacity;
+      size--;
+    }
+
+    private int indexOf(long timestamp) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        long midTimestamp = timestampAt(mid);
+        if (midTimestamp < timestamp) {
+          low = mid + 1;
+        } else if (midTimestamp > timestamp) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    private int lowerBound(long timestamp) {
+      int index = indexOf(timestamp);
+      return index >= 0 ? index : -index - 1;
+    }
+
+    private int offset(int index) {
+      return ((head + index) % capacity) * BYTES_PER_DATAPOINT;
+    }
+
+    private long timestampAt(int index) {
+      return buffer.getLong(offset(index));
+    }
+
+    private double valueAt(int index) {
+      return buffer.getDouble(offset(index) + 8);
+    }
+
+    private void write(int index, long timestamp, double value) {
+      int offset = offset(index);
+      buffer.putLong(offset, timestamp);
+      buffer.putDouble(offset + 8, value);
+    }
+  }
+}
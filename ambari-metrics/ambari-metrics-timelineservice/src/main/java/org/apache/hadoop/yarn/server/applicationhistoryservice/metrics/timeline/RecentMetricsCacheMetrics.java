@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
+
+/**
+ * Hit, miss and memory counters of the {@link RecentMetricsCache}.
+ * Exported through the Hadoop metrics system as "TimelineMetricsRecentCache".
+ */
+public class RecentMetricsCacheMetrics implements MetricsSource {
+  private static final Log LOG =
+    LogFactory.getLog(RecentMetricsCacheMetrics.class);
+
+  static final String SOURCE_NAME = "TimelineMetricsRecentCache";
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME)
+    .setContext("ams");
+
+  final MutableCounterLong hits = registry.newCounter("Hits",
+    "Queries served from the cache only", 0L);
+  final MutableCounterLong partialHits = registry.newCounter("PartialHits",
+    "Queries merged from the cache and Phoenix", 0L);
+  final MutableCounterLong misses = registry.newCounter("Misses",
+    "Cacheable queries served from Phoenix only", 0L);
+  final MutableCounterLong uncachedSeries = registry.newCounter(
+    "UncachedSeries", "Series not cached because the cache was full", 0L);
+  final MutableCounterLong idleSeries = registry.newCounter("IdleSeries",
+    "Series dropped because they received no datapoint within the window", 0L);
+  final MutableGaugeInt series = registry.newGauge("Series",
+    "Series held in the cache", 0);
+  final MutableGaugeLong memoryBytes = registry.newGauge("MemoryBytes",
+    "Bytes allocated for cached datapoints", 0L);
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    registry.snapshot(collector.addRecord(registry.info()), all);
+  }
+
+  public void register() {
+    try {
+      DefaultMetricsSystem.instance().register(SOURCE_NAME,
+        "Recent metric datapoints cache", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register recent metrics cache metrics.", e);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -39,6 +40,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_MINUTE_CHECKPOINT_CUTOFF_MULTIPLIER;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_MINUTE_DISABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_MINUTE_SLEEP_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_MINUTE_STREAMING;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.DEFAULT_CHECKPOINT_LOCATION;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR;
@@ -51,10 +53,15 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
   private static final Log LOG = LogFactory.getLog(TimelineMetricClusterAggregator.class);
   private static final String CLUSTER_AGGREGATOR_CHECKPOINT_FILE =
     "timeline-metrics-cluster-aggregator-checkpoint";
+  /**
+   * Aggregates buffered by the streaming mode before they are saved.
+   */
+  private static final int STREAMING_SAVE_THRESHOLD = 10000;
   private final String checkpointLocation;
   private final Long sleepIntervalMillis;
   public final int timeSliceIntervalMillis;
   private final Integer checkpointCutOffMultiplier;
+  private final boolean streamingEnabled;
   private TimelineMetricReader timelineMetricReader =
     new TimelineMetricReader(true);
 
@@ -74,6 +81,8 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
       (CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL, 15));
     checkpointCutOffMultiplier =
       metricsConf.getInt(CLUSTER_AGGREGATOR_MINUTE_CHECKPOINT_CUTOFF_MULTIPLIER, 2);
+    streamingEnabled =
+      metricsConf.getBoolean(CLUSTER_AGGREGATOR_MINUTE_STREAMING, true);
   }
 
   @Override
@@ -84,6 +93,10 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
   @Override
   protected void aggregate(ResultSet rs, long startTime, long endTime)
     throws SQLException, IOException {
+    if (streamingEnabled) {
+      aggregateStreaming(rs, startTime, endTime);
+      return;
+    }
     List<Long[]> timeSlices = getTimeSlices(startTime, endTime);
     Map<TimelineClusterMetric, MetricClusterAggregate>
       aggregateClusterMetrics = aggregateMetricsFromResultSet(rs, timeSlices);
@@ -92,6 +105,49 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
     hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
   }
 
+  /**
+   * Single pass over the result set. Rows are ordered by metric name and
+   * app id, so each cluster metric is folded completely before the next
+   * one starts and only one metric worth of slices is held in memory.
+   * Finished aggregates are saved in chunks.
+   */
+  private void aggregateStreaming(ResultSet rs, long startTime, long endTime)
+    throws SQLException, IOException {
+    ClusterMetricSliceAccumulator accumulator =
+      new ClusterMetricSliceAccumulator(startTime, endTime,
+        timeSliceIntervalMillis);
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    int rowCount = 0;
+    int saved = 0;
+
+    while (rs.next()) {
+      rowCount++;
+      String metricName = rs.getString("METRIC_NAME");
+      String appId = rs.getString("APP_ID");
+
+      if (!accumulator.isSameMetric(metricName, appId)) {
+        accumulator.drainTo(aggregates);
+        if (aggregates.size() >= STREAMING_SAVE_THRESHOLD) {
+          hBaseAccessor.saveClusterAggregateRecords(aggregates);
+          saved += aggregates.size();
+          aggregates.clear();
+        }
+        accumulator.reset(metricName, appId, rs.getString("UNITS"));
+      }
+
+      accumulator.addRow(
+        PhoenixHBaseAccessor.readMetricValues(rs.getString("METRICS")));
+    }
+
+    accumulator.drainTo(aggregates);
+    hBaseAccessor.saveClusterAggregateRecords(aggregates);
+    saved += aggregates.size();
+
+    LOG.info("Saved " + saved + " metric aggregates from " + rowCount +
+      " rows.");
+  }
+
   @Override
   protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
     Condition condition = new DefaultCondition(null, null, null, null, startTime,
@@ -173,20 +229,22 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
   private Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
         TimelineMetric timelineMetric, List<Long[]> timeSlices) {
 
-    if (timelineMetric.getMetricValues().isEmpty()) {
+    TimelineMetricValues metricValues = timelineMetric.getMetricValueSeries();
+    if (metricValues.isEmpty()) {
       return null;
     }
 
     Map<TimelineClusterMetric, Double> timelineClusterMetricMap =
       new HashMap<TimelineClusterMetric, Double>();
 
-    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
+    for (int i = 0; i < metricValues.size(); i++) {
       // TODO: investigate null values - pre filter
-      if (metric.getValue() == null) {
+      if (metricValues.isNullValue(i)) {
         continue;
       }
+      double value = metricValues.getValue(i);
       Long timestamp = getSliceTimeForMetric(timeSlices,
-                       Long.parseLong(metric.getKey().toString()));
+                       metricValues.getTimestamp(i));
       if (timestamp != -1) {
         // Metric is within desired time range
         TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
@@ -196,10 +254,10 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
           timestamp,
           timelineMetric.getType());
         if (!timelineClusterMetricMap.containsKey(clusterMetric)) {
-          timelineClusterMetricMap.put(clusterMetric, metric.getValue());
+          timelineClusterMetricMap.put(clusterMetric, value);
         } else {
           Double oldValue = timelineClusterMetricMap.get(clusterMetric);
-          Double newValue = (oldValue + metric.getValue()) / 2;
+          Double newValue = (oldValue + value) / 2;
           timelineClusterMetricMap.put(clusterMetric, newValue);
         }
       }
@@ -65,12 +65,21 @@ public class TimelineMetricConfiguration {
   public static final String CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL =
     "timeline.metrics.cluster.aggregator.minute.timeslice.interval";
 
+  public static final String CLUSTER_AGGREGATOR_MINUTE_STREAMING =
+    "timeline.metrics.cluster.aggregator.minute.streaming";
+
   public static final String AGGREGATOR_CHECKPOINT_DELAY =
     "timeline.metrics.service.checkpointDelay";
 
   public static final String RESULTSET_FETCH_SIZE =
     "timeline.metrics.service.resultset.fetchSize";
 
+  public static final String AGGREGATOR_THREADS =
+    "timeline.metrics.service.aggregator.threads";
+
+  public static final String AGGREGATOR_PARTITIONS =
+    "timeline.metrics.service.aggregator.partitions";
+
   public static final String HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL =
     "timeline.metrics.host.aggregator.minute.interval";
 
@@ -98,6 +107,36 @@ public class TimelineMetricConfiguration {
   public static final String CLUSTER_AGGREGATOR_HOUR_CHECKPOINT_CUTOFF_INTERVAL =
     "timeline.metrics.cluster.aggregator.hourly.checkpointCutOffInterval";
 
+  public static final String METRIC_VALUES_STORAGE_FORMAT =
+    "timeline.metrics.service.values.storage.format";
+
+  public static final String WRITE_BATCH_SIZE =
+    "timeline.metrics.service.write.batch.size";
+
+  public static final String WRITER_THREADS =
+    "timeline.metrics.service.writer.threads";
+
+  public static final String WRITER_QUEUE_SIZE =
+    "timeline.metrics.service.writer.queue.size";
+
+  public static final String WRITER_QUEUE_TIMEOUT =
+    "timeline.metrics.service.writer.queue.timeout";
+
+  public static final String CACHE_ENABLED =
+    "timeline.metrics.service.cache.enabled";
+
+  public static final String CACHE_WINDOW =
+    "timeline.metrics.service.cache.window";
+
+  public static final String CACHE_SERIES_CAPACITY =
+    "timeline.metrics.service.cache.series.capacity";
+
+  public static final String CACHE_MAX_MEMORY =
+    "timeline.metrics.service.cache.max.memory";
+
+  public static final String CACHE_OFFHEAP =
+    "timeline.metrics.service.cache.offheap";
+
   public static final String GLOBAL_RESULT_LIMIT =
     "timeline.metrics.service.default.result.limit";
 
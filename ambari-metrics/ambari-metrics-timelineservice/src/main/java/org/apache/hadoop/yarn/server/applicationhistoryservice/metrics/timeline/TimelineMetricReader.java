@@ -23,8 +23,6 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Map;
-import java.util.TreeMap;
 
 public class TimelineMetricReader {
 
@@ -39,9 +37,8 @@ public class TimelineMetricReader {
   public TimelineMetric getTimelineMetricFromResultSet(ResultSet rs)
     throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
-    Map<Long, Double> sortedByTimeMetrics = new TreeMap<Long, Double>(
-        PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS")));
-    metric.setMetricValues(sortedByTimeMetrics);
+    metric.setMetricValueSeries(
+      PhoenixHBaseAccessor.readMetricValues(rs.getString("METRICS")));
     return metric;
   }
 
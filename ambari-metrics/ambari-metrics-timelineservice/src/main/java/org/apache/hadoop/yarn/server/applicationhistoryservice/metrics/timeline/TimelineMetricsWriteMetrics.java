@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+
+/**
+ * Per stage counters of the metric write path: time spent waiting in the
+ * writer queue, JDBC batch execution, commits, rejected requests and
+ * accepted requests that could not be written.
+ * Exported through the Hadoop metrics system as "TimelineMetricsWriter".
+ */
+public class TimelineMetricsWriteMetrics implements MetricsSource {
+  private static final Log LOG =
+    LogFactory.getLog(TimelineMetricsWriteMetrics.class);
+
+  static final String SOURCE_NAME = "TimelineMetricsWriter";
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME)
+    .setContext("ams");
+
+  final MutableRate queueWait = registry.newRate("QueueWait",
+    "Time a put request waited for a writer, in ms", false);
+  final MutableRate batchExecute = registry.newRate("BatchExecute",
+    "Time to execute one JDBC batch, in ms", false);
+  final MutableRate commit = registry.newRate("Commit",
+    "Time to commit buffered upserts, in ms", false);
+  final MutableCounterLong rowsWritten = registry.newCounter("RowsWritten",
+    "Rows upserted", 0L);
+  final MutableCounterLong rowsFailed = registry.newCounter("RowsFailed",
+    "Rows that could not be upserted", 0L);
+  final MutableCounterLong requestsAccepted = registry.newCounter(
+    "RequestsAccepted", "Put requests accepted by the writer queue", 0L);
+  final MutableCounterLong requestsRejected = registry.newCounter(
+    "RequestsRejected", "Put requests rejected because the writer queue " +
+      "stayed full", 0L);
+  final MutableCounterLong requestsFailed = registry.newCounter(
+    "RequestsFailed", "Accepted put requests whose write failed; their " +
+      "metrics are lost", 0L);
+  final MutableGaugeInt pendingRequests = registry.newGauge(
+    "PendingRequests", "Put requests waiting for a writer", 0);
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    registry.snapshot(collector.addRecord(registry.info()), all);
+  }
+
+  /**
+   * Register with the default metrics system. A failure only costs the
+   * counters, so it is logged rather than thrown.
+   */
+  public void register() {
+    try {
+      DefaultMetricsSystem.instance().register(SOURCE_NAME,
+        "Timeline metrics write pipeline", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register write pipeline metrics.", e);
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_TIMEOUT;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_THREADS;
+
+/**
+ * Decouples metric puts from the Phoenix writes. Put requests go into a
+ * bounded queue and a fixed pool of writers drains it, combining all the
+ * requests that queued up while the previous write ran into a single
+ * insert so that sinks flushing at the same minute boundary share a
+ * connection and commit.
+ * <p/>
+ * When the queue stays full for longer than the configured timeout the put
+ * is rejected with {@link MetricsWriteRejectedException}, pushing back on
+ * the sinks instead of letting the collector run out of memory.
+ * With zero writer threads puts are written on the caller thread.
+ * <p/>
+ * Delivery of queued puts is at most once: a put is acknowledged when it is
+ * queued, and a write that fails afterwards is not reported to its sink.
+ * When a combined write fails, each of its requests is written again on its
+ * own so that only the requests that fail by themselves are lost. Those are
+ * logged with their host and app and counted in the RequestsFailed metric.
+ */
+public class TimelineMetricsWritePipeline {
+  private static final Log LOG =
+    LogFactory.getLog(TimelineMetricsWritePipeline.class);
+
+  /**
+   * Upper bound of requests combined into one insert.
+   */
+  private static final int MAX_COMBINED_REQUESTS = 100;
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final RecentMetricsCache recentMetricsCache;
+  private final TimelineMetricsWriteMetrics metrics;
+  private final BlockingQueue<PendingWrite> queue;
+  private final long queueTimeoutMillis;
+  private final int writerThreads;
+  private ExecutorService writers;
+  private volatile boolean stopped = false;
+
+  public TimelineMetricsWritePipeline(PhoenixHBaseAccessor hBaseAccessor,
+                                      Configuration metricsConf) {
+    this(hBaseAccessor, metricsConf, null);
+  }
+
+  /**
+   * @param recentMetricsCache cache to fill with the metrics once they are
+   *                           written, may be null
+   */
+  public TimelineMetricsWritePipeline(PhoenixHBaseAccessor hBaseAccessor,
+                                      Configuration metricsConf,
+                                      RecentMetricsCache recentMetricsCache) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.recentMetricsCache = recentMetricsCache;
+    this.metrics = hBaseAccessor.getWriteMetrics();
+    this.writerThreads = Math.max(0, metricsConf.getInt(WRITER_THREADS, 2));
+    this.queue = new ArrayBlockingQueue<PendingWrite>(
+      Math.max(1, metricsConf.getInt(WRITER_QUEUE_SIZE, 200)));
+    this.queueTimeoutMillis = SECONDS.toMillis(
+      metricsConf.getInt(WRITER_QUEUE_TIMEOUT, 10));
+  }
+
+  public void start() {
+    if (writerThreads == 0) {
+      LOG.info("No metric writer threads configured, writing synchronously.");
+      return;
+    }
+    writers = Executors.newFixedThreadPool(writerThreads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "timeline-metrics-writer-" +
+          count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    for (int i = 0; i < writerThreads; i++) {
+      writers.execute(new Writer());
+    }
+    LOG.info("Started " + writerThreads + " metric writer threads.");
+  }
+
+  /**
+   * Stop accepting puts and give the writers a chance to drain the queue.
+   */
+  public void stop() {
+    stopped = true;
+    if (writers != null) {
+      writers.shutdown();
+      try {
+        if (!writers.awaitTermination(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+          LOG.warn("Metric writers did not finish, dropping " + queue.size()
+            + " pending put requests.");
+          writers.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        writers.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Queue metrics for writing, waiting for room in the queue if needed.
+   *
+   * @throws MetricsWriteRejectedException if the queue stayed full
+   */
+  public void putMetrics(TimelineMetrics timelineMetrics)
+    throws SQLException, IOException {
+
+    if (timelineMetrics.getMetrics() == null ||
+        timelineMetrics.getMetrics().isEmpty()) {
+      return;
+    }
+
+    if (writers == null) {
+      insertMetricRecords(timelineMetrics);
+      return;
+    }
+
+    if (stopped) {
+      throw new MetricsWriteRejectedException("Metric writers are stopped.");
+    }
+
+    boolean accepted;
+    try {
+      accepted = queue.offer(new PendingWrite(timelineMetrics),
+        queueTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      accepted = false;
+    }
+
+    if (!accepted) {
+      metrics.requestsRejected.incr();
+      throw new MetricsWriteRejectedException("Metric write queue is full, " +
+        queue.size() + " requests pending.");
+    }
+    metrics.requestsAccepted.incr();
+    metrics.pendingRequests.set(queue.size());
+  }
+
+  int getPendingRequests() {
+    return queue.size();
+  }
+
+  private static class PendingWrite {
+    private final TimelineMetrics metrics;
+    private final long enqueueTime = System.currentTimeMillis();
+
+    PendingWrite(TimelineMetrics metrics) {
+      this.metrics = metrics;
+    }
+  }
+
+  private class Writer implements Runnable {
+    private final List<PendingWrite> drained =
+      new ArrayList<PendingWrite>(MAX_COMBINED_REQUESTS);
+
+    @Override
+    public void run() {
+      while (!stopped || !queue.isEmpty()) {
+        try {
+          PendingWrite first = queue.poll(1, TimeUnit.SECONDS);
+          if (first == null) {
+            continue;
+          }
+          drained.add(first);
+          queue.drainTo(drained, MAX_COMBINED_REQUESTS - 1);
+          metrics.pendingRequests.set(queue.size());
+          write(drained);
+        } catch (InterruptedException e) {
+          LOG.info("Metric writer interrupted, exiting.");
+          return;
+        } catch (Throwable t) {
+          LOG.error("Error writing metrics of " + drained.size() +
+            " put requests, their metrics are lost.", t);
+          metrics.requestsFailed.incr(drained.size());
+        } finally {
+          drained.clear();
+        }
+      }
+    }
+
+    private void write(List<PendingWrite> writes)
+      throws SQLException, IOException {
+
+      long now = System.currentTimeMillis();
+      List<TimelineMetric> combined = new ArrayList<TimelineMetric>();
+      for (PendingWrite write : writes) {
+        metrics.queueWait.add(now - write.enqueueTime);
+        combined.addAll(write.metrics.getMetrics());
+      }
+
+      TimelineMetrics timelineMetrics = new TimelineMetrics();
+      timelineMetrics.setMetrics(combined);
+      if (writes.size() == 1) {
+        insertMetricRecords(timelineMetrics);
+        return;
+      }
+
+      try {
+        insertMetricRecords(timelineMetrics);
+      } catch (Exception e) {
+        LOG.warn("Error writing metrics of " + writes.size() +
+          " combined put requests, writing them one by one.", e);
+        for (PendingWrite write : writes) {
+          writeAlone(write);
+        }
+      }
+    }
+
+    /**
+     * Write the metrics of a single request, logging where they came from
+     * if they are lost.
+     */
+    private void writeAlone(PendingWrite write) {
+      try {
+        insertMetricRecords(write.metrics);
+      } catch (Exception e) {
+        TimelineMetric metric = write.metrics.getMetrics().get(0);
+        LOG.error("Error writing " + write.metrics.getMetrics().size() +
+          " metrics of host " + metric.getHostName() + " and app " +
+          metric.getAppId() + ", they are lost.", e);
+        metrics.requestsFailed.incr();
+      }
+    }
+  }
+
+  /**
+   * The cache only serves what Phoenix holds, so it is filled after the
+   * insert succeeded.
+   */
+  private void insertMetricRecords(TimelineMetrics timelineMetrics)
+    throws SQLException, IOException {
+
+    hBaseAccessor.insertMetricRecords(timelineMetrics);
+    if (recentMetricsCache != null) {
+      recentMetricsCache.putMetrics(timelineMetrics);
+    }
+  }
+}
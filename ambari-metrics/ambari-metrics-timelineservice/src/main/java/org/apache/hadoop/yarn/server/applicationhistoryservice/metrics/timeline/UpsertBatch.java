@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+
+/**
+ * Groups the rows bound on a prepared UPSERT statement into JDBC batches.
+ * A batch is executed every batchSize rows and the connection is committed
+ * once the uncommitted rows approach the Phoenix mutation state limit, so a
+ * large write costs a handful of round trips instead of one per row.
+ * <p/>
+ * Failed rows are logged and counted but do not abort the write, which is
+ * the behaviour the per row executeUpdate loops had. Drivers without batch
+ * support fall back to executing each row as it is added.
+ * <p/>
+ * Not thread safe, one instance per connection and statement.
+ */
+class UpsertBatch {
+  private static final Log LOG = LogFactory.getLog(UpsertBatch.class);
+
+  private final Connection conn;
+  private final PreparedStatement stmt;
+  private final int batchSize;
+  private final int commitSize;
+  private final TimelineMetricsWriteMetrics metrics;
+
+  private boolean batchSupported = true;
+  private int pendingRows = 0;
+  private int uncommittedRows = 0;
+
+  UpsertBatch(Connection conn, PreparedStatement stmt, int batchSize,
+              TimelineMetricsWriteMetrics metrics) {
+    this(conn, stmt, batchSize,
+      PhoenixHBaseAccessor.PHOENIX_MAX_MUTATION_STATE_SIZE - 1, metrics);
+  }
+
+  UpsertBatch(Connection conn, PreparedStatement stmt, int batchSize,
+              int commitSize, TimelineMetricsWriteMetrics metrics) {
+    this.conn = conn;
+    this.stmt = stmt;
+    this.batchSize = Math.max(1, Math.min(batchSize, commitSize));
+    this.commitSize = commitSize;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Add the parameters currently bound on the statement as a row.
+   */
+  void addRow() throws SQLException {
+    if (batchSupported) {
+      try {
+        stmt.addBatch();
+        pendingRows++;
+      } catch (SQLFeatureNotSupportedException e) {
+        LOG.info("JDBC batches not supported by driver, " +
+          "executing upserts row by row.");
+        batchSupported = false;
+      }
+    }
+
+    if (!batchSupported) {
+      executeRow();
+    } else if (pendingRows >= batchSize) {
+      executeBatch();
+    }
+
+    if (uncommittedRows >= commitSize) {
+      commit();
+    }
+  }
+
+  /**
+   * Execute the remaining rows and commit.
+   */
+  void flush() throws SQLException {
+    if (pendingRows > 0) {
+      executeBatch();
+    }
+    commit();
+  }
+
+  private void executeRow() throws SQLException {
+    try {
+      stmt.executeUpdate();
+      metrics.rowsWritten.incr();
+    } catch (SQLException sql) {
+      metrics.rowsFailed.incr();
+      LOG.error(sql);
+    }
+    uncommittedRows++;
+  }
+
+  private void executeBatch() throws SQLException {
+    int rows = pendingRows;
+    pendingRows = 0;
+    uncommittedRows += rows;
+
+    long start = System.currentTimeMillis();
+    try {
+      stmt.executeBatch();
+      metrics.rowsWritten.incr(rows);
+    } catch (BatchUpdateException e) {
+      int failed = countFailedRows(e.getUpdateCounts(), rows);
+      metrics.rowsWritten.incr(rows - failed);
+      metrics.rowsFailed.incr(failed);
+      LOG.error("Failed to upsert " + failed + " of " + rows + " rows.", e);
+    } finally {
+      try {
+        stmt.clearBatch();
+      } catch (SQLException e) {
+        // Ignore
+      }
+      metrics.batchExecute.add(System.currentTimeMillis() - start);
+    }
+  }
+
+  private void commit() throws SQLException {
+    long start = System.currentTimeMillis();
+    conn.commit();
+    metrics.commit.add(System.currentTimeMillis() - start);
+    uncommittedRows = 0;
+  }
+
+  /**
+   * Drivers may stop at the first failure, in which case every row after
+   * the returned counts failed as well.
+   */
+  static int countFailedRows(int[] updateCounts, int rows) {
+    if (updateCounts == null) {
+      return rows;
+    }
+    int failed = Math.max(0, rows - updateCounts.length);
+    for (int count : updateCounts) {
+      if (count == Statement.EXECUTE_FAILED) {
+        failed++;
+      }
+    }
+    return failed;
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
+
+import com.google.inject.Singleton;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValuesModule;
+import org.apache.hadoop.yarn.webapp.YarnJacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Yarn JSON provider that additionally reads and writes metric values
+ * through the primitive TimelineMetricValues serializers.
+ */
+@Singleton
+@Provider
+public class TimelineMetricsJsonProvider extends YarnJacksonJaxbJsonProvider {
+
+  private volatile ObjectMapper configuredMapper;
+
+  @Override
+  public ObjectMapper locateMapper(Class<?> type, MediaType mediaType) {
+    ObjectMapper mapper = super.locateMapper(type, mediaType);
+    if (mapper != configuredMapper) {
+      synchronized (this) {
+        if (mapper != configuredMapper) {
+          mapper.registerModule(new TimelineMetricValuesModule());
+          configuredMapper = mapper;
+        }
+      }
+    }
+    return mapper;
+  }
+}
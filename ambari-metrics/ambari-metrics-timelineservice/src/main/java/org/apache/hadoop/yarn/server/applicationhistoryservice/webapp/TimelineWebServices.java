@@ -31,6 +31,7 @@ import org.apache.hadoop.yarn.api.records.timeline.TimelineEvents;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricsWriteRejectedException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.Precision;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
@@ -275,6 +276,9 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (MetricsWriteRejectedException e) {
+      LOG.warn("Rejecting metrics put: " + e.getMessage());
+      throw new WebApplicationException(e, Response.Status.SERVICE_UNAVAILABLE);
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -17,18 +17,37 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.util.Clock;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.Function.ReadFunction.AVG;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.Function.PostProcessingFunction.RATE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.Condition;
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class HBaseTimelineMetricStoreTest {
 
+  private static final long NOW = 1420000000000L;
+  private static final long MINUTE = 60000L;
+  private static final long HOUR = 3600000L;
+
   public static final String MEM_METRIC = "mem";
   public static final String BYTES_IN_METRIC = "bytes_in";
   public static final String BYTES_NOT_AFUNCTION_METRIC = "bytes._not" +
@@ -62,4 +81,142 @@ public class HBaseTimelineMetricStoreTest {
       .contains(Function.DEFAULT_VALUE_FUNCTION);
 
   }
+
+  @Test
+  public void testIsWithinLimit() throws Exception {
+    //given
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric(MEM_METRIC, 1000L, 2000L, 3000L));
+    metrics.getMetrics().add(metric(BYTES_IN_METRIC, 1000L, 2000L));
+
+    //then
+    assertThat(HBaseTimelineMetricStore.isWithinLimit(metrics, 6)).isTrue();
+    assertThat(HBaseTimelineMetricStore.isWithinLimit(metrics, 5)).isFalse();
+    assertThat(HBaseTimelineMetricStore.isWithinLimit(metrics, 3)).isFalse();
+    assertThat(HBaseTimelineMetricStore.isWithinLimit(metrics, null)).isTrue();
+  }
+
+  @Test
+  public void testCachedMetricsMatchPhoenixMetrics() throws Exception {
+    //given
+    final List<String> metricNames =
+      Arrays.asList(BYTES_IN_METRIC, "cpu_user", MEM_METRIC);
+    final List<Long> writeTimes = new ArrayList<Long>();
+    for (int i = 1; i <= 10; i++) {
+      writeTimes.add(NOW + i * MINUTE);
+    }
+
+    Clock clock = mock(Clock.class);
+    RecentMetricsCache cache =
+      new RecentMetricsCache(new Configuration(false), clock);
+    for (long writeTime : writeTimes) {
+      when(clock.getTime()).thenReturn(writeTime);
+      TimelineMetrics write = new TimelineMetrics();
+      for (String metricName : metricNames) {
+        write.getMetrics().add(row(metricName, writeTime));
+      }
+      cache.putMetrics(write);
+    }
+
+    PhoenixHBaseAccessor accessor = mock(PhoenixHBaseAccessor.class);
+    when(accessor.getMetricRecords(any(Condition.class), anyMap()))
+      .thenAnswer(new Answer<TimelineMetrics>() {
+        @Override
+        public TimelineMetrics answer(InvocationOnMock invocation) {
+          return selectRows((Condition) invocation.getArguments()[0],
+            metricNames, writeTimes);
+        }
+      });
+
+    HBaseTimelineMetricStore cachedStore = new HBaseTimelineMetricStore(
+      new TimelineMetricConfiguration(), accessor, cache);
+    HBaseTimelineMetricStore phoenixStore = new HBaseTimelineMetricStore(
+      new TimelineMetricConfiguration(), accessor, null);
+
+    for (Integer limit : Arrays.asList(15, 25, 200, null)) {
+      //when
+      TimelineMetrics cached = cachedStore.getTimelineMetrics(metricNames,
+        "h1", "HOST", null, NOW, NOW + HOUR, null, limit, true);
+      TimelineMetrics phoenix = phoenixStore.getTimelineMetrics(metricNames,
+        "h1", "HOST", null, NOW, NOW + HOUR, null, limit, true);
+
+      //then
+      assertThat(valuesByName(cached)).isEqualTo(valuesByName(phoenix));
+    }
+    // 15 rows of 6 datapoints each
+    assertThat(count(phoenixStore.getTimelineMetrics(metricNames, "h1",
+      "HOST", null, NOW, NOW + HOUR, null, 15, true))).isEqualTo(90);
+    assertThat(cache.getMetrics().partialHits.value()).isEqualTo(2);
+    assertThat(cache.getMetrics().misses.value()).isEqualTo(2);
+  }
+
+  /**
+   * Rows the Phoenix query selects, in metric name and server time order.
+   * Each row holds the datapoints of the minute before it was written.
+   */
+  private static TimelineMetrics selectRows(Condition condition,
+      List<String> metricNames, List<Long> writeTimes) {
+    TimelineMetrics metrics = new TimelineMetrics();
+    int rows = 0;
+    for (String metricName : metricNames) {
+      if (!condition.getMetricNames().contains(metricName)) {
+        continue;
+      }
+      for (long writeTime : writeTimes) {
+        if (writeTime < condition.getStartTime()
+            || writeTime >= condition.getEndTime()) {
+          continue;
+        }
+        if (condition.getLimit() != null && rows == condition.getLimit()) {
+          return metrics;
+        }
+        rows++;
+        metrics.addOrMergeTimelineMetric(row(metricName, writeTime));
+      }
+    }
+    return metrics;
+  }
+
+  private static TimelineMetric row(String name, long writeTime) {
+    TimelineMetric metric = metric(name);
+    for (long timestamp = writeTime - MINUTE; timestamp < writeTime;
+         timestamp += 10000) {
+      metric.getMetricValueSeries().append(timestamp, timestamp / 1000.0);
+    }
+    metric.setAppId("HOST");
+    metric.setStartTime(metric.getMetricValueSeries().getFirstTimestamp());
+    metric.setTimestamp(metric.getStartTime());
+    return metric;
+  }
+
+  private static Map<String, Map<Long, Double>> valuesByName(
+      TimelineMetrics metrics) {
+    Map<String, Map<Long, Double>> values =
+      new TreeMap<String, Map<Long, Double>>();
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      values.put(metric.getMetricName(),
+        new TreeMap<Long, Double>(metric.getMetricValueSeries()));
+    }
+    return values;
+  }
+
+  private static int count(TimelineMetrics metrics) {
+    int count = 0;
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      count += metric.getMetricValueSeries().size();
+    }
+    return count;
+  }
+
+  private static TimelineMetric metric(String name, long... timestamps) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName("h1");
+    TimelineMetricValues values = new TimelineMetricValues();
+    for (long timestamp : timestamps) {
+      values.append(timestamp, 1.0);
+    }
+    metric.setMetricValueSeries(values);
+    return metric;
+  }
 }
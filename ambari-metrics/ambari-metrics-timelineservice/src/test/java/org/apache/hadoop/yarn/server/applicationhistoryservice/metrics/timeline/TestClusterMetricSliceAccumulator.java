@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestClusterMetricSliceAccumulator {
+
+  private static final long START = 1420000000000L;
+  private static final long SLICE = 15000;
+
+  @Test
+  public void testRowsAreFoldedPerSlice() throws Exception {
+    // given
+    ClusterMetricSliceAccumulator accumulator =
+      new ClusterMetricSliceAccumulator(START, START + 4 * SLICE, SLICE);
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+
+    TimelineMetricValues host1 = new TimelineMetricValues();
+    host1.append(START + 1000, 2.0);
+    host1.append(START + 2000, 4.0);
+    host1.append(START + SLICE, 10.0);
+    host1.append(START + 5 * SLICE, 100.0);
+
+    TimelineMetricValues host2 = new TimelineMetricValues();
+    host2.append(START - 1, 50.0);
+    host2.append(START + 3000, 1.0);
+    host2.put(START + 4000, null);
+
+    // when
+    accumulator.reset("disk_free", "HOST", "Long");
+    accumulator.addRow(host1);
+    accumulator.addRow(host2);
+    int count = accumulator.drainTo(aggregates);
+
+    // then
+    assertThat(count).isEqualTo(2);
+    assertThat(accumulator.isEmpty()).isTrue();
+
+    MetricClusterAggregate first = aggregates.get(
+      new TimelineClusterMetric("disk_free", "HOST", null, START, "Long"));
+    assertThat(first.getSum()).isEqualTo(4.0);
+    assertThat(first.getNumberOfHosts()).isEqualTo(2);
+    assertThat(first.getMax()).isEqualTo(3.0);
+    assertThat(first.getMin()).isEqualTo(1.0);
+
+    MetricClusterAggregate second = aggregates.get(
+      new TimelineClusterMetric("disk_free", "HOST", null, START + SLICE, "Long"));
+    assertThat(second.getSum()).isEqualTo(10.0);
+    assertThat(second.getNumberOfHosts()).isEqualTo(1);
+  }
+
+  @Test
+  public void testResetStartsNewMetric() throws Exception {
+    // given
+    ClusterMetricSliceAccumulator accumulator =
+      new ClusterMetricSliceAccumulator(START, START + 2 * SLICE, SLICE);
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    TimelineMetricValues values = new TimelineMetricValues();
+    values.append(START, 1.0);
+
+    // when
+    accumulator.reset("m1", "HOST", null);
+    accumulator.addRow(values);
+    accumulator.drainTo(aggregates);
+    accumulator.reset("m2", "HOST", null);
+    accumulator.addRow(values);
+    accumulator.addRow(values);
+    accumulator.drainTo(aggregates);
+
+    // then
+    assertThat(accumulator.isSameMetric("m2", "HOST")).isFalse();
+    assertThat(aggregates).hasSize(2);
+    assertThat(aggregates.get(new TimelineClusterMetric("m1", "HOST", null,
+      START, null)).getNumberOfHosts()).isEqualTo(1);
+    assertThat(aggregates.get(new TimelineClusterMetric("m2", "HOST", null,
+      START, null)).getNumberOfHosts()).isEqualTo(2);
+  }
+}
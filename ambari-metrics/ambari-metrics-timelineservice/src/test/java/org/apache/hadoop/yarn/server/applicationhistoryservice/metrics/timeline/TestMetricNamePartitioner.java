@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMetricNamePartitioner {
+
+  @Test
+  public void testBoundariesSplitObservedNames() throws Exception {
+    // given
+    MetricNamePartitioner partitioner = new MetricNamePartitioner();
+    for (String name : Arrays.asList("mem_free", "cpu_user", "bytes_in",
+        "disk_free", "load_one", "cpu_user", "proc_run", "swap_free")) {
+      partitioner.observe(name);
+    }
+
+    // when
+    List<String> boundaries = partitioner.getBoundaries(3);
+
+    // then
+    assertThat(boundaries).containsExactly("disk_free", "mem_free");
+    assertThat(partitioner.getBoundaries(1)).isEmpty();
+    assertThat(new MetricNamePartitioner().getBoundaries(4)).isEmpty();
+  }
+
+  @Test
+  public void testMorePartitionsThanNames() throws Exception {
+    MetricNamePartitioner partitioner = new MetricNamePartitioner();
+    partitioner.observe("a");
+    partitioner.observe("b");
+
+    assertThat(partitioner.getBoundaries(8)).containsExactly("b");
+  }
+
+  @Test
+  public void testPartitionStateRoundTrip() throws Exception {
+    // given
+    AbstractTimelineAggregator.PartitionState state =
+      new AbstractTimelineAggregator.PartitionState(1000L, 2000L,
+        Arrays.asList("disk_free", "mem_free"));
+    state.completed.add(2);
+    state.completed.add(0);
+
+    // when
+    AbstractTimelineAggregator.PartitionState read =
+      AbstractTimelineAggregator.PartitionState.fromLines(state.toLines());
+
+    // then
+    assertThat(read.startTime).isEqualTo(1000L);
+    assertThat(read.endTime).isEqualTo(2000L);
+    assertThat(read.boundaries).containsExactly("disk_free", "mem_free");
+    assertThat(read.completed).containsExactly(0, 2);
+  }
+}
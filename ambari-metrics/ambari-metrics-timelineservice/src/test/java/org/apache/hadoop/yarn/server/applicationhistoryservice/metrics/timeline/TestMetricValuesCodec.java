@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMetricValuesCodec {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    // given
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    Random random = new Random(42);
+    long ts = 1420000000000L;
+    double value = 10.0;
+    for (int i = 0; i < 500; i++) {
+      ts += 10000 + random.nextInt(20) - 10;
+      value = i % 7 == 0 ? value : value + random.nextDouble();
+      values.put(ts, value);
+    }
+    values.put(ts + 1, Double.NaN);
+    values.put(ts + 2, -0.0);
+    values.put(ts + 3, Double.MAX_VALUE);
+
+    // when
+    String encoded = MetricValuesCodec.encodeToString(values);
+    Map<Long, Double> decoded = PhoenixHBaseAccessor.readMetricValues(encoded);
+
+    // then
+    assertThat(MetricValuesCodec.isBinaryEncoded(encoded)).isTrue();
+    assertThat(decoded).isEqualTo(values);
+    assertThat(encoded.length()).isLessThan(
+      TimelineUtils.dumpTimelineRecordtoJSON(values).length() / 2);
+  }
+
+  @Test
+  public void testUnsortedInputIsDecodedSorted() throws Exception {
+    // given
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    values.put(3000L, 3.0);
+    values.put(1000L, 1.0);
+    values.put(2000L, 2.0);
+
+    // when
+    TimelineMetricValues decoded = MetricValuesCodec.decodeFromString(
+      MetricValuesCodec.encodeToString(values));
+
+    // then
+    assertThat(decoded.keySet()).containsExactly(1000L, 2000L, 3000L);
+    assertThat(decoded.values()).containsExactly(1.0, 2.0, 3.0);
+  }
+
+  @Test
+  public void testEmptyAndNullValues() throws Exception {
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    assertThat(MetricValuesCodec.decodeFromString(
+      MetricValuesCodec.encodeToString(values)).size()).isEqualTo(0);
+
+    values.put(1000L, null);
+    assertThat(MetricValuesCodec.encodeToString(values)).isNull();
+  }
+
+  @Test
+  public void testReadLegacyJson() throws Exception {
+    // given
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1000L, 1.5);
+    values.put(2000L, 2.5);
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+
+    // then
+    assertThat(MetricValuesCodec.isBinaryEncoded(json)).isFalse();
+    assertThat(PhoenixHBaseAccessor.readMetricValues(json)).isEqualTo(values);
+  }
+}
@@ -53,6 +53,23 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testMetricNameRangeConditionClause() throws Exception {
+    Condition condition = new DefaultCondition(null, null, null, null,
+      1407959718L, 1407959918L, null, null, true);
+    condition.setMetricNameRange("cpu", "mem");
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = " METRIC_NAME >= ? AND METRIC_NAME < ? AND " +
+      "SERVER_TIME >= ? AND SERVER_TIME < ?";
+
+    Assert.assertEquals(expectedClause, preparedClause);
+
+    condition.setMetricNameRange(null, "mem");
+    Assert.assertEquals(" METRIC_NAME < ? AND SERVER_TIME >= ? AND " +
+      "SERVER_TIME < ?", condition.getConditionClause().toString());
+  }
+
   @Test
   public void testSplitByMetricNamesCondition() throws Exception {
     Condition c = new DefaultCondition(
@@ -70,6 +87,23 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testSplitByMetricNamesConditionWithNameRange() throws Exception {
+    Condition c = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), "h1", null, null,
+      1407959718L, 1407959918L, null, null, false);
+
+    SplitByMetricNamesCondition condition = new SplitByMetricNamesCondition(c);
+    condition.setMetricNameRange("cpu", "mem");
+    condition.setCurrentMetric(c.getMetricNames().get(0));
+
+    Assert.assertEquals("cpu", c.getMetricNameFrom());
+    Assert.assertEquals("mem", c.getMetricNameTo());
+    Assert.assertEquals("METRIC_NAME = ? AND METRIC_NAME >= ? AND " +
+      "METRIC_NAME < ? AND HOSTNAME = ? AND SERVER_TIME >= ? AND " +
+      "SERVER_TIME < ?", condition.getConditionClause().toString());
+  }
+
   @Test
   public void testLikeConditionClause() throws Exception {
     Condition condition = new DefaultCondition(
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.util.Clock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.Condition;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.DefaultCondition;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_MAX_MEMORY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_SERIES_CAPACITY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CACHE_WINDOW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRecentMetricsCache {
+
+  private static final long NOW = 1420000000000L;
+
+  private TestClock clock;
+  private RecentMetricsCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(CACHE_WINDOW, 3600);
+    metricsConf.setInt(CACHE_SERIES_CAPACITY, 4);
+    clock = new TestClock();
+    clock.setTime(NOW);
+    cache = new RecentMetricsCache(metricsConf, clock);
+  }
+
+  @Test
+  public void testQueryInsideCachedRange() throws Exception {
+    // given
+    cache.putMetrics(metrics("h1", NOW + 1000, NOW + 2000, NOW + 3000));
+    Condition condition = condition("h1", NOW, NOW + 10000);
+
+    // when
+    long coveredFrom = cache.getCoveredFrom(condition);
+    TimelineMetrics result =
+      cache.getMetricRecords(condition, NOW, NOW + 10000);
+
+    // then
+    assertThat(cache.canServe(condition)).isTrue();
+    assertThat(coveredFrom).isEqualTo(NOW + 1000);
+    assertThat(result.getMetrics()).hasSize(1);
+    assertThat(result.getMetrics().get(0).getMetricValueSeries().keySet())
+      .containsExactly(NOW + 1000, NOW + 2000, NOW + 3000);
+  }
+
+  @Test
+  public void testEvictionMovesCoveredFrom() throws Exception {
+    // given
+    cache.putMetrics(metrics("h1", NOW + 1000, NOW + 2000, NOW + 3000));
+    cache.putMetrics(metrics("h1", NOW + 4000, NOW + 5000));
+    Condition condition = condition("h1", NOW, NOW + 10000);
+
+    // when
+    long coveredFrom = cache.getCoveredFrom(condition);
+    TimelineMetrics result =
+      cache.getMetricRecords(condition, coveredFrom, NOW + 10000);
+
+    // then
+    assertThat(coveredFrom).isEqualTo(NOW + 1001);
+    assertThat(result.getMetrics().get(0).getMetricValueSeries().keySet())
+      .containsExactly(NOW + 2000, NOW + 3000, NOW + 4000, NOW + 5000);
+  }
+
+  @Test
+  public void testOutOfOrderDatapointsAreSorted() throws Exception {
+    // given
+    cache.putMetrics(metrics("h1", NOW + 1000, NOW + 3000));
+    cache.putMetrics(metrics("h1", NOW + 2000));
+    Condition condition = condition("h1", NOW, NOW + 10000);
+
+    // when
+    TimelineMetrics result =
+      cache.getMetricRecords(condition, NOW, NOW + 10000);
+
+    // then
+    assertThat(result.getMetrics().get(0).getMetricValueSeries().keySet())
+      .containsExactly(NOW + 1000, NOW + 2000, NOW + 3000);
+  }
+
+  @Test
+  public void testMaxWriteLag() throws Exception {
+    // given
+    clock.setTime(NOW + 61000);
+    cache.putMetrics(metrics("h1", NOW + 1000, NOW + 2000));
+    clock.setTime(NOW + 63000);
+    cache.putMetrics(metrics("h1", NOW + 33000));
+
+    // then
+    assertThat(cache.getMaxWriteLag()).isEqualTo(60000);
+
+    // bounded by the cache window
+    clock.setTime(NOW + 5 * 3600 * 1000L);
+    cache.putMetrics(metrics("h1", NOW + 34000));
+    assertThat(cache.getMaxWriteLag()).isEqualTo(3600 * 1000L);
+  }
+
+  @Test
+  public void testIdleSeriesAreDropped() throws Exception {
+    // given one series of 64 KB per MB of memory
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(CACHE_WINDOW, 3600);
+    metricsConf.setInt(CACHE_SERIES_CAPACITY, 65536);
+    metricsConf.setInt(CACHE_MAX_MEMORY, 1);
+    cache = new RecentMetricsCache(metricsConf, clock);
+    cache.putMetrics(metrics("h1", NOW + 1000));
+    cache.putMetrics(metrics("h2", NOW + 1000));
+
+    assertThat(cache.getMetrics().series.value()).isEqualTo(1);
+    assertThat(cache.canServe(condition("h2", NOW, NOW + 10000))).isFalse();
+
+    // when h1 stops reporting for longer than the window
+    long later = NOW + 3600 * 1000L + 120000;
+    clock.setTime(later);
+    cache.putMetrics(metrics("h2", later - 1000));
+
+    // then
+    Condition h2 = condition("h2", later - 10000, later);
+    assertThat(cache.getMetrics().idleSeries.value()).isEqualTo(1);
+    assertThat(cache.getMetrics().series.value()).isEqualTo(1);
+    assertThat(cache.getCoveredFrom(condition("h1", NOW, later)))
+      .isEqualTo(Long.MAX_VALUE);
+    assertThat(cache.canServe(h2)).isTrue();
+    assertThat(cache.getCoveredFrom(h2)).isEqualTo(later - 1000);
+  }
+
+  @Test
+  public void testUnknownSeriesAndUncacheableQueries() throws Exception {
+    cache.putMetrics(metrics("h1", NOW + 1000));
+
+    assertThat(cache.getCoveredFrom(condition("h2", NOW, NOW + 10000)))
+      .isEqualTo(Long.MAX_VALUE);
+
+    Condition pointInTime = new DefaultCondition(
+      Collections.singletonList("mem_free"), "h1", null, null, null, null,
+      null, null, true);
+    assertThat(cache.canServe(pointInTime)).isFalse();
+
+    Condition minutes = new DefaultCondition(
+      Collections.singletonList("mem_free"), "h1", null, null, NOW,
+      NOW + 10000, Precision.MINUTES, null, true);
+    assertThat(cache.canServe(minutes)).isFalse();
+  }
+
+  private static Condition condition(String host, long start, long end) {
+    return new DefaultCondition(Collections.singletonList("mem_free"), host,
+      "HOST", null, start, end, null, null, true);
+  }
+
+  private static TimelineMetrics metrics(String host, long... timestamps) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("mem_free");
+    metric.setHostName(host);
+    metric.setAppId("HOST");
+    metric.setStartTime(timestamps[0]);
+    TimelineMetricValues values = new TimelineMetricValues();
+    for (long timestamp : timestamps) {
+      values.append(timestamp, timestamp / 1000.0);
+    }
+    metric.setMetricValueSeries(values);
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric);
+    return metrics;
+  }
+
+  private static class TestClock implements Clock {
+    private long time;
+
+    public void setTime(long time) {
+      this.time = time;
+    }
+
+    @Override
+    public long getTime() {
+      return time;
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_TIMEOUT;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_THREADS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestTimelineMetricsWritePipeline {
+
+  private PhoenixHBaseAccessor accessor;
+  private TimelineMetricsWriteMetrics metrics;
+  private Configuration metricsConf;
+
+  @Before
+  public void setUp() throws Exception {
+    accessor = mock(PhoenixHBaseAccessor.class);
+    metrics = new TimelineMetricsWriteMetrics();
+    when(accessor.getWriteMetrics()).thenReturn(metrics);
+    metricsConf = new Configuration(false);
+    metricsConf.setInt(WRITER_THREADS, 1);
+    metricsConf.setInt(WRITER_QUEUE_SIZE, 10);
+    metricsConf.setInt(WRITER_QUEUE_TIMEOUT, 10);
+  }
+
+  @Test
+  public void testAcceptedPutIsWritten() throws Exception {
+    // given
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf);
+    pipeline.start();
+
+    // when
+    pipeline.putMetrics(metrics("m1"));
+    pipeline.stop();
+
+    // then
+    verify(accessor, times(1)).insertMetricRecords(any(TimelineMetrics.class));
+    assertThat(metrics.requestsAccepted.value()).isEqualTo(1);
+    assertThat(metrics.requestsRejected.value()).isEqualTo(0);
+    assertThat(metrics.requestsFailed.value()).isEqualTo(0);
+  }
+
+  @Test
+  public void testPutIsRejectedWhenQueueIsFull() throws Exception {
+    // given
+    metricsConf.setInt(WRITER_QUEUE_SIZE, 1);
+    metricsConf.setInt(WRITER_QUEUE_TIMEOUT, 0);
+    BlockingWrite blockingWrite = new BlockingWrite();
+    doAnswer(blockingWrite).when(accessor)
+      .insertMetricRecords(any(TimelineMetrics.class));
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf);
+    pipeline.start();
+
+    // when
+    pipeline.putMetrics(metrics("m1"));
+    blockingWrite.awaitStarted();
+    pipeline.putMetrics(metrics("m2"));
+    try {
+      pipeline.putMetrics(metrics("m3"));
+      fail("Expected the put to be rejected");
+    } catch (MetricsWriteRejectedException expected) {
+      // then
+      assertThat(metrics.requestsAccepted.value()).isEqualTo(2);
+      assertThat(metrics.requestsRejected.value()).isEqualTo(1);
+    } finally {
+      blockingWrite.release();
+      pipeline.stop();
+    }
+  }
+
+  @Test
+  public void testStopDrainsPendingPuts() throws Exception {
+    // given
+    BlockingWrite blockingWrite = new BlockingWrite();
+    doAnswer(blockingWrite).when(accessor)
+      .insertMetricRecords(any(TimelineMetrics.class));
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf);
+    pipeline.start();
+    pipeline.putMetrics(metrics("m1"));
+    blockingWrite.awaitStarted();
+    pipeline.putMetrics(metrics("m2"));
+    pipeline.putMetrics(metrics("m3"));
+    assertThat(pipeline.getPendingRequests()).isEqualTo(2);
+
+    // when
+    blockingWrite.release();
+    pipeline.stop();
+
+    // then
+    assertThat(pipeline.getPendingRequests()).isEqualTo(0);
+    assertThat(blockingWrite.getWrittenMetrics()).isEqualTo(3);
+    try {
+      pipeline.putMetrics(metrics("m4"));
+      fail("Expected puts to be rejected after stop");
+    } catch (MetricsWriteRejectedException expected) {
+      // nothing to do
+    }
+  }
+
+  @Test
+  public void testFailedWriteIsCounted() throws Exception {
+    // given
+    doThrow(new SQLException("write failed")).when(accessor)
+      .insertMetricRecords(any(TimelineMetrics.class));
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf);
+    pipeline.start();
+
+    // when
+    pipeline.putMetrics(metrics("m1"));
+    pipeline.stop();
+
+    // then
+    assertThat(metrics.requestsAccepted.value()).isEqualTo(1);
+    assertThat(metrics.requestsFailed.value()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFailedCombinedWriteLosesOnlyFailingRequest() throws Exception {
+    // given
+    final BlockingWrite blockingWrite = new BlockingWrite();
+    final AtomicInteger writtenAlone = new AtomicInteger();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        TimelineMetrics written = (TimelineMetrics) invocation.getArguments()[0];
+        if (written.getMetrics().get(0).getMetricName().equals("m1")) {
+          return blockingWrite.answer(invocation);
+        }
+        for (TimelineMetric metric : written.getMetrics()) {
+          if (metric.getMetricName().equals("bad")) {
+            throw new SQLException("write failed");
+          }
+        }
+        if (written.getMetrics().size() == 1) {
+          writtenAlone.incrementAndGet();
+        }
+        return null;
+      }
+    }).when(accessor).insertMetricRecords(any(TimelineMetrics.class));
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf);
+    pipeline.start();
+
+    // when
+    pipeline.putMetrics(metrics("m1"));
+    blockingWrite.awaitStarted();
+    pipeline.putMetrics(metrics("m2"));
+    pipeline.putMetrics(metrics("bad"));
+    pipeline.putMetrics(metrics("m3"));
+    blockingWrite.release();
+    pipeline.stop();
+
+    // then
+    assertThat(metrics.requestsAccepted.value()).isEqualTo(4);
+    assertThat(metrics.requestsFailed.value()).isEqualTo(1);
+    assertThat(writtenAlone.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testCacheIsFilledOnlyWithWrittenMetrics() throws Exception {
+    // given
+    RecentMetricsCache cache = mock(RecentMetricsCache.class);
+    doThrow(new SQLException("write failed")).doNothing().when(accessor)
+      .insertMetricRecords(any(TimelineMetrics.class));
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf, cache);
+    pipeline.start();
+
+    // when
+    pipeline.putMetrics(metrics("m1"));
+    pipeline.stop();
+    verify(cache, never()).putMetrics(any(TimelineMetrics.class));
+
+    metricsConf.setInt(WRITER_THREADS, 0);
+    pipeline = new TimelineMetricsWritePipeline(accessor, metricsConf, cache);
+    pipeline.start();
+    pipeline.putMetrics(metrics("m2"));
+
+    // then
+    verify(cache, times(1)).putMetrics(any(TimelineMetrics.class));
+  }
+
+  @Test
+  public void testSynchronousWriteWithoutWriterThreads() throws Exception {
+    // given
+    metricsConf.setInt(WRITER_THREADS, 0);
+    doThrow(new SQLException("write failed")).when(accessor)
+      .insertMetricRecords(any(TimelineMetrics.class));
+    TimelineMetricsWritePipeline pipeline =
+      new TimelineMetricsWritePipeline(accessor, metricsConf);
+    pipeline.start();
+
+    // when
+    try {
+      pipeline.putMetrics(metrics("m1"));
+      fail("Expected the write error to reach the caller");
+    } catch (SQLException expected) {
+      // then
+      assertThat(metrics.requestsFailed.value()).isEqualTo(0);
+    } finally {
+      pipeline.stop();
+    }
+  }
+
+  private static TimelineMetrics metrics(String metricName) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName("h1");
+    metric.setAppId("datanode");
+    metric.setStartTime(1000L);
+    TimelineMetricValues values = new TimelineMetricValues();
+    values.append(1000L, 1.0);
+    metric.setMetricValueSeries(values);
+
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.getMetrics().add(metric);
+    return timelineMetrics;
+  }
+
+  /**
+   * Holds the first write until released, counting the written metrics.
+   */
+  private static class BlockingWrite implements Answer<Void> {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final AtomicInteger writtenMetrics = new AtomicInteger();
+
+    @Override
+    public Void answer(InvocationOnMock invocation) throws Throwable {
+      started.countDown();
+      released.await(10, TimeUnit.SECONDS);
+      TimelineMetrics written = (TimelineMetrics) invocation.getArguments()[0];
+      writtenMetrics.addAndGet(written.getMetrics().size());
+      return null;
+    }
+
+    void awaitStarted() throws InterruptedException {
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    void release() {
+      released.countDown();
+    }
+
+    int getWrittenMetrics() {
+      return writtenMetrics.get();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestUpsertBatch {
+
+  @Test
+  public void testRowsAreExecutedInBatchesAndCommitted() throws Exception {
+    // given
+    Connection conn = mock(Connection.class);
+    PreparedStatement stmt = mock(PreparedStatement.class);
+    TimelineMetricsWriteMetrics metrics = new TimelineMetricsWriteMetrics();
+    UpsertBatch batch = new UpsertBatch(conn, stmt, 10, 25, metrics);
+
+    // when
+    for (int i = 0; i < 32; i++) {
+      batch.addRow();
+    }
+    batch.flush();
+
+    // then
+    verify(stmt, times(32)).addBatch();
+    verify(stmt, times(4)).executeBatch();
+    verify(stmt, never()).executeUpdate();
+    // once after 30 rows reached the commit size, once on flush
+    verify(conn, times(2)).commit();
+    assertThat(metrics.rowsWritten.value()).isEqualTo(32);
+  }
+
+  @Test
+  public void testFallbackWithoutBatchSupport() throws Exception {
+    // given
+    Connection conn = mock(Connection.class);
+    PreparedStatement stmt = mock(PreparedStatement.class);
+    doThrow(new SQLFeatureNotSupportedException()).when(stmt).addBatch();
+    TimelineMetricsWriteMetrics metrics = new TimelineMetricsWriteMetrics();
+    UpsertBatch batch = new UpsertBatch(conn, stmt, 10, metrics);
+
+    // when
+    for (int i = 0; i < 3; i++) {
+      batch.addRow();
+    }
+    batch.flush();
+
+    // then
+    verify(stmt, times(1)).addBatch();
+    verify(stmt, times(3)).executeUpdate();
+    verify(stmt, never()).executeBatch();
+    verify(conn, times(1)).commit();
+    assertThat(metrics.rowsWritten.value()).isEqualTo(3);
+  }
+
+  @Test
+  public void testFailedRowsDoNotAbortWrite() throws Exception {
+    // given
+    Connection conn = mock(Connection.class);
+    PreparedStatement stmt = mock(PreparedStatement.class);
+    when(stmt.executeBatch()).thenThrow(new BatchUpdateException(
+      new int[] { 1, Statement.EXECUTE_FAILED }));
+    TimelineMetricsWriteMetrics metrics = new TimelineMetricsWriteMetrics();
+    UpsertBatch batch = new UpsertBatch(conn, stmt, 5, metrics);
+
+    // when
+    for (int i = 0; i < 4; i++) {
+      batch.addRow();
+    }
+    batch.flush();
+
+    // then
+    verify(conn, times(1)).commit();
+    assertThat(metrics.rowsWritten.value()).isEqualTo(1);
+    assertThat(metrics.rowsFailed.value()).isEqualTo(3);
+  }
+}
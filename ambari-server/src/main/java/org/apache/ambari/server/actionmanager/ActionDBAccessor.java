@@ -216,5 +216,9 @@ public interface ActionDBAccessor {
    */
   public List<Request> getRequests(Collection<Long> requestIds);
 
-
+  /**
+   * Discards the cached tasks with the specified ids, after they were removed
+   * from the database.
+   */
+  public void invalidateTasks(Collection<Long> taskIds);
 }
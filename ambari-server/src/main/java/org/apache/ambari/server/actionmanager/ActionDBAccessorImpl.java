@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.actionmanager;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -27,6 +28,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
@@ -54,15 +59,27 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.google.inject.persist.Transactional;
 
 @Singleton
-public class ActionDBAccessorImpl implements ActionDBAccessor {
+public class ActionDBAccessorImpl implements ActionDBAccessor, HostRoleCommandCacheMBean {
   private static final Logger LOG = LoggerFactory.getLogger(ActionDBAccessorImpl.class);
 
+  /**
+   * The name of the task cache in JMX.
+   */
+  private static final String MBEAN_NAME = "org.apache.ambari.server:type=HostRoleCommandCache";
+
+  /**
+   * The estimated size, in bytes, of a cached task without its output.
+   */
+  private static final int TASK_WEIGHT = 256;
+
   private long requestId;
 
   @Inject
@@ -101,15 +118,26 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   @Inject
   RequestScheduleDAO requestScheduleDAO;
 
+  /**
+   * Finished tasks, which no longer change, keyed by task id. The cache is
+   * bounded by the estimated memory used by the tasks, since their output
+   * varies from a few bytes to megabytes.
+   */
   private Cache<Long, HostRoleCommand> hostRoleCommandCache;
-  private long cacheLimit; //may be exceeded to store tasks from one request
 
   @Inject
-  public ActionDBAccessorImpl(@Named("executionCommandCacheSize") long cacheLimit) {
+  public ActionDBAccessorImpl(@Named("executionCommandCacheWeight") long cacheWeight) {
 
-    this.cacheLimit = cacheLimit;
     hostRoleCommandCache = CacheBuilder.newBuilder().
+        maximumWeight(cacheWeight).
+        weigher(new Weigher<Long, HostRoleCommand>() {
+          @Override
+          public int weigh(Long taskId, HostRoleCommand hostRoleCommand) {
+            return getWeight(hostRoleCommand);
+          }
+        }).
         expireAfterAccess(5, TimeUnit.MINUTES).
+        recordStats().
         build();
 
   }
@@ -117,6 +145,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   @Inject
   void init() {
     requestId = stageDAO.getLastRequestId();
+    registerMBean();
   }
 
   /* (non-Javadoc)
@@ -182,6 +211,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
 
     hostRoleCommandDAO.mergeAll(commands);
+    cacheHostRoleCommands(commands);
   }
 
   /* (non-Javadoc)
@@ -198,6 +228,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       command.setEndTime(now);
     }
     hostRoleCommandDAO.mergeAll(commands);
+    cacheHostRoleCommands(commands);
     endRequestIfCompleted(requestId);
   }
 
@@ -373,7 +404,6 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     long now = System.currentTimeMillis();
 
     List<Long> requestsToCheck = new ArrayList<Long>();
-    List<Long> abortedCommandUpdates = new ArrayList<Long>();
 
     List<HostRoleCommandEntity> commandEntities = hostRoleCommandDAO.findByPKs(taskReports.keySet());
     for (HostRoleCommandEntity commandEntity : commandEntities) {
@@ -387,8 +417,6 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
           status = HostRoleStatus.HOLDING_FAILED;
         }
         commandEntity.setStatus(status);
-      } else {
-        abortedCommandUpdates.add(commandEntity.getTaskId());
       }
       commandEntity.setStdOut(report.getStdOut().getBytes());
       commandEntity.setStdError(report.getStdErr().getBytes());
@@ -410,8 +438,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
 
     hostRoleCommandDAO.mergeAll(commandEntities);
-    // Invalidate cache because of updates to ABORTED commands
-    hostRoleCommandCache.invalidateAll(abortedCommandUpdates);
+    cacheHostRoleCommands(commandEntities);
 
     for (Long requestId : requestsToCheck) {
       endRequestIfCompleted(requestId);
@@ -450,6 +477,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       command.setExitcode(report.getExitCode());
     }
     hostRoleCommandDAO.mergeAll(commands);
+    cacheHostRoleCommands(commands);
 
     if (checkRequest) {
       endRequestIfCompleted(requestId);
@@ -555,20 +583,11 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     absent.removeAll(cached.keySet());
 
     if (!absent.isEmpty()) {
-      boolean allowStore = hostRoleCommandCache.size() <= cacheLimit;
-
       for (HostRoleCommandEntity commandEntity : hostRoleCommandDAO.findByPKs(absent)) {
         HostRoleCommand hostRoleCommand = hostRoleCommandFactory.createExisting(commandEntity);
         commands.add(hostRoleCommand);
-        if (allowStore) {
-          switch (hostRoleCommand.getStatus()) {
-            case ABORTED:
-            case COMPLETED:
-            case TIMEDOUT:
-            case FAILED:
-              hostRoleCommandCache.put(hostRoleCommand.getTaskId(), hostRoleCommand);
-              break;
-          }
+        if (isCacheable(hostRoleCommand.getStatus())) {
+          hostRoleCommandCache.put(hostRoleCommand.getTaskId(), hostRoleCommand);
         }
       }
     }
@@ -645,4 +664,122 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
     return requests;
   }
+
+  @Override
+  public void invalidateTasks(Collection<Long> taskIds) {
+    hostRoleCommandCache.invalidateAll(taskIds);
+  }
+
+  // ----- HostRoleCommandCacheMBean -----------------------------------------
+
+  @Override
+  public long getSize() {
+    return hostRoleCommandCache.size();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hostRoleCommandCache.stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return hostRoleCommandCache.stats().missCount();
+  }
+
+  @Override
+  public double getHitRate() {
+    return hostRoleCommandCache.stats().hitRate();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return hostRoleCommandCache.stats().evictionCount();
+  }
+
+  @Override
+  public double getStatusCountsHitRate() {
+    return hostRoleCommandDAO.getAggregateCountsCacheStats().hitRate();
+  }
+
+  @Override
+  public long getStatusCountsEvictionCount() {
+    return hostRoleCommandDAO.getAggregateCountsCacheStats().evictionCount();
+  }
+
+  /**
+   * Gets the statistics of the cache of finished tasks.
+   *
+   * @return the cache statistics
+   */
+  CacheStats getCacheStats() {
+    return hostRoleCommandCache.stats();
+  }
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Keeps the cache in step with tasks which were just written: finished tasks
+   * are cached as they are, so that the request status polls which follow do
+   * not read them back, and any other task is discarded.
+   *
+   * @param entities the merged tasks
+   */
+  private void cacheHostRoleCommands(Collection<HostRoleCommandEntity> entities) {
+    for (HostRoleCommandEntity entity : entities) {
+      if (isCacheable(entity.getStatus())) {
+        hostRoleCommandCache.put(entity.getTaskId(),
+            hostRoleCommandFactory.createExisting(entity));
+      } else {
+        hostRoleCommandCache.invalidate(entity.getTaskId());
+      }
+    }
+  }
+
+  /**
+   * Gets whether a task with the given status will not change anymore.
+   * Holding tasks are excluded since they can be retried.
+   *
+   * @param status the task status
+   * @return {@code true} if the task can be cached
+   */
+  private static boolean isCacheable(HostRoleStatus status) {
+    switch (status) {
+      case ABORTED:
+      case COMPLETED:
+      case TIMEDOUT:
+      case FAILED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Estimates the memory used by a cached task, which is dominated by the
+   * output it holds. Tasks read from the database do not hold their output.
+   *
+   * @param hostRoleCommand the task
+   * @return the estimated size, in bytes
+   */
+  private static int getWeight(HostRoleCommand hostRoleCommand) {
+    long weight = TASK_WEIGHT + 2L * hostRoleCommand.getHeldOutputLength();
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Registers the task cache with the platform MBean server.
+   */
+  private void registerMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(new StandardMBean(this,
+            HostRoleCommandCacheMBean.class), name);
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register {} with JMX", MBEAN_NAME, exception);
+    }
+  }
 }
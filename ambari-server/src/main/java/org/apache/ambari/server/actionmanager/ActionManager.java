@@ -19,9 +19,11 @@ package org.apache.ambari.server.actionmanager;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
@@ -94,7 +96,7 @@ public class ActionManager {
       }
     }
     db.persistActions(request);
-    scheduler.awake();
+    scheduler.awake(request.getRequestId());
   }
 
   public List<Request> getRequests(Collection<Long> requestIds) {
@@ -137,6 +139,7 @@ public class ActionManager {
     }
 
     List<CommandReport> reportsToProcess = new ArrayList<CommandReport>();
+    Set<Long> finishedRequestIds = new HashSet<Long>();
     Iterator<HostRoleCommand> commandIterator = commands.iterator();
     //persist the action response into the db.
     for (CommandReport report : reports) {
@@ -157,9 +160,17 @@ public class ActionManager {
         continue;
       }
       reportsToProcess.add(report);
+      if (HostRoleStatus.valueOf(report.getStatus()).isCompletedState()) {
+        finishedRequestIds.add(command.getRequestId());
+      }
     }
 
     db.updateHostRoleStates(reportsToProcess);
+
+    // let the scheduler move on to the next stages right away
+    for (Long requestId : finishedRequestIds) {
+      scheduler.awake(requestId);
+    }
   }
 
   /**
@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.actionmanager;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -29,7 +30,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
@@ -57,6 +68,7 @@ import org.apache.ambari.server.state.ServiceComponentHostEvent;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.ambari.server.state.svccomphost.ServiceComponentHostOpFailedEvent;
 import org.apache.ambari.server.utils.StageUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,11 +85,24 @@ import com.google.inject.persist.UnitOfWork;
  * This class encapsulates the action scheduler thread.
  * Action schedule frequently looks at action database and determines if
  * there is an action that can be scheduled.
+ * <p/>
+ * When {@link Configuration#getActionSchedulerThreads()} is positive, the
+ * stages of different requests are processed concurrently on a pool of
+ * workers, while the scheduler thread keeps selecting the stages to process.
+ * A request has at most one stage being processed, and a host is taken by at
+ * most one stage being processed unless its commands of that stage all run in
+ * the background. The scheduler is exposed over JMX under
+ * {@code org.apache.ambari.server:type=ActionScheduler}.
  */
-class ActionScheduler implements Runnable {
+class ActionScheduler implements Runnable, ActionSchedulerMBean {
 
   private static Logger LOG = LoggerFactory.getLogger(ActionScheduler.class);
 
+  /**
+   * The JMX name of the scheduler.
+   */
+  private static final String MBEAN_NAME = "org.apache.ambari.server:type=ActionScheduler";
+
   public static final String FAILED_TASK_ABORT_REASONING =
           "Server considered task failed and automatically aborted it";
 
@@ -99,6 +124,53 @@ class ActionScheduler implements Runnable {
 
   private final Set<Long> requestsInProgress = new HashSet<Long>();
 
+  /**
+   * Contains ids of requests that may still have stages in progress. It is
+   * filled from the database when the scheduler starts or recovers from an
+   * error, and kept up to date afterwards by {@link #awake(long)} and by the
+   * stages found in progress, so that an idle scheduler does not query the
+   * database on every wakeup.
+   */
+  private final Set<Long> activeRequests = new ConcurrentSkipListSet<Long>();
+
+  /**
+   * true if {@link #activeRequests} should be rebuilt from the database on the
+   * next scheduler iteration.
+   */
+  private volatile boolean reloadActiveRequests = true;
+
+  /**
+   * The number of workers processing stages, or 0 if stages are processed on
+   * the scheduler thread.
+   */
+  private final int threadCount;
+
+  /**
+   * Processes the stages of different requests concurrently, or {@code null}
+   * if stages are processed on the scheduler thread.
+   */
+  private final ExecutorService stageExecutor;
+
+  /**
+   * Maps the ids of the requests which have a stage being processed by a
+   * worker to whether the request is exclusive.
+   */
+  private final Map<Long, Boolean> processingRequests =
+      new ConcurrentHashMap<Long, Boolean>();
+
+  /**
+   * The hosts taken by the stages being processed by workers. Only the
+   * scheduler thread takes hosts, the workers release them.
+   */
+  private final Set<String> busyHosts =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private final AtomicLong iterationCount = new AtomicLong();
+  private final AtomicLong iterationNanos = new AtomicLong();
+  private final AtomicLong stagesProcessedCount = new AtomicLong();
+  private final AtomicLong stageProcessingNanos = new AtomicLong();
+  private final AtomicLong commandsScheduledCount = new AtomicLong();
+
   /**
    * Contains request ids that have been scheduled to be cancelled,
    * but are not cancelled yet
@@ -122,6 +194,8 @@ class ActionScheduler implements Runnable {
   private boolean activeAwakeRequest = false;
   //Cache for clusterHostinfo, key - stageId-requestId
   private Cache<String, Map<String, Set<String>>> clusterHostInfoCache;
+  //Cache for the hash of clusterHostInfo, key - stageId-requestId
+  private Cache<String, String> clusterHostInfoHashCache;
   private Cache<String, Map<String, String>> commandParamsStageCache;
   private Cache<String, Map<String, String>> hostParamsStageCache;
 
@@ -143,6 +217,9 @@ class ActionScheduler implements Runnable {
     clusterHostInfoCache = CacheBuilder.newBuilder().
         expireAfterAccess(5, TimeUnit.MINUTES).
         build();
+    clusterHostInfoHashCache = CacheBuilder.newBuilder().
+        expireAfterAccess(5, TimeUnit.MINUTES).
+        build();
     commandParamsStageCache = CacheBuilder.newBuilder().
       expireAfterAccess(5, TimeUnit.MINUTES).
       build();
@@ -150,11 +227,18 @@ class ActionScheduler implements Runnable {
       expireAfterAccess(5, TimeUnit.MINUTES).
       build();
     this.configuration = configuration;
+
+    threadCount = null == configuration ? 0 : Math.max(0,
+        configuration.getActionSchedulerThreads());
+    stageExecutor = threadCount > 0
+        ? Executors.newFixedThreadPool(threadCount, new ActionSchedulerThreadFactory())
+        : null;
   }
 
   public void start() {
     schedulerThread = new Thread(this, "ambari-action-scheduler");
     schedulerThread.start();
+    registerMBean();
 
     // Start up the ServerActionExecutor. Since it is directly related to the ActionScheduler it
     // should be started and stopped along with it.
@@ -164,6 +248,10 @@ class ActionScheduler implements Runnable {
   public void stop() {
     shouldRun = false;
     schedulerThread.interrupt();
+    if (null != stageExecutor) {
+      stageExecutor.shutdownNow();
+    }
+    unregisterMBean();
 
     // Stop the ServerActionExecutor. Since it is directly related to the ActionScheduler it should
     // be started and stopped along with it.
@@ -182,6 +270,19 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Should be called from another thread when the tasks of a request were
+   * persisted or have changed their status, so that the scheduler processes
+   * the request ASAP instead of waiting for the next iteration.
+   * The method is guaranteed to return quickly.
+   *
+   * @param requestId the id of the request that has changed
+   */
+  public void awake(long requestId) {
+    activeRequests.add(requestId);
+    awake();
+  }
+
   @Override
   public void run() {
     while (shouldRun) {
@@ -199,20 +300,37 @@ class ActionScheduler implements Runnable {
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        reloadActiveRequests = true;
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        reloadActiveRequests = true;
       }
     }
   }
 
   public void doWork() throws AmbariException {
+    long startNanos = System.nanoTime();
     try {
       unitOfWork.begin();
 
       // The first thing to do is to abort requests that are cancelled
       processCancelledRequestsList();
 
+      // no request was persisted or updated since the last time the database
+      // had nothing in progress
+      if (!reloadActiveRequests && activeRequests.isEmpty()) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("There are no requests currently in progress.");
+        }
+
+        return;
+      }
+
+      // requests must be known to be committed before reading the stages in
+      // progress, otherwise a request persisted in between would be dropped
+      Set<Long> committedRequestIds = getCommittedActiveRequests();
+
       // !!! getting the stages in progress could be a very expensive call due
       // to the join being used; there's no need to make it if there are
       // no commands in progress
@@ -222,6 +340,7 @@ class ActionScheduler implements Runnable {
           LOG.debug("There are no stages currently in progress.");
         }
 
+        updateActiveRequests(committedRequestIds, Collections.<Stage>emptyList());
         return;
       }
 
@@ -232,6 +351,8 @@ class ActionScheduler implements Runnable {
         LOG.debug("Processing {} in progress stages ", stages.size());
       }
 
+      updateActiveRequests(committedRequestIds, stages);
+
       if (stages.isEmpty()) {
         // Nothing to do
         if (LOG.isDebugEnabled()) {
@@ -245,6 +366,12 @@ class ActionScheduler implements Runnable {
 
       stages = filterParallelPerHostStages(stages);
 
+      if (processingRequests.containsValue(Boolean.TRUE)) {
+        // an exclusive request is being processed by a worker
+        LOG.debug("An exclusive request is being processed, waiting for it to finish");
+        return;
+      }
+
       boolean exclusiveRequestIsGoing = false;
       // This loop greatly depends on the fact that order of stages in
       // a list does not change between invocations
@@ -257,7 +384,7 @@ class ActionScheduler implements Runnable {
         RequestEntity request = db.getRequestEntity(requestId);
 
         if (request.isExclusive()) {
-          if (runningRequestIds.size() > 0 ) {
+          if (runningRequestIds.size() > 0 || isOtherRequestProcessing(requestId)) {
             // As a result, we will wait until any previous stages are finished
             LOG.debug("Stage requires exclusive execution, but other requests are already executing. Stopping for now");
             break;
@@ -277,127 +404,276 @@ class ActionScheduler implements Runnable {
           }
         }
 
-        // Commands that will be scheduled in current scheduler wakeup
-        List<ExecutionCommand> commandsToSchedule = new ArrayList<ExecutionCommand>();
-        Map<String, RoleStats> roleStats = processInProgressStage(stage, commandsToSchedule);
-        // Check if stage is failed
-        boolean failed = false;
-        for (Map.Entry<String, RoleStats>entry : roleStats.entrySet()) {
-
-          String    role  = entry.getKey();
-          RoleStats stats = entry.getValue();
-
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Stats for role:" + role + ", stats=" + stats);
-          }
-          if (stats.isRoleFailed()) {
-            failed = true;
-            break;
+        if (null == stageExecutor) {
+          if (!processStage(stage)) {
+            // the request has been aborted
+            return;
           }
+        } else {
+          submitStage(stage, request.isExclusive());
         }
 
-        if(!failed) {
-          // Prior stage may have failed and it may need to fail the whole request
-          failed = hasPreviousStageFailed(stage);
+        if (! configuration.getParallelStageExecution()) { // If disabled
+          return;
         }
 
-        if (failed) {
-          LOG.warn("Operation completely failed, aborting request id:"
-              + stage.getRequestId());
-          cancelHostRoleCommands(stage.getOrderedHostRoleCommands(), FAILED_TASK_ABORT_REASONING);
-          abortOperationsForStage(stage);
-          return;
+        if (exclusiveRequestIsGoing) {
+          // As a result, we will prevent any further stages from being executed
+          LOG.debug("Stage requires exclusive execution, skipping all executing any further stages");
+          break;
         }
+      }
 
-        List<ExecutionCommand> commandsToStart = new ArrayList<ExecutionCommand>();
-        List<ExecutionCommand> commandsToUpdate = new ArrayList<ExecutionCommand>();
+      requestsInProgress.retainAll(runningRequestIds);
 
-        //Schedule what we have so far
+    } finally {
+      LOG.debug("Scheduler finished work.");
+      unitOfWork.end();
+      iterationCount.incrementAndGet();
+      iterationNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+  }
 
-        for (ExecutionCommand cmd : commandsToSchedule) {
+  /**
+   * Hands a stage over to a worker, unless its request already has a stage
+   * being processed or one of its hosts is taken by another stage being
+   * processed. Those stages are picked up again once the workers are done.
+   *
+   * @param stage the stage to process
+   * @param exclusive whether the request of the stage is exclusive
+   */
+  private void submitStage(final Stage stage, boolean exclusive) {
+    final long requestId = stage.getRequestId();
+    if (processingRequests.containsKey(requestId)) {
+      LOG.debug("==> A stage of request {} is already being processed", requestId);
+      return;
+    }
+    if (requestsToBeCancelled.contains(requestId)) {
+      LOG.debug("==> Request {} is being cancelled", requestId);
+      return;
+    }
 
-          // Hack - Remove passwords from configs
-          if (cmd.getRole().equals(Role.HIVE_CLIENT.toString()) &&
-                  cmd.getConfigurations().containsKey(Configuration.HIVE_CONFIG_TAG)) {
-            cmd.getConfigurations().get(Configuration.HIVE_CONFIG_TAG).remove(Configuration.HIVE_METASTORE_PASSWORD_PROPERTY);
-          }
-          processHostRole(stage, cmd, commandsToStart, commandsToUpdate);
+    final Set<String> hosts = new HashSet<String>();
+    for (String host : stage.getHosts()) {
+      if (!isStageHasBackgroundCommandsOnly(stage, host)) {
+        if (busyHosts.contains(host)) {
+          LOG.debug("==> Host {} is taken by another stage, skipping stage {} of request {}",
+              host, stage.getStageId(), requestId);
+          return;
         }
+        hosts.add(host);
+      }
+    }
 
-        LOG.debug("==> Commands to start: {}", commandsToStart.size());
-        LOG.debug("==> Commands to update: {}", commandsToUpdate.size());
-
-        //Multimap is analog of Map<Object, List<Object>> but allows to avoid nested loop
-        ListMultimap<String, ServiceComponentHostEvent> eventMap = formEventMap(stage, commandsToStart);
-        List<ExecutionCommand> commandsToAbort = new ArrayList<ExecutionCommand>();
-        if (!eventMap.isEmpty()) {
-          LOG.debug("==> processing {} serviceComponentHostEvents...", eventMap.size());
-          Cluster cluster = fsmObject.getCluster(stage.getClusterName());
-          if (cluster != null) {
-            List<ServiceComponentHostEvent> failedEvents =
-              cluster.processServiceComponentHostEvents(eventMap);
-            LOG.debug("==> {} events failed.", failedEvents.size());
-
-            for (Iterator<ExecutionCommand> iterator = commandsToUpdate.iterator(); iterator.hasNext(); ) {
-              ExecutionCommand cmd = iterator.next();
-              for (ServiceComponentHostEvent event : failedEvents) {
-                if (StringUtils.equals(event.getHostName(), cmd.getHostname()) &&
-                  StringUtils.equals(event.getServiceComponentName(), cmd.getRole())) {
-                  iterator.remove();
-                  commandsToAbort.add(cmd);
-                  break;
-                }
-              }
-            }
-          } else {
-            LOG.warn("There was events to process but cluster {} not found", stage.getClusterName());
-          }
+    busyHosts.addAll(hosts);
+    processingRequests.put(requestId, exclusive);
+    stageExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          unitOfWork.begin();
+          processStage(stage);
+        } catch (Throwable t) {
+          LOG.warn("Unable to process stage {} of request {}", stage.getStageId(), requestId, t);
+        } finally {
+          unitOfWork.end();
+          busyHosts.removeAll(hosts);
+          processingRequests.remove(requestId);
+
+          // the stages which had to wait for this one can be processed now
+          awake();
         }
+      }
+    });
+  }
 
-        LOG.debug("==> Scheduling {} tasks...", commandsToUpdate.size());
-        db.bulkHostRoleScheduled(stage, commandsToUpdate);
+  /**
+   * Gets whether a worker is processing a stage of another request.
+   *
+   * @param requestId the id of the request
+   * @return {@code true} if a stage of another request is being processed
+   */
+  private boolean isOtherRequestProcessing(long requestId) {
+    for (Long processingRequestId : processingRequests.keySet()) {
+      if (processingRequestId != requestId) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-        if (commandsToAbort.size() > 0) { // Code branch may be a bit slow, but is extremely rarely used
-          LOG.debug("==> Aborting {} tasks...", commandsToAbort.size());
-          // Build a list of HostRoleCommands
-          List<Long> taskIds = new ArrayList<Long>();
-          for (ExecutionCommand command : commandsToAbort) {
-            taskIds.add(command.getTaskId());
-          }
-          Collection<HostRoleCommand> hostRoleCommands = db.getTasks(taskIds);
+  /**
+   * Processes a stage in progress: times out and reschedules its commands,
+   * aborts its request if the stage has failed, and queues the commands which
+   * are ready to be sent to the agents.
+   *
+   * @param stage the stage to process
+   * @return {@code false} if the request of the stage has been aborted
+   * @throws AmbariException
+   */
+  private boolean processStage(Stage stage) throws AmbariException {
+    long startNanos = System.nanoTime();
+    try {
+      // Commands that will be scheduled in current scheduler wakeup
+      List<ExecutionCommand> commandsToSchedule = new ArrayList<ExecutionCommand>();
+      Map<String, RoleStats> roleStats = processInProgressStage(stage, commandsToSchedule);
+      // Check if stage is failed
+      boolean failed = false;
+      for (Map.Entry<String, RoleStats>entry : roleStats.entrySet()) {
+
+        String    role  = entry.getKey();
+        RoleStats stats = entry.getValue();
 
-          cancelHostRoleCommands(hostRoleCommands, FAILED_TASK_ABORT_REASONING);
-          db.bulkAbortHostRole(stage, commandsToAbort);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Stats for role:" + role + ", stats=" + stats);
         }
+        if (stats.isRoleFailed()) {
+          failed = true;
+          break;
+        }
+      }
 
-        LOG.debug("==> Adding {} tasks to queue...", commandsToUpdate.size());
-        for (ExecutionCommand cmd : commandsToUpdate) {
-          // Do not queue up server actions; however if we encounter one, wake up the ServerActionExecutor
-          if (Role.AMBARI_SERVER_ACTION.name().equals(cmd.getRole())) {
-            serverActionExecutor.awake();
-          } else {
-            actionQueue.enqueue(cmd.getHostname(), cmd);
-          }
+      if(!failed) {
+        // Prior stage may have failed and it may need to fail the whole request
+        failed = hasPreviousStageFailed(stage);
+      }
+
+      if (failed) {
+        LOG.warn("Operation completely failed, aborting request id:"
+            + stage.getRequestId());
+        cancelHostRoleCommands(stage.getOrderedHostRoleCommands(), FAILED_TASK_ABORT_REASONING);
+        abortOperationsForStage(stage);
+        return false;
+      }
+
+      List<ExecutionCommand> commandsToStart = new ArrayList<ExecutionCommand>();
+      List<ExecutionCommand> commandsToUpdate = new ArrayList<ExecutionCommand>();
+
+      //Schedule what we have so far
+
+      for (ExecutionCommand cmd : commandsToSchedule) {
+
+        // Hack - Remove passwords from configs
+        if (cmd.getRole().equals(Role.HIVE_CLIENT.toString()) &&
+                cmd.getConfigurations().containsKey(Configuration.HIVE_CONFIG_TAG)) {
+          cmd.getConfigurations().get(Configuration.HIVE_CONFIG_TAG).remove(Configuration.HIVE_METASTORE_PASSWORD_PROPERTY);
         }
-        LOG.debug("==> Finished.");
+        processHostRole(stage, cmd, commandsToStart, commandsToUpdate);
+      }
 
-        if (! configuration.getParallelStageExecution()) { // If disabled
-          return;
+      LOG.debug("==> Commands to start: {}", commandsToStart.size());
+      LOG.debug("==> Commands to update: {}", commandsToUpdate.size());
+
+      //Multimap is analog of Map<Object, List<Object>> but allows to avoid nested loop
+      ListMultimap<String, ServiceComponentHostEvent> eventMap = formEventMap(stage, commandsToStart);
+      List<ExecutionCommand> commandsToAbort = new ArrayList<ExecutionCommand>();
+      if (!eventMap.isEmpty()) {
+        LOG.debug("==> processing {} serviceComponentHostEvents...", eventMap.size());
+        Cluster cluster = fsmObject.getCluster(stage.getClusterName());
+        if (cluster != null) {
+          List<ServiceComponentHostEvent> failedEvents =
+            cluster.processServiceComponentHostEvents(eventMap);
+          LOG.debug("==> {} events failed.", failedEvents.size());
+
+          for (Iterator<ExecutionCommand> iterator = commandsToUpdate.iterator(); iterator.hasNext(); ) {
+            ExecutionCommand cmd = iterator.next();
+            for (ServiceComponentHostEvent event : failedEvents) {
+              if (StringUtils.equals(event.getHostName(), cmd.getHostname()) &&
+                StringUtils.equals(event.getServiceComponentName(), cmd.getRole())) {
+                iterator.remove();
+                commandsToAbort.add(cmd);
+                break;
+              }
+            }
+          }
+        } else {
+          LOG.warn("There was events to process but cluster {} not found", stage.getClusterName());
         }
+      }
 
-        if (exclusiveRequestIsGoing) {
-          // As a result, we will prevent any further stages from being executed
-          LOG.debug("Stage requires exclusive execution, skipping all executing any further stages");
-          break;
+      LOG.debug("==> Scheduling {} tasks...", commandsToUpdate.size());
+      db.bulkHostRoleScheduled(stage, commandsToUpdate);
+
+      if (commandsToAbort.size() > 0) { // Code branch may be a bit slow, but is extremely rarely used
+        LOG.debug("==> Aborting {} tasks...", commandsToAbort.size());
+        // Build a list of HostRoleCommands
+        List<Long> taskIds = new ArrayList<Long>();
+        for (ExecutionCommand command : commandsToAbort) {
+          taskIds.add(command.getTaskId());
         }
+        Collection<HostRoleCommand> hostRoleCommands = db.getTasks(taskIds);
+
+        cancelHostRoleCommands(hostRoleCommands, FAILED_TASK_ABORT_REASONING);
+        db.bulkAbortHostRole(stage, commandsToAbort);
       }
 
-      requestsInProgress.retainAll(runningRequestIds);
+      LOG.debug("==> Adding {} tasks to queue...", commandsToUpdate.size());
+      for (ExecutionCommand cmd : commandsToUpdate) {
+        // Do not queue up server actions; however if we encounter one, wake up the ServerActionExecutor
+        if (Role.AMBARI_SERVER_ACTION.name().equals(cmd.getRole())) {
+          serverActionExecutor.awake();
+        } else {
+          actionQueue.enqueue(cmd.getHostname(), cmd);
+        }
+      }
+      LOG.debug("==> Finished.");
 
+      stagesProcessedCount.incrementAndGet();
+      commandsScheduledCount.addAndGet(commandsToUpdate.size());
+      return true;
     } finally {
-      LOG.debug("Scheduler finished work.");
-      unitOfWork.end();
+      stageProcessingNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Gets the active requests which have been committed to the database. The
+   * others are still being persisted and cannot have their stages read yet.
+   *
+   * @return the ids of the committed active requests
+   */
+  private Set<Long> getCommittedActiveRequests() {
+    Set<Long> committedRequestIds = new HashSet<Long>();
+    if (reloadActiveRequests) {
+      return committedRequestIds;
+    }
+
+    for (Long requestId : activeRequests) {
+      if (null != db.getRequestEntity(requestId)) {
+        committedRequestIds.add(requestId);
+      }
+    }
+
+    return committedRequestIds;
+  }
+
+  /**
+   * Updates the active requests with the stages that were read from the
+   * database. Committed requests without any stage in progress are finished and
+   * are removed; requests of the stages in progress are added, which also
+   * covers the requests found when the set is rebuilt from the database.
+   *
+   * @param committedRequestIds
+   *          the active requests that were committed before the stages were
+   *          read
+   * @param stagesInProgress
+   *          the stages in progress
+   */
+  private void updateActiveRequests(Set<Long> committedRequestIds,
+      List<Stage> stagesInProgress) {
+    Set<Long> requestIdsInProgress = new HashSet<Long>();
+    for (Stage stage : stagesInProgress) {
+      requestIdsInProgress.add(stage.getRequestId());
     }
+
+    for (Long requestId : committedRequestIds) {
+      if (!requestIdsInProgress.contains(requestId)) {
+        activeRequests.remove(requestId);
+      }
+    }
+
+    activeRequests.addAll(requestIdsInProgress);
+    reloadActiveRequests = false;
   }
 
   /**
@@ -794,6 +1070,16 @@ class ActionScheduler implements Runnable {
 
     cmd.setClusterHostInfo(clusterHostInfo);
 
+    //The agents keep clusterHostInfo by hash, so it is sent once per stage
+    String clusterHostInfoHash = clusterHostInfoHashCache.getIfPresent(stagePk);
+
+    if (clusterHostInfoHash == null && s.getClusterHostInfo() != null) {
+      clusterHostInfoHash = DigestUtils.sha1Hex(s.getClusterHostInfo());
+      clusterHostInfoHashCache.put(stagePk, clusterHostInfoHash);
+    }
+
+    cmd.setClusterHostInfoHash(clusterHostInfoHash);
+
     //Try to get commandParams from cache and merge them with command-level parameters
     Map<String, String> commandParams = commandParamsStageCache.getIfPresent(stagePk);
 
@@ -836,22 +1122,29 @@ class ActionScheduler implements Runnable {
 
 
   /**
-   * Aborts all stages that belong to requests that are being cancelled
+   * Aborts all stages that belong to requests that are being cancelled.
+   * A request with a stage being processed by a worker is cancelled once the
+   * worker is done, otherwise the worker could queue and persist commands
+   * after they were aborted.
    */
   private void processCancelledRequestsList() {
     synchronized (requestsToBeCancelled) {
       // Now, cancel stages completely
-      for (Long requestId : requestsToBeCancelled) {
+      for (Iterator<Long> iterator = requestsToBeCancelled.iterator(); iterator.hasNext(); ) {
+        Long requestId = iterator.next();
+        if (processingRequests.containsKey(requestId)) {
+          LOG.debug("==> A stage of request {} is being processed, cancelling it later", requestId);
+          continue;
+        }
         List<HostRoleCommand> tasksToDequeue = db.getRequestTasks(requestId);
-        String reason = requestCancelReasons.get(requestId);
+        String reason = requestCancelReasons.remove(requestId);
         cancelHostRoleCommands(tasksToDequeue, reason);
         List<Stage> stages = db.getAllStages(requestId);
         for (Stage stage : stages) {
           abortOperationsForStage(stage);
         }
+        iterator.remove();
       }
-      requestsToBeCancelled.clear();
-      requestCancelReasons.clear();
     }
   }
 
@@ -940,6 +1233,89 @@ class ActionScheduler implements Runnable {
   }
 
 
+  // ----- ActionSchedulerMBean ---------------------------------------------
+
+  @Override
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  @Override
+  public int getActiveRequestCount() {
+    return activeRequests.size();
+  }
+
+  @Override
+  public int getProcessingRequestCount() {
+    return processingRequests.size();
+  }
+
+  @Override
+  public long getIterationCount() {
+    return iterationCount.get();
+  }
+
+  @Override
+  public double getAverageIterationTime() {
+    return average(iterationNanos.get(), iterationCount.get());
+  }
+
+  @Override
+  public long getProcessedStageCount() {
+    return stagesProcessedCount.get();
+  }
+
+  @Override
+  public double getAverageStageProcessingTime() {
+    return average(stageProcessingNanos.get(), stagesProcessedCount.get());
+  }
+
+  @Override
+  public long getScheduledCommandCount() {
+    return commandsScheduledCount.get();
+  }
+
+  /**
+   * @return the average of a total in nanoseconds, in milliseconds.
+   */
+  private static double average(long totalNanos, long count) {
+    if (count == 0) {
+      return 0;
+    }
+    return totalNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * Registers the scheduler with the platform MBean server.
+   */
+  private void registerMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(new StandardMBean(this,
+            ActionSchedulerMBean.class), name);
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register {} with JMX", MBEAN_NAME, exception);
+    }
+  }
+
+  /**
+   * Unregisters the scheduler from the platform MBean server.
+   */
+  private void unregisterMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (mBeanServer.isRegistered(name)) {
+        mBeanServer.unregisterMBean(name);
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to unregister {} from JMX", MBEAN_NAME, exception);
+    }
+  }
+
   public void setTaskTimeoutAdjustment(boolean val) {
     taskTimeoutAdjustment = val;
   }
@@ -948,6 +1324,23 @@ class ActionScheduler implements Runnable {
     return serverActionExecutor;
   }
 
+  /**
+   * Creates the daemon threads processing stages.
+   */
+  private static final class ActionSchedulerThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "ambari-action-scheduler-worker-"
+          + s_threadIdPool.getAndIncrement());
+
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   static class RoleStats {
     int numInProgress;
     int numQueued = 0;
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+/**
+ * The {@link ActionSchedulerMBean} exposes the throughput of the
+ * {@link ActionScheduler} over JMX.
+ */
+public interface ActionSchedulerMBean {
+
+  /**
+   * @return the number of threads processing the stages of different requests
+   *         concurrently, or 0 if stages are processed on the scheduler thread.
+   */
+  int getThreadCount();
+
+  /**
+   * @return the number of requests which may still have stages in progress.
+   */
+  int getActiveRequestCount();
+
+  /**
+   * @return the number of requests which have a stage being processed by a
+   *         worker thread.
+   */
+  int getProcessingRequestCount();
+
+  /**
+   * @return the number of scheduler iterations since the server started.
+   */
+  long getIterationCount();
+
+  /**
+   * @return the average duration of a scheduler iteration, in milliseconds.
+   */
+  double getAverageIterationTime();
+
+  /**
+   * @return the number of stages processed since the server started.
+   */
+  long getProcessedStageCount();
+
+  /**
+   * @return the average time spent processing a stage, in milliseconds.
+   */
+  double getAverageStageProcessingTime();
+
+  /**
+   * @return the number of commands scheduled since the server started.
+   */
+  long getScheduledCommandCount();
+}
@@ -66,16 +66,23 @@ public class ExecutionCommandWrapper {
         // global:version1:{a1:A1,b1:B1,d1:D1} + global:{a1:A2,c1:C1,DELETED_d1:x} ==>
         // global:{a1:A2,b1:B1,c1:C1}
         Clusters clusters = injector.getInstance(Clusters.class);
-        HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
-        Long clusterId = hostRoleCommandDAO.findByPK(
-            executionCommand.getTaskId()).getStage().getClusterId();
 
         try {
-          Cluster cluster = clusters.getClusterById(clusterId);
+          Cluster cluster;
+          if (executionCommand.getClusterName() != null) {
+            cluster = clusters.getCluster(executionCommand.getClusterName());
+          } else {
+            HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
+            Long clusterId = hostRoleCommandDAO.findByPK(
+                executionCommand.getTaskId()).getStage().getClusterId();
+            cluster = clusters.getClusterById(clusterId);
+          }
           ConfigHelper configHelper = injector.getInstance(ConfigHelper.class);
 
+          // The commands of a stage share their tags, so the configurations
+          // are resolved once and only the command's own ones are merged in
           Map<String, Map<String, String>> configProperties = configHelper
-            .getEffectiveConfigProperties(cluster,
+            .getCachedEffectiveConfigProperties(cluster,
               executionCommand.getConfigurationTags());
 
           // Apply the configurations saved with the Execution Cmd on top of
@@ -97,7 +104,7 @@ public class ExecutionCommandWrapper {
             }
           }
 
-          Map<String, Map<String, Map<String, String>>> configAttributes = configHelper.getEffectiveConfigAttributes(cluster,
+          Map<String, Map<String, Map<String, String>>> configAttributes = configHelper.getCachedEffectiveConfigAttributes(cluster,
               executionCommand.getConfigurationTags());
 
           for (Map.Entry<String, Map<String, Map<String, String>>> attributesOccurance : configAttributes.entrySet()) {
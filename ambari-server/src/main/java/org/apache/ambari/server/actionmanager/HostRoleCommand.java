@@ -20,6 +20,7 @@ package org.apache.ambari.server.actionmanager;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.state.ServiceComponentHostEvent;
@@ -58,6 +59,7 @@ public class HostRoleCommand {
   private String customCommandName;
   private ExecutionCommandWrapper executionCommandWrapper;
   private ExecutionCommandDAO executionCommandDAO;
+  private HostRoleCommandDAO hostRoleCommandDAO;
 
   public HostRoleCommand(String host, Role role,
                          ServiceComponentHostEvent event, RoleCommand command) {
@@ -81,11 +83,12 @@ public class HostRoleCommand {
     this.hostName = hostRoleCommandEntity.getHostName();
     role = hostRoleCommandEntity.getRole();
     status = hostRoleCommandEntity.getStatus();
-    stdout = hostRoleCommandEntity.getStdOut() != null ? new String(hostRoleCommandEntity.getStdOut()) : "";
-    stderr = hostRoleCommandEntity.getStdError() != null ? new String(hostRoleCommandEntity.getStdError()) : "";
+    // the output is read on demand, see getStdout()
+    stdout = null;
+    stderr = null;
     outputLog = hostRoleCommandEntity.getOutputLog();
     errorLog = hostRoleCommandEntity.getErrorLog();
-    structuredOut = hostRoleCommandEntity.getStructuredOut() != null ? new String(hostRoleCommandEntity.getStructuredOut()) : "";
+    structuredOut = null;
     exitCode = hostRoleCommandEntity.getExitcode();
     startTime = hostRoleCommandEntity.getStartTime();
     endTime = hostRoleCommandEntity.getEndTime() != null ? hostRoleCommandEntity.getEndTime() : -1L;
@@ -99,6 +102,7 @@ public class HostRoleCommand {
     //make use of lazy loading
 
     executionCommandDAO = injector.getInstance(ExecutionCommandDAO.class);
+    hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
   }
 
   HostRoleCommandEntity constructNewPersistenceEntity() {
@@ -106,10 +110,10 @@ public class HostRoleCommand {
     hostRoleCommandEntity.setHostName(hostName);
     hostRoleCommandEntity.setRole(role);
     hostRoleCommandEntity.setStatus(status);
-    hostRoleCommandEntity.setStdError(stderr.getBytes());
+    hostRoleCommandEntity.setStdError(getStderr().getBytes());
     hostRoleCommandEntity.setExitcode(exitCode);
-    hostRoleCommandEntity.setStdOut(stdout.getBytes());
-    hostRoleCommandEntity.setStructuredOut(structuredOut.getBytes());
+    hostRoleCommandEntity.setStdOut(getStdout().getBytes());
+    hostRoleCommandEntity.setStructuredOut(getStructuredOut().getBytes());
     hostRoleCommandEntity.setStartTime(startTime);
     hostRoleCommandEntity.setEndTime(endTime);
     hostRoleCommandEntity.setLastAttemptTime(lastAttemptTime);
@@ -180,7 +184,17 @@ public class HostRoleCommand {
     return event;
   }
 
+  /**
+   * Gets the standard output of the task. The output of a task read from the
+   * database is not kept in memory; it is read again on every call until it
+   * is set.
+   *
+   * @return the output (never {@code null}).
+   */
   public String getStdout() {
+    if (null == stdout) {
+      return asString(hostRoleCommandDAO.findStdOut(taskId));
+    }
     return stdout;
   }
 
@@ -188,7 +202,16 @@ public class HostRoleCommand {
     this.stdout = stdout;
   }
 
+  /**
+   * Gets the standard error of the task, read on demand like
+   * {@link #getStdout()}.
+   *
+   * @return the output (never {@code null}).
+   */
   public String getStderr() {
+    if (null == stderr) {
+      return asString(hostRoleCommandDAO.findStdError(taskId));
+    }
     return stderr;
   }
 
@@ -244,10 +267,37 @@ public class HostRoleCommand {
     return retryAllowed;
   }
 
+  /**
+   * Gets the structured output of the task, read on demand like
+   * {@link #getStdout()}.
+   *
+   * @return the output (never {@code null}).
+   */
   public String getStructuredOut() {
+    if (null == structuredOut) {
+      return asString(hostRoleCommandDAO.findStructuredOut(taskId));
+    }
     return structuredOut;
   }
 
+  /**
+   * Gets the number of characters of output held in memory. Output which is
+   * read from the database on demand is not counted.
+   *
+   * @return the length of the output held by this task
+   */
+  long getHeldOutputLength() {
+    return length(stdout) + length(stderr) + length(structuredOut);
+  }
+
+  private static long length(String value) {
+    return null == value ? 0L : value.length();
+  }
+
+  private static String asString(byte[] output) {
+    return null == output ? "" : new String(output);
+  }
+
   public void setStructuredOut(String structuredOut) {
     this.structuredOut = structuredOut;
   }
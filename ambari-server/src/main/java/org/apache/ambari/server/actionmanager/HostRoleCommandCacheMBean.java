@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+/**
+ * The {@link HostRoleCommandCacheMBean} exposes the effectiveness of the
+ * caches of finished tasks and of finished requests' status counts over JMX.
+ */
+public interface HostRoleCommandCacheMBean {
+
+  /**
+   * @return the number of finished tasks in the cache.
+   */
+  long getSize();
+
+  /**
+   * @return the number of task lookups answered by the cache.
+   */
+  long getHitCount();
+
+  /**
+   * @return the number of task lookups which read the database.
+   */
+  long getMissCount();
+
+  /**
+   * @return the ratio of task lookups answered by the cache, or 1 if there
+   *         were no lookups.
+   */
+  double getHitRate();
+
+  /**
+   * @return the number of tasks evicted because the cache was full or the
+   *         tasks were not used for a while.
+   */
+  long getEvictionCount();
+
+  /**
+   * @return the ratio of request status count lookups answered by the cache,
+   *         or 1 if there were no lookups.
+   */
+  double getStatusCountsHitRate();
+
+  /**
+   * @return the number of request status counts evicted from the cache.
+   */
+  long getStatusCountsEvictionCount();
+}
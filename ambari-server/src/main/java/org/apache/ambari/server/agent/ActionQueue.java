@@ -17,9 +17,7 @@
  */
 package org.apache.ambari.server.agent;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,13 +35,20 @@ public class ActionQueue {
 
   private static Logger LOG = LoggerFactory.getLogger(ActionQueue.class);
 
-  final ConcurrentMap<String, Queue<AgentCommand>> hostQueues;
+  final ConcurrentMap<String, HostCommandQueue> hostQueues;
+
+  /**
+   * Listeners waiting for the next command of a host, see
+   * {@link #addCommandListener(String, CommandListener)}.
+   */
+  private final ConcurrentMap<String, Queue<CommandListener>> hostListeners;
 
   public ActionQueue() {
-    hostQueues = new ConcurrentHashMap<String, Queue<AgentCommand>>();
+    hostQueues = new ConcurrentHashMap<String, HostCommandQueue>();
+    hostListeners = new ConcurrentHashMap<String, Queue<CommandListener>>();
   }
 
-  private Queue<AgentCommand> getQueue(String hostname) {
+  private HostCommandQueue getQueue(String hostname) {
     return hostQueues.get(hostname);
   }
 
@@ -53,11 +58,11 @@ public class ActionQueue {
    * @param cmd - command to add to queue
    */
   public void enqueue(String hostname, AgentCommand cmd) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostCommandQueue q = getQueue(hostname);
 
     if (q == null) {
       //try to add new queue to map if not found
-      q = hostQueues.putIfAbsent(hostname, new ConcurrentLinkedQueue<AgentCommand>());
+      q = hostQueues.putIfAbsent(hostname, new HostCommandQueue());
       if (q == null) {
         //null means that new queue was added to map, get it
         q = getQueue(hostname);
@@ -66,6 +71,85 @@ public class ActionQueue {
     }
 
     q.add(cmd);
+
+    // status commands are not worth an early heartbeat
+    if (cmd.getCommandType() != AgentCommandType.STATUS_COMMAND) {
+      notifyCommandListeners(hostname);
+    }
+  }
+
+  /**
+   * Registers a listener that is called once, from the thread that enqueues
+   * the next command other than a status command for the given host.
+   *
+   * @param hostname the host to wait for
+   * @param listener the listener to call
+   * @return {@code true} if the listener was registered, {@code false} if
+   *         {@link #hasPendingCommands(String)} already, in which case the
+   *         listener may or may not be called
+   */
+  public boolean addCommandListener(String hostname, CommandListener listener) {
+    Queue<CommandListener> listeners = hostListeners.get(hostname);
+    if (listeners == null) {
+      listeners = new ConcurrentLinkedQueue<CommandListener>();
+      Queue<CommandListener> existing = hostListeners.putIfAbsent(hostname, listeners);
+      if (existing != null) {
+        listeners = existing;
+      }
+    }
+
+    listeners.add(listener);
+
+    // a command enqueued before the listener was added would not notify it
+    if (hasPendingCommands(hostname)) {
+      listeners.remove(listener);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Determine whether commands other than status commands are queued for
+   * the given host.
+   *
+   * @param hostname the host
+   * @return {@code true} if the next heartbeat of the host delivers commands
+   */
+  public boolean hasPendingCommands(String hostname) {
+    HostCommandQueue q = getQueue(hostname);
+    if (q == null) {
+      return false;
+    }
+    return q.size() > q.size(AgentCommandType.STATUS_COMMAND);
+  }
+
+  /**
+   * Removes a listener that is no longer waiting, e.g. on timeout.
+   *
+   * @param hostname the host the listener waits for
+   * @param listener the listener to remove
+   */
+  public void removeCommandListener(String hostname, CommandListener listener) {
+    Queue<CommandListener> listeners = hostListeners.get(hostname);
+    if (listeners != null) {
+      listeners.remove(listener);
+    }
+  }
+
+  private void notifyCommandListeners(String hostname) {
+    Queue<CommandListener> listeners = hostListeners.get(hostname);
+    if (listeners == null) {
+      return;
+    }
+
+    CommandListener listener;
+    while ((listener = listeners.poll()) != null) {
+      try {
+        listener.onCommandsQueued(hostname);
+      } catch (RuntimeException e) {
+        LOG.warn("Unable to notify command listener of host " + hostname, e);
+      }
+    }
   }
 
   /**
@@ -74,7 +158,7 @@ public class ActionQueue {
    * @return
    */
   public AgentCommand dequeue(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostCommandQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
@@ -98,24 +182,12 @@ public class ActionQueue {
       return Collections.emptyList();
     }
 
-    Queue<AgentCommand> queue = getQueue(hostname);
+    HostCommandQueue queue = getQueue(hostname);
     if (null == queue) {
       return null;
     }
 
-    List<AgentCommand> removedCommands = new ArrayList<AgentCommand>(
-        queue.size());
-
-    Iterator<AgentCommand> iterator = queue.iterator();
-    while (iterator.hasNext()) {
-      AgentCommand command = iterator.next();
-      if (command.getCommandType() == commandType) {
-        removedCommands.add(command);
-        iterator.remove();
-      }
-    }
-
-    return removedCommands;
+    return queue.remove(commandType);
   }
 
   /**
@@ -126,52 +198,69 @@ public class ActionQueue {
    * @return
    */
   public AgentCommand dequeue(String hostname, String commandId) {
-    Queue<AgentCommand> q = getQueue(hostname);
-    if (q == null) {
+    HostCommandQueue q = getQueue(hostname);
+    if (q == null || commandId == null) {
       return null;
     }
-    if (q.isEmpty()) {
-      return null;
-    } else {
-      AgentCommand c = null;
-      for (Iterator<AgentCommand> it = q.iterator(); it.hasNext();) {
-        AgentCommand ac = it.next();
-        if (ac instanceof ExecutionCommand && ((ExecutionCommand) ac)
-          .getCommandId().equals(commandId)) {
-          c = ac;
-          it.remove();
-          break;
-        }
-      }
-      return c;
-    }
+    return q.remove(commandId);
   }
 
   public int size(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostCommandQueue q = getQueue(hostname);
     if (q == null) {
       return 0;
     }
-      return q.size();
+    return q.size();
+  }
+
+  /**
+   * Get the number of commands of the given type queued for a host.
+   *
+   * @param hostname the host
+   * @param commandType the type of command
+   * @return the number of queued commands
+   */
+  public int size(String hostname, AgentCommandType commandType) {
+    HostCommandQueue q = getQueue(hostname);
+    if (q == null) {
+      return 0;
+    }
+    return q.size(commandType);
+  }
+
+  /**
+   * Get the time the oldest command queued for a host has been waiting to
+   * be picked up by a heartbeat.
+   *
+   * @param hostname the host
+   * @return the age in milliseconds, or 0 if no commands are queued
+   */
+  public long getOldestCommandAge(String hostname) {
+    HostCommandQueue q = getQueue(hostname);
+    if (q == null) {
+      return 0L;
+    }
+    return q.getOldestAge(System.currentTimeMillis());
   }
 
   public List<AgentCommand> dequeueAll(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostCommandQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
 
-    List<AgentCommand> l = new ArrayList<AgentCommand>();
-
-    AgentCommand command;
-    do {
-      //get commands from queue until empty
-      command = q.poll();
-      if (command != null) {
-        l.add(command);
-      }
-    } while (command != null);
+    return q.removeAll();
+  }
 
-    return l;
+  /**
+   * Callback for hosts waiting for commands.
+   */
+  public interface CommandListener {
+    /**
+     * Called after a command was queued for the host.
+     *
+     * @param hostname the host
+     */
+    void onCommandsQueued(String hostname);
   }
 }
@@ -67,6 +67,14 @@ public class ExecutionCommand extends AgentCommand {
   private Map<String, Set<String>> clusterHostInfo =
       new HashMap<String, Set<String>>();
 
+  /**
+   * The hash of the stage's {@link #clusterHostInfo}. The map is left out of
+   * the command when the agent reports that it already holds the map with
+   * this hash.
+   */
+  @SerializedName("clusterHostInfoHash")
+  private String clusterHostInfoHash;
+
   @SerializedName("configurations")
   private Map<String, Map<String, String>> configurations;
 
@@ -190,6 +198,14 @@ public class ExecutionCommand extends AgentCommand {
     this.clusterHostInfo = clusterHostInfo;
   }
 
+  public String getClusterHostInfoHash() {
+    return clusterHostInfoHash;
+  }
+
+  public void setClusterHostInfoHash(String clusterHostInfoHash) {
+    this.clusterHostInfoHash = clusterHostInfoHash;
+  }
+
   public Map<String, Map<String, String>> getConfigurations() {
     return configurations;
   }
@@ -37,6 +37,19 @@ public class HeartBeat {
   private String hostname;
   List<CommandReport> reports = new ArrayList<CommandReport>();
   List<ComponentStatus> componentStatus = new ArrayList<ComponentStatus>();
+
+  /**
+   * {@code true} when {@link #componentStatus} only holds the components whose
+   * status changed since the last acknowledged heartbeat.
+   */
+  private boolean componentStatusDelta = false;
+
+  /**
+   * The hashes of the clusterHostInfo maps that the agent keeps, which do not
+   * need to be sent with its execution commands, or {@code null} if the agent
+   * does not keep them.
+   */
+  private List<String> clusterHostInfoHashes = null;
   private List<DiskInfo> mounts = new ArrayList<DiskInfo>();
   HostStatus nodeStatus;
   private AgentEnv agentEnv = null;
@@ -102,6 +115,36 @@ public class HeartBeat {
     this.componentStatus = componentStatus;
   }
 
+  @JsonProperty("componentStatusDelta")
+  public boolean isComponentStatusDelta() {
+    return componentStatusDelta;
+  }
+
+  @JsonProperty("componentStatusDelta")
+  public void setComponentStatusDelta(boolean componentStatusDelta) {
+    this.componentStatusDelta = componentStatusDelta;
+  }
+
+  @JsonProperty("clusterHostInfoHashes")
+  public List<String> getClusterHostInfoHashes() {
+    return clusterHostInfoHashes;
+  }
+
+  @JsonProperty("clusterHostInfoHashes")
+  public void setClusterHostInfoHashes(List<String> clusterHostInfoHashes) {
+    this.clusterHostInfoHashes = clusterHostInfoHashes;
+  }
+
+  /**
+   * Gets whether the agent reported the status of its components, even if
+   * none of them changed.
+   *
+   * @return {@code true} if the heartbeat carries component status reports.
+   */
+  public boolean hasComponentStatus() {
+    return componentStatusDelta || !componentStatus.isEmpty();
+  }
+
   @JsonProperty("mounts")
   public List<DiskInfo> getMounts() {
     return mounts;
@@ -128,6 +171,7 @@ public class HeartBeat {
             ", hostname='" + hostname + '\'' +
             ", reports=" + reports +
             ", componentStatus=" + componentStatus +
+            ", componentStatusDelta=" + componentStatusDelta +
             ", nodeStatus=" + nodeStatus +
             '}';
   }
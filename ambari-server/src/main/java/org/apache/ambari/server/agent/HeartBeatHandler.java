@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,8 @@ import org.apache.ambari.server.ServiceNotFoundException;
 import org.apache.ambari.server.actionmanager.ActionManager;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.agent.HeartbeatProcessor.HeartbeatTask;
+import org.apache.ambari.server.agent.HeartbeatProcessor.Stage;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
@@ -104,6 +107,7 @@ import com.google.gson.annotations.SerializedName;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
 
 
 /**
@@ -162,10 +166,19 @@ public class HeartBeatHandler {
   @Inject
   private KerberosPrincipalHostDAO kerberosPrincipalHostDAO;
 
+  @Inject
+  private UnitOfWork unitOfWork;
+
   private Map<String, Long> hostResponseIds = new ConcurrentHashMap<String, Long>();
 
   private Map<String, HeartBeatResponse> hostResponses = new ConcurrentHashMap<String, HeartBeatResponse>();
 
+  /**
+   * Processes the reports of heartbeats, on the request thread or in the
+   * background.
+   */
+  private final HeartbeatProcessor heartbeatProcessor;
+
   @Inject
   public HeartBeatHandler(Clusters fsm, ActionQueue aq, ActionManager am,
                           Injector injector) {
@@ -174,6 +187,11 @@ public class HeartBeatHandler {
     actionManager = am;
     heartbeatMonitor = new HeartbeatMonitor(fsm, aq, am, 60000, injector);
     injector.injectMembers(this);
+
+    heartbeatProcessor = new HeartbeatProcessor(
+        config.getAgentHeartbeatProcessingThreads(),
+        config.getAgentHeartbeatProcessingQueueSize(),
+        unitOfWork);
   }
 
   public void start() {
@@ -184,14 +202,15 @@ public class HeartBeatHandler {
     this.heartbeatMonitor = heartbeatMonitor;
   }
 
-  public HeartBeatResponse handleHeartBeat(HeartBeat heartbeat)
+  public HeartBeatResponse handleHeartBeat(final HeartBeat heartbeat)
       throws AmbariException {
-    long now = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    final long now = System.currentTimeMillis();
     if(heartbeat.getAgentEnv() != null && heartbeat.getAgentEnv().getHostHealth() != null) {
       heartbeat.getAgentEnv().getHostHealth().setServerTimeStampAtReporting(now);
     }
 
-    String hostname = heartbeat.getHostname();
+    final String hostname = heartbeat.getHostname();
     Long currentResponseId = hostResponseIds.get(hostname);
     HeartBeatResponse response;
 
@@ -228,8 +247,9 @@ public class HeartBeatHandler {
     hostResponseIds.put(hostname, currentResponseId);
     hostResponses.put(hostname, response);
 
-    // If the host is waiting for component status updates, notify it
-    if (heartbeat.componentStatus.size() > 0
+    // If the host is waiting for component status updates, notify it; a delta
+    // without changes still means the agent reported its components
+    if (heartbeat.hasComponentStatus()
         && hostObject.getState().equals(HostState.WAITING_FOR_HOST_STATUS_UPDATES)) {
       try {
         LOG.debug("Got component status updates");
@@ -253,26 +273,60 @@ public class HeartBeatHandler {
       return createRegisterCommand();
     }
 
+    heartbeatProcessor.getTimer(Stage.ACCEPT).recordSince(startNanos);
+
+    // Examine the reports of the heartbeat, in the background if configured;
+    // the reports of a host are always processed in order
+    heartbeatProcessor.submit(hostname, new HeartbeatTask() {
+      @Override
+      public void process() throws AmbariException {
+        processReports(heartbeat, hostname, now);
+      }
+    });
+
+    // Send commands if node is active
+    startNanos = System.nanoTime();
+    if (hostObject.getState().equals(HostState.HEALTHY)) {
+      sendCommands(hostname, response, heartbeat.getClusterHostInfoHashes());
+      annotateResponse(hostname, response);
+    }
+    heartbeatProcessor.getTimer(Stage.COMMANDS).recordSince(startNanos);
+
+    return response;
+  }
+
+  /**
+   * Processes the command reports, status reports and alerts of a heartbeat
+   * and calculates the host status, timing every stage.
+   *
+   * @param heartbeat
+   *          the heartbeat to process.
+   * @param hostname
+   *          the host that the heartbeat is for.
+   * @param now
+   *          the time the heartbeat was received.
+   * @throws AmbariException
+   */
+  private void processReports(HeartBeat heartbeat, String hostname, long now)
+      throws AmbariException {
+    long startNanos = System.nanoTime();
+
     // Examine heartbeat for command reports
     processCommandReports(heartbeat, hostname, clusterFsm, now);
+    startNanos = heartbeatProcessor.getTimer(Stage.COMMAND_REPORTS).recordSince(startNanos);
 
     // Examine heartbeart for component live status reports
     processStatusReports(heartbeat, hostname, clusterFsm);
+    startNanos = heartbeatProcessor.getTimer(Stage.STATUS_REPORTS).recordSince(startNanos);
 
     // Calculate host status
     // NOTE: This step must be after processing command/status reports
     processHostStatus(heartbeat, hostname);
+    startNanos = heartbeatProcessor.getTimer(Stage.HOST_STATUS).recordSince(startNanos);
 
     // Example heartbeat for alerts from the host or its components
     processAlerts(heartbeat, hostname);
-
-    // Send commands if node is active
-    if (hostObject.getState().equals(HostState.HEALTHY)) {
-      sendCommands(hostname, response);
-      annotateResponse(hostname, response);
-    }
-
-    return response;
+    heartbeatProcessor.getTimer(Stage.ALERTS).recordSince(startNanos);
   }
 
   /**
@@ -632,8 +686,9 @@ public class HeartBeatHandler {
                   || prevState.equals(State.STARTING)
                   || prevState.equals(State.STOPPING)
                   || prevState.equals(State.UNKNOWN)) {
-                scHost.setState(liveState); //TODO direct status set breaks state machine sometimes !!!
+                // an unchanged state is not written again
                 if (!prevState.equals(liveState)) {
+                  scHost.setState(liveState); //TODO direct status set breaks state machine sometimes !!!
                   LOG.info("State of service component " + componentName
                       + " of service " + status.getServiceName()
                       + " of cluster " + status.getClusterName()
@@ -662,7 +717,10 @@ public class HeartBeatHandler {
               }
 
               if (null != status.getStackVersion() && !status.getStackVersion().isEmpty()) {
-                scHost.setStackVersion(gson.fromJson(status.getStackVersion(), StackId.class));
+                StackId stackVersion = gson.fromJson(status.getStackVersion(), StackId.class);
+                if (!stackVersion.equals(scHost.getStackVersion())) {
+                  scHost.setStackVersion(stackVersion);
+                }
               }
 
               if (null != status.getConfigTags()) {
@@ -765,11 +823,22 @@ public class HeartBeatHandler {
   }
 
   /**
-   * Adds commands from action queue to a heartbeat response.
+   * Adds commands from action queue to a heartbeat response, leaving out the
+   * clusterHostInfo maps that the agent already keeps.
+   *
+   * @param agentHashes
+   *          the hashes of the clusterHostInfo maps reported by the agent, or
+   *          {@code null} if the agent does not keep them.
    */
-  protected void sendCommands(String hostname, HeartBeatResponse response)
-      throws AmbariException {
+  protected void sendCommands(String hostname, HeartBeatResponse response,
+      Collection<String> agentHashes) throws AmbariException {
     List<AgentCommand> cmds = actionQueue.dequeueAll(hostname);
+    // the agent also keeps the maps sent earlier in the same response
+    Set<String> sentHashes = new HashSet<String>();
+    if (null != agentHashes) {
+      sentHashes.addAll(agentHashes);
+    }
+
     if (cmds != null && !cmds.isEmpty()) {
       for (AgentCommand ac : cmds) {
         try {
@@ -795,6 +864,11 @@ public class HeartBeatHandler {
                 }
               }
             }
+            String clusterHostInfoHash = ec.getClusterHostInfoHash();
+            if (null != agentHashes && null != clusterHostInfoHash
+                && !sentHashes.add(clusterHostInfoHash)) {
+              ec.setClusterHostInfo(new HashMap<String, Set<String>>());
+            }
             response.addExecutionCommand((ExecutionCommand) ac);
             break;
           }
@@ -930,6 +1004,7 @@ public class HeartBeatHandler {
     response.setStatusCommands(cmds);
 
     response.setResponseStatus(RegistrationStatus.OK);
+    response.setLongPollCommands(config.isAgentCommandsLongPollEnabled());
 
     // force the registering agent host to receive its list of alert definitions
     List<AlertDefinitionCommand> alertDefinitionCommands = getRegistrationAlertDefinitionCommands(hostname);
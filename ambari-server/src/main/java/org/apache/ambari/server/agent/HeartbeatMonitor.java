@@ -264,7 +264,7 @@ public class HeartbeatMonitor implements Runnable {
         }
 
         Map<String, Map<String, String>> properties = configHelper
-                .getEffectiveConfigProperties(cluster, configTags);
+                .getCachedEffectiveConfigProperties(cluster, configTags);
 
         if (!properties.isEmpty()) {
           for (Map<String, String> propertyMap : properties.values()) {
@@ -278,7 +278,7 @@ public class HeartbeatMonitor implements Runnable {
         configHelper.cloneAttributesMap(clusterConfig.getPropertiesAttributes(), attrs);
 
         Map<String, Map<String, Map<String, String>>> attributes = configHelper
-            .getEffectiveConfigAttributes(cluster, configTags);
+            .getCachedEffectiveConfigAttributes(cluster, configTags);
         for (Map<String, Map<String, String>> attributesMap : attributes.values()) {
           configHelper.cloneAttributesMap(attributesMap, attrs);
         }
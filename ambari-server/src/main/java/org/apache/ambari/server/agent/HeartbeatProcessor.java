@@ -0,0 +1,334 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.ambari.server.AmbariException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * The {@link HeartbeatProcessor} processes the reports of heartbeats after
+ * the agent has been answered.
+ * <p/>
+ * Heartbeats are partitioned by host name over single threaded executors, so
+ * the heartbeats of one host are processed in the order they were received
+ * while different hosts are processed in parallel. When the queue of a
+ * partition is full, the request thread waits for room; it never processes
+ * the heartbeat itself, since that could reorder the reports of a host.
+ * <p/>
+ * With no threads, heartbeats are processed on the request thread and
+ * failures are thrown to the caller, as they were before reports were
+ * processed in the background. On the processing threads, each heartbeat is
+ * processed in its own unit of work, like the request thread does, so that
+ * its reports share one persistence context.
+ * <p/>
+ * The time heartbeats spend in every {@link Stage} is kept in a histogram.
+ * The processor and its stages are exposed over JMX under
+ * {@code org.apache.ambari.server:type=HeartbeatProcessor}.
+ */
+class HeartbeatProcessor implements HeartbeatProcessorMBean {
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
+
+  /**
+   * The JMX name of the processor.
+   */
+  private static final String MBEAN_NAME = "org.apache.ambari.server:type=HeartbeatProcessor";
+
+  /**
+   * The stages of heartbeat processing.
+   */
+  enum Stage {
+    /**
+     * Validating the heartbeat and updating the host state, on the request
+     * thread.
+     */
+    ACCEPT("accept"),
+
+    /**
+     * Waiting for a processing thread.
+     */
+    QUEUE("queue"),
+
+    /**
+     * Processing the command reports.
+     */
+    COMMAND_REPORTS("commandReports"),
+
+    /**
+     * Processing the component status reports.
+     */
+    STATUS_REPORTS("statusReports"),
+
+    /**
+     * Calculating the host status.
+     */
+    HOST_STATUS("hostStatus"),
+
+    /**
+     * Publishing the alerts.
+     */
+    ALERTS("alerts"),
+
+    /**
+     * Adding the queued commands to the response, on the request thread.
+     */
+    COMMANDS("commands");
+
+    private final String name;
+
+    private Stage(String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return the name of the stage, as exposed over JMX.
+     */
+    String getName() {
+      return name;
+    }
+  }
+
+  /**
+   * The reports of one heartbeat.
+   */
+  interface HeartbeatTask {
+    /**
+     * Processes the reports.
+     *
+     * @throws AmbariException
+     *           if the reports could not be processed.
+     */
+    void process() throws AmbariException;
+  }
+
+  private final ThreadPoolExecutor[] partitions;
+
+  /**
+   * The unit of work of each heartbeat processed on a processing thread.
+   */
+  private final UnitOfWork unitOfWork;
+
+  private final Map<Stage, HeartbeatStageTimer> timers =
+      new EnumMap<Stage, HeartbeatStageTimer>(Stage.class);
+
+  private final AtomicLong processedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param threadCount
+   *          the number of partitions, each processed by one thread; 0 to
+   *          process heartbeats on the calling thread.
+   * @param queueCapacity
+   *          the number of heartbeats each partition can queue.
+   * @param unitOfWork
+   *          the unit of work of the heartbeats processed on the threads of
+   *          the processor.
+   */
+  HeartbeatProcessor(int threadCount, int queueCapacity, UnitOfWork unitOfWork) {
+    this.unitOfWork = unitOfWork;
+    partitions = new ThreadPoolExecutor[Math.max(0, threadCount)];
+
+    ThreadFactory threadFactory = new HeartbeatProcessorThreadFactory();
+    RejectedExecutionHandler waitForRoom = new WaitForRoomPolicy();
+    for (int i = 0; i < partitions.length; i++) {
+      partitions[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(Math.max(1, queueCapacity)), threadFactory,
+          waitForRoom);
+    }
+
+    for (Stage stage : Stage.values()) {
+      timers.put(stage, new HeartbeatStageTimer(stage.getName()));
+    }
+
+    registerMBeans();
+  }
+
+  /**
+   * Gets whether heartbeats are processed on threads of the processor.
+   *
+   * @return {@code true} if {@link #submit(String, HeartbeatTask)} returns
+   *         before the heartbeat is processed.
+   */
+  boolean isAsynchronous() {
+    return partitions.length > 0;
+  }
+
+  /**
+   * Gets the timer of a stage.
+   *
+   * @param stage
+   *          the stage.
+   * @return the timer (never {@code null}).
+   */
+  HeartbeatStageTimer getTimer(Stage stage) {
+    return timers.get(stage);
+  }
+
+  /**
+   * Processes the reports of a heartbeat after the heartbeats of the same host
+   * which were submitted before.
+   *
+   * @param hostname
+   *          the host that sent the heartbeat.
+   * @param task
+   *          the reports to process.
+   * @throws AmbariException
+   *           if the reports were processed on the calling thread and failed.
+   */
+  void submit(final String hostname, final HeartbeatTask task) throws AmbariException {
+    if (!isAsynchronous()) {
+      try {
+        task.process();
+      } catch (AmbariException exception) {
+        failedCount.incrementAndGet();
+        throw exception;
+      } finally {
+        processedCount.incrementAndGet();
+      }
+      return;
+    }
+
+    final long queuedNanos = System.nanoTime();
+    int partition = (hostname.hashCode() & Integer.MAX_VALUE) % partitions.length;
+    partitions[partition].execute(new Runnable() {
+      @Override
+      public void run() {
+        getTimer(Stage.QUEUE).recordSince(queuedNanos);
+        try {
+          unitOfWork.begin();
+          task.process();
+        } catch (Exception exception) {
+          failedCount.incrementAndGet();
+          LOG.error("Unable to process the heartbeat of {}", hostname, exception);
+        } finally {
+          unitOfWork.end();
+          processedCount.incrementAndGet();
+        }
+      }
+    });
+  }
+
+  // ----- HeartbeatProcessorMBean -------------------------------------------
+
+  @Override
+  public int getThreadCount() {
+    return partitions.length;
+  }
+
+  @Override
+  public int getQueuedHeartbeatCount() {
+    int count = 0;
+    for (ThreadPoolExecutor partition : partitions) {
+      count += partition.getQueue().size();
+    }
+    return count;
+  }
+
+  @Override
+  public long getProcessedHeartbeatCount() {
+    return processedCount.get();
+  }
+
+  @Override
+  public long getFailedHeartbeatCount() {
+    return failedCount.get();
+  }
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Registers the processor and its stages with the platform MBean server.
+   * The first processor is the one exposed.
+   */
+  private void registerMBeans() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (mBeanServer.isRegistered(name)) {
+        return;
+      }
+
+      mBeanServer.registerMBean(new StandardMBean(this,
+          HeartbeatProcessorMBean.class), name);
+
+      for (HeartbeatStageTimer timer : timers.values()) {
+        mBeanServer.registerMBean(new StandardMBean(timer,
+            HeartbeatStageMBean.class), new ObjectName(MBEAN_NAME + ",stage="
+            + timer.getStage()));
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register {} with JMX", MBEAN_NAME, exception);
+    }
+  }
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * Makes the request thread wait for room in the queue of a partition.
+   */
+  private static final class WaitForRoomPolicy implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      try {
+        executor.getQueue().put(runnable);
+      } catch (InterruptedException interruptedException) {
+        Thread.currentThread().interrupt();
+        LOG.warn("Interrupted while waiting to queue a heartbeat; it was not processed");
+      }
+    }
+  }
+
+  /**
+   * Creates the daemon threads processing heartbeats.
+   */
+  private static final class HeartbeatProcessorThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger s_threadIdPool = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "ambari-heartbeat-processor-"
+          + s_threadIdPool.getAndIncrement());
+
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
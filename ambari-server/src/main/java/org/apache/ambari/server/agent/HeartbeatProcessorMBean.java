@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+/**
+ * The {@link HeartbeatProcessorMBean} exposes the state of the
+ * {@link HeartbeatProcessor} over JMX.
+ */
+public interface HeartbeatProcessorMBean {
+
+  /**
+   * @return the number of threads processing heartbeat reports, or 0 if
+   *         reports are processed on the request threads.
+   */
+  int getThreadCount();
+
+  /**
+   * @return the number of heartbeats waiting to be processed.
+   */
+  int getQueuedHeartbeatCount();
+
+  /**
+   * @return the number of heartbeats processed since the server started.
+   */
+  long getProcessedHeartbeatCount();
+
+  /**
+   * @return the number of heartbeats whose processing failed since the server
+   *         started.
+   */
+  long getFailedHeartbeatCount();
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+/**
+ * The {@link HeartbeatStageMBean} exposes the latency histogram of one stage
+ * of heartbeat processing over JMX. Latencies are in milliseconds;
+ * percentiles are the upper bound of the histogram bucket they fall into.
+ */
+public interface HeartbeatStageMBean {
+
+  /**
+   * @return the name of the stage.
+   */
+  String getStage();
+
+  /**
+   * @return the number of heartbeats timed.
+   */
+  long getCount();
+
+  /**
+   * @return the average time a heartbeat spent in the stage.
+   */
+  double getAverageLatency();
+
+  /**
+   * @return the longest time a heartbeat spent in the stage.
+   */
+  double getMaxLatency();
+
+  /**
+   * @return the median time a heartbeat spent in the stage.
+   */
+  double get50thPercentileLatency();
+
+  /**
+   * @return the 95th percentile of the time heartbeats spent in the stage.
+   */
+  double get95thPercentileLatency();
+
+  /**
+   * @return the 99th percentile of the time heartbeats spent in the stage.
+   */
+  double get99thPercentileLatency();
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link HeartbeatStageTimer} keeps a histogram of the time heartbeats
+ * spend in one stage of processing. The buckets are fixed, so recording a
+ * time is a few atomic increments and the memory used does not grow.
+ */
+class HeartbeatStageTimer implements HeartbeatStageMBean {
+
+  /**
+   * The upper bounds, in milliseconds, of all buckets but the last one.
+   */
+  private static final double[] BUCKET_BOUNDS = { 1, 2, 5, 10, 25, 50, 100,
+      250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final String stage;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private volatile long maxNanos = 0L;
+
+  /**
+   * Constructor.
+   *
+   * @param stage
+   *          the name of the stage.
+   */
+  HeartbeatStageTimer(String stage) {
+    this.stage = stage;
+  }
+
+  /**
+   * Records the time a heartbeat spent in the stage.
+   *
+   * @param nanos
+   *          the time, in nanoseconds.
+   */
+  void record(long nanos) {
+    double millis = nanos / NANOS_PER_MILLI;
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) {
+      bucket++;
+    }
+
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    if (nanos > maxNanos) {
+      maxNanos = nanos;
+    }
+  }
+
+  /**
+   * Records the time elapsed since the given start.
+   *
+   * @param startNanos
+   *          the start, as returned by {@link System#nanoTime()}.
+   * @return the current {@link System#nanoTime()}, to start the next stage.
+   */
+  long recordSince(long startNanos) {
+    long now = System.nanoTime();
+    record(now - startNanos);
+    return now;
+  }
+
+  @Override
+  public String getStage() {
+    return stage;
+  }
+
+  @Override
+  public long getCount() {
+    return count.get();
+  }
+
+  @Override
+  public double getAverageLatency() {
+    long total = count.get();
+    return total == 0 ? 0.0 : totalNanos.get() / NANOS_PER_MILLI / total;
+  }
+
+  @Override
+  public double getMaxLatency() {
+    return maxNanos / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double get50thPercentileLatency() {
+    return getPercentile(0.50);
+  }
+
+  @Override
+  public double get95thPercentileLatency() {
+    return getPercentile(0.95);
+  }
+
+  @Override
+  public double get99thPercentileLatency() {
+    return getPercentile(0.99);
+  }
+
+  /**
+   * Gets the upper bound of the bucket the given percentile falls into; the
+   * maximum latency if it falls into the last bucket.
+   */
+  private double getPercentile(double percentile) {
+    long total = 0;
+    long[] counts = new long[buckets.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+
+    if (total == 0) {
+      return 0.0;
+    }
+
+    long rank = (long) Math.ceil(total * percentile);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(BUCKET_BOUNDS[i], getMaxLatency());
+      }
+    }
+
+    return getMaxLatency();
+  }
+}
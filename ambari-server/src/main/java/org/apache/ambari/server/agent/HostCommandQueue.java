@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
+
+/**
+ * The commands queued for one host, in the order they were added.
+ * <p/>
+ * Commands are indexed by type and execution commands by command id, so
+ * that removing them and counting them does not walk the whole queue.
+ * All methods are synchronized on the queue; the lock is per host.
+ */
+class HostCommandQueue {
+
+  /**
+   * All commands, keyed and ordered by their sequence number.
+   */
+  private final LinkedHashMap<Long, QueuedCommand> commands =
+      new LinkedHashMap<Long, QueuedCommand>();
+
+  /**
+   * Commands by type; {@code null} types are possible for commands built
+   * without a type.
+   */
+  private final Map<AgentCommandType, LinkedHashMap<Long, QueuedCommand>> commandsByType =
+      new HashMap<AgentCommandType, LinkedHashMap<Long, QueuedCommand>>();
+
+  /**
+   * Execution commands by command id, oldest first.
+   */
+  private final Map<String, LinkedList<QueuedCommand>> commandsById =
+      new HashMap<String, LinkedList<QueuedCommand>>();
+
+  private long nextSequence = 0L;
+
+
+  // ----- HostCommandQueue --------------------------------------------------
+
+  synchronized void add(AgentCommand command) {
+    QueuedCommand queued = new QueuedCommand(nextSequence++, command,
+        System.currentTimeMillis());
+
+    commands.put(queued.sequence, queued);
+
+    LinkedHashMap<Long, QueuedCommand> ofType = commandsByType.get(queued.type);
+    if (ofType == null) {
+      ofType = new LinkedHashMap<Long, QueuedCommand>();
+      commandsByType.put(queued.type, ofType);
+    }
+    ofType.put(queued.sequence, queued);
+
+    if (queued.commandId != null) {
+      LinkedList<QueuedCommand> withId = commandsById.get(queued.commandId);
+      if (withId == null) {
+        withId = new LinkedList<QueuedCommand>();
+        commandsById.put(queued.commandId, withId);
+      }
+      withId.add(queued);
+    }
+  }
+
+  /**
+   * Remove the oldest command.
+   *
+   * @return the command or {@code null} if the queue is empty
+   */
+  synchronized AgentCommand poll() {
+    Iterator<QueuedCommand> iterator = commands.values().iterator();
+    if (!iterator.hasNext()) {
+      return null;
+    }
+    QueuedCommand queued = iterator.next();
+    iterator.remove();
+    removeFromType(queued);
+    removeFromId(queued);
+    return queued.command;
+  }
+
+  /**
+   * Remove all commands of the given type.
+   *
+   * @return the removed commands in queue order, never {@code null}
+   */
+  synchronized List<AgentCommand> remove(AgentCommandType type) {
+    LinkedHashMap<Long, QueuedCommand> ofType = commandsByType.remove(type);
+    if (ofType == null) {
+      return new ArrayList<AgentCommand>(0);
+    }
+
+    List<AgentCommand> removed = new ArrayList<AgentCommand>(ofType.size());
+    for (QueuedCommand queued : ofType.values()) {
+      commands.remove(queued.sequence);
+      removeFromId(queued);
+      removed.add(queued.command);
+    }
+    return removed;
+  }
+
+  /**
+   * Remove the oldest execution command with the given id.
+   *
+   * @return the command or {@code null} if there is none
+   */
+  synchronized AgentCommand remove(String commandId) {
+    LinkedList<QueuedCommand> withId = commandsById.get(commandId);
+    if (withId == null) {
+      return null;
+    }
+
+    QueuedCommand queued = withId.poll();
+    if (withId.isEmpty()) {
+      commandsById.remove(commandId);
+    }
+    commands.remove(queued.sequence);
+    removeFromType(queued);
+    return queued.command;
+  }
+
+  /**
+   * Remove all commands.
+   *
+   * @return the removed commands in queue order, never {@code null}
+   */
+  synchronized List<AgentCommand> removeAll() {
+    List<AgentCommand> removed = new ArrayList<AgentCommand>(commands.size());
+    for (QueuedCommand queued : commands.values()) {
+      removed.add(queued.command);
+    }
+    commands.clear();
+    commandsByType.clear();
+    commandsById.clear();
+    return removed;
+  }
+
+  synchronized int size() {
+    return commands.size();
+  }
+
+  synchronized int size(AgentCommandType type) {
+    LinkedHashMap<Long, QueuedCommand> ofType = commandsByType.get(type);
+    return ofType == null ? 0 : ofType.size();
+  }
+
+  /**
+   * Get the time the oldest command has been waiting.
+   *
+   * @param now  the current time in milliseconds
+   *
+   * @return the age in milliseconds, or 0 if the queue is empty
+   */
+  synchronized long getOldestAge(long now) {
+    Iterator<QueuedCommand> iterator = commands.values().iterator();
+    return iterator.hasNext() ? Math.max(0L, now - iterator.next().enqueueTime) : 0L;
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  private void removeFromType(QueuedCommand queued) {
+    LinkedHashMap<Long, QueuedCommand> ofType = commandsByType.get(queued.type);
+    if (ofType != null) {
+      ofType.remove(queued.sequence);
+      if (ofType.isEmpty()) {
+        commandsByType.remove(queued.type);
+      }
+    }
+  }
+
+  private void removeFromId(QueuedCommand queued) {
+    if (queued.commandId == null) {
+      return;
+    }
+    LinkedList<QueuedCommand> withId = commandsById.get(queued.commandId);
+    if (withId != null) {
+      withId.remove(queued);
+      if (withId.isEmpty()) {
+        commandsById.remove(queued.commandId);
+      }
+    }
+  }
+
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * A command with the attributes it was indexed by when it was queued.
+   */
+  private static class QueuedCommand {
+    private final long sequence;
+    private final AgentCommand command;
+    private final AgentCommandType type;
+    private final String commandId;
+    private final long enqueueTime;
+
+    private QueuedCommand(long sequence, AgentCommand command, long enqueueTime) {
+      this.sequence = sequence;
+      this.command = command;
+      this.type = command.getCommandType();
+      this.commandId = command instanceof ExecutionCommand ?
+          ((ExecutionCommand) command).getCommandId() : null;
+      this.enqueueTime = enqueueTime;
+    }
+  }
+}
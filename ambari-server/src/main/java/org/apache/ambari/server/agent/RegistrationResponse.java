@@ -61,6 +61,12 @@ public class RegistrationResponse {
   @JsonProperty("statusCommands")
   private List<StatusCommand> statusCommands = null;
 
+  /**
+   * Whether the agent may wait for commands on the long poll endpoint.
+   */
+  @JsonProperty("longPollCommands")
+  private boolean longPollCommands;
+
   public RegistrationStatus getResponseStatus() {
     return response;
   }
@@ -107,6 +113,14 @@ public class RegistrationResponse {
     this.responseId = responseId;
   }
 
+  public boolean isLongPollCommands() {
+    return longPollCommands;
+  }
+
+  public void setLongPollCommands(boolean longPollCommands) {
+    this.longPollCommands = longPollCommands;
+  }
+
   public void setExitstatus(int exitstatus) {
     this.exitstatus = exitstatus;
   }
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.agent.rest;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+
+/**
+ * Long poll endpoint for agents waiting for commands.
+ * <p/>
+ * {@code GET /agent/v1/commands/{hostName}?timeout=seconds} is held open
+ * until a command other than a status command is queued for the host or
+ * the timeout expires, and answers with the number of pending commands.
+ * The commands themselves are still delivered by the heartbeat, which the
+ * agent sends right away when told that commands are pending, so response
+ * ids and command reports keep their order.
+ * <p/>
+ * Waiting requests are suspended and do not hold a server thread.
+ */
+public class AgentCommandsServlet extends HttpServlet {
+  private static final Log LOG = LogFactory.getLog(AgentCommandsServlet.class);
+
+  private static final String LISTENER_ATTRIBUTE =
+      AgentCommandsServlet.class.getName() + ".listener";
+
+  private final ActionQueue actionQueue;
+  private final long maxTimeoutMillis;
+
+  /**
+   * Constructor.
+   *
+   * @param actionQueue       the queue of agent commands
+   * @param maxTimeoutMillis  the longest time a request is held open
+   */
+  public AgentCommandsServlet(ActionQueue actionQueue, long maxTimeoutMillis) {
+    this.actionQueue = actionQueue;
+    this.maxTimeoutMillis = maxTimeoutMillis;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+
+    String hostname = getHostname(request);
+    if (hostname == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Host name is required");
+      return;
+    }
+
+    Continuation continuation = ContinuationSupport.getContinuation(request);
+    WakeUpListener listener = (WakeUpListener) request.getAttribute(LISTENER_ATTRIBUTE);
+
+    if (listener == null && continuation.isInitial()) {
+      long timeout = getTimeout(request);
+      if (timeout > 0 && !actionQueue.hasPendingCommands(hostname)) {
+        listener = new WakeUpListener(continuation);
+        request.setAttribute(LISTENER_ATTRIBUTE, listener);
+
+        continuation.setTimeout(timeout);
+        continuation.suspend();
+
+        if (!actionQueue.addCommandListener(hostname, listener)) {
+          listener.onCommandsQueued(hostname);
+        }
+        return;
+      }
+    }
+
+    // resumed, expired or nothing to wait for
+    if (listener != null) {
+      actionQueue.removeCommandListener(hostname, listener);
+    }
+
+    int pending = actionQueue.size(hostname)
+        - actionQueue.size(hostname, AgentCommandType.STATUS_COMMAND);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Host " + hostname + " has " + pending + " pending commands");
+    }
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "no-cache");
+    response.getWriter().write("{\"pendingCommands\":" + pending + "}");
+  }
+
+  private static String getHostname(HttpServletRequest request) {
+    String pathInfo = request.getPathInfo();
+    if (pathInfo == null) {
+      return null;
+    }
+    String hostname = pathInfo.startsWith("/") ? pathInfo.substring(1) : pathInfo;
+    return hostname.isEmpty() || hostname.contains("/") ? null : hostname;
+  }
+
+  /**
+   * Get the wait time in milliseconds, requested in seconds by the agent and
+   * capped by the server.
+   */
+  private long getTimeout(HttpServletRequest request) {
+    String timeout = request.getParameter("timeout");
+    if (timeout == null) {
+      return maxTimeoutMillis;
+    }
+    try {
+      return Math.min(Math.max(0L, Long.parseLong(timeout) * 1000L), maxTimeoutMillis);
+    } catch (NumberFormatException e) {
+      return maxTimeoutMillis;
+    }
+  }
+
+  /**
+   * Resumes the suspended request of a host once.
+   */
+  private static class WakeUpListener implements ActionQueue.CommandListener {
+    private final Continuation continuation;
+    private final AtomicBoolean resumed = new AtomicBoolean(false);
+
+    private WakeUpListener(Continuation continuation) {
+      this.continuation = continuation;
+    }
+
+    @Override
+    public void onCommandsQueued(String hostname) {
+      if (resumed.compareAndSet(false, true)) {
+        try {
+          continuation.resume();
+        } catch (IllegalStateException e) {
+          // the request has already expired
+          LOG.debug("Request of host " + hostname + " was not suspended any more");
+        }
+      }
+    }
+  }
+}
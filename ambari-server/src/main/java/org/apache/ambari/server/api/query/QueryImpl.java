@@ -18,13 +18,16 @@
 
 package org.apache.ambari.server.api.query;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.ambari.server.api.query.render.DefaultRenderer;
 import org.apache.ambari.server.api.query.render.Renderer;
@@ -40,6 +43,8 @@ import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.internal.QueryResponseImpl;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.BatchQueryResourceProvider;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
@@ -423,26 +428,28 @@ public class QueryImpl implements Query, ResourceInstance {
       Request       request             = subResource.createRequest();
       Set<Resource> providerResourceSet = new HashSet<Resource>();
 
-      for (QueryResult queryResult : populatedQueryResults.values()) {
-        for (Resource resource : queryResult.getQueryResponse().getResources()) {
-          Map<Resource.Type, String> map = getKeyValueMap(resource, queryResult.getKeyValueMap());
+      if (!batchQueryForSubResources(subResource, request, providerResourceSet)) {
+        for (QueryResult queryResult : populatedQueryResults.values()) {
+          for (Resource resource : queryResult.getQueryResponse().getResources()) {
+            Map<Resource.Type, String> map = getKeyValueMap(resource, queryResult.getKeyValueMap());
 
-          Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
-          Set<Resource> resourceSet    = new LinkedHashSet<Resource>();
+            Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
+            Set<Resource> resourceSet    = new LinkedHashSet<Resource>();
 
-          try {
-            Set<Resource> queryResources =
-                subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
+            try {
+              Set<Resource> queryResources =
+                  subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
 
-            providerResourceSet.addAll(queryResources);
-            resourceSet.addAll(queryResources);
-          } catch (NoSuchResourceException e) {
-            // do nothing ...
-          }
-          subResource.queryResults.put(resource,
+              providerResourceSet.addAll(queryResources);
+              resourceSet.addAll(queryResources);
+            } catch (NoSuchResourceException e) {
+              // do nothing ...
+            }
+            subResource.queryResults.put(resource,
+                new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
+            subResource.populatedQueryResults.put(resource,
               new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
-          subResource.populatedQueryResults.put(resource,
-            new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
+          }
         }
       }
       clusterController.populateResources(resourceType, providerResourceSet, request, null);
@@ -450,6 +457,106 @@ public class QueryImpl implements Query, ResourceInstance {
     }
   }
 
+  /**
+   * Query the sub-resources of all of the resources of this query with a
+   * single call to the resource provider, using an OR of the predicates of
+   * the individual parents, and partition the result by the key properties
+   * of the parents.
+   *
+   * @param subResource          the sub-resource query
+   * @param request              the sub-resource request
+   * @param providerResourceSet  the set to add the resources returned by the provider to
+   *
+   * @return false if the sub-resources can't be queried in one call, in which
+   *         case nothing was recorded and each parent should be queried on its own
+   */
+  private boolean batchQueryForSubResources(QueryImpl subResource, Request request,
+                                            Set<Resource> providerResourceSet)
+      throws UnsupportedPropertyException,
+      SystemException,
+      NoSuchParentResourceException {
+
+    Resource.Type resourceType = subResource.getResourceDefinition().getType();
+    if (!(clusterController.ensureResourceProvider(resourceType) instanceof BatchQueryResourceProvider)) {
+      return false;
+    }
+
+    Schema             schema         = clusterController.getSchema(resourceType);
+    List<ParentQuery>  parents        = new ArrayList<ParentQuery>();
+    List<String>       keyPropertyIds = null;
+
+    for (QueryResult queryResult : populatedQueryResults.values()) {
+      for (Resource resource : queryResult.getQueryResponse().getResources()) {
+        Map<Resource.Type, String> map       = getKeyValueMap(resource, queryResult.getKeyValueMap());
+        Map<String, String>        parentKey = getKeyPropertyValues(schema, map);
+
+        // all parents must be told apart by the same key properties
+        if (keyPropertyIds == null) {
+          keyPropertyIds = new ArrayList<String>(parentKey.keySet());
+        } else if (!keyPropertyIds.equals(new ArrayList<String>(parentKey.keySet()))) {
+          return false;
+        }
+        parents.add(new ParentQuery(resource, map, new ArrayList<String>(parentKey.values()),
+            subResource.createPredicate(map, subResource.processedPredicate)));
+      }
+    }
+
+    if (parents.size() < 2 || keyPropertyIds.isEmpty()) {
+      return false;
+    }
+
+    Predicate[] predicates = new Predicate[parents.size()];
+    for (int i = 0; i < predicates.length; i++) {
+      predicates[i] = parents.get(i).predicate;
+    }
+
+    Set<Resource> queryResources;
+    try {
+      queryResources = subResource.doQuery(resourceType, request, new OrPredicate(predicates), false).getResources();
+    } catch (NoSuchResourceException e) {
+      return false;
+    }
+
+    Map<List<String>, Set<Resource>> resourcesByKey = new HashMap<List<String>, Set<Resource>>();
+    for (Resource resource : queryResources) {
+      List<String> key = new ArrayList<String>(keyPropertyIds.size());
+      for (String keyPropertyId : keyPropertyIds) {
+        Object value = resource.getPropertyValue(keyPropertyId);
+        if (value == null) {
+          // can't be matched to its parent
+          return false;
+        }
+        key.add(value.toString());
+      }
+      Set<Resource> resourceSet = resourcesByKey.get(key);
+      if (resourceSet == null) {
+        resourceSet = new LinkedHashSet<Resource>();
+        resourcesByKey.put(key, resourceSet);
+      }
+      resourceSet.add(resource);
+    }
+
+    providerResourceSet.addAll(queryResources);
+
+    for (ParentQuery parent : parents) {
+      Set<Resource> resourceSet = resourcesByKey.get(parent.key);
+      if (resourceSet == null) {
+        resourceSet = Collections.emptySet();
+      }
+      subResource.queryResults.put(parent.resource,
+          new QueryResult(request, parent.predicate, subResourcePredicate, parent.keyValueMap,
+              new QueryResponseImpl(new LinkedHashSet<Resource>(resourceSet))));
+      subResource.populatedQueryResults.put(parent.resource,
+          new QueryResult(request, parent.predicate, subResourcePredicate, parent.keyValueMap,
+              new QueryResponseImpl(new LinkedHashSet<Resource>(resourceSet))));
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Queried " + resourceType + " resources of " + parents.size() + " parents at once");
+    }
+    return true;
+  }
+
   /**
    * Query the cluster controller for the resources.
    *
@@ -867,6 +974,25 @@ public class QueryImpl implements Query, ResourceInstance {
     }
   }
 
+  /**
+   * Get the values of the key properties of this query's resource type set
+   * by the given key value map, sorted by property id.  These are the
+   * properties the predicate of {@link #createInternalPredicate(Map)}
+   * compares.
+   */
+  private static Map<String, String> getKeyPropertyValues(Schema schema, Map<Resource.Type, String> mapResourceIds) {
+    Map<String, String> keyPropertyValues = new TreeMap<String, String>();
+    for (Map.Entry<Resource.Type, String> entry : mapResourceIds.entrySet()) {
+      if (entry.getValue() != null) {
+        String keyPropertyId = schema.getKeyPropertyId(entry.getKey());
+        if (keyPropertyId != null) {
+          keyPropertyValues.put(keyPropertyId, entry.getValue());
+        }
+      }
+    }
+    return keyPropertyValues;
+  }
+
   private Predicate createPredicate() {
     return createPredicate(getKeyValueMap(), userPredicate);
   }
@@ -1012,6 +1138,26 @@ public class QueryImpl implements Query, ResourceInstance {
         resource.getSingularName();
   }
 
+  // ----- inner class : ParentQuery -----------------------------------------
+
+  /**
+   * A parent resource of a batched sub-resource query.
+   */
+  private static class ParentQuery {
+    private final Resource resource;
+    private final Map<Resource.Type, String> keyValueMap;
+    private final List<String> key;
+    private final Predicate predicate;
+
+    private ParentQuery(Resource resource, Map<Resource.Type, String> keyValueMap,
+                        List<String> key, Predicate predicate) {
+      this.resource    = resource;
+      this.keyValueMap = keyValueMap;
+      this.key         = key;
+      this.predicate   = predicate;
+    }
+  }
+
   // ----- inner class : QueryResult -----------------------------------------
 
   /**
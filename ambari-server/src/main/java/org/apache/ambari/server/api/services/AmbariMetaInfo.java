@@ -135,6 +135,7 @@ public class AmbariMetaInfo {
 
   private File stackRoot;
   private File commonServicesRoot;
+  private File stackSnapshotFile;
   private File serverVersionFile;
   private File customActionRoot;
 
@@ -202,6 +203,10 @@ public class AmbariMetaInfo {
     if(commonServicesPath != null && !commonServicesPath.isEmpty()) {
       commonServicesRoot = new File(commonServicesPath);
     }
+    String stackSnapshotPath = conf.getMetadataSnapshotPath();
+    if (stackSnapshotPath != null && !stackSnapshotPath.isEmpty()) {
+      stackSnapshotFile = new File(stackSnapshotPath);
+    }
     serverVersionFile = new File(serverVersionFilePath);
     customActionRoot = new File(conf.getCustomActionDefinitionPath());
     os_family = new OsFamily(conf);
@@ -224,7 +229,7 @@ public class AmbariMetaInfo {
     // Need to be initialized before all actions
     ALL_SUPPORTED_OS = new ArrayList<String>(os_family.os_list());
     readServerVersion();
-    stackManager = new StackManager(stackRoot,commonServicesRoot,
+    stackManager = new StackManager(stackRoot, commonServicesRoot, stackSnapshotFile,
         new StackContext(metaInfoDAO, actionMetadata, os_family));
     getCustomActionDefinitions(customActionRoot);
   }
@@ -24,8 +24,8 @@ import org.apache.ambari.server.api.resources.ResourceInstanceFactoryImpl;
 import org.apache.ambari.server.api.services.parsers.BodyParseException;
 import org.apache.ambari.server.api.services.parsers.JsonRequestBodyParser;
 import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
-import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingJsonSerializer;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.eclipse.jetty.util.ajax.JSON;
 
@@ -48,9 +48,9 @@ public abstract class BaseService {
   private ResourceInstanceFactory m_resourceFactory = new ResourceInstanceFactoryImpl();
 
   /**
-   * Result serializer.
+   * Result serializer.  Results are streamed to the response.
    */
-  private ResultSerializer m_serializer = new JsonSerializer();
+  private ResultSerializer m_serializer = new StreamingJsonSerializer();
 
 
   /**
@@ -154,24 +154,24 @@ public abstract class BaseService {
       return new ResultSerializer() {
         @Override
         public Object serialize(Result result) {
-          return serializer.serialize(result).toString();
+          return StreamingJsonSerializer.toString(serializer.serialize(result));
         }
 
         @Override
         public Object serializeError(ResultStatus error) {
-          return serializer.serializeError(error).toString();
+          return StreamingJsonSerializer.toString(serializer.serializeError(error));
         }
       };
     } else if (mediaType.equals(MediaType.APPLICATION_JSON_TYPE)){
       return new ResultSerializer() {
         @Override
         public Object serialize(Result result) {
-          return JSON.parse(serializer.serialize(result).toString());
+          return JSON.parse(StreamingJsonSerializer.toString(serializer.serialize(result)));
         }
 
         @Override
         public Object serializeError(ResultStatus error) {
-          return JSON.parse(serializer.serializeError(error).toString());
+          return JSON.parse(StreamingJsonSerializer.toString(serializer.serializeError(error)));
         }
       };
     }
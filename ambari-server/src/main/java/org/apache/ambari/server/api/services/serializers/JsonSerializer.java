@@ -20,17 +20,20 @@ package org.apache.ambari.server.api.services.serializers;
 
 import org.apache.ambari.server.api.services.ResultStatus;
 import org.apache.ambari.server.api.services.Result;
-import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.api.util.TreeNode;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,24 +50,24 @@ public class JsonSerializer implements ResultSerializer {
   ObjectMapper m_mapper = new ObjectMapper(m_factory);
 
   /**
-   * Generator which writes JSON.
+   * Constructor.
    */
-  JsonGenerator m_generator;
+  public JsonSerializer() {
+    // values are written one by one to the generator, which is flushed
+    // once at the end instead of after every value
+    m_mapper.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+  }
 
 
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
       if (result.getStatus().isErrorState()) {
         return serializeError(result.getStatus());
       }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      writeResult(result, bytesOut);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -75,13 +78,14 @@ public class JsonSerializer implements ResultSerializer {
   @Override
   public Object serializeError(ResultStatus error) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-      //m_mapper.writeValue(m_generator, error);
-      m_generator.writeStartObject();
-      m_generator.writeNumberField("status", error.getStatus().getStatus());
-      m_generator.writeStringField("message", error.getMessage());
-      m_generator.writeEndObject();
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      JsonGenerator generator = createJsonGenerator(bytesOut);
+      //m_mapper.writeValue(generator, error);
+      generator.writeStartObject();
+      generator.writeNumberField("status", error.getStatus().getStatus());
+      generator.writeStringField("message", error.getMessage());
+      generator.writeEndObject();
+      generator.close();
       return bytesOut.toString("UTF-8");
 
     } catch (IOException e) {
@@ -90,47 +94,53 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private ByteArrayOutputStream init() throws IOException {
-    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-    m_generator = createJsonGenerator(bytesOut);
-
-    DefaultPrettyPrinter p = new DefaultPrettyPrinter();
-    p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
-    m_generator.setPrettyPrinter(p);
-
-    return bytesOut;
+  /**
+   * Write the result tree of the given result as JSON to the given stream.
+   * Resources are written as the tree is walked, so nothing but the
+   * properties of the current resource is held besides the stream buffer.
+   *
+   * @param result  the result to write
+   * @param out     the stream to write to; flushed but not closed
+   *
+   * @throws IOException if the stream could not be written
+   */
+  void writeResult(Result result, OutputStream out) throws IOException {
+    JsonGenerator generator = createJsonGenerator(out);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    processNode(generator, result.getResultTree());
+    generator.close();
   }
 
-  private void processNode(TreeNode<Resource> node) throws IOException {
+  private void processNode(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     if (isObject(node)) {
-      m_generator.writeStartObject();
+      generator.writeStartObject();
 
-      writeHref(node);
-      writeItemCount(node);
+      writeHref(generator, node);
+      writeItemCount(generator, node);
 
       Resource r = node.getObject();
       if (r != null) {
-        handleResourceProperties(getTreeProperties(r.getPropertiesMap()));
+        handleResourceProperties(generator, getCategories(r.getPropertiesMap()));
       }
     }
 
     if (isArray(node)) {
       if (node.getName() != null)
-        m_generator.writeArrayFieldStart(node.getName());
+        generator.writeArrayFieldStart(node.getName());
       else
-        m_generator.writeStartArray();
+        generator.writeStartArray();
     }
 
     for (TreeNode<Resource> child : node.getChildren()) {
-      processNode(child);
+      processNode(generator, child);
     }
 
     if (isArray(node)) {
-      m_generator.writeEndArray();
+      generator.writeEndArray();
     }
 
     if (isObject(node)) {
-      m_generator.writeEndObject();
+      generator.writeEndObject();
     }
   }
 
@@ -147,63 +157,50 @@ public class JsonSerializer implements ResultSerializer {
              node.getChildren().size() > 1);
   }
 
-  private TreeNode<Map<String, Object>> getTreeProperties (Map<String, Map<String, Object>> propertiesMap) {
-    TreeNode<Map<String, Object>> treeProperties =
-        new TreeNodeImpl<Map<String, Object>>(null, new LinkedHashMap<String, Object>(), null);
+  /**
+   * Arrange the property maps of a resource by nested category.  The maps
+   * of the resource are referenced, not copied.
+   */
+  private Category getCategories(Map<String, Map<String, Object>> propertiesMap) {
+    Category root = new Category(null);
 
     for (Map.Entry<String, Map<String, Object>> entry : propertiesMap.entrySet()) {
       String category = entry.getKey();
-      TreeNode<Map<String, Object>> node;
-      if (category == null || category.isEmpty()) {
-        node = treeProperties;
-      } else {
-        node = treeProperties.getChild(category);
-        if (node == null) {
-          String[] tokens = category.split("/");
-          node = treeProperties;
-          for (String t : tokens) {
-            TreeNode<Map<String, Object>> child = node.getChild(t);
-            if (child == null) {
-              child = node.addChild(new LinkedHashMap<String, Object>(), t);
-            }
-            node = child;
-          }
+      Category node = root;
+      if (category != null && !category.isEmpty()) {
+        for (String t : category.split("/")) {
+          node = node.getChild(t);
         }
       }
-
-      Map<String, Object> properties = entry.getValue();
-
-      for (Map.Entry<String, Object> propertyEntry : properties.entrySet()) {
-        node.getObject().put(propertyEntry.getKey(), propertyEntry.getValue());
-      }
+      node.properties.add(entry.getValue());
     }
-    return treeProperties;
+    return root;
   }
 
-  private void handleResourceProperties(TreeNode<Map<String, Object>> node) throws IOException {
-    String category = node.getName();
+  private void handleResourceProperties(JsonGenerator generator, Category node) throws IOException {
+    String category = node.name;
 
     if (category != null) {
-      m_generator.writeFieldName(category);
-      m_generator.writeStartObject();
+      generator.writeFieldName(category);
+      generator.writeStartObject();
     }
 
-    for (Map.Entry<String, Object> entry : node.getObject().entrySet()) {
-      m_generator.writeFieldName(entry.getKey());
-      m_mapper.writeValue(m_generator, entry.getValue());
+    for (Map.Entry<String, Object> entry : node.getProperties().entrySet()) {
+      generator.writeFieldName(entry.getKey());
+      m_mapper.writeValue(generator, entry.getValue());
     }
 
-    for (TreeNode<Map<String, Object>> n : node.getChildren()) {
-      handleResourceProperties(n);
+    for (Category child : node.children.values()) {
+      handleResourceProperties(generator, child);
     }
 
     if (category != null) {
-      m_generator.writeEndObject();
+      generator.writeEndObject();
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
@@ -213,19 +210,60 @@ public class JsonSerializer implements ResultSerializer {
     return generator;
   }
 
-  private void writeHref(TreeNode<Resource> node) throws IOException {
+  private void writeHref(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     String hrefProp = node.getProperty("href");
     if (hrefProp != null) {
-      m_generator.writeStringField("href", hrefProp);
+      generator.writeStringField("href", hrefProp);
     }
   }
 
-  private void writeItemCount(TreeNode<Resource> node) throws IOException {
+  private void writeItemCount(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     String countProp = node.getProperty("count");
     if (countProp != null) {
-      m_generator.writeStringField("itemTotal", countProp);
+      generator.writeStringField("itemTotal", countProp);
       // Write once
       node.setProperty("count", null);
     }
   }
+
+  /**
+   * The properties of one category of a resource and its sub-categories,
+   * in the order they were first seen.
+   */
+  private static class Category {
+    private final String name;
+    private final List<Map<String, Object>> properties = new ArrayList<Map<String, Object>>(1);
+    private final Map<String, Category> children = new LinkedHashMap<String, Category>();
+
+    private Category(String name) {
+      this.name = name;
+    }
+
+    private Category getChild(String name) {
+      Category child = children.get(name);
+      if (child == null) {
+        child = new Category(name);
+        children.put(name, child);
+      }
+      return child;
+    }
+
+    /**
+     * Get the properties of the category; only merged into a new map when
+     * the category was given more than one property map.
+     */
+    private Map<String, Object> getProperties() {
+      if (properties.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      if (properties.size() == 1) {
+        return properties.get(0);
+      }
+      Map<String, Object> merged = new LinkedHashMap<String, Object>();
+      for (Map<String, Object> map : properties) {
+        merged.putAll(map);
+      }
+      return merged;
+    }
+  }
 }
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.api.services.serializers;
+
+import org.apache.ambari.server.api.services.Result;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON serializer that writes the result straight to the response stream.
+ * <p/>
+ * The serialized result is a {@link StreamingOutput} which walks the result
+ * tree and writes each resource as it is reached when the response is sent,
+ * so the rendered response is never held in memory and the first bytes go
+ * out before the last resource is written.  The response has no content
+ * length and is sent with chunked transfer encoding.  Errors are small and
+ * are serialized to a string as by {@link JsonSerializer}.
+ * <p/>
+ * The output is the same as the output of {@link JsonSerializer}.
+ */
+public class StreamingJsonSerializer extends JsonSerializer {
+
+  @Override
+  public Object serialize(final Result result) {
+    if (result.getStatus().isErrorState()) {
+      return serializeError(result.getStatus());
+    }
+
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException, WebApplicationException {
+        writeResult(result, out);
+      }
+    };
+  }
+
+  /**
+   * Get the given serialized result as a string.
+   *
+   * @param serialized  the result of {@link #serialize} or {@link #serializeError}
+   *
+   * @return the serialized result as a string
+   */
+  public static String toString(Object serialized) {
+    if (serialized instanceof StreamingOutput) {
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      try {
+        ((StreamingOutput) serialized).write(bytesOut);
+        return bytesOut.toString("UTF-8");
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to serialize to json: " + e, e);
+      }
+    }
+    return serialized.toString();
+  }
+}
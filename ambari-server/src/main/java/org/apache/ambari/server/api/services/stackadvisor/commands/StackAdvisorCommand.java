@@ -39,6 +39,7 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.api.services.BaseService;
 import org.apache.ambari.server.api.services.LocalUriInfo;
 import org.apache.ambari.server.api.services.Request;
+import org.apache.ambari.server.api.services.serializers.StreamingJsonSerializer;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorException;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorResponse;
@@ -273,12 +274,12 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     if (response.getStatus() != Status.OK.getStatusCode()) {
       String message = String.format(
           "Error occured during hosts information retrieving, status=%s, response=%s",
-          response.getStatus(), (String) response.getEntity());
+          response.getStatus(), StreamingJsonSerializer.toString(response.getEntity()));
       LOG.warn(message);
       throw new StackAdvisorException(message);
     }
 
-    String hostsJSON = (String) response.getEntity();
+    String hostsJSON = StreamingJsonSerializer.toString(response.getEntity());
     if (LOG.isDebugEnabled()) {
       LOG.debug("Hosts information: " + hostsJSON);
     }
@@ -327,12 +328,12 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     if (response.getStatus() != Status.OK.getStatusCode()) {
       String message = String.format(
           "Error occured during services information retrieving, status=%s, response=%s",
-          response.getStatus(), (String) response.getEntity());
+          response.getStatus(), StreamingJsonSerializer.toString(response.getEntity()));
       LOG.warn(message);
       throw new StackAdvisorException(message);
     }
 
-    String servicesJSON = (String) response.getEntity();
+    String servicesJSON = StreamingJsonSerializer.toString(response.getEntity());
     if (LOG.isDebugEnabled()) {
       LOG.debug("Services information: " + servicesJSON);
     }
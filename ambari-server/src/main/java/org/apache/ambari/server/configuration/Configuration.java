@@ -97,6 +97,7 @@ public class Configuration {
   public static final String RESOURCES_DIR_KEY = "resources.dir";
   public static final String METADETA_DIR_PATH = "metadata.path";
   public static final String COMMON_SERVICES_DIR_PATH = "common.services.path";
+  public static final String METADATA_SNAPSHOT_PATH = "metadata.snapshot.path";
   public static final String SERVER_VERSION_FILE = "server.version.file";
   public static final String SERVER_VERSION_KEY = "version";
   public static final String JAVA_HOME_KEY = "java.home";
@@ -142,6 +143,7 @@ public class Configuration {
   public static final String LDAP_GROUP_SEARCH_FILTER_KEY = "authorization.ldap.groupSearchFilter";
   public static final String LDAP_REFERRAL_KEY = "authentication.ldap.referral";
   public static final String SERVER_EC_CACHE_SIZE = "server.ecCacheSize";
+  public static final String SERVER_EC_CACHE_WEIGHT = "server.ecCacheWeightMb";
   public static final String SERVER_STALE_CONFIG_CACHE_ENABLED_KEY = "server.cache.isStale.enabled";
   public static final String SERVER_PERSISTENCE_TYPE_KEY = "server.persistence.type";
   public static final String SERVER_JDBC_USER_NAME_KEY = "server.jdbc.user.name";
@@ -252,6 +254,7 @@ public class Configuration {
   private static final String CUSTOM_ACTION_DEFINITION_DEF_VALUE = "/var/lib/ambari-server/resources/custom_action_definitions";
 
   private static final long SERVER_EC_CACHE_SIZE_DEFAULT = 10000L;
+  private static final long SERVER_EC_CACHE_WEIGHT_DEFAULT = 100L;
   private static final String SERVER_STALE_CONFIG_CACHE_ENABLED_DEFAULT = "true";
   private static final String SERVER_JDBC_USER_NAME_DEFAULT = "ambari";
   private static final String SERVER_JDBC_USER_PASSWD_DEFAULT = "bigdata";
@@ -322,6 +325,44 @@ public class Configuration {
 
   private static final String SERVER_HTTP_SESSION_INACTIVE_TIMEOUT = "server.http.session.inactive_timeout";
 
+  /**
+   * Cache of temporal Metrics Collector responses, refreshed with delta
+   * queries while dashboards keep polling the same window.
+   */
+  public static final String TIMELINE_METRICS_CACHE_ENABLED_KEY = "server.timeline.metrics.cache.enabled";
+  public static final String TIMELINE_METRICS_CACHE_MAX_DATAPOINTS_KEY = "server.timeline.metrics.cache.datapoints.max";
+  public static final String TIMELINE_METRICS_CACHE_REFRESH_OVERLAP_KEY = "server.timeline.metrics.cache.refresh.overlap";
+  public static final String TIMELINE_METRICS_CACHE_ENTRY_TTL_KEY = "server.timeline.metrics.cache.entry.ttl";
+  private static final String TIMELINE_METRICS_CACHE_ENABLED_DEFAULT = "true";
+  private static final long TIMELINE_METRICS_CACHE_MAX_DATAPOINTS_DEFAULT = 1000000L;
+  private static final long TIMELINE_METRICS_CACHE_REFRESH_OVERLAP_DEFAULT = 300L;
+  private static final long TIMELINE_METRICS_CACHE_ENTRY_TTL_DEFAULT = 600L;
+
+  /**
+   * Agents wait for commands on a long poll request in addition to their
+   * heartbeats.
+   */
+  public static final String AGENT_COMMANDS_LONGPOLL_ENABLED_KEY = "agent.commands.longpoll.enabled";
+  public static final String AGENT_COMMANDS_LONGPOLL_TIMEOUT_KEY = "agent.commands.longpoll.timeout";
+  private static final String AGENT_COMMANDS_LONGPOLL_ENABLED_DEFAULT = "false";
+  private static final long AGENT_COMMANDS_LONGPOLL_TIMEOUT_DEFAULT = 30L;
+
+  /**
+   * The number of threads processing the reports of heartbeats after the
+   * agent has been answered; 0 processes them before answering.
+   */
+  public static final String AGENT_HEARTBEAT_PROCESSING_THREADS_KEY = "agent.heartbeat.processing.threads";
+  public static final String AGENT_HEARTBEAT_PROCESSING_QUEUE_SIZE_KEY = "agent.heartbeat.processing.queue.size";
+  private static final int AGENT_HEARTBEAT_PROCESSING_THREADS_DEFAULT = 0;
+  private static final int AGENT_HEARTBEAT_PROCESSING_QUEUE_SIZE_DEFAULT = 1000;
+
+  /**
+   * The number of threads processing the stages of different requests
+   * concurrently; 0 processes them on the action scheduler thread.
+   */
+  public static final String ACTION_SCHEDULER_THREADS_KEY = "server.action.scheduler.threads";
+  private static final int ACTION_SCHEDULER_THREADS_DEFAULT = 0;
+
   // database pooling defaults
   private static final String DEFAULT_JDBC_POOL_MIN_CONNECTIONS = "5";
   private static final String DEFAULT_JDBC_POOL_MAX_CONNECTIONS = "32";
@@ -336,6 +377,47 @@ public class Configuration {
    */
   private static final String ALERT_TEMPLATE_FILE = "alerts.template.file";
 
+  /**
+   * The interval, in seconds, at which the latest timestamp and text of
+   * received alerts that did not change state are written to the database.
+   * 0 writes them as they are received.
+   */
+  public static final String ALERTS_CURRENT_FLUSH_INTERVAL_KEY = "alerts.current.flush.interval";
+  private static final long ALERTS_CURRENT_FLUSH_INTERVAL_DEFAULT = 10L;
+
+  /**
+   * The number of days finished requests, with their stages and tasks, are
+   * kept; 0 keeps them forever.
+   */
+  public static final String PURGE_REQUESTS_RETENTION_DAYS_KEY = "server.purge.requests.retention.days";
+  private static final int PURGE_REQUESTS_RETENTION_DAYS_DEFAULT = 0;
+
+  /**
+   * The number of days alert history that is no longer current is kept; 0
+   * keeps it forever.
+   */
+  public static final String PURGE_ALERTS_RETENTION_DAYS_KEY = "server.purge.alerts.retention.days";
+  private static final int PURGE_ALERTS_RETENTION_DAYS_DEFAULT = 0;
+
+  /**
+   * The interval, in minutes, at which old history is purged.
+   */
+  public static final String PURGE_INTERVAL_KEY = "server.purge.interval.minutes";
+  private static final long PURGE_INTERVAL_DEFAULT = 60L;
+
+  /**
+   * The number of requests removed in one transaction; alert history is
+   * removed in batches 100 times as large.
+   */
+  public static final String PURGE_BATCH_SIZE_KEY = "server.purge.batch.size";
+  private static final int PURGE_BATCH_SIZE_DEFAULT = 10;
+
+  /**
+   * The directory where purged rows are written to compressed archive files
+   * before they are removed; if not set, nothing is archived.
+   */
+  public static final String PURGE_ARCHIVE_DIR_KEY = "server.purge.archive.dir";
+
   private static final Logger LOG = LoggerFactory.getLogger(
       Configuration.class);
 
@@ -764,6 +846,17 @@ public class Configuration {
     return properties.getProperty(COMMON_SERVICES_DIR_PATH);
   }
 
+  /**
+   * Gets the path of the snapshot of the parsed stack definition files,
+   * which lets a restart skip parsing the files that did not change.
+   *
+   * @return the snapshot path, or {@code null} if the stack definition files
+   *         are always parsed
+   */
+  public String getMetadataSnapshotPath() {
+    return properties.getProperty(METADATA_SNAPSHOT_PATH);
+  }
+
   public String getServerVersionFilePath() {
     return properties.getProperty(SERVER_VERSION_FILE);
   }
@@ -1112,6 +1205,11 @@ public class Configuration {
     return ambariPropertiesMap;
   }
 
+  /**
+   * @deprecated the task cache is bounded by
+   *             {@link #getExecutionCommandsCacheWeight()}.
+   */
+  @Deprecated
   public long getExecutionCommandsCacheSize() {
     String stringValue = properties.getProperty(SERVER_EC_CACHE_SIZE);
     long value = SERVER_EC_CACHE_SIZE_DEFAULT;
@@ -1126,6 +1224,25 @@ public class Configuration {
     return value;
   }
 
+  /**
+   * Gets the estimated size of the finished tasks which are kept in memory, so
+   * that reading the tasks of large requests does not reload them.
+   *
+   * @return the maximum size of the task cache, in bytes
+   */
+  public long getExecutionCommandsCacheWeight() {
+    String stringValue = properties.getProperty(SERVER_EC_CACHE_WEIGHT);
+    long value = SERVER_EC_CACHE_WEIGHT_DEFAULT;
+    if (stringValue != null) {
+      try {
+        value = Long.valueOf(stringValue);
+      } catch (NumberFormatException ignored) {
+      }
+    }
+
+    return value * 1024 * 1024;
+  }
+
   /**
    * @return whether staleConfig's flag is cached.
    */
@@ -1294,6 +1411,169 @@ public class Configuration {
         "1800"));
   }
 
+  /**
+   * Determine whether temporal metrics read from the Metrics Collector are
+   * cached and refreshed incrementally.
+   *
+   * @return true if the cache is enabled
+   */
+  public boolean isTimelineMetricsCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        TIMELINE_METRICS_CACHE_ENABLED_KEY, TIMELINE_METRICS_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Get the total number of datapoints kept in the metrics cache.
+   *
+   * @return the maximum number of cached datapoints
+   */
+  public long getTimelineMetricsCacheMaxDatapoints() {
+    return Long.parseLong(properties.getProperty(
+        TIMELINE_METRICS_CACHE_MAX_DATAPOINTS_KEY,
+        String.valueOf(TIMELINE_METRICS_CACHE_MAX_DATAPOINTS_DEFAULT)));
+  }
+
+  /**
+   * Get the time, in seconds, before the end of a cached window that is
+   * read again on refresh, so that datapoints which reached the collector
+   * late are picked up.
+   *
+   * @return the refresh overlap in seconds
+   */
+  public long getTimelineMetricsCacheRefreshOverlap() {
+    return Long.parseLong(properties.getProperty(
+        TIMELINE_METRICS_CACHE_REFRESH_OVERLAP_KEY,
+        String.valueOf(TIMELINE_METRICS_CACHE_REFRESH_OVERLAP_DEFAULT)));
+  }
+
+  /**
+   * Get the time, in seconds, after which a cached window that nobody
+   * asked for is dropped.
+   *
+   * @return the entry time to live in seconds
+   */
+  public long getTimelineMetricsCacheEntryTtl() {
+    return Long.parseLong(properties.getProperty(
+        TIMELINE_METRICS_CACHE_ENTRY_TTL_KEY,
+        String.valueOf(TIMELINE_METRICS_CACHE_ENTRY_TTL_DEFAULT)));
+  }
+
+  /**
+   * Determine whether agents may wait for commands on a long poll request.
+   *
+   * @return true if the long poll endpoint answers agents
+   */
+  public boolean isAgentCommandsLongPollEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        AGENT_COMMANDS_LONGPOLL_ENABLED_KEY,
+        AGENT_COMMANDS_LONGPOLL_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Get the longest time, in seconds, a long poll request of an agent is
+   * held open. Must stay below the socket timeout of the agents.
+   *
+   * @return the long poll timeout in seconds
+   */
+  public long getAgentCommandsLongPollTimeout() {
+    return Long.parseLong(properties.getProperty(
+        AGENT_COMMANDS_LONGPOLL_TIMEOUT_KEY,
+        String.valueOf(AGENT_COMMANDS_LONGPOLL_TIMEOUT_DEFAULT)));
+  }
+
+  /**
+   * Get the number of threads processing heartbeat reports in the
+   * background. The heartbeats of a host are always processed by the same
+   * thread.
+   *
+   * @return the number of threads, or 0 to process heartbeats before
+   *         answering the agent
+   */
+  public int getAgentHeartbeatProcessingThreads() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_PROCESSING_THREADS_KEY,
+        String.valueOf(AGENT_HEARTBEAT_PROCESSING_THREADS_DEFAULT)));
+  }
+
+  /**
+   * Get the number of heartbeats each heartbeat processing thread can queue
+   * before agents have to wait.
+   *
+   * @return the queue size of each thread
+   */
+  public int getAgentHeartbeatProcessingQueueSize() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_PROCESSING_QUEUE_SIZE_KEY,
+        String.valueOf(AGENT_HEARTBEAT_PROCESSING_QUEUE_SIZE_DEFAULT)));
+  }
+
+  /**
+   * Get the number of threads processing the stages of different requests
+   * concurrently.
+   *
+   * @return the number of threads, or 0 to process all stages on the action
+   *         scheduler thread
+   */
+  public int getActionSchedulerThreads() {
+    return Integer.parseInt(properties.getProperty(
+        ACTION_SCHEDULER_THREADS_KEY,
+        String.valueOf(ACTION_SCHEDULER_THREADS_DEFAULT)));
+  }
+
+  /**
+   * Get the number of days finished requests are kept.
+   *
+   * @return the retention in days, or 0 to keep requests forever
+   */
+  public int getPurgeRequestsRetentionDays() {
+    return Integer.parseInt(properties.getProperty(
+        PURGE_REQUESTS_RETENTION_DAYS_KEY,
+        String.valueOf(PURGE_REQUESTS_RETENTION_DAYS_DEFAULT)));
+  }
+
+  /**
+   * Get the number of days alert history that is no longer current is kept.
+   *
+   * @return the retention in days, or 0 to keep alert history forever
+   */
+  public int getPurgeAlertsRetentionDays() {
+    return Integer.parseInt(properties.getProperty(
+        PURGE_ALERTS_RETENTION_DAYS_KEY,
+        String.valueOf(PURGE_ALERTS_RETENTION_DAYS_DEFAULT)));
+  }
+
+  /**
+   * Get the interval at which old history is purged.
+   *
+   * @return the interval in minutes
+   */
+  public long getPurgeInterval() {
+    return Long.parseLong(properties.getProperty(
+        PURGE_INTERVAL_KEY,
+        String.valueOf(PURGE_INTERVAL_DEFAULT)));
+  }
+
+  /**
+   * Get the number of requests removed in one transaction.
+   *
+   * @return the batch size
+   */
+  public int getPurgeBatchSize() {
+    return Integer.parseInt(properties.getProperty(
+        PURGE_BATCH_SIZE_KEY,
+        String.valueOf(PURGE_BATCH_SIZE_DEFAULT)));
+  }
+
+  /**
+   * Get the directory where purged rows are archived.
+   *
+   * @return the archive directory, or {@code null} if purged rows are not
+   *         archived
+   */
+  public String getPurgeArchiveDir() {
+    return properties.getProperty(PURGE_ARCHIVE_DIR_KEY);
+  }
+
   /**
    * Gets the location of the XML alert template file which contains the
    * velocity templates for outbound notifications.
@@ -1304,6 +1584,18 @@ public class Configuration {
     return properties.getProperty(ALERT_TEMPLATE_FILE);
   }
 
+  /**
+   * Get the interval, in seconds, at which the latest timestamp and text of
+   * current alerts are written to the database in batches.
+   *
+   * @return the flush interval in seconds, or 0 to write them right away
+   */
+  public long getAlertsCurrentFlushInterval() {
+    return Long.parseLong(properties.getProperty(
+        ALERTS_CURRENT_FLUSH_INTERVAL_KEY,
+        String.valueOf(ALERTS_CURRENT_FLUSH_INTERVAL_DEFAULT)));
+  }
+
   /**
    * Gets the default KDC port to use when no port is specified in KDC hostname
    *
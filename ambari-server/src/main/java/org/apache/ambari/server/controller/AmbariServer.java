@@ -24,6 +24,7 @@ import java.net.Authenticator;
 import java.net.BindException;
 import java.net.PasswordAuthentication;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.BadPaddingException;
 
@@ -31,7 +32,9 @@ import org.apache.ambari.eventdb.webservice.WorkflowJsonService;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.StaticallyInject;
 import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.agent.ActionQueue;
 import org.apache.ambari.server.agent.HeartBeatHandler;
+import org.apache.ambari.server.agent.rest.AgentCommandsServlet;
 import org.apache.ambari.server.agent.rest.AgentResource;
 import org.apache.ambari.server.api.AmbariErrorHandler;
 import org.apache.ambari.server.api.AmbariPersistFilter;
@@ -57,6 +60,7 @@ import org.apache.ambari.server.controller.internal.StackDefinedPropertyProvider
 import org.apache.ambari.server.controller.internal.StackDependencyResourceProvider;
 import org.apache.ambari.server.controller.internal.UserPrivilegeResourceProvider;
 import org.apache.ambari.server.controller.internal.ViewPermissionResourceProvider;
+import org.apache.ambari.server.controller.metrics.timeline.TimelineMetricCache;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.PersistenceType;
 import org.apache.ambari.server.orm.dao.BlueprintDAO;
@@ -362,6 +366,14 @@ public class AmbariServer {
       agentroot.addServlet(agent, "/agent/v1/*");
       agent.setInitOrder(3);
 
+      if (configs.isAgentCommandsLongPollEnabled()) {
+        // more specific than the agent mapping above
+        agentroot.addServlet(new ServletHolder(new AgentCommandsServlet(
+            injector.getInstance(ActionQueue.class),
+            TimeUnit.SECONDS.toMillis(configs.getAgentCommandsLongPollTimeout()))),
+            "/agent/v1/commands/*");
+      }
+
       ServletHolder cert = new ServletHolder(ServletContainer.class);
       cert.setInitParameter("com.sun.jersey.config.property.resourceConfigClass",
           "com.sun.jersey.api.core.PackagesResourceConfig");
@@ -685,6 +697,7 @@ public class AmbariServer {
       certMan.initRootCert();
       ViewRegistry.initInstance(server.viewRegistry);
       ComponentSSLConfiguration.instance().init(server.configs);
+      TimelineMetricCache.instance().init(server.configs);
       server.run();
     } catch (Throwable t) {
       LOG.error("Failed to run the Ambari Server", t);
@@ -303,8 +303,8 @@ public class ControllerModule extends AbstractModule {
 
     //ExecutionCommands cache size
 
-    bindConstant().annotatedWith(Names.named("executionCommandCacheSize")).
-        to(configuration.getExecutionCommandsCacheSize());
+    bindConstant().annotatedWith(Names.named("executionCommandCacheWeight")).
+        to(configuration.getExecutionCommandsCacheWeight());
 
     bind(AmbariManagementController.class)
         .to(AmbariManagementControllerImpl.class);
@@ -31,6 +31,12 @@ public class TaskStatusResponse extends ShortTaskStatus {
   private Long endTime;
   private short attemptCount;
 
+  /**
+   * The task whose output is read when it is first asked for, so that
+   * responses for many tasks do not carry every log.
+   */
+  private HostRoleCommand hostRoleCommand;
+
   public TaskStatusResponse() {
   }
 
@@ -52,11 +58,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
     super(hostRoleCommand);
     this.requestId = hostRoleCommand.getRequestId();
     this.exitCode = hostRoleCommand.getExitCode();
-    this.stderr = hostRoleCommand.getStderr();
-    this.stdout = hostRoleCommand.getStdout();
+    this.hostRoleCommand = hostRoleCommand;
     this.startTime = hostRoleCommand.getStartTime();
     this.attemptCount = hostRoleCommand.getAttemptCount();
-    this.structuredOut = hostRoleCommand.getStructuredOut();
     this.endTime = hostRoleCommand.getEndTime();
     this.commandDetail = hostRoleCommand.getCommandDetail();
   }
@@ -78,6 +82,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
   }
 
   public String getStderr() {
+    if (null == stderr && null != hostRoleCommand) {
+      stderr = hostRoleCommand.getStderr();
+    }
     return stderr;
   }
 
@@ -86,6 +93,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
   }
 
   public String getStdout() {
+    if (null == stdout && null != hostRoleCommand) {
+      stdout = hostRoleCommand.getStdout();
+    }
     return stdout;
   }
 
@@ -110,6 +120,9 @@ public class TaskStatusResponse extends ShortTaskStatus {
   }
 
   public String getStructuredOut() {
+    if (null == structuredOut && null != hostRoleCommand) {
+      structuredOut = hostRoleCommand.getStructuredOut();
+    }
     return structuredOut;
   }
 
@@ -33,6 +33,7 @@ import org.apache.ambari.server.DuplicateResourceException;
 import org.apache.ambari.server.HostNotFoundException;
 import org.apache.ambari.server.ObjectNotFoundException;
 import org.apache.ambari.server.ParentObjectNotFoundException;
+import org.apache.ambari.server.agent.ActionQueue;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ConfigurationRequest;
 import org.apache.ambari.server.controller.HostRequest;
@@ -116,6 +117,10 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
       PropertyHelper.getPropertyId("Hosts", "last_agent_env");
   protected static final String HOST_DESIRED_CONFIGS_PROPERTY_ID = 
       PropertyHelper.getPropertyId("Hosts", "desired_configs");
+  protected static final String HOST_AGENT_QUEUE_DEPTH_PROPERTY_ID =
+      PropertyHelper.getPropertyId("Hosts", "agent_queue_depth");
+  protected static final String HOST_AGENT_QUEUE_AGE_PROPERTY_ID =
+      PropertyHelper.getPropertyId("Hosts", "agent_queue_age");
 
   protected static final String BLUEPRINT_PROPERTY_ID =
       PropertyHelper.getPropertyId(null, "blueprint");
@@ -131,6 +136,9 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
   @Inject
   private MaintenanceStateHelper maintenanceStateHelper;
 
+  @Inject
+  private ActionQueue actionQueue;
+
   // ----- Constructors ----------------------------------------------------
 
   /**
@@ -242,6 +250,14 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
           response.getHostState(), requestedIds);
       setResourceProperty(resource, HOST_DESIRED_CONFIGS_PROPERTY_ID,
           response.getDesiredHostConfigs(), requestedIds);
+
+      // commands waiting for the next heartbeat of the host
+      if (null != actionQueue) {
+        setResourceProperty(resource, HOST_AGENT_QUEUE_DEPTH_PROPERTY_ID,
+            actionQueue.size(response.getHostname()), requestedIds);
+        setResourceProperty(resource, HOST_AGENT_QUEUE_AGE_PROPERTY_ID,
+            actionQueue.getOldestCommandAge(response.getHostname()), requestedIds);
+      }
       
       // only when a cluster request
       if (null != response.getMaintenanceState()) {
@@ -39,6 +39,7 @@ import org.apache.ambari.server.controller.ServiceRequest;
 import org.apache.ambari.server.controller.ServiceResponse;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.spi.BatchQueryResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.Predicate;
@@ -84,7 +85,8 @@ import java.util.Set;
 /**
  * Resource provider for service resources.
  */
-public class ServiceResourceProvider extends AbstractControllerResourceProvider {
+public class ServiceResourceProvider extends AbstractControllerResourceProvider
+    implements BatchQueryResourceProvider {
 
 
   // ----- Property ID constants ---------------------------------------------
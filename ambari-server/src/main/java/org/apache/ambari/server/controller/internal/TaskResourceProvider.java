@@ -65,6 +65,8 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
   protected static final String TASK_ATTEMPT_CNT_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "attempt_cnt");
   protected static final String TASK_COMMAND_DET_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "command_detail");
   protected static final String TASK_CUST_CMD_NAME_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "custom_command_name");
+  protected static final String TASK_OUTPUT_OFFSET_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "output_offset");
+  protected static final String TASK_OUTPUT_LENGTH_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "output_length");
 
   private static Set<String> pkPropertyIds =
       new HashSet<String>(Arrays.asList(new String[]{
@@ -105,9 +107,20 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
 
     Map<String, Set<TaskStatusRequest>> requestsMap = new HashMap<String, Set<TaskStatusRequest>>();
 
+    // the range of stdout and stderr to return, for paging through large logs
+    Integer outputOffset = null;
+    Integer outputLength = null;
+
     for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
       String clusterName = (String) propertyMap.get(TASK_CLUSTER_NAME_PROPERTY_ID);
 
+      if (propertyMap.containsKey(TASK_OUTPUT_OFFSET_PROPERTY_ID)) {
+        outputOffset = getOutputProperty(propertyMap, TASK_OUTPUT_OFFSET_PROPERTY_ID, true);
+      }
+      if (propertyMap.containsKey(TASK_OUTPUT_LENGTH_PROPERTY_ID)) {
+        outputLength = getOutputProperty(propertyMap, TASK_OUTPUT_LENGTH_PROPERTY_ID, false);
+      }
+
       Set<TaskStatusRequest> requests = requestsMap.get(clusterName);
       if (requests == null) {
         requests = new HashSet<TaskStatusRequest>();
@@ -153,11 +166,27 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
         setResourceProperty(resource, TASK_COMMAND_PROPERTY_ID, response.getCommand(), requestedIds);
         setResourceProperty(resource, TASK_STATUS_PROPERTY_ID, response.getStatus(), requestedIds);
         setResourceProperty(resource, TASK_EXIT_CODE_PROPERTY_ID, response.getExitCode(), requestedIds);
-        setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, response.getStderr(), requestedIds);
-        setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, response.getStdout(), requestedIds);
+        // !!! the output is read from the database only when it is requested
+        if (isPropertyRequested(TASK_STDERR_PROPERTY_ID, requestedIds)) {
+          setResourceProperty(resource, TASK_STDERR_PROPERTY_ID,
+              getOutputRange(response.getStderr(), outputOffset, outputLength), requestedIds);
+        }
+        if (isPropertyRequested(TASK_STOUT_PROPERTY_ID, requestedIds)) {
+          setResourceProperty(resource, TASK_STOUT_PROPERTY_ID,
+              getOutputRange(response.getStdout(), outputOffset, outputLength), requestedIds);
+        }
+        if (isPropertyRequested(TASK_STRUCT_OUT_PROPERTY_ID, requestedIds)) {
+          setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID,
+              parseStructuredOutput(response.getStructuredOut()), requestedIds);
+        }
+        if (null != outputOffset) {
+          setResourceProperty(resource, TASK_OUTPUT_OFFSET_PROPERTY_ID, outputOffset, requestedIds);
+        }
+        if (null != outputLength) {
+          setResourceProperty(resource, TASK_OUTPUT_LENGTH_PROPERTY_ID, outputLength, requestedIds);
+        }
         setResourceProperty(resource, TASK_OUTPUTLOG_PROPERTY_ID, response.getOutputLog(), requestedIds);
         setResourceProperty(resource, TASK_ERRORLOG_PROPERTY_ID, response.getErrorLog(), requestedIds);
-        setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(response.getStructuredOut()), requestedIds);
         setResourceProperty(resource, TASK_START_TIME_PROPERTY_ID, response.getStartTime(), requestedIds);
         setResourceProperty(resource, TASK_END_TIME_PROPERTY_ID, response.getEndTime(), requestedIds);
         setResourceProperty(resource, TASK_ATTEMPT_CNT_PROPERTY_ID, response.getAttemptCount(), requestedIds);
@@ -179,6 +208,73 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
     return resources;
   }
 
+  /**
+   * Gets the value of the {@code Tasks/output_offset} or
+   * {@code Tasks/output_length} property.
+   *
+   * @param propertyMap
+   *          the properties of the request.
+   * @param propertyId
+   *          the id of the property.
+   * @param allowNegative
+   *          {@code true} if the value may be negative.
+   * @return the value of the property.
+   * @throws IllegalArgumentException
+   *           if the value is not an integer or is negative when not allowed.
+   */
+  private static Integer getOutputProperty(Map<String, Object> propertyMap,
+      String propertyId, boolean allowNegative) {
+    Object value = propertyMap.get(propertyId);
+
+    Integer result;
+    try {
+      result = Integer.valueOf(String.valueOf(value).trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid argument, " + propertyId
+          + " must be an integer but was " + value);
+    }
+
+    if (!allowNegative && result < 0) {
+      throw new IllegalArgumentException("Invalid argument, " + propertyId
+          + " must not be negative but was " + value);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the part of a task's output selected by the
+   * {@code Tasks/output_offset} and {@code Tasks/output_length} properties. A
+   * negative offset counts back from the end of the output, so that
+   * {@code Tasks/output_offset=-4096} returns the tail of a log.
+   *
+   * @param output
+   *          the output of the task.
+   * @param offset
+   *          the index of the first character to return, or {@code null} to
+   *          start at the beginning.
+   * @param length
+   *          the maximum number of characters to return, or {@code null} to
+   *          return everything after the offset.
+   * @return the selected part of the output.
+   */
+  static String getOutputRange(String output, Integer offset, Integer length) {
+    if (null == output || (null == offset && null == length)) {
+      return output;
+    }
+
+    int size = output.length();
+    int start = 0;
+    if (null != offset) {
+      start = offset < 0 ? Math.max(0, size + offset) : Math.min(offset, size);
+    }
+
+    int end = size;
+    if (null != length) {
+      end = (int) Math.min((long) start + Math.max(0, length), size);
+    }
+    return output.substring(start, end);
+  }
+
   /**
    * Converts the specified JSON string into a {@link Map}. For now, use Jackson
    * instead of gson since none of the integers will convert properly without a
@@ -20,12 +20,15 @@ package org.apache.ambari.server.controller.jmx;
 
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
+import org.apache.ambari.server.controller.metrics.MetricsRequestDispatcher;
 import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectReader;
@@ -34,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,7 +57,9 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   private static final String PORT_KEY = "tag.port";
   private static final String DOT_REPLACEMENT_CHAR = "#";
 
-  private final static ObjectReader jmxObjectReader;
+  private static final String BEANS_KEY = "beans";
+
+  private final static ObjectMapper jmxObjectMapper;
   private final static ObjectReader stormObjectReader;
 
   private static final Map<String, String> DEFAULT_JMX_PORTS = new HashMap<String, String>();
@@ -71,9 +77,8 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     DEFAULT_JMX_PORTS.put("JOURNALNODE",         "8480");
     DEFAULT_JMX_PORTS.put("STORM_REST_API",      "8745");
 
-    ObjectMapper jmxObjectMapper = new ObjectMapper();
+    jmxObjectMapper = new ObjectMapper();
     jmxObjectMapper.configure(DeserializationConfig.Feature.USE_ANNOTATIONS, false);
-    jmxObjectReader = jmxObjectMapper.reader(JMXMetricHolder.class);
 
     TypeReference<HashMap<String,Object>> typeRef
             = new TypeReference<
@@ -88,6 +93,21 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   private static final Pattern dotReplacementCharPattern =
     Pattern.compile(DOT_REPLACEMENT_CHAR);
 
+  private static final TypeReference<Map<String, Object>> BEAN_TYPE =
+    new TypeReference<Map<String, Object>>() {};
+
+  /**
+   * Reads the beans of a JMX response one at a time off the stream,
+   * skipping everything but the named beans.
+   */
+  private static final MetricsRequestDispatcher.ResponseParser<JMXMetricHolder> JMX_PARSER =
+    new MetricsRequestDispatcher.ResponseParser<JMXMetricHolder>() {
+      @Override
+      public JMXMetricHolder parse(InputStream in) throws IOException {
+        return readMetricHolder(in);
+      }
+    };
+
   private final StreamProvider streamProvider;
 
   private final JMXHostProvider jmxHostProvider;
@@ -203,42 +223,64 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
-
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
+        JMXMetricHolder metricHolder = MetricsRequestDispatcher.instance().read(
+            streamProvider, getSpec(protocol, hostName, port, "/jmx"), JMX_PARSER, populateTimeout);
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
+        }
+
+        getHadoopMetricValue(metricHolder, ids, resource, request, ticket);
+
+      } catch (IOException e) {
+        logException(e);
+      }
+    }
+    return resource;
+  }
 
-            getHadoopMetricValue(in, ids, resource, request, ticket);
+  /**
+   * Read a JMX response bean by bean. The holder may be shared between
+   * concurrent requests for the same URL and must not be modified.
+   */
+  private static JMXMetricHolder readMetricHolder(InputStream in) throws IOException {
+    JsonParser parser = jmxObjectMapper.getJsonFactory().createJsonParser(in);
+    try {
+      List<Map<String, Object>> beans = new ArrayList<Map<String, Object>>();
 
-          } catch (IOException e) {
-            logException(e);
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Unexpected JMX response, expected an object.");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if (BEANS_KEY.equals(field) && token == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Map<String, Object> bean = jmxObjectMapper.readValue(parser, BEAN_TYPE);
+            if (bean.containsKey(NAME_KEY)) {
+              beans.add(bean);
+            }
           }
-        }
-      } finally {
-        if (in != null) {
-          in.close();
+        } else {
+          parser.skipChildren();
         }
       }
-    } catch (IOException e) {
-      logException(e);
+
+      JMXMetricHolder metricHolder = new JMXMetricHolder();
+      metricHolder.setBeans(beans);
+      return metricHolder;
+    } finally {
+      parser.close();
     }
-    return resource;
   }
 
   /**
    * Hadoop-specific metrics fetching
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
+  private void getHadoopMetricValue(JMXMetricHolder metricHolder, Set<String> ids,
                        Resource resource, Request request, Ticket ticket) throws IOException {
-    JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
-
     Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
     String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
@@ -0,0 +1,256 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics;
+
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads metrics sources (JMX, Metrics Collector) on behalf of the metrics
+ * property providers.
+ * <p/>
+ * Identical requests that are in flight at the same time are coalesced:
+ * one caller reads and parses the response and the others wait for its
+ * result, which is shared and must be treated as read only. The number of
+ * concurrent reads per host is bounded, so a slow endpoint holds only a
+ * few provider threads; callers that get no slot in time fail instead of
+ * queueing up behind it.
+ */
+public class MetricsRequestDispatcher {
+
+  public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+  public static final long DEFAULT_TIMEOUT_MILLIS = 10000L;
+
+  /**
+   * The singleton.
+   */
+  private static final MetricsRequestDispatcher singleton =
+      new MetricsRequestDispatcher(DEFAULT_MAX_REQUESTS_PER_HOST);
+
+  private final int maxRequestsPerHost;
+
+  private final ConcurrentMap<String, Semaphore> hostPermits =
+      new ConcurrentHashMap<String, Semaphore>();
+
+  private final ConcurrentMap<RequestKey, FutureTask<Object>> inFlight =
+      new ConcurrentHashMap<RequestKey, FutureTask<Object>>();
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Create a dispatcher.
+   *
+   * @param maxRequestsPerHost  the maximum number of concurrent reads per host
+   */
+  public MetricsRequestDispatcher(int maxRequestsPerHost) {
+    this.maxRequestsPerHost = maxRequestsPerHost;
+  }
+
+
+  // ----- MetricsRequestDispatcher ------------------------------------------
+
+  /**
+   * Read and parse the given spec, waiting at most the default timeout.
+   *
+   * @see #read(StreamProvider, String, ResponseParser, long)
+   */
+  public <T> T read(StreamProvider streamProvider, String spec,
+                    ResponseParser<T> parser) throws IOException {
+    return read(streamProvider, spec, parser, DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Read and parse the given spec, or wait for the result of an identical
+   * request already in flight.
+   *
+   * @param streamProvider  the stream provider used for the read
+   * @param spec            the URL to read
+   * @param parser          the response parser; requests are only coalesced
+   *                        when they use the same parser
+   * @param timeoutMillis   the time to wait for a slot on the host or for
+   *                        the result of the request in flight
+   *
+   * @return the parsed response
+   *
+   * @throws IOException if the source could not be read or parsed, or if
+   *                     the request timed out
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T read(final StreamProvider streamProvider, final String spec,
+                    final ResponseParser<T> parser, final long timeoutMillis)
+      throws IOException {
+
+    RequestKey key = new RequestKey(spec, parser);
+    FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return readWithPermit(streamProvider, spec, parser, timeoutMillis);
+      }
+    });
+
+    FutureTask<Object> running = inFlight.putIfAbsent(key, task);
+    if (running == null) {
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(key, task);
+      }
+      running = task;
+    }
+
+    try {
+      return (T) running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Error reading " + spec, cause);
+    } catch (TimeoutException e) {
+      throw new IOException("Timed out waiting for " + spec);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for " + spec);
+    }
+  }
+
+  /**
+   * Get the number of requests currently being read.
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Get the singleton instance.
+   *
+   * @return the singleton instance
+   */
+  public static MetricsRequestDispatcher instance() {
+    return singleton;
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  private <T> T readWithPermit(StreamProvider streamProvider, String spec,
+                               ResponseParser<T> parser, long timeoutMillis)
+      throws IOException, InterruptedException {
+
+    String host = getHost(spec);
+    Semaphore permits = getPermits(host);
+    if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+      throw new IOException("Too many concurrent requests to " + host);
+    }
+    try {
+      InputStream in = streamProvider.readFrom(spec);
+      try {
+        return parser.parse(in);
+      } finally {
+        // Fully read and closed streams let the connection be kept alive
+        if (in != null) {
+          in.close();
+        }
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  private Semaphore getPermits(String host) {
+    Semaphore permits = hostPermits.get(host);
+    if (permits == null) {
+      Semaphore newPermits = new Semaphore(maxRequestsPerHost);
+      permits = hostPermits.putIfAbsent(host, newPermits);
+      if (permits == null) {
+        permits = newPermits;
+      }
+    }
+    return permits;
+  }
+
+  private static String getHost(String spec) {
+    try {
+      String host = new URI(spec).getHost();
+      return host == null ? spec : host;
+    } catch (URISyntaxException e) {
+      return spec;
+    }
+  }
+
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * Parses a response stream. Parsers are compared by identity when
+   * coalescing requests, so they should be shared instances.
+   */
+  public interface ResponseParser<T> {
+    /**
+     * Parse the given response.
+     *
+     * @param in  the response stream; closed by the caller
+     *
+     * @return the parsed response
+     *
+     * @throws IOException if the response could not be read
+     */
+    T parse(InputStream in) throws IOException;
+  }
+
+  private static class RequestKey {
+    private final String spec;
+    private final ResponseParser<?> parser;
+
+    private RequestKey(String spec, ResponseParser<?> parser) {
+      this.spec = spec;
+      this.parser = parser;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      RequestKey that = (RequestKey) o;
+      return spec.equals(that.spec) && parser == that.parser;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * spec.hashCode() + System.identityHashCode(parser);
+    }
+  }
+}
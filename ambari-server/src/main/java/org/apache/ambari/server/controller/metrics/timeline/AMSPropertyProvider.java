@@ -21,6 +21,7 @@ import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.MetricsPropertyProvider;
+import org.apache.ambari.server.controller.metrics.MetricsRequestDispatcher;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
@@ -28,6 +29,7 @@ import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValuesModule;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.http.client.utils.URIBuilder;
 import org.codehaus.jackson.map.AnnotationIntrospector;
@@ -37,6 +39,7 @@ import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.SocketTimeoutException;
 import java.util.Collection;
@@ -63,6 +66,18 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
   private static final String METRIC_REGEXP_PATTERN = "\\([^)]*\\)";
   private static final int COLLECTOR_DEFAULT_PORT = 6188;
 
+  /**
+   * Parser of collector responses, shared so that identical requests are
+   * coalesced by the {@link MetricsRequestDispatcher}.
+   */
+  private static final MetricsRequestDispatcher.ResponseParser<TimelineMetrics> TIMELINE_PARSER =
+    new MetricsRequestDispatcher.ResponseParser<TimelineMetrics>() {
+      @Override
+      public TimelineMetrics parse(InputStream in) throws IOException {
+        return timelineObjectReader.readValue(new BufferedReader(new InputStreamReader(in)));
+      }
+    };
+
   static {
     TIMELINE_APPID_MAP.put(HBASE_MASTER.name(), "HBASE");
     TIMELINE_APPID_MAP.put(HBASE_REGIONSERVER.name(), "HBASE");
@@ -71,6 +86,7 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
     mapper = new ObjectMapper();
     AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
     mapper.setAnnotationIntrospector(introspector);
+    mapper.registerModule(new TimelineMetricValuesModule());
     //noinspection deprecation
     mapper.getSerializationConfig().setSerializationInclusion(Inclusion.NON_NULL);
     timelineObjectReader = mapper.reader(TimelineMetrics.class);
@@ -172,12 +188,8 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
 
           String spec = getSpec(hostname, resource);
 
-          BufferedReader reader = null;
           try {
-            LOG.debug("Metrics request url =" + spec);
-            reader = new BufferedReader(new InputStreamReader(streamProvider.readFrom(spec)));
-
-            TimelineMetrics timelineMetrics = timelineObjectReader.readValue(reader);
+            TimelineMetrics timelineMetrics = getTimelineMetrics(hostname, resource, spec);
             LOG.debug("Timeline metrics response => " + timelineMetrics);
 
             Set<String> patterns = createPatterns(metrics.keySet());
@@ -200,20 +212,6 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
               }
               LOG.error(errorMsg);
             }
-          } finally {
-            if (reader != null) {
-              try {
-                reader.close();
-              } catch (IOException e) {
-                if (LOG.isWarnEnabled()) {
-                  if (LOG.isDebugEnabled()) {
-                    LOG.warn("Unable to close http input stream : spec=" + spec, e);
-                  } else {
-                    LOG.warn("Unable to close http input stream : spec=" + spec);
-                  }
-                }
-              }
-            }
           }
         }
       }
@@ -221,7 +219,45 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
       return Collections.emptySet();
     }
 
+    /**
+     * Temporal requests go through the {@link TimelineMetricCache}, which
+     * only reads the part of the range it does not hold yet. Requests without
+     * an end time are open ended and are always read from the collector.
+     */
+    private TimelineMetrics getTimelineMetrics(final String hostname,
+        final Resource resource, String spec) throws IOException {
+
+      TimelineMetricCache cache = TimelineMetricCache.instance();
+      if (temporalInfo == null || !cache.isEnabled()
+        || temporalInfo.getStartTime() == null || temporalInfo.getEndTime() == null
+        || temporalInfo.getEndTime() < 0) {
+        return readTimelineMetrics(spec);
+      }
+
+      return cache.getTimelineMetrics(getSpec(hostname, resource, null, null),
+        temporalInfo.getStartTime(), temporalInfo.getEndTime(),
+        new TimelineMetricCache.MetricsFetcher() {
+          @Override
+          public TimelineMetrics fetch(long startTime, long endTime) throws IOException {
+            return readTimelineMetrics(getSpec(hostname, resource, startTime, endTime));
+          }
+        });
+    }
+
+    private TimelineMetrics readTimelineMetrics(String spec) throws IOException {
+      LOG.debug("Metrics request url =" + spec);
+      return MetricsRequestDispatcher.instance().read(streamProvider, spec, TIMELINE_PARSER);
+    }
+
     private String getSpec(String hostname, Resource resource) {
+      if (temporalInfo == null) {
+        return getSpec(hostname, resource, null, null);
+      }
+      return getSpec(hostname, resource, temporalInfo.getStartTime(),
+        temporalInfo.getEndTime());
+    }
+
+    private String getSpec(String hostname, Resource resource, Long startTime, Long endTime) {
       String metricsParam = getSetString(processRegexps(metrics.keySet()), -1);
       // Reuse uriBuilder
       uriBuilder.removeQuery();
@@ -242,16 +278,13 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
         uriBuilder.setParameter("appId", componentName);
       }
 
-      if (temporalInfo != null) {
-        long startTime = temporalInfo.getStartTime();
-        if (startTime != -1) {
-          uriBuilder.setParameter("startTime", String.valueOf(startTime));
-        }
+      // negative times are not set
+      if (startTime != null && startTime >= 0) {
+        uriBuilder.setParameter("startTime", String.valueOf(startTime));
+      }
 
-        long endTime = temporalInfo.getEndTime();
-        if (endTime != -1) {
-          uriBuilder.setParameter("endTime", String.valueOf(endTime));
-        }
+      if (endTime != null && endTime >= 0) {
+        uriBuilder.setParameter("endTime", String.valueOf(endTime));
       }
 
       return uriBuilder.toString();
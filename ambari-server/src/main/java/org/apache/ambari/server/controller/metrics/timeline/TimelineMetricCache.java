@@ -0,0 +1,352 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics.timeline;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of temporal responses of the Metrics Collector.
+ * <p/>
+ * Ambari Web polls the same sliding window (for example the last hour) of
+ * the same metrics every few seconds. An entry is kept per query and
+ * window length; when the window moves, only the datapoints after the
+ * last fetched time are requested from the collector and appended to the
+ * cached series. The end of the cached window is read again on every
+ * refresh since hosts report their datapoints with a delay. Entries are
+ * evicted by their total number of datapoints.
+ * <p/>
+ * The cache is disabled until {@link #init(Configuration)} is called.
+ */
+public class TimelineMetricCache {
+  private static final Logger LOG = LoggerFactory.getLogger(TimelineMetricCache.class);
+
+  /**
+   * Longer windows are read by the collector from its aggregate tables at
+   * a coarser precision, which a short delta query would not match.
+   */
+  static final long MAX_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(10);
+
+  /**
+   * Times below this value are given in seconds, same rule as the
+   * collector uses.
+   */
+  private static final long MAX_SECONDS_TIME = 9999999999L;
+
+  /**
+   * The collector converts metrics with this in their name to rates and
+   * reports 0 for the first datapoint of every range it reads.
+   */
+  private static final String RATE_METRIC_MARKER = "._rate";
+
+  /**
+   * The singleton.
+   */
+  private static TimelineMetricCache singleton = new TimelineMetricCache();
+
+  private volatile Cache<String, CacheEntry> cache;
+  private volatile long refreshOverlapMillis;
+
+  private final AtomicLong deltaHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Singleton constructor.
+   */
+  protected TimelineMetricCache() {
+  }
+
+
+  // ----- TimelineMetricCache -----------------------------------------------
+
+  /**
+   * Initialize with the given configuration.
+   *
+   * @param configuration  the configuration
+   */
+  public void init(Configuration configuration) {
+    if (!configuration.isTimelineMetricsCacheEnabled()) {
+      cache = null;
+      return;
+    }
+    init(configuration.getTimelineMetricsCacheMaxDatapoints(),
+      TimeUnit.SECONDS.toMillis(configuration.getTimelineMetricsCacheRefreshOverlap()),
+      TimeUnit.SECONDS.toMillis(configuration.getTimelineMetricsCacheEntryTtl()));
+  }
+
+  void init(long maxDatapoints, long refreshOverlapMillis, long entryTtlMillis) {
+    this.refreshOverlapMillis = refreshOverlapMillis;
+    cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxDatapoints)
+      .weigher(new Weigher<String, CacheEntry>() {
+        @Override
+        public int weigh(String key, CacheEntry entry) {
+          return entry.getWeight();
+        }
+      })
+      .expireAfterAccess(entryTtlMillis, TimeUnit.MILLISECONDS)
+      .build();
+  }
+
+  /**
+   * Determine whether responses are cached.
+   *
+   * @return true if the cache was initialized and is enabled
+   */
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Get the metrics of the given query for the given time range, reading
+   * from the collector only what is not cached.
+   *
+   * @param key        the query without its time range
+   * @param startTime  the start of the range, in seconds or milliseconds
+   * @param endTime    the end of the range, in seconds or milliseconds;
+   *                   negative if the range has no end
+   * @param fetcher    reads a time range from the collector
+   *
+   * @return the metrics with their datapoints in the requested range
+   *
+   * @throws IOException if the collector could not be read
+   */
+  public TimelineMetrics getTimelineMetrics(String key, long startTime,
+      long endTime, MetricsFetcher fetcher) throws IOException {
+
+    startTime = toMillis(startTime);
+    endTime = toMillis(endTime);
+    long window = endTime - startTime;
+
+    Cache<String, CacheEntry> cache = this.cache;
+    if (cache == null || window <= 0 || window > MAX_WINDOW_MILLIS) {
+      return fetcher.fetch(startTime, endTime);
+    }
+
+    String entryKey = key + "#" + window;
+    CacheEntry entry = cache.getIfPresent(entryKey);
+    if (entry == null) {
+      CacheEntry newEntry = new CacheEntry();
+      entry = cache.asMap().putIfAbsent(entryKey, newEntry);
+      if (entry == null) {
+        entry = newEntry;
+      }
+    }
+
+    TimelineMetrics result;
+    // Concurrent pollers of the same window wait for a single fetch
+    synchronized (entry) {
+      if (!entry.covers(startTime)) {
+        entry.replace(fetcher.fetch(startTime, endTime), startTime, endTime);
+        misses.incrementAndGet();
+      } else {
+        long deltaStart = Math.max(startTime, entry.endTime - refreshOverlapMillis);
+        entry.merge(fetcher.fetch(deltaStart, endTime), endTime);
+        deltaHits.incrementAndGet();
+      }
+      result = entry.slice(startTime, endTime);
+      entry.trim(entry.endTime - window);
+    }
+    // Re-insert to update the weight of the entry
+    cache.put(entryKey, entry);
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Timeline metrics cache: deltaHits=" + deltaHits.get()
+        + ", misses=" + misses.get());
+    }
+    return result;
+  }
+
+  /**
+   * Get the number of requests answered with a delta read.
+   */
+  public long getDeltaHitCount() {
+    return deltaHits.get();
+  }
+
+  /**
+   * Get the number of requests that read their whole range.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Get the singleton instance.
+   *
+   * @return the singleton instance
+   */
+  public static TimelineMetricCache instance() {
+    return singleton;
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Negative times mean the time is not set and are kept as they are.
+   */
+  private static long toMillis(long time) {
+    return time >= 0 && time < MAX_SECONDS_TIME ? time * 1000 : time;
+  }
+
+  private static TimelineMetric copyOf(TimelineMetric source,
+                                       TimelineMetricValues values) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(source.getMetricName());
+    metric.setHostName(source.getHostName());
+    metric.setAppId(source.getAppId());
+    metric.setInstanceId(source.getInstanceId());
+    metric.setType(source.getType());
+    metric.setTimestamp(source.getTimestamp());
+    metric.setStartTime(source.getStartTime());
+    metric.setMetricValueSeries(values);
+    return metric;
+  }
+
+  private static String getSeriesKey(TimelineMetric metric) {
+    return metric.getMetricName() + "|" + metric.getHostName() + "|"
+      + metric.getAppId() + "|" + metric.getInstanceId();
+  }
+
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * Reads the metrics of a time range from the collector.
+   */
+  public interface MetricsFetcher {
+    /**
+     * @param startTime  the start of the range in milliseconds
+     * @param endTime    the end of the range in milliseconds
+     */
+    TimelineMetrics fetch(long startTime, long endTime) throws IOException;
+  }
+
+  /**
+   * The series of one query, complete between startTime and endTime.
+   */
+  private static class CacheEntry {
+    private final Map<String, TimelineMetric> metrics =
+      new LinkedHashMap<String, TimelineMetric>();
+    private long startTime = -1;
+    private long endTime = -1;
+    private volatile int weight;
+
+    boolean covers(long time) {
+      return startTime >= 0 && startTime <= time && time <= endTime;
+    }
+
+    /**
+     * The fetched metrics may be shared with other callers, for example by
+     * the request dispatcher, so the entry keeps its own copies.
+     */
+    void replace(TimelineMetrics timelineMetrics, long startTime, long endTime) {
+      metrics.clear();
+      for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+        metrics.put(getSeriesKey(metric), copyOf(metric,
+          metric.getMetricValueSeries().slice(Long.MIN_VALUE, Long.MAX_VALUE)));
+      }
+      this.startTime = startTime;
+      this.endTime = endTime;
+      updateWeight();
+    }
+
+    /**
+     * A series missing from the cache had no datapoints in the cached
+     * range, so the delta alone is complete for it. The first datapoint of
+     * a rate series is not a rate, since the collector has no previous
+     * datapoint in the delta to compute it from, so it is not merged over
+     * the cached one.
+     */
+    void merge(TimelineMetrics delta, long endTime) {
+      for (TimelineMetric metric : delta.getMetrics()) {
+        String seriesKey = getSeriesKey(metric);
+        TimelineMetric cached = metrics.get(seriesKey);
+        TimelineMetricValues values = metric.getMetricValueSeries();
+        if (cached == null) {
+          metrics.put(seriesKey, copyOf(metric,
+            values.slice(Long.MIN_VALUE, Long.MAX_VALUE)));
+        } else if (metric.getMetricName().contains(RATE_METRIC_MARKER)) {
+          if (values.size() > 1) {
+            cached.getMetricValueSeries().merge(
+              values.slice(values.getFirstTimestamp() + 1, Long.MAX_VALUE));
+          }
+        } else {
+          cached.getMetricValueSeries().merge(values);
+        }
+      }
+      this.endTime = Math.max(this.endTime, endTime);
+      updateWeight();
+    }
+
+    TimelineMetrics slice(long startTime, long endTime) {
+      TimelineMetrics timelineMetrics = new TimelineMetrics();
+      for (TimelineMetric cached : metrics.values()) {
+        timelineMetrics.getMetrics().add(copyOf(cached,
+          cached.getMetricValueSeries().slice(startTime, endTime + 1)));
+      }
+      return timelineMetrics;
+    }
+
+    void trim(long startTime) {
+      if (startTime <= this.startTime) {
+        return;
+      }
+      for (Iterator<TimelineMetric> iterator = metrics.values().iterator(); iterator.hasNext(); ) {
+        TimelineMetric metric = iterator.next();
+        metric.setMetricValueSeries(
+          metric.getMetricValueSeries().slice(startTime, Long.MAX_VALUE));
+        if (metric.getMetricValueSeries().isEmpty()) {
+          iterator.remove();
+        }
+      }
+      this.startTime = startTime;
+      updateWeight();
+    }
+
+    int getWeight() {
+      return weight;
+    }
+
+    private void updateWeight() {
+      int datapoints = 0;
+      for (TimelineMetric metric : metrics.values()) {
+        datapoints += metric.getMetricValueSeries().size();
+      }
+      weight = datapoints;
+    }
+  }
+}
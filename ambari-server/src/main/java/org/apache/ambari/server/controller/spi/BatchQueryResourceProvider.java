@@ -0,0 +1,35 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.spi;
+
+/**
+ * Marks a resource provider that can be queried for the sub-resources of
+ * many parent resources at once.
+ *
+ * When a query asks for the sub-resources of a collection (for example the
+ * host components of all hosts), the sub-resources of a provider that
+ * implements {@link BatchQueryResourceProvider} are read with a single
+ * {@link ResourceProvider#getResources(Request, Predicate)} call whose
+ * predicate is an OR of the key predicates of all parents, instead of one
+ * call per parent.  The provider must return the key properties of the
+ * resources so they can be matched back to their parents, and must not
+ * fail the whole query when no resource matches one of the OR'ed
+ * predicates.
+ */
+public interface BatchQueryResourceProvider extends ResourceProvider {
+}
@@ -17,13 +17,21 @@
  */
 package org.apache.ambari.server.events;
 
+import java.util.Arrays;
+
+import org.apache.ambari.server.events.publishers.CoalescingEvent;
 import org.apache.ambari.server.state.Alert;
 
 /**
  * The {@link AlertReceivedEvent} is fired when an {@link Alert} is received or
  * generated.
+ * <p/>
+ * A received alert which has the same state as a received alert for the same
+ * cluster, definition, instance and host that is still waiting to be
+ * dispatched only refreshes its timestamp and text, so it replaces it.
  */
-public final class AlertReceivedEvent extends AlertEvent {
+public final class AlertReceivedEvent extends AlertEvent implements
+    CoalescingEvent {
 
   /**
    * Constructor.
@@ -35,6 +43,25 @@ public final class AlertReceivedEvent extends AlertEvent {
     super(clusterId, alert);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object getCoalescingKey() {
+    return Arrays.asList(m_clusterId, m_alert.getName(), m_alert.getInstance(),
+        m_alert.getHost());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean supersedes(CoalescingEvent queued) {
+    Alert queuedAlert = ((AlertReceivedEvent) queued).getAlert();
+    return m_alert.getState() == queuedAlert.getState()
+        && m_alert.getTimestamp() >= queuedAlert.getTimestamp();
+  }
+
   /**
    * {@inheritDoc}
    */
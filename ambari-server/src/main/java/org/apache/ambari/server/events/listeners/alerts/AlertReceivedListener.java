@@ -22,6 +22,7 @@ import java.util.Map;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.RootServiceResponseFactory.Services;
 import org.apache.ambari.server.events.AlertEvent;
 import org.apache.ambari.server.events.AlertReceivedEvent;
@@ -41,6 +42,7 @@ import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.alert.AlertCurrentIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +56,11 @@ import com.google.inject.Singleton;
  * The {@link AlertReceivedListener} class handles {@link AlertReceivedEvent}
  * and updates the appropriate DAOs. It may also fire new
  * {@link AlertStateChangeEvent} when an {@link AlertState} change is detected.
+ * <p/>
+ * Alerts which did not change state are recognized through the
+ * {@link AlertCurrentIndex}; their latest timestamp and text are queued there
+ * and written in batches by the
+ * {@link org.apache.ambari.server.state.services.AlertCurrentFlushService}.
  */
 @Singleton
 @EagerSingleton
@@ -75,6 +82,19 @@ public class AlertReceivedListener {
   @Inject
   private Provider<Clusters> m_clusters;
 
+  /**
+   * Current alerts by cluster, definition and host, and the latest
+   * timestamps waiting to be written.
+   */
+  @Inject
+  private AlertCurrentIndex m_currentIndex;
+
+  /**
+   * Used to determine whether the latest timestamps are written in batches.
+   */
+  @Inject
+  private Configuration m_configuration;
+
   /**
    * Receives and publishes {@link AlertEvent} instances.
    */
@@ -107,6 +127,22 @@ public class AlertReceivedListener {
     Alert alert = event.getAlert();
     long clusterId = event.getClusterId();
 
+    // an indexed alert was valid and enabled when it was indexed; removing
+    // or disabling its definition clears the index
+    long generation = m_currentIndex.getGeneration();
+    AlertCurrentIndex.CurrentAlert indexed = m_currentIndex.get(clusterId,
+        alert.getName(), alert.getHost());
+
+    if (null != indexed && alert.getState() == indexed.getState()
+        && m_configuration.getAlertsCurrentFlushInterval() > 0) {
+      if (isValid(alert)) {
+        m_currentIndex.queueLatest(indexed.getAlertId(), alert.getTimestamp(),
+            alert.getText());
+      }
+
+      return;
+    }
+
     AlertDefinitionEntity definition = m_definitionDao.findByName(clusterId,
         alert.getName());
 
@@ -136,11 +172,17 @@ public class AlertReceivedListener {
 
     AlertCurrentEntity current = null;
 
-    if (null == alert.getHost() || definition.isHostIgnored()) {
-      current = m_alertsDao.findCurrentByNameNoHost(clusterId, alert.getName());
-    } else {
-      current = m_alertsDao.findCurrentByHostAndName(clusterId, alert.getHost(),
-          alert.getName());
+    if (null != indexed) {
+      current = m_alertsDao.findCurrentById(indexed.getAlertId());
+    }
+
+    if (null == current) {
+      if (null == alert.getHost() || definition.isHostIgnored()) {
+        current = m_alertsDao.findCurrentByNameNoHost(clusterId, alert.getName());
+      } else {
+        current = m_alertsDao.findCurrentByHostAndName(clusterId, alert.getHost(),
+            alert.getName());
+      }
     }
 
     if (null == current) {
@@ -159,9 +201,14 @@ public class AlertReceivedListener {
 
       m_alertEventPublisher.publish(initialAlertEvent);
     } else if (alert.getState() == current.getAlertHistory().getAlertState()) {
-      current.setLatestTimestamp(alert.getTimestamp());
-      current.setLatestText(alert.getText());
-      current = m_alertsDao.merge(current);
+      if (m_configuration.getAlertsCurrentFlushInterval() > 0) {
+        m_currentIndex.queueLatest(current.getAlertId(), alert.getTimestamp(),
+            alert.getText());
+      } else {
+        current.setLatestTimestamp(alert.getTimestamp());
+        current.setLatestText(alert.getText());
+        current = m_alertsDao.merge(current);
+      }
     } else {
       if (LOG.isDebugEnabled()) {
         LOG.debug(
@@ -204,6 +251,13 @@ public class AlertReceivedListener {
 
       m_alertEventPublisher.publish(alertChangedEvent);
     }
+
+    // alerts of definitions which ignore the host share a current alert
+    // across hosts, so the state seen for one host says nothing about it
+    if (!definition.isHostIgnored()) {
+      m_currentIndex.put(clusterId, alert.getName(), alert.getHost(), current,
+          generation);
+    }
   }
 
   /**
@@ -17,47 +17,73 @@
  */
 package org.apache.ambari.server.events.publishers;
 
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ambari.server.events.AlertEvent;
+import org.apache.ambari.server.events.AlertReceivedEvent;
+import org.apache.ambari.server.events.AlertStateChangeEvent;
+import org.apache.ambari.server.events.InitialAlertEvent;
 
-import com.google.common.eventbus.AsyncEventBus;
-import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Singleton;
 
 /**
  * The {@link AlertEventPublisher} is used to wrap a customized instance of an
- * {@link AsyncEventBus} that is only used for alerts. In general, Ambari should
+ * {@link PriorityEventBus} that is only used for alerts. In general, Ambari should
  * have its own application-wide event bus for application events (session
  * information, state changes, etc), but since alerts can contain many events
  * being published concurrently, it makes sense to encapsulate a specific alert
  * bus in this publisher.
+ * <p/>
+ * State changes are dispatched ahead of received alerts. Received alerts which
+ * only refresh the timestamp of an alert still waiting to be dispatched
+ * replace it. When a queue is full, publishers wait for room instead of
+ * running the listeners themselves.
  */
 @Singleton
 public final class AlertEventPublisher {
 
+  /**
+   * The number of threads dispatching {@link AlertEvent}s.
+   */
+  private static final int THREAD_COUNT = 2;
+
+  /**
+   * The capacity of the queue of {@link AlertReceivedEvent}s.
+   */
+  private static final int RECEIVED_QUEUE_CAPACITY = 10000;
+
+  /**
+   * The capacity of the queues of state changes and other alert events.
+   */
+  private static final int STATE_QUEUE_CAPACITY = 2000;
+
+  /**
+   * The priority of state changes over received alerts.
+   */
+  private static final int STATE_PRIORITY = 10;
+
   /**
    * A multi-threaded event bus that can handle dispatching {@link AlertEvent}s.
    */
-  private final EventBus m_eventBus;
+  private final PriorityEventBus m_eventBus;
 
   /**
    * Constructor.
    */
   public AlertEventPublisher() {
-    // create a fixed executor that is unbounded for now and will run rejected
-    // requests in the calling thread to prevent loss of alert handling
-    ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0L,
-        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
-        new AlertEventBusThreadFactory(),
-        new ThreadPoolExecutor.CallerRunsPolicy());
-
-    m_eventBus = new AsyncEventBus(executor);
+    m_eventBus = new PriorityEventBus("alert-event-bus", THREAD_COUNT,
+        new AlertEventBusThreadFactory(), STATE_QUEUE_CAPACITY);
+
+    m_eventBus.configureQueue(AlertStateChangeEvent.class, STATE_PRIORITY,
+        STATE_QUEUE_CAPACITY, false);
+
+    m_eventBus.configureQueue(InitialAlertEvent.class, STATE_PRIORITY,
+        STATE_QUEUE_CAPACITY, false);
+
+    m_eventBus.configureQueue(AlertReceivedEvent.class, 0,
+        RECEIVED_QUEUE_CAPACITY, false);
   }
 
   /**
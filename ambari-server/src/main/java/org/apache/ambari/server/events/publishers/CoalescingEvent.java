@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+/**
+ * The {@link CoalescingEvent} interface is implemented by events which can
+ * replace an event for the same key that is still waiting to be dispatched by
+ * a {@link PriorityEventBus}. The replaced event is never dispatched.
+ */
+public interface CoalescingEvent {
+
+  /**
+   * Gets the key of the event. Only the last queued event with the same key
+   * can be replaced.
+   *
+   * @return the key, or {@code null} if the event never replaces another.
+   */
+  Object getCoalescingKey();
+
+  /**
+   * Gets whether this event makes the given queued event with the same key
+   * obsolete.
+   *
+   * @param queued
+   *          the last queued event with the same key (not {@code null}).
+   * @return {@code true} to replace the queued event with this event.
+   */
+  boolean supersedes(CoalescingEvent queued);
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+/**
+ * The {@link EventQueueMBean} exposes the queue of one event type of a
+ * {@link PriorityEventBus} over JMX.
+ */
+public interface EventQueueMBean {
+
+  /**
+   * @return the class name of the events in the queue.
+   */
+  String getEventType();
+
+  /**
+   * @return the priority of the queue; higher priorities are dispatched
+   *         first.
+   */
+  int getPriority();
+
+  /**
+   * @return the maximum number of queued events.
+   */
+  int getCapacity();
+
+  /**
+   * @return the number of queued events.
+   */
+  int getDepth();
+
+  /**
+   * @return the time, in milliseconds, the oldest queued event has been
+   *         waiting, or 0 if the queue is empty.
+   */
+  long getOldestEventAge();
+
+  /**
+   * @return the number of events queued.
+   */
+  long getQueuedCount();
+
+  /**
+   * @return the number of events replaced by a newer event before they were
+   *         dispatched.
+   */
+  long getCoalescedCount();
+
+  /**
+   * @return the number of events dropped because the queue was full.
+   */
+  long getDiscardedCount();
+
+  /**
+   * @return the number of times a publisher waited for the queue to have
+   *         room.
+   */
+  long getBlockedCount();
+}
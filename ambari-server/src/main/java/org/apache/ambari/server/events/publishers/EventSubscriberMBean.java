@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+/**
+ * The {@link EventSubscriberMBean} exposes one subscriber method of a
+ * {@link PriorityEventBus} over JMX.
+ */
+public interface EventSubscriberMBean {
+
+  /**
+   * @return the listener class and method.
+   */
+  String getSubscriber();
+
+  /**
+   * @return the number of queued events the subscriber has not received yet.
+   */
+  int getBacklog();
+
+  /**
+   * @return the number of events the subscriber received.
+   */
+  long getInvocationCount();
+
+  /**
+   * @return the number of events the subscriber failed to handle.
+   */
+  long getFailureCount();
+
+  /**
+   * @return the average time, in milliseconds, the subscriber took to handle
+   *         an event.
+   */
+  double getAverageLatency();
+
+  /**
+   * @return the longest time, in milliseconds, the subscriber took to handle
+   *         an event.
+   */
+  double getMaxLatency();
+}
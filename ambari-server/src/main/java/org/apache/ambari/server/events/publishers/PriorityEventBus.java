@@ -0,0 +1,676 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * The {@link PriorityEventBus} is an asynchronous {@link EventBus} which
+ * queues events by type in bounded queues.
+ * <p/>
+ * Each event type can be given its own queue with a priority and a capacity.
+ * Worker threads always take the next event from the non-empty queue with the
+ * highest priority; events of the same queue are dispatched in order. Event
+ * types without a queue of their own share a default queue with priority 0.
+ * <p/>
+ * When a queue is full, its events are either discarded or the publisher
+ * waits for room. Worker threads of the bus never wait on a full queue; they
+ * dispatch the event themselves instead, so that listeners which publish
+ * events cannot deadlock the bus.
+ * <p/>
+ * Events which implement {@link CoalescingEvent} replace the last queued
+ * event with the same key when they supersede it.
+ * <p/>
+ * Listeners are registered as with {@link EventBus}, using {@link Subscribe}
+ * and {@link AllowConcurrentEvents}. Every queue and subscriber is registered
+ * with the platform MBean server under
+ * {@code org.apache.ambari.server:type=EventBus,name=<bus name>}.
+ */
+public class PriorityEventBus extends EventBus {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PriorityEventBus.class);
+
+  /**
+   * Orders queues by descending priority.
+   */
+  private static final Comparator<EventQueue> PRIORITY_ORDER = new Comparator<EventQueue>() {
+    @Override
+    public int compare(EventQueue queue1, EventQueue queue2) {
+      return queue2.m_priority < queue1.m_priority ? -1
+          : (queue2.m_priority == queue1.m_priority ? 0 : 1);
+    }
+  };
+
+  private final String m_name;
+  private final int m_threadCount;
+  private final ThreadFactory m_threadFactory;
+  private final AtomicBoolean m_started = new AtomicBoolean(false);
+
+  /**
+   * Set on the worker threads of this bus.
+   */
+  private final ThreadLocal<Boolean> m_workerThread = new ThreadLocal<Boolean>();
+
+  /**
+   * Guards all queues.
+   */
+  private final ReentrantLock m_lock = new ReentrantLock();
+  private final Condition m_notEmpty = m_lock.newCondition();
+
+  /**
+   * All queues by descending priority; guarded by {@link #m_lock}.
+   */
+  private final List<EventQueue> m_queues = new ArrayList<EventQueue>();
+
+  /**
+   * The queues configured for specific event types.
+   */
+  private final Map<Class<?>, EventQueue> m_configuredQueues =
+      new ConcurrentHashMap<Class<?>, EventQueue>();
+
+  /**
+   * The queue of every event class seen so far.
+   */
+  private final ConcurrentMap<Class<?>, EventQueue> m_queueCache =
+      new ConcurrentHashMap<Class<?>, EventQueue>();
+
+  private final EventQueue m_defaultQueue;
+
+  private final List<Subscriber> m_subscribers = new CopyOnWriteArrayList<Subscriber>();
+
+  /**
+   * The subscribers of every event class seen so far; cleared whenever
+   * subscribers are added or removed.
+   */
+  private final ConcurrentMap<Class<?>, List<Subscriber>> m_subscriberCache =
+      new ConcurrentHashMap<Class<?>, List<Subscriber>>();
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          the name of the bus, used for JMX.
+   * @param threadCount
+   *          the number of threads dispatching events.
+   * @param threadFactory
+   *          the factory of the dispatching threads.
+   * @param defaultCapacity
+   *          the capacity of the queue of event types without a queue of
+   *          their own; publishers wait when it is full.
+   */
+  public PriorityEventBus(String name, int threadCount,
+      ThreadFactory threadFactory, int defaultCapacity) {
+    super(name);
+
+    m_name = name;
+    m_threadCount = threadCount;
+    m_threadFactory = threadFactory;
+    m_defaultQueue = new EventQueue(Object.class, 0, defaultCapacity, false);
+
+    addQueue(m_defaultQueue);
+  }
+
+  /**
+   * Gives events of the specified type, and of its subclasses without a queue
+   * of their own, a queue of their own. Must be called before events of the
+   * type are published.
+   *
+   * @param eventType
+   *          the event type.
+   * @param priority
+   *          the priority of the queue; higher priorities are dispatched
+   *          first.
+   * @param capacity
+   *          the maximum number of queued events.
+   * @param discardWhenFull
+   *          {@code true} to drop events when the queue is full,
+   *          {@code false} to make publishers wait.
+   */
+  public void configureQueue(Class<?> eventType, int priority, int capacity,
+      boolean discardWhenFull) {
+    EventQueue queue = new EventQueue(eventType, priority, capacity, discardWhenFull);
+    m_configuredQueues.put(eventType, queue);
+    m_queueCache.clear();
+
+    addQueue(queue);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Queues the event; it is dispatched by a worker thread of the bus.
+   */
+  @Override
+  public void post(Object event) {
+    startWorkers();
+
+    EventQueue queue = getQueue(event.getClass());
+    List<Subscriber> subscribers = getSubscribers(event.getClass());
+    Object key = null;
+    if (event instanceof CoalescingEvent) {
+      key = ((CoalescingEvent) event).getCoalescingKey();
+    }
+
+    boolean dispatchNow = false;
+
+    m_lock.lock();
+    try {
+      if (null != key) {
+        QueuedEvent latest = queue.m_latestByKey.get(key);
+        if (null != latest
+            && ((CoalescingEvent) event).supersedes((CoalescingEvent) latest.m_event)) {
+          latest.m_event = event;
+          queue.m_coalescedCount.incrementAndGet();
+          return;
+        }
+      }
+
+      while (queue.m_events.size() >= queue.m_capacity) {
+        if (queue.m_discardWhenFull) {
+          if (queue.m_discardedCount.getAndIncrement() % 1000 == 0) {
+            LOG.warn("The {} queue of {} is full; events are being discarded",
+                queue.m_eventType.getSimpleName(), m_name);
+          }
+          return;
+        }
+
+        if (Boolean.TRUE.equals(m_workerThread.get())) {
+          dispatchNow = true;
+          break;
+        }
+
+        queue.m_blockedCount.incrementAndGet();
+        try {
+          queue.m_notFull.await();
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          dispatchNow = true;
+          break;
+        }
+      }
+
+      for (Subscriber subscriber : subscribers) {
+        subscriber.m_backlog.incrementAndGet();
+      }
+
+      if (!dispatchNow) {
+        QueuedEvent queued = new QueuedEvent(event, key, subscribers);
+        queue.m_events.add(queued);
+        queue.m_queuedCount.incrementAndGet();
+        if (null != key) {
+          queue.m_latestByKey.put(key, queued);
+        }
+        m_notEmpty.signal();
+      }
+    } finally {
+      m_lock.unlock();
+    }
+
+    if (dispatchNow) {
+      dispatch(event, subscribers);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void register(Object object) {
+    for (Method method : object.getClass().getMethods()) {
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      if (!method.isAnnotationPresent(Subscribe.class)) {
+        continue;
+      }
+
+      if (parameterTypes.length != 1) {
+        throw new IllegalArgumentException("Method " + method
+            + " has @Subscribe annotation, but requires " + parameterTypes.length
+            + " arguments.  Event handler methods must require a single argument.");
+      }
+
+      method.setAccessible(true);
+      Subscriber subscriber = new Subscriber(object, method,
+          method.isAnnotationPresent(AllowConcurrentEvents.class));
+
+      m_subscribers.add(subscriber);
+      registerMBean(subscriber, EventSubscriberMBean.class, "listener",
+          subscriber.getSubscriber());
+    }
+
+    m_subscriberCache.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void unregister(Object object) {
+    List<Subscriber> removed = new ArrayList<Subscriber>();
+    for (Subscriber subscriber : m_subscribers) {
+      if (subscriber.m_target == object) {
+        removed.add(subscriber);
+      }
+    }
+
+    if (removed.isEmpty()) {
+      throw new IllegalArgumentException(
+          "missing event handler for an annotated method. Is " + object
+              + " registered?");
+    }
+
+    m_subscribers.removeAll(removed);
+    m_subscriberCache.clear();
+  }
+
+  /**
+   * Gets the number of events waiting to be dispatched.
+   *
+   * @return the number of queued events.
+   */
+  public int getQueuedEventCount() {
+    m_lock.lock();
+    try {
+      int count = 0;
+      for (EventQueue queue : m_queues) {
+        count += queue.m_events.size();
+      }
+      return count;
+    } finally {
+      m_lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the queue statistics of all queues.
+   *
+   * @return the queues by descending priority.
+   */
+  public List<EventQueueMBean> getQueues() {
+    m_lock.lock();
+    try {
+      return new ArrayList<EventQueueMBean>(m_queues);
+    } finally {
+      m_lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the statistics of all subscribers.
+   *
+   * @return the subscribers in registration order.
+   */
+  public List<EventSubscriberMBean> getSubscribers() {
+    return new ArrayList<EventSubscriberMBean>(m_subscribers);
+  }
+
+  // ----- helper methods ----------------------------------------------------
+
+  private void addQueue(EventQueue queue) {
+    m_lock.lock();
+    try {
+      m_queues.add(queue);
+      Collections.sort(m_queues, PRIORITY_ORDER);
+    } finally {
+      m_lock.unlock();
+    }
+
+    registerMBean(queue, EventQueueMBean.class, "queue",
+        queue.m_eventType.getSimpleName());
+  }
+
+  /**
+   * Gets the queue of the given event class, which is the queue of the
+   * nearest configured superclass or the default queue.
+   */
+  private EventQueue getQueue(Class<?> eventClass) {
+    EventQueue queue = m_queueCache.get(eventClass);
+    if (null == queue) {
+      queue = m_defaultQueue;
+      for (Class<?> type = eventClass; null != type; type = type.getSuperclass()) {
+        EventQueue configured = m_configuredQueues.get(type);
+        if (null != configured) {
+          queue = configured;
+          break;
+        }
+      }
+      m_queueCache.put(eventClass, queue);
+    }
+    return queue;
+  }
+
+  /**
+   * Gets the subscribers which receive events of the given class.
+   */
+  private List<Subscriber> getSubscribers(Class<?> eventClass) {
+    List<Subscriber> subscribers = m_subscriberCache.get(eventClass);
+    if (null == subscribers) {
+      subscribers = new ArrayList<Subscriber>();
+      for (Subscriber subscriber : m_subscribers) {
+        if (subscriber.m_eventType.isAssignableFrom(eventClass)) {
+          subscribers.add(subscriber);
+        }
+      }
+      m_subscriberCache.put(eventClass, subscribers);
+    }
+    return subscribers;
+  }
+
+  private void startWorkers() {
+    if (m_started.get() || !m_started.compareAndSet(false, true)) {
+      return;
+    }
+
+    for (int i = 0; i < m_threadCount; i++) {
+      m_threadFactory.newThread(new Worker()).start();
+    }
+  }
+
+  /**
+   * Takes the next event from the non-empty queue with the highest priority,
+   * waiting until there is one.
+   */
+  private QueuedEvent take() throws InterruptedException {
+    m_lock.lock();
+    try {
+      while (true) {
+        for (EventQueue queue : m_queues) {
+          QueuedEvent queued = queue.m_events.poll();
+          if (null != queued) {
+            if (null != queued.m_key && queue.m_latestByKey.get(queued.m_key) == queued) {
+              queue.m_latestByKey.remove(queued.m_key);
+            }
+            queue.m_notFull.signal();
+            return queued;
+          }
+        }
+        m_notEmpty.await();
+      }
+    } finally {
+      m_lock.unlock();
+    }
+  }
+
+  private void dispatch(Object event, List<Subscriber> subscribers) {
+    for (Subscriber subscriber : subscribers) {
+      subscriber.m_backlog.decrementAndGet();
+      subscriber.invoke(event);
+    }
+  }
+
+  private void registerMBean(Object mBean, Class<?> mBeanInterface,
+      String key, String value) {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("org.apache.ambari.server:type=EventBus,name="
+          + ObjectName.quote(m_name) + "," + key + "=" + ObjectName.quote(value));
+
+      // the first bus with a name is the one exposed
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(createStandardMBean(mBean, mBeanInterface), name);
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register {} {} of {} with JMX", key, value, m_name,
+          exception);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> StandardMBean createStandardMBean(Object mBean,
+      Class<T> mBeanInterface) throws Exception {
+    return new StandardMBean((T) mBean, mBeanInterface);
+  }
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * Dispatches queued events until interrupted.
+   */
+  private final class Worker implements Runnable {
+    @Override
+    public void run() {
+      m_workerThread.set(Boolean.TRUE);
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          QueuedEvent queued = take();
+          dispatch(queued.m_event, queued.m_subscribers);
+        }
+      } catch (InterruptedException interruptedException) {
+        LOG.debug("Worker of {} interrupted", m_name);
+      }
+    }
+  }
+
+  /**
+   * A queued event. The event is replaced when a newer event supersedes it.
+   */
+  private static final class QueuedEvent {
+    private volatile Object m_event;
+    private final Object m_key;
+    private final List<Subscriber> m_subscribers;
+    private final long m_queuedTime = System.currentTimeMillis();
+
+    private QueuedEvent(Object event, Object key, List<Subscriber> subscribers) {
+      m_event = event;
+      m_key = key;
+      m_subscribers = subscribers;
+    }
+  }
+
+  /**
+   * The queue of one event type. All fields but the counters are guarded by
+   * the lock of the bus.
+   */
+  private final class EventQueue implements EventQueueMBean {
+    private final Class<?> m_eventType;
+    private final int m_priority;
+    private final int m_capacity;
+    private final boolean m_discardWhenFull;
+
+    private final ArrayDeque<QueuedEvent> m_events = new ArrayDeque<QueuedEvent>();
+    private final Map<Object, QueuedEvent> m_latestByKey = new HashMap<Object, QueuedEvent>();
+    private final Condition m_notFull = m_lock.newCondition();
+
+    private final AtomicLong m_queuedCount = new AtomicLong();
+    private final AtomicLong m_coalescedCount = new AtomicLong();
+    private final AtomicLong m_discardedCount = new AtomicLong();
+    private final AtomicLong m_blockedCount = new AtomicLong();
+
+    private EventQueue(Class<?> eventType, int priority, int capacity,
+        boolean discardWhenFull) {
+      m_eventType = eventType;
+      m_priority = priority;
+      m_capacity = capacity;
+      m_discardWhenFull = discardWhenFull;
+    }
+
+    @Override
+    public String getEventType() {
+      return m_eventType.getName();
+    }
+
+    @Override
+    public int getPriority() {
+      return m_priority;
+    }
+
+    @Override
+    public int getCapacity() {
+      return m_capacity;
+    }
+
+    @Override
+    public int getDepth() {
+      m_lock.lock();
+      try {
+        return m_events.size();
+      } finally {
+        m_lock.unlock();
+      }
+    }
+
+    @Override
+    public long getOldestEventAge() {
+      m_lock.lock();
+      try {
+        QueuedEvent oldest = m_events.peek();
+        return null == oldest ? 0L
+            : Math.max(0L, System.currentTimeMillis() - oldest.m_queuedTime);
+      } finally {
+        m_lock.unlock();
+      }
+    }
+
+    @Override
+    public long getQueuedCount() {
+      return m_queuedCount.get();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+      return m_coalescedCount.get();
+    }
+
+    @Override
+    public long getDiscardedCount() {
+      return m_discardedCount.get();
+    }
+
+    @Override
+    public long getBlockedCount() {
+      return m_blockedCount.get();
+    }
+  }
+
+  /**
+   * A {@link Subscribe} method of a listener.
+   */
+  private static final class Subscriber implements EventSubscriberMBean {
+    private final Object m_target;
+    private final Method m_method;
+    private final Class<?> m_eventType;
+    private final boolean m_concurrent;
+
+    private final AtomicInteger m_backlog = new AtomicInteger();
+    private final AtomicLong m_invocationCount = new AtomicLong();
+    private final AtomicLong m_failureCount = new AtomicLong();
+    private final AtomicLong m_totalNanos = new AtomicLong();
+    private volatile long m_maxNanos = 0L;
+
+    private Subscriber(Object target, Method method, boolean concurrent) {
+      m_target = target;
+      m_method = method;
+      m_eventType = method.getParameterTypes()[0];
+      m_concurrent = concurrent;
+    }
+
+    private void invoke(Object event) {
+      long start = System.nanoTime();
+      try {
+        if (m_concurrent) {
+          m_method.invoke(m_target, event);
+        } else {
+          synchronized (this) {
+            m_method.invoke(m_target, event);
+          }
+        }
+      } catch (InvocationTargetException exception) {
+        m_failureCount.incrementAndGet();
+        LOG.error("Could not dispatch event {} to {}", event, getSubscriber(),
+            exception.getCause());
+      } catch (Exception exception) {
+        m_failureCount.incrementAndGet();
+        LOG.error("Could not dispatch event {} to {}", event, getSubscriber(),
+            exception);
+      } finally {
+        long nanos = System.nanoTime() - start;
+        m_invocationCount.incrementAndGet();
+        m_totalNanos.addAndGet(nanos);
+        if (nanos > m_maxNanos) {
+          m_maxNanos = nanos;
+        }
+      }
+    }
+
+    @Override
+    public String getSubscriber() {
+      String className = m_target.getClass().getName();
+      return className.substring(className.lastIndexOf('.') + 1) + "."
+          + m_method.getName() + "(" + m_eventType.getSimpleName() + ")";
+    }
+
+    @Override
+    public int getBacklog() {
+      return m_backlog.get();
+    }
+
+    @Override
+    public long getInvocationCount() {
+      return m_invocationCount.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+      return m_failureCount.get();
+    }
+
+    @Override
+    public double getAverageLatency() {
+      long count = m_invocationCount.get();
+      return count == 0 ? 0.0
+          : (double) m_totalNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getMaxLatency() {
+      return (double) m_maxNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+}
@@ -17,10 +17,13 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
@@ -41,6 +44,7 @@ import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity_;
 import org.apache.ambari.server.state.AlertState;
 import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.alert.AlertCurrentIndex;
 import org.apache.ambari.server.state.alert.Scope;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
@@ -88,6 +92,12 @@ public class AlertsDAO {
   @Inject
   private DaoUtils daoUtils;
 
+  /**
+   * Index of current alerts, cleared when current alerts are removed.
+   */
+  @Inject
+  private AlertCurrentIndex m_currentIndex;
+
   /**
    * Gets an alert with the specified ID.
    *
@@ -533,6 +543,59 @@ public class AlertsDAO {
     historyQuery.executeUpdate();
 
     entityManager.clear();
+    m_currentIndex.invalidateAll();
+  }
+
+  /**
+   * Gets the alert history entries older than the specified time which are no
+   * longer the current instance of an alert.
+   *
+   * @param timestamp
+   *          the time, in milliseconds, before which the alerts were received.
+   * @param limit
+   *          the maximum number of entries to return.
+   * @return the history entries, in ascending order of ID (never {@code null}).
+   */
+  @RequiresSession
+  public List<AlertHistoryEntity> findHistoryBefore(long timestamp, int limit) {
+    TypedQuery<AlertHistoryEntity> query = entityManagerProvider.get().createQuery(
+        "SELECT history FROM AlertHistoryEntity history " +
+          "WHERE history.alertTimestamp < ?1 AND history.alertId NOT IN " +
+          "(SELECT current.alertHistory.alertId FROM AlertCurrentEntity current) " +
+          "ORDER BY history.alertId",
+        AlertHistoryEntity.class);
+
+    query.setMaxResults(limit);
+    return daoUtils.selectList(query, timestamp);
+  }
+
+  /**
+   * Removes the specified alert history entries, and the notices sent for
+   * them, using bulk deletes. The persistence context is cleared afterwards
+   * since it may hold removed entities.
+   *
+   * @param historyIds
+   *          the IDs of the history entries to remove; at most
+   *          {@link DaoUtils#ORACLE_LIST_LIMIT}.
+   * @return the number of history entries removed.
+   */
+  @Transactional
+  public int removeHistory(Collection<Long> historyIds) {
+    if (historyIds.isEmpty()) {
+      return 0;
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    entityManager.createQuery(
+        "DELETE FROM AlertNoticeEntity notice WHERE notice.alertHistory.alertId IN ?1").setParameter(
+        1, historyIds).executeUpdate();
+
+    int removed = entityManager.createQuery(
+        "DELETE FROM AlertHistoryEntity history WHERE history.alertId IN ?1").setParameter(
+        1, historyIds).executeUpdate();
+
+    entityManager.clear();
+    return removed;
   }
 
   /**
@@ -547,6 +610,7 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHistoryId", AlertCurrentEntity.class);
 
     query.setParameter("historyId", historyId);
+    m_currentIndex.invalidateAll();
     return query.executeUpdate();
   }
 
@@ -560,6 +624,7 @@ public class AlertsDAO {
     TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.removeDisabled", AlertCurrentEntity.class);
 
+    m_currentIndex.invalidateAll();
     return query.executeUpdate();
   }
 
@@ -579,6 +644,7 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByService", AlertCurrentEntity.class);
 
     query.setParameter("serviceName", serviceName);
+    m_currentIndex.invalidateAll();
     return query.executeUpdate();
   }
 
@@ -598,6 +664,7 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHost", AlertCurrentEntity.class);
 
     query.setParameter("hostName", hostName);
+    m_currentIndex.invalidateAll();
     return query.executeUpdate();
   }
 
@@ -627,6 +694,7 @@ public class AlertsDAO {
     query.setParameter("componentName", componentName);
     query.setParameter("hostName", hostName);
 
+    m_currentIndex.invalidateAll();
     return query.executeUpdate();
   }
 
@@ -720,9 +788,45 @@ public class AlertsDAO {
    */
   @Transactional
   public void remove(AlertCurrentEntity alert) {
+    m_currentIndex.invalidateAll();
     entityManagerProvider.get().remove(merge(alert));
   }
 
+  /**
+   * Writes the latest timestamp and text of current alerts which did not
+   * change state. All updates are written in a single transaction and sent
+   * to the database in JDBC batches. Updates older than the latest timestamp
+   * of their current alert are skipped.
+   *
+   * @param updates
+   *          the updates to write (not {@code null}).
+   * @return the IDs of the current alerts which do not exist anymore (never
+   *         {@code null}).
+   */
+  @Transactional
+  public Set<Long> updateLatest(Collection<AlertCurrentIndex.LatestUpdate> updates) {
+    EntityManager entityManager = entityManagerProvider.get();
+    Set<Long> removed = new HashSet<Long>();
+
+    for (AlertCurrentIndex.LatestUpdate update : updates) {
+      AlertCurrentEntity current = entityManager.find(AlertCurrentEntity.class,
+          update.getAlertId());
+
+      if (null == current) {
+        removed.add(update.getAlertId());
+        continue;
+      }
+
+      Long latestTimestamp = current.getLatestTimestamp();
+      if (null == latestTimestamp || latestTimestamp < update.getTimestamp()) {
+        current.setLatestTimestamp(update.getTimestamp());
+        current.setLatestText(update.getText());
+      }
+    }
+
+    return removed;
+  }
+
   /**
    * Finds the aggregate counts for an alert name, across all hosts.
    * @param clusterId the cluster id
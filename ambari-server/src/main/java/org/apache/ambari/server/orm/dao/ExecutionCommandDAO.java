@@ -26,6 +26,7 @@ import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import java.util.List;
 
 @Singleton
@@ -46,6 +47,23 @@ public class ExecutionCommandDAO {
     return daoUtils.selectAll(entityManagerProvider.get(), ExecutionCommandEntity.class);
   }
 
+  /**
+   * Gets the execution commands of all tasks of the specified request in a
+   * single query.
+   *
+   * @param requestId
+   *          the ID of the request.
+   * @return the execution commands (never {@code null}).
+   */
+  @RequiresSession
+  public List<ExecutionCommandEntity> findByRequestId(long requestId) {
+    TypedQuery<ExecutionCommandEntity> query = entityManagerProvider.get().createQuery(
+        "SELECT command FROM ExecutionCommandEntity command WHERE command.taskId IN " +
+          "(SELECT task.taskId FROM HostRoleCommandEntity task WHERE task.requestId = ?1)",
+        ExecutionCommandEntity.class);
+    return daoUtils.selectList(query, requestId);
+  }
+
   @Transactional
   public void create(ExecutionCommandEntity executionCommand) {
     entityManagerProvider.get().persist(executionCommand);
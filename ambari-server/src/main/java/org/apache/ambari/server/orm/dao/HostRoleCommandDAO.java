@@ -28,6 +28,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
@@ -38,6 +39,9 @@ import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.StageEntity;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -84,11 +88,64 @@ public class HostRoleCommandDAO {
   @Inject
   DaoUtils daoUtils;
 
+  /**
+   * The aggregate counts of requests whose tasks have all finished. Finished
+   * tasks keep their status, so these counts are read from the database once
+   * instead of on every poll of the request list.
+   */
+  private final Cache<Long, Map<Long, HostRoleCommandStatusSummaryDTO>> finishedRequestCounts =
+      CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(1, TimeUnit.HOURS).recordStats().build();
+
   @RequiresSession
   public HostRoleCommandEntity findByPK(long taskId) {
     return entityManagerProvider.get().find(HostRoleCommandEntity.class, taskId);
   }
 
+  /**
+   * Reads the standard output of a task without loading the task. The output
+   * columns are fetched lazily, so this is how callers which do not hold the
+   * entity get at a single log.
+   *
+   * @param taskId
+   *          the ID of the task.
+   * @return the output, or {@code null} if there is no such task.
+   */
+  @RequiresSession
+  public byte[] findStdOut(long taskId) {
+    return findOutput("stdOut", taskId);
+  }
+
+  /**
+   * Reads the standard error of a task without loading the task.
+   *
+   * @param taskId
+   *          the ID of the task.
+   * @return the output, or {@code null} if there is no such task.
+   */
+  @RequiresSession
+  public byte[] findStdError(long taskId) {
+    return findOutput("stdError", taskId);
+  }
+
+  /**
+   * Reads the structured output of a task without loading the task.
+   *
+   * @param taskId
+   *          the ID of the task.
+   * @return the output, or {@code null} if there is no such task.
+   */
+  @RequiresSession
+  public byte[] findStructuredOut(long taskId) {
+    return findOutput("structuredOut", taskId);
+  }
+
+  private byte[] findOutput(String attribute, long taskId) {
+    TypedQuery<byte[]> query = entityManagerProvider.get().createQuery(
+        "SELECT task." + attribute + " FROM HostRoleCommandEntity task WHERE task.taskId = ?1",
+        byte[].class);
+    return daoUtils.selectSingle(query, taskId);
+  }
+
   @RequiresSession
   public List<HostRoleCommandEntity> findByPKs(Collection<Long> taskIds) {
     if (taskIds == null || taskIds.isEmpty()) {
@@ -359,6 +416,7 @@ public class HostRoleCommandDAO {
   @Transactional
   public HostRoleCommandEntity merge(HostRoleCommandEntity stageEntity) {
     HostRoleCommandEntity entity = entityManagerProvider.get().merge(stageEntity);
+    invalidateAggregateCounts(entity.getRequestId());
     return entity;
   }
 
@@ -367,6 +425,7 @@ public class HostRoleCommandDAO {
     List<HostRoleCommandEntity> managedList = new ArrayList<HostRoleCommandEntity>(entities.size());
     for (HostRoleCommandEntity entity : entities) {
       managedList.add(entityManagerProvider.get().merge(entity));
+      invalidateAggregateCounts(entity.getRequestId());
     }
     return managedList;
   }
@@ -391,6 +450,10 @@ public class HostRoleCommandDAO {
    */
   @RequiresSession
   public Map<Long, HostRoleCommandStatusSummaryDTO> findAggregateCounts(Long requestId) {
+    Map<Long, HostRoleCommandStatusSummaryDTO> cached = finishedRequestCounts.getIfPresent(requestId);
+    if (null != cached) {
+      return cached;
+    }
 
     TypedQuery<HostRoleCommandStatusSummaryDTO> query = entityManagerProvider.get().createQuery(
         SUMMARY_DTO, HostRoleCommandStatusSummaryDTO.class);
@@ -409,11 +472,47 @@ public class HostRoleCommandDAO {
 
     Map<Long, HostRoleCommandStatusSummaryDTO> map = new HashMap<Long, HostRoleCommandStatusSummaryDTO>();
 
+    boolean finished = true;
     for (HostRoleCommandStatusSummaryDTO dto : daoUtils.selectList(query)) {
       map.put(dto.getStageId(), dto);
+
+      for (HostRoleStatus status : HostRoleStatus.IN_PROGRESS_STATUSES) {
+        Integer count = dto.getCounts().get(status);
+        if (null != count && count > 0) {
+          finished = false;
+        }
+      }
+    }
+
+    // a request without tasks may not be committed yet
+    if (finished && !map.isEmpty()) {
+      map = Collections.unmodifiableMap(map);
+      finishedRequestCounts.put(requestId, map);
     }
 
     return map;
   }
 
+  /**
+   * Discards the cached aggregate counts of a request, because some of its
+   * tasks are changing.
+   *
+   * @param requestId the request id, or {@code null} for a task which is not
+   *                  part of a request yet
+   */
+  public void invalidateAggregateCounts(Long requestId) {
+    if (null != requestId) {
+      finishedRequestCounts.invalidate(requestId);
+    }
+  }
+
+  /**
+   * Gets the statistics of the cached aggregate counts of finished requests.
+   *
+   * @return the cache statistics
+   */
+  public CacheStats getAggregateCountsCacheStats() {
+    return finishedRequestCounts.stats();
+  }
+
 }
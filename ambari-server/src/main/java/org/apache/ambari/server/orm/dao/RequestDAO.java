@@ -23,13 +23,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.orm.entities.RequestResourceFilterEntity;
+import org.apache.ambari.server.orm.entities.RequestScheduleEntity;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
 
@@ -129,6 +132,78 @@ public class RequestDAO {
     return daoUtils.selectSingle(query, requestId);
   }
 
+  /**
+   * Gets the IDs of the requests which ended before the specified time and
+   * have no task in progress. Requests which are referenced by an upgrade are
+   * never returned.
+   *
+   * @param endedBefore
+   *          the time, in milliseconds, before which the requests ended.
+   * @param limit
+   *          the maximum number of IDs to return.
+   * @return the request IDs, in ascending order (never {@code null}).
+   */
+  @RequiresSession
+  public List<Long> findFinishedRequestIds(long endedBefore, int limit) {
+    TypedQuery<Long> query = entityManagerProvider.get().createQuery(
+        "SELECT request.requestId FROM RequestEntity request " +
+          "WHERE request.endTime > 0 AND request.endTime < ?1 " +
+          "AND request.requestId NOT IN (SELECT upgrade.requestId FROM UpgradeEntity upgrade) " +
+          "AND NOT EXISTS (SELECT task.taskId FROM HostRoleCommandEntity task " +
+          "WHERE task.requestId = request.requestId AND task.status IN ?2) " +
+          "ORDER BY request.requestId",
+        Long.class);
+
+    query.setMaxResults(limit);
+    return daoUtils.selectList(query, endedBefore,
+        HostRoleStatus.IN_PROGRESS_STATUSES);
+  }
+
+  /**
+   * Removes the specified requests together with their stages, tasks,
+   * execution commands, resource filters and operation levels using bulk
+   * deletes. The persistence context is cleared, and the cached hosts and
+   * request schedules are evicted, afterwards since they may hold removed
+   * entities.
+   *
+   * @param requestIds
+   *          the IDs of the requests to remove; at most
+   *          {@link DaoUtils#ORACLE_LIST_LIMIT}.
+   * @return the number of requests removed.
+   */
+  @Transactional
+  public int removeRequests(Collection<Long> requestIds) {
+    if (requestIds.isEmpty()) {
+      return 0;
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    String[] statements = {
+        "DELETE FROM ExecutionCommandEntity command WHERE command.taskId IN " +
+          "(SELECT task.taskId FROM HostRoleCommandEntity task WHERE task.requestId IN ?1)",
+        "DELETE FROM HostRoleCommandEntity task WHERE task.requestId IN ?1",
+        "DELETE FROM RoleSuccessCriteriaEntity criteria WHERE criteria.requestId IN ?1",
+        "DELETE FROM StageEntity stage WHERE stage.requestId IN ?1",
+        "DELETE FROM RequestResourceFilterEntity filter WHERE filter.requestId IN ?1",
+        "DELETE FROM RequestOperationLevelEntity level WHERE level.requestId IN ?1" };
+
+    for (String statement : statements) {
+      entityManager.createQuery(statement).setParameter(1, requestIds).executeUpdate();
+    }
+
+    int removed = entityManager.createQuery(
+        "DELETE FROM RequestEntity request WHERE request.requestId IN ?1").setParameter(
+        1, requestIds).executeUpdate();
+
+    // hosts hold the collection of their tasks, and request schedules the
+    // collection of their requests, in the shared cache
+    entityManager.clear();
+    Cache cache = entityManager.getEntityManagerFactory().getCache();
+    cache.evict(HostEntity.class);
+    cache.evict(RequestScheduleEntity.class);
+    return removed;
+  }
+
   @Transactional
   public void create(RequestEntity requestEntity) {
     entityManagerProvider.get().persist(requestEntity);
@@ -20,8 +20,6 @@ package org.apache.ambari.server.orm.entities;
 
 import static org.apache.commons.lang.StringUtils.defaultString;
 
-import java.util.Arrays;
-
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -97,12 +95,12 @@ public class HostRoleCommandEntity {
 
   @Column(name = "std_error")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] stdError = new byte[0];
 
   @Column(name = "std_out")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] stdOut = new byte[0];
 
   @Column(name = "output_log")
@@ -116,7 +114,7 @@ public class HostRoleCommandEntity {
 
   @Column(name = "structured_out")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] structuredOut = new byte[0];
 
   @Basic
@@ -340,6 +338,12 @@ public class HostRoleCommandEntity {
     retryAllowed = enabled ? 1 : 0;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The output columns are fetched lazily and are not compared, so that
+   * putting tasks in sets does not read their output.
+   */
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -381,12 +385,6 @@ public class HostRoleCommandEntity {
     if (status != null ? !status.equals(that.status) : that.status != null) {
       return false;
     }
-    if (stdError != null ? !Arrays.equals(stdError, that.stdError) : that.stdError != null) {
-      return false;
-    }
-    if (stdOut != null ? !Arrays.equals(stdOut, that.stdOut) : that.stdOut != null) {
-      return false;
-    }
     if (outputLog != null ? !outputLog.equals(that.outputLog) : that.outputLog != null) {
       return false;
     }
@@ -396,9 +394,6 @@ public class HostRoleCommandEntity {
     if (taskId != null ? !taskId.equals(that.taskId) : that.taskId != null) {
       return false;
     }
-    if (structuredOut != null ? !Arrays.equals(structuredOut, that.structuredOut) : that.structuredOut != null) {
-      return false;
-    }
     if (endTime != null ? !endTime.equals(that.endTime) : that.endTime != null) {
       return false;
     }
@@ -416,15 +411,12 @@ public class HostRoleCommandEntity {
     result = 31 * result + (event != null ? event.hashCode() : 0);
     result = 31 * result + (exitcode != null ? exitcode.hashCode() : 0);
     result = 31 * result + (status != null ? status.hashCode() : 0);
-    result = 31 * result + (stdError != null ? Arrays.hashCode(stdError) : 0);
-    result = 31 * result + (stdOut != null ? Arrays.hashCode(stdOut) : 0);
     result = 31 * result + (outputLog != null ? outputLog.hashCode() : 0);
     result = 31 * result + (errorLog != null ? errorLog.hashCode() : 0);
     result = 31 * result + (startTime != null ? startTime.hashCode() : 0);
     result = 31 * result + (lastAttemptTime != null ? lastAttemptTime.hashCode() : 0);
     result = 31 * result + (attemptCount != null ? attemptCount.hashCode() : 0);
     result = 31 * result + (endTime != null ? endTime.hashCode() : 0);
-    result = 31 * result + (structuredOut != null ? Arrays.hashCode(structuredOut) : 0);
     return result;
   }
 
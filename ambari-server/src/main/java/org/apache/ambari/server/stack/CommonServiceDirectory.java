@@ -43,6 +43,17 @@ public class CommonServiceDirectory extends ServiceDirectory {
     super(servicePath);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param servicePath   path of the service directory
+   * @param unmarshaller  unmarshaller of the service definition files
+   * @throws AmbariException if unable to parse the service directory
+   */
+  CommonServiceDirectory(String servicePath, ModuleFileUnmarshaller unmarshaller) throws AmbariException {
+    super(servicePath, unmarshaller);
+  }
+
   @Override
   /**
    * Parse common service directory
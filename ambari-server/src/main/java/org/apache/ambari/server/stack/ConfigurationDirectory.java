@@ -40,11 +40,6 @@ import org.xml.sax.SAXParseException;
  * Encapsulates IO operations on a stack definition configuration directory.
  */
 public class ConfigurationDirectory extends StackDefinitionDirectory {
-  /**
-   * Used to unmarshal a stack definition configuration to an object representation
-   */
-  private static ModuleFileUnmarshaller unmarshaller = new ModuleFileUnmarshaller();
-
   /**
    * Map of configuration type to configuration module.
    * One entry for each configuration file in this configuration directory.
@@ -62,7 +57,17 @@ public class ConfigurationDirectory extends StackDefinitionDirectory {
    * @param directoryName  configuration directory name
    */
   public ConfigurationDirectory(String directoryName) {
-    super(directoryName);
+    this(directoryName, new ModuleFileUnmarshaller());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param directoryName  configuration directory name
+   * @param unmarshaller   unmarshaller of the configuration files
+   */
+  ConfigurationDirectory(String directoryName, ModuleFileUnmarshaller unmarshaller) {
+    super(directoryName, unmarshaller);
     parsePath();
   }
 
@@ -71,11 +71,6 @@ public abstract class ServiceDirectory extends StackDefinitionDirectory {
    */
   private static final String SERVICE_METAINFO_FILE_NAME = "metainfo.xml";
 
-  /**
-   * stack definition file unmarshaller
-   */
-  ModuleFileUnmarshaller unmarshaller = new ModuleFileUnmarshaller();
-
   /**
    * logger instance
    */
@@ -89,7 +84,18 @@ public abstract class ServiceDirectory extends StackDefinitionDirectory {
    * @throws AmbariException if unable to parse the service directory
    */
   public ServiceDirectory(String servicePath) throws AmbariException {
-    super(servicePath);
+    this(servicePath, new ModuleFileUnmarshaller());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param servicePath   path of the service directory
+   * @param unmarshaller  unmarshaller of the service definition files
+   * @throws AmbariException if unable to parse the service directory
+   */
+  ServiceDirectory(String servicePath, ModuleFileUnmarshaller unmarshaller) throws AmbariException {
+    super(servicePath, unmarshaller);
     parsePath();
 
     File mf = new File(directory.getAbsolutePath()
@@ -42,6 +42,10 @@ public abstract class StackDefinitionDirectory {
    */
   protected File directory;
 
+  /**
+   * unmarshaller of the stack definition files of this directory
+   */
+  protected ModuleFileUnmarshaller unmarshaller;
 
   /**
    * Constructor.
@@ -49,8 +53,19 @@ public abstract class StackDefinitionDirectory {
    * @param directory  underlying directory
    */
   public StackDefinitionDirectory(String directory) {
+    this(directory, new ModuleFileUnmarshaller());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param directory     underlying directory
+   * @param unmarshaller  unmarshaller of the stack definition files
+   */
+  StackDefinitionDirectory(String directory, ModuleFileUnmarshaller unmarshaller) {
     //todo: handle non-existent dir
     this.directory = new File(directory);
+    this.unmarshaller = unmarshaller;
   }
 
   /**
@@ -63,7 +78,7 @@ public abstract class StackDefinitionDirectory {
     ConfigurationDirectory configDirectory = null;
     File configDirFile = new File(directory.getAbsolutePath() + File.separator + directoryName);
     if (configDirFile.exists() && configDirFile.isDirectory())  {
-      configDirectory = new ConfigurationDirectory(configDirFile.getAbsolutePath());
+      configDirectory = new ConfigurationDirectory(configDirFile.getAbsolutePath(), unmarshaller);
     }
     return configDirectory;
   }
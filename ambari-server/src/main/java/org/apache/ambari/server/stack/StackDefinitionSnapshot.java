@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.stack;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unmarshaller which keeps the object representation of each stack definition file
+ * in a snapshot file, so that the files which did not change since the snapshot was
+ * saved are not parsed again on the next server start.
+ * <p/>
+ * Each file is kept serialized, as it was unmarshalled and before any module modified
+ * it, together with its modification time and length. A file whose modification time
+ * or length differs from the snapshot, or whose snapshot can not be read, for example
+ * because the classes of its object representation changed, is parsed again.
+ */
+class StackDefinitionSnapshot extends ModuleFileUnmarshaller {
+
+  /**
+   * Logger
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(StackDefinitionSnapshot.class);
+
+  /**
+   * The snapshot file
+   */
+  private final File snapshotFile;
+
+  /**
+   * Unmarshaller of the files which are not in the snapshot
+   */
+  private final ModuleFileUnmarshaller unmarshaller;
+
+  /**
+   * Map of file path to file snapshot, as read from the snapshot file
+   */
+  private final Map<String, FileSnapshot> previousSnapshots;
+
+  /**
+   * Map of file path to file snapshot, for each file unmarshalled since the snapshot file was read
+   */
+  private final Map<String, FileSnapshot> snapshots = new ConcurrentHashMap<String, FileSnapshot>();
+
+  /**
+   * Number of files read from the snapshot instead of being parsed
+   */
+  private final AtomicInteger restoredCount = new AtomicInteger();
+
+  /**
+   * Whether a file was parsed since the snapshot file was read
+   */
+  private final AtomicBoolean changed = new AtomicBoolean();
+
+
+  /**
+   * Constructor.
+   * Reads the snapshot file, if it exists.
+   *
+   * @param snapshotFile  the snapshot file
+   * @param unmarshaller  unmarshaller of the files which are not in the snapshot
+   */
+  StackDefinitionSnapshot(File snapshotFile, ModuleFileUnmarshaller unmarshaller) {
+    this.snapshotFile = snapshotFile;
+    this.unmarshaller = unmarshaller;
+    previousSnapshots = readSnapshotFile(snapshotFile);
+  }
+
+  /**
+   * Unmarshal a file to it's corresponding object type, reading it from the
+   * snapshot if it did not change since the snapshot was saved.
+   *
+   * @param clz   class of the object representation
+   * @param file  file to unmarshal
+   *
+   * @return object representation of the specified file
+   * @throws JAXBException if unable to unmarshal the file
+   */
+  @Override
+  public <T> T unmarshal(Class<T> clz, File file) throws JAXBException {
+    String path = file.getAbsolutePath();
+    // read before unmarshalling, so that a file changed while it is parsed is parsed again next time
+    long lastModified = file.lastModified();
+    long length = file.length();
+
+    FileSnapshot snapshot = previousSnapshots.get(path);
+    if (snapshot != null && snapshot.lastModified == lastModified && snapshot.length == length) {
+      Object object = deserialize(path, snapshot.data);
+      if (clz.isInstance(object)) {
+        snapshots.put(path, snapshot);
+        restoredCount.incrementAndGet();
+        return clz.cast(object);
+      }
+    }
+
+    T object = unmarshaller.unmarshal(clz, file);
+    changed.set(true);
+
+    byte[] data = serialize(path, object);
+    if (data != null) {
+      snapshots.put(path, new FileSnapshot(lastModified, length, data));
+    }
+    return object;
+  }
+
+  /**
+   * Obtain the number of files read from the snapshot instead of being parsed.
+   *
+   * @return number of files read from the snapshot
+   */
+  int getRestoredCount() {
+    return restoredCount.get();
+  }
+
+  /**
+   * Write the files unmarshalled since the snapshot file was read to the snapshot file,
+   * unless all of them were read from it and none of its files went away.
+   * A failure to write the snapshot file is logged and otherwise ignored.
+   */
+  void save() {
+    if (!changed.get() && snapshots.size() == previousSnapshots.size()) {
+      return;
+    }
+
+    File directory = snapshotFile.getAbsoluteFile().getParentFile();
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      LOG.warn("Unable to create the directory of the stack definition snapshot {}", snapshotFile);
+      return;
+    }
+
+    // write a temporary file first, so that a partially written snapshot is never read
+    File tempFile = new File(snapshotFile.getPath() + ".tmp");
+    ObjectOutputStream out = null;
+    try {
+      out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      out.writeObject(new HashMap<String, FileSnapshot>(snapshots));
+      out.close();
+      out = null;
+
+      if ((snapshotFile.exists() && !snapshotFile.delete()) || !tempFile.renameTo(snapshotFile)) {
+        LOG.warn("Unable to replace the stack definition snapshot {}", snapshotFile);
+        tempFile.delete();
+      } else {
+        LOG.info("Saved {} stack definition files to the snapshot {}", snapshots.size(), snapshotFile);
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to write the stack definition snapshot " + snapshotFile, e);
+      IOUtils.closeQuietly(out);
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * Read the file snapshots of the specified snapshot file.
+   *
+   * @param snapshotFile  the snapshot file
+   * @return map of file path to file snapshot; empty if the snapshot file does not
+   *         exist or can not be read
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, FileSnapshot> readSnapshotFile(File snapshotFile) {
+    if (!snapshotFile.isFile()) {
+      return Collections.emptyMap();
+    }
+
+    ObjectInputStream in = null;
+    try {
+      in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+      Map<String, FileSnapshot> snapshots = (Map<String, FileSnapshot>) in.readObject();
+      LOG.info("Read {} stack definition files from the snapshot {}", snapshots.size(), snapshotFile);
+      return snapshots;
+    } catch (Exception e) {
+      LOG.warn("Unable to read the stack definition snapshot " + snapshotFile +
+          ", all stack definition files will be parsed", e);
+      return Collections.emptyMap();
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Serialize the object representation of a file.
+   *
+   * @param path    path of the file
+   * @param object  object representation of the file
+   * @return the serialized object, or null if it can not be serialized
+   */
+  private static byte[] serialize(String path, Object object) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(object);
+      out.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      LOG.warn("Unable to add the stack definition file " + path + " to the snapshot", e);
+      return null;
+    }
+  }
+
+  /**
+   * Deserialize the object representation of a file.
+   *
+   * @param path  path of the file
+   * @param data  the serialized object
+   * @return the object representation of the file, or null if it can not be deserialized
+   */
+  private static Object deserialize(String path, byte[] data) {
+    try {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+      return in.readObject();
+    } catch (Exception e) {
+      LOG.info("Unable to read the stack definition file {} from the snapshot, it will be parsed: {}",
+          path, e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Serialized object representation of a stack definition file, along with the
+   * modification time and length of the file it was unmarshalled from.
+   */
+  private static class FileSnapshot implements Serializable {
+    private final long lastModified;
+    private final long length;
+    private final byte[] data;
+
+    private FileSnapshot(long lastModified, long length, byte[] data) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.data = data;
+    }
+  }
+}
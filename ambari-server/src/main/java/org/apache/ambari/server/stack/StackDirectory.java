@@ -98,11 +98,6 @@ public class StackDirectory extends StackDefinitionDirectory {
    */
   private StackMetainfoXml metaInfoXml;
 
-  /**
-   * file unmarshaller
-   */
-  ModuleFileUnmarshaller unmarshaller = new ModuleFileUnmarshaller();
-
   /**
    * name of the hooks directory
    */
@@ -146,7 +141,18 @@ public class StackDirectory extends StackDefinitionDirectory {
    * @throws AmbariException if unable to parse the stack directory
    */
   public StackDirectory(String directory) throws AmbariException {
-    super(directory);
+    this(directory, new ModuleFileUnmarshaller());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param directory     stack directory
+   * @param unmarshaller  unmarshaller of the stack definition files
+   * @throws AmbariException if unable to parse the stack directory
+   */
+  StackDirectory(String directory, ModuleFileUnmarshaller unmarshaller) throws AmbariException {
+    super(directory, unmarshaller);
     parsePath();
   }
 
@@ -361,7 +367,7 @@ public class StackDirectory extends StackDefinitionDirectory {
         for (File d : serviceFolders) {
           if (d.isDirectory()) {
             try {
-              dirs.add(new StackServiceDirectory(d.getAbsolutePath()));
+              dirs.add(new StackServiceDirectory(d.getAbsolutePath(), unmarshaller));
             } catch (AmbariException e) {
               //todo: this seems as though we should propagate this exception
               //todo: eating it now to keep backwards compatibility
@@ -28,11 +28,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 /**
@@ -65,9 +73,14 @@ public class StackManager {
   private final static Logger LOG = LoggerFactory.getLogger(StackManager.class);
 
   /**
-   * Map of stack id to stack info
+   * Map of stack id to stack info, in directory order
    */
-  private Map<String, StackInfo> stackMap = new HashMap<String, StackInfo>();
+  private Map<String, StackInfo> stackMap = new LinkedHashMap<String, StackInfo>();
+
+  /**
+   * The maximum number of threads parsing stack and common service directories.
+   */
+  private static final int MAX_PARSING_THREADS = 8;
 
   /**
    * Constructor.
@@ -80,14 +93,110 @@ public class StackManager {
    * @throws AmbariException if an exception occurs while processing the stacks
    */
   public StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext) throws AmbariException {
+    this(stackRoot, commonServicesRoot, null, stackContext);
+  }
+
+  /**
+   * Constructor.
+   * Initialize stack manager, reading the stack definition files which did not change
+   * since the last start from the specified snapshot file.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param snapshotFile        stack definition snapshot file; if null, all files are parsed
+   * @param stackContext        context which provides external functionality
+   *
+   * @throws AmbariException if an exception occurs while processing the stacks
+   */
+  public StackManager(File stackRoot, File commonServicesRoot, File snapshotFile, StackContext stackContext)
+      throws AmbariException {
+    this(stackRoot, commonServicesRoot, stackContext,
+        Math.min(MAX_PARSING_THREADS, Runtime.getRuntime().availableProcessors()),
+        snapshotFile, new ModuleFileUnmarshaller());
+  }
+
+  /**
+   * Constructor.
+   * Initialize stack manager, parsing the stack definitions on the given number of threads.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param stackContext        context which provides external functionality
+   * @param threadCount         number of threads parsing the stack and common service directories
+   *
+   * @throws AmbariException if an exception occurs while processing the stacks
+   */
+  StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext, int threadCount)
+      throws AmbariException {
+    this(stackRoot, commonServicesRoot, stackContext, threadCount, null, new ModuleFileUnmarshaller());
+  }
+
+  /**
+   * Constructor.
+   * Initialize stack manager, parsing the stack definitions on the given number of threads
+   * with the given unmarshaller.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param stackContext        context which provides external functionality
+   * @param threadCount         number of threads parsing the stack and common service directories
+   * @param snapshotFile        stack definition snapshot file; if null, all files are parsed
+   * @param unmarshaller        unmarshaller of the stack definition files
+   *
+   * @throws AmbariException if an exception occurs while processing the stacks
+   */
+  StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext, int threadCount,
+      File snapshotFile, ModuleFileUnmarshaller unmarshaller) throws AmbariException {
     validateStackDirectory(stackRoot);
     validateCommonServicesDirectory(commonServicesRoot);
 
-    this.stackMap = new HashMap<String, StackInfo>();
+    this.stackMap = new LinkedHashMap<String, StackInfo>();
     this.stackContext = stackContext;
 
-    Map<String, ServiceModule> commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    Map<String, StackModule> stackModules = parseStackDirectory(stackRoot);
+    // the files which did not change since the last start are read from the snapshot
+    // instead of being parsed; the snapshot holds them as they were before resolution,
+    // so that the repository urls of the database are still applied on each start
+    StackDefinitionSnapshot snapshot = null;
+    if (snapshotFile != null) {
+      snapshot = new StackDefinitionSnapshot(snapshotFile, unmarshaller);
+      unmarshaller = snapshot;
+    }
+
+    // the stack and common service directories are independent of each other until
+    // they are resolved, so they are parsed concurrently
+    threadCount = Math.max(1, threadCount);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Stack Definition Parsing Thread");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    Map<String, ServiceModule> commonServiceModules;
+    Map<String, StackModule> stackModules;
+    try {
+      long start = System.currentTimeMillis();
+      List<Future<Map<String, ServiceModule>>> commonServiceFutures =
+          submitCommonServicesDirectory(commonServicesRoot, unmarshaller, executor);
+      Map<String, Future<StackModule>> stackFutures = submitStackDirectory(stackRoot, unmarshaller, executor);
+
+      commonServiceModules = getCommonServiceModules(commonServiceFutures);
+      stackModules = getStackModules(stackRoot, stackFutures);
+      LOG.info("Parsed {} stacks and {} common services in {}ms using {} threads",
+          stackModules.size(), commonServiceModules.size(),
+          System.currentTimeMillis() - start, threadCount);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (snapshot != null) {
+      LOG.info("Read {} stack definition files from the snapshot instead of parsing them",
+          snapshot.getRestoredCount());
+      snapshot.save();
+    }
 
     fullyResolveCommonServices(stackModules, commonServiceModules);
     fullyResolveStacks(stackModules, commonServiceModules);
@@ -228,14 +337,17 @@ public class StackManager {
   }
 
   /**
-   * Parse the specified common services root directory
+   * Submit the parsing of each common service version directory of the specified
+   * common services root directory.
    *
    * @param commonServicesRoot  the common services root directory to parse
-   * @return map of common service id which contains name and version to common service module.
-   * @throws AmbariException if unable to parse all common services
+   * @param unmarshaller        unmarshaller of the common service definition files
+   * @param executor            executor on which each common service directory is parsed
+   * @return the pending parses, in directory order
    */
-  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot) throws AmbariException {
-    Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
+  private List<Future<Map<String, ServiceModule>>> submitCommonServicesDirectory(File commonServicesRoot,
+      final ModuleFileUnmarshaller unmarshaller, ExecutorService executor) {
+    List<Future<Map<String, ServiceModule>>> futures = new ArrayList<Future<Map<String, ServiceModule>>>();
 
     if(commonServicesRoot != null) {
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
@@ -243,61 +355,122 @@ public class StackManager {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.setErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+          futures.add(executor.submit(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws Exception {
+              return parseCommonServiceDirectory(serviceFolder, unmarshaller);
             }
-          }
+          }));
         }
       }
     }
+    return futures;
+  }
+
+  /**
+   * Wait for the common service directories to be parsed.
+   *
+   * @param futures  the pending parses, in directory order
+   * @return map of common service id which contains name and version to common service module.
+   * @throws AmbariException if unable to parse all common services
+   */
+  private Map<String, ServiceModule> getCommonServiceModules(
+      List<Future<Map<String, ServiceModule>>> futures) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
+
+    // merge in directory order, so that the outcome does not depend on which parse finished first
+    for (Future<Map<String, ServiceModule>> future : futures) {
+      commonServiceModules.putAll(getParseResult(future));
+    }
     return commonServiceModules;
   }
 
   /**
-   * Parse the specified stack root directory
+   * Parse a single common service version directory.
    *
-   * @param stackRoot  the stack root directory to parse
-   * @return map of stack id which contains name and version to stack module.
-   * @throws AmbariException if unable to parse all stacks
+   * @param serviceFolder  the common service version directory to parse
+   * @param unmarshaller   unmarshaller of the common service definition files
+   * @return map of common service id which contains name and version to common service module.
+   * @throws AmbariException if unable to parse the common service
    */
-  private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
-    Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
+  private Map<String, ServiceModule> parseCommonServiceDirectory(File serviceFolder,
+      ModuleFileUnmarshaller unmarshaller) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new LinkedHashMap<String, ServiceModule>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath(), unmarshaller);
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
+        }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.setErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Submit the parsing of each stack version directory of the specified stack root directory.
+   *
+   * @param stackRoot     the stack root directory to parse
+   * @param unmarshaller  unmarshaller of the stack definition files
+   * @param executor      executor on which each stack version directory is parsed
+   * @return map of stack id which contains name and version to the pending parse, in directory order
+   */
+  private Map<String, Future<StackModule>> submitStackDirectory(File stackRoot,
+      final ModuleFileUnmarshaller unmarshaller, ExecutorService executor) {
+    Map<String, Future<StackModule>> futures = new LinkedHashMap<String, Future<StackModule>>();
 
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
         String stackName = stackFolder.getParentFile().getName();
         String stackVersion = stackFolder.getName();
 
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
         String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        futures.put(stackKey, executor.submit(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws Exception {
+            return new StackModule(new StackDirectory(stackFolder.getPath(), unmarshaller), stackContext);
+          }
+        }));
       }
     }
+    return futures;
+  }
+
+  /**
+   * Wait for the stack version directories to be parsed.
+   *
+   * @param stackRoot  the stack root directory
+   * @param futures    map of stack id to the pending parse, in directory order
+   * @return map of stack id which contains name and version to stack module.
+   * @throws AmbariException if unable to parse all stacks
+   */
+  private Map<String, StackModule> getStackModules(File stackRoot,
+      Map<String, Future<StackModule>> futures) throws AmbariException {
+    Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
+    for (Map.Entry<String, Future<StackModule>> entry : futures.entrySet()) {
+      StackModule stackModule = getParseResult(entry.getValue());
+      stackModules.put(entry.getKey(), stackModule);
+      stackMap.put(entry.getKey(), stackModule.getModuleInfo());
+    }
 
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
@@ -305,4 +478,32 @@ public class StackManager {
     }
     return stackModules;
   }
+
+  /**
+   * Wait for a stack definition directory to be parsed.
+   *
+   * @param future  the pending parse
+   * @return the result of the parse
+   * @throws AmbariException if the parse failed or the wait was interrupted
+   */
+  private static <T> T getParseResult(Future<T> future) throws AmbariException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing the stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw (AmbariException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AmbariException("Unable to parse the stack definitions", cause);
+    }
+  }
 }
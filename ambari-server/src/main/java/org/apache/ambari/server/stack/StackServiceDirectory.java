@@ -45,6 +45,17 @@ public class StackServiceDirectory extends ServiceDirectory {
     super(servicePath);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param servicePath   path of the service directory
+   * @param unmarshaller  unmarshaller of the service definition files
+   * @throws AmbariException if unable to parse the service directory
+   */
+  StackServiceDirectory(String servicePath, ModuleFileUnmarshaller unmarshaller) throws AmbariException {
+    super(servicePath, unmarshaller);
+  }
+
   @Override
   /**
    * Parse stack service directory.
@@ -19,12 +19,13 @@
 package org.apache.ambari.server.state;
 
 import javax.xml.bind.annotation.XmlElement;
+import java.io.Serializable;
 
 /**
  * Represents auto-deployment stack information.
  * This element may be a child of the component and dependency elements.
  */
-public class AutoDeployInfo {
+public class AutoDeployInfo implements Serializable {
   /**
    * Whether auto-deploy is enabled
    */
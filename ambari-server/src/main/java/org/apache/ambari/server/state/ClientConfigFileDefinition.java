@@ -22,12 +22,13 @@ import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import java.io.Serializable;
 
 /**
  * Represents the configFiles tag at service/component metainfo
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ClientConfigFileDefinition {
+public class ClientConfigFileDefinition implements Serializable {
 
   private String type;
   private String fileName;
@@ -24,13 +24,14 @@ import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import java.io.Serializable;
 
 
 /**
  * Represents info about command script
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class CommandScriptDefinition {
+public class CommandScriptDefinition implements Serializable {
 
 
   private String script = null;
@@ -66,6 +66,14 @@ public class ConfigHelper {
   private final int STALE_CONFIGS_CACHE_EXPIRATION_TIME = 300;
   private final Cache<ServiceComponentHost, Boolean> staleConfigsCache;
 
+  /**
+   * Resolved configuration properties and attributes, keyed by cluster and
+   * tags. The commands of a stage share their tags, so their configurations
+   * are resolved once.
+   */
+  private final Cache<EffectiveConfigKey, Map<String, Map<String, String>>> effectivePropertiesCache;
+  private final Cache<EffectiveConfigKey, Map<String, Map<String, Map<String, String>>>> effectiveAttributesCache;
+
   private static final Logger LOG =
       LoggerFactory.getLogger(ConfigHelper.class);
 
@@ -88,6 +96,10 @@ public class ConfigHelper {
     STALE_CONFIGS_CACHE_ENABLED = configuration.isStaleConfigCacheEnabled();
     staleConfigsCache = CacheBuilder.newBuilder().
         expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).build();
+    effectivePropertiesCache = CacheBuilder.newBuilder().maximumSize(1000).
+        expireAfterAccess(10, TimeUnit.MINUTES).build();
+    effectiveAttributesCache = CacheBuilder.newBuilder().maximumSize(1000).
+        expireAfterAccess(10, TimeUnit.MINUTES).build();
   }
 
   /**
@@ -251,6 +263,69 @@ public class ConfigHelper {
     return attributes;
   }
 
+  /**
+   * Gets the same properties as
+   * {@link #getEffectiveConfigProperties(Cluster, Map)}, resolving them only
+   * once for the same tags until the configurations of the cluster change.
+   *
+   * @param cluster
+   * @param desiredTags
+   * @return {type : {key, value}}, which cannot be modified
+   */
+  public Map<String, Map<String, String>> getCachedEffectiveConfigProperties(
+      Cluster cluster, Map<String, Map<String, String>> desiredTags) {
+
+    EffectiveConfigKey key = new EffectiveConfigKey(cluster.getClusterId(), desiredTags);
+    Map<String, Map<String, String>> properties = effectivePropertiesCache.getIfPresent(key);
+
+    if (null == properties) {
+      properties = new HashMap<String, Map<String, String>>();
+      for (Entry<String, Map<String, String>> entry :
+          getEffectiveConfigProperties(cluster, desiredTags).entrySet()) {
+        properties.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+      }
+
+      properties = Collections.unmodifiableMap(properties);
+      effectivePropertiesCache.put(key, properties);
+    }
+
+    return properties;
+  }
+
+  /**
+   * Gets the same attributes as
+   * {@link #getEffectiveConfigAttributes(Cluster, Map)}, resolving them only
+   * once for the same tags until the configurations of the cluster change.
+   *
+   * @param cluster
+   * @param desiredTags
+   * @return {type : {attribute : {property, attributeValue}}, which cannot be
+   *         modified
+   */
+  public Map<String, Map<String, Map<String, String>>> getCachedEffectiveConfigAttributes(
+      Cluster cluster, Map<String, Map<String, String>> desiredTags) {
+
+    EffectiveConfigKey key = new EffectiveConfigKey(cluster.getClusterId(), desiredTags);
+    Map<String, Map<String, Map<String, String>>> attributes = effectiveAttributesCache.getIfPresent(key);
+
+    if (null == attributes) {
+      attributes = new HashMap<String, Map<String, Map<String, String>>>();
+      for (Entry<String, Map<String, Map<String, String>>> entry :
+          getEffectiveConfigAttributes(cluster, desiredTags).entrySet()) {
+        Map<String, Map<String, String>> attributesMap = new TreeMap<String, Map<String, String>>();
+        for (Entry<String, Map<String, String>> attribute : entry.getValue().entrySet()) {
+          attributesMap.put(attribute.getKey(), Collections.unmodifiableMap(attribute.getValue()));
+        }
+        attributes.put(entry.getKey(), Collections.unmodifiableMap(attributesMap));
+      }
+
+      attributes = Collections.unmodifiableMap(attributes);
+      effectiveAttributesCache.put(key, attributes);
+    }
+
+    return attributes;
+  }
+
   /**
    * Merge override with original, if original property doesn't exist,
    * add it to the properties
@@ -395,10 +470,22 @@ public class ConfigHelper {
   }
 
   /**
-   * Invalidates isStale cache
+   * Invalidates isStale cache and the resolved configurations, after the
+   * configurations or the config groups of a cluster changed
    */
   public void invalidateStaleConfigsCache() {
     staleConfigsCache.invalidateAll();
+    invalidateEffectiveConfigsCache();
+  }
+
+  /**
+   * Invalidates the configurations resolved by
+   * {@link #getCachedEffectiveConfigProperties(Cluster, Map)} and
+   * {@link #getCachedEffectiveConfigAttributes(Cluster, Map)}
+   */
+  public void invalidateEffectiveConfigsCache() {
+    effectivePropertiesCache.invalidateAll();
+    effectiveAttributesCache.invalidateAll();
   }
 
   /**
@@ -425,6 +512,7 @@ public class ConfigHelper {
 
       clusterDAO.removeConfig(clusterConfigEntity);
     }
+    invalidateEffectiveConfigsCache();
   }
 
   /**
@@ -1016,4 +1104,41 @@ public class ConfigHelper {
   }
 
 
+
+  /**
+   * The key of the resolved configurations: a cluster and a copy of the tags
+   * the configurations were resolved for.
+   */
+  private static final class EffectiveConfigKey {
+    private final long clusterId;
+    private final Map<String, Map<String, String>> tags;
+
+    private EffectiveConfigKey(long clusterId, Map<String, Map<String, String>> desiredTags) {
+      this.clusterId = clusterId;
+      tags = new HashMap<String, Map<String, String>>();
+      if (null != desiredTags) {
+        for (Entry<String, Map<String, String>> entry : desiredTags.entrySet()) {
+          tags.put(entry.getKey(), new HashMap<String, String>(entry.getValue()));
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      EffectiveConfigKey that = (EffectiveConfigKey) o;
+      return clusterId == that.clusterId && tags.equals(that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (int) (clusterId ^ (clusterId >>> 32)) + tags.hashCode();
+    }
+  }
 }
@@ -21,12 +21,13 @@ import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import javax.xml.bind.annotation.*;
+import java.io.Serializable;
 
 /**
  * Represents the customCommand tag at service/component metainfo
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class CustomCommandDefinition {
+public class CustomCommandDefinition implements Serializable {
 
   private String name;
   private CommandScriptDefinition commandScript;
@@ -20,11 +20,12 @@ package org.apache.ambari.server.state;
 
 
 import javax.xml.bind.annotation.XmlElement;
+import java.io.Serializable;
 
 /**
  * Represents stack component dependency information.
  */
-public class DependencyInfo {
+public class DependencyInfo implements Serializable {
   /**
    * The name of the component which is the dependency.
    * Specified in the form serviceName/componentName.
@@ -20,13 +20,21 @@ package org.apache.ambari.server.state;
 
 
 import org.apache.ambari.server.controller.StackConfigurationResponse;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import javax.xml.bind.annotation.XmlAnyElement;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlList;
-
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,7 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class PropertyInfo {
+public class PropertyInfo implements Serializable {
   private String name;
   private String value;
   private String description;
@@ -47,6 +55,20 @@ public class PropertyInfo {
   @XmlAnyElement
   private List<Element> propertyAttributes = new ArrayList<Element>();
 
+  /**
+   * The property attributes are DOM elements, which are not serializable; they are
+   * written by {@link #writeObject} as their tag names and text instead.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("name", String.class),
+      new ObjectStreamField("value", String.class),
+      new ObjectStreamField("description", String.class),
+      new ObjectStreamField("filename", String.class),
+      new ObjectStreamField("deleted", boolean.class),
+      new ObjectStreamField("requireInput", boolean.class),
+      new ObjectStreamField("propertyTypes", Set.class)
+  };
+
   public String getName() {
     return name;
   }
@@ -110,6 +132,38 @@ public class PropertyInfo {
     return attributes;
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(propertyAttributes.size());
+    for (Element propertyAttribute : propertyAttributes) {
+      out.writeObject(propertyAttribute.getTagName());
+      out.writeObject(propertyAttribute.getTextContent());
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    propertyAttributes = new ArrayList<Element>();
+
+    int count = in.readInt();
+    if (count > 0) {
+      Document document;
+      try {
+        document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      } catch (ParserConfigurationException e) {
+        throw new IOException("Unable to create the property attributes of " + name, e);
+      }
+      for (int i = 0; i < count; i++) {
+        Element propertyAttribute = document.createElement((String) in.readObject());
+        String text = (String) in.readObject();
+        if (!text.isEmpty()) {
+          propertyAttribute.appendChild(document.createTextNode(text));
+        }
+        propertyAttributes.add(propertyAttribute);
+      }
+    }
+  }
+
   @XmlAttribute(name = "require-input")
   public boolean isRequireInput() {
     return requireInput;
@@ -18,6 +18,7 @@
 package org.apache.ambari.server.state;
 
 import javax.xml.bind.annotation.*;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,7 +28,7 @@ import com.google.gson.annotations.SerializedName;
  * Represents <code>osSpecific</code>
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ServiceOsSpecific {
+public class ServiceOsSpecific implements Serializable {
 
   private String osFamily;
   private Repo repo;
@@ -90,7 +91,7 @@ public class ServiceOsSpecific {
    * that's why we need another class
    */
   @XmlAccessorType(XmlAccessType.FIELD)
-  public static class Repo {
+  public static class Repo implements Serializable {
 
     @SerializedName("baseUrl")
     private String baseurl;
@@ -163,7 +164,7 @@ public class ServiceOsSpecific {
    * The <code>package</code> tag.
    */
   @XmlAccessorType(XmlAccessType.FIELD)
-  public static class Package {
+  public static class Package implements Serializable {
     private String name;
 
     public String getName() {
@@ -0,0 +1,306 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.alert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.state.AlertState;
+
+import com.google.inject.Singleton;
+
+/**
+ * The {@link AlertCurrentIndex} class keeps the ID and state of the
+ * {@link AlertCurrentEntity} of every alert that was received, keyed by
+ * cluster, definition name and host, so that alerts which did not change
+ * state can be recognized without querying the database.
+ * <p/>
+ * For those alerts only the latest timestamp and text need to be written.
+ * They are queued here, one update per current alert, and written in batches
+ * by {@link org.apache.ambari.server.state.services.AlertCurrentFlushService}.
+ * <p/>
+ * The index is cleared whenever current alerts are removed from the
+ * database; it is filled again as alerts are received.
+ */
+@Singleton
+public class AlertCurrentIndex {
+
+  /**
+   * The current alerts by cluster, definition name and host.
+   */
+  private final ConcurrentMap<AlertKey, CurrentAlert> m_current =
+      new ConcurrentHashMap<AlertKey, CurrentAlert>();
+
+  /**
+   * The latest timestamp and text waiting to be written, by current alert ID.
+   */
+  private final ConcurrentMap<Long, LatestUpdate> m_pending =
+      new ConcurrentHashMap<Long, LatestUpdate>();
+
+  /**
+   * Incremented whenever the index is cleared, so that entries read from the
+   * database before that are not added afterwards.
+   */
+  private final AtomicLong m_generation = new AtomicLong();
+
+  /**
+   * Gets the current alert that was received last for the given cluster,
+   * definition and host.
+   *
+   * @param clusterId
+   *          the cluster ID.
+   * @param definitionName
+   *          the alert definition name (not {@code null}).
+   * @param hostName
+   *          the host name, or {@code null} for alerts without a host.
+   * @return the current alert or {@code null} if it is not indexed.
+   */
+  public CurrentAlert get(long clusterId, String definitionName, String hostName) {
+    return m_current.get(new AlertKey(clusterId, definitionName, hostName));
+  }
+
+  /**
+   * Indexes a current alert. The alert is not indexed if the index was
+   * cleared since the given generation, since the entity might have been
+   * removed in the meantime.
+   *
+   * @param clusterId
+   *          the cluster ID.
+   * @param definitionName
+   *          the alert definition name (not {@code null}).
+   * @param hostName
+   *          the host name, or {@code null} for alerts without a host.
+   * @param current
+   *          the persisted current alert (not {@code null}).
+   * @param generation
+   *          the value of {@link #getGeneration()} before the current alert
+   *          was read or written.
+   */
+  public void put(long clusterId, String definitionName, String hostName,
+      AlertCurrentEntity current, long generation) {
+    AlertKey key = new AlertKey(clusterId, definitionName, hostName);
+    CurrentAlert currentAlert = new CurrentAlert(current.getAlertId(),
+        current.getAlertHistory().getAlertState());
+
+    m_current.put(key, currentAlert);
+    if (m_generation.get() != generation) {
+      m_current.remove(key, currentAlert);
+    }
+  }
+
+  /**
+   * Gets the generation of the index, to be passed to
+   * {@link #put(long, String, String, AlertCurrentEntity, long)}.
+   *
+   * @return the generation.
+   */
+  public long getGeneration() {
+    return m_generation.get();
+  }
+
+  /**
+   * Removes all current alerts from the index. Pending updates are kept;
+   * updates of alerts which do not exist anymore are dropped when written.
+   */
+  public void invalidateAll() {
+    m_generation.incrementAndGet();
+    m_current.clear();
+  }
+
+  /**
+   * Removes the given current alerts from the index.
+   *
+   * @param alertIds
+   *          the IDs of the current alerts to remove.
+   */
+  public void invalidate(Collection<Long> alertIds) {
+    if (alertIds.isEmpty()) {
+      return;
+    }
+
+    m_generation.incrementAndGet();
+    for (Map.Entry<AlertKey, CurrentAlert> entry : m_current.entrySet()) {
+      if (alertIds.contains(entry.getValue().getAlertId())) {
+        m_current.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Queues the latest timestamp and text of a current alert. Only the newest
+   * update of each current alert is kept.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   * @param timestamp
+   *          the timestamp of the received alert.
+   * @param text
+   *          the text of the received alert.
+   */
+  public void queueLatest(long alertId, long timestamp, String text) {
+    LatestUpdate update = new LatestUpdate(alertId, timestamp, text);
+    LatestUpdate queued = m_pending.putIfAbsent(alertId, update);
+    while (null != queued && queued.getTimestamp() < timestamp) {
+      if (m_pending.replace(alertId, queued, update)) {
+        return;
+      }
+      queued = m_pending.putIfAbsent(alertId, update);
+    }
+  }
+
+  /**
+   * Removes and returns all queued updates.
+   *
+   * @return the queued updates (never {@code null}).
+   */
+  public List<LatestUpdate> drainLatest() {
+    List<LatestUpdate> updates = new ArrayList<LatestUpdate>(m_pending.size());
+    for (LatestUpdate update : m_pending.values()) {
+      if (m_pending.remove(update.getAlertId(), update)) {
+        updates.add(update);
+      }
+    }
+    return updates;
+  }
+
+  /**
+   * Gets the number of current alerts with an update waiting to be written.
+   *
+   * @return the number of queued updates.
+   */
+  public int getLatestQueueSize() {
+    return m_pending.size();
+  }
+
+  /**
+   * Gets the number of indexed current alerts.
+   *
+   * @return the size of the index.
+   */
+  public int size() {
+    return m_current.size();
+  }
+
+  /**
+   * The ID and state of an indexed current alert.
+   */
+  public static final class CurrentAlert {
+    private final long m_alertId;
+    private final AlertState m_state;
+
+    private CurrentAlert(long alertId, AlertState state) {
+      m_alertId = alertId;
+      m_state = state;
+    }
+
+    /**
+     * @return the ID of the {@link AlertCurrentEntity}.
+     */
+    public long getAlertId() {
+      return m_alertId;
+    }
+
+    /**
+     * @return the state of the alert when it was indexed.
+     */
+    public AlertState getState() {
+      return m_state;
+    }
+  }
+
+  /**
+   * The latest timestamp and text of a current alert that did not change
+   * state.
+   */
+  public static final class LatestUpdate {
+    private final long m_alertId;
+    private final long m_timestamp;
+    private final String m_text;
+
+    private LatestUpdate(long alertId, long timestamp, String text) {
+      m_alertId = alertId;
+      m_timestamp = timestamp;
+      m_text = text;
+    }
+
+    /**
+     * @return the ID of the {@link AlertCurrentEntity}.
+     */
+    public long getAlertId() {
+      return m_alertId;
+    }
+
+    /**
+     * @return the timestamp of the received alert.
+     */
+    public long getTimestamp() {
+      return m_timestamp;
+    }
+
+    /**
+     * @return the text of the received alert.
+     */
+    public String getText() {
+      return m_text;
+    }
+  }
+
+  /**
+   * The key of the index.
+   */
+  private static final class AlertKey {
+    private final long m_clusterId;
+    private final String m_definitionName;
+    private final String m_hostName;
+
+    private AlertKey(long clusterId, String definitionName, String hostName) {
+      m_clusterId = clusterId;
+      m_definitionName = definitionName;
+      m_hostName = hostName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      AlertKey that = (AlertKey) o;
+      return m_clusterId == that.m_clusterId
+          && m_definitionName.equals(that.m_definitionName)
+          && (m_hostName == null ? that.m_hostName == null : m_hostName.equals(that.m_hostName));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (m_clusterId ^ (m_clusterId >>> 32));
+      result = 31 * result + m_definitionName.hashCode();
+      result = 31 * result + (m_hostName == null ? 0 : m_hostName.hashCode());
+      return result;
+    }
+  }
+}
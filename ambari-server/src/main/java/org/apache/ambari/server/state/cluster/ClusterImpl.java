@@ -28,7 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -140,7 +141,7 @@ public class ClusterImpl implements Cluster {
   @Inject
   private Clusters clusters;
 
-  private StackId desiredStackVersion;
+  private volatile StackId desiredStackVersion;
 
   private volatile Map<String, Service> services = null;
 
@@ -151,6 +152,10 @@ public class ClusterImpl implements Cluster {
 
   /**
    * [ ServiceName -> [ ServiceComponentName -> [ HostName -> [ ... ] ] ] ]
+   * <p/>
+   * The topology maps below are concurrent so that lookups, which are made on
+   * every heartbeat and API read, do not need {@link #clusterGlobalLock}.
+   * Changes to them are still made while holding its write lock.
    */
   private Map<String, Map<String, Map<String, ServiceComponentHost>>>
     serviceComponentHosts;
@@ -164,12 +169,12 @@ public class ClusterImpl implements Cluster {
   /**
    * Map of existing config groups
    */
-  private Map<Long, ConfigGroup> clusterConfigGroups;
+  private volatile Map<Long, ConfigGroup> clusterConfigGroups;
 
   /**
    * Map of Request schedules for this cluster
    */
-  private Map<Long, RequestExecution> requestExecutions;
+  private volatile Map<Long, RequestExecution> requestExecutions;
 
   private final ReadWriteLock clusterGlobalLock = new ReentrantReadWriteLock();
 
@@ -242,9 +247,9 @@ public class ClusterImpl implements Cluster {
     injector.injectMembers(this);
     this.clusterEntity = clusterEntity;
 
-    serviceComponentHosts = new HashMap<String,
+    serviceComponentHosts = new ConcurrentHashMap<String,
       Map<String, Map<String, ServiceComponentHost>>>();
-    serviceComponentHostsByHost = new HashMap<String,
+    serviceComponentHostsByHost = new ConcurrentHashMap<String,
       List<ServiceComponentHost>>();
     desiredStackVersion = gson.fromJson(
       clusterEntity.getDesiredStackVersion(), StackId.class);
@@ -336,7 +341,7 @@ public class ClusterImpl implements Cluster {
           Service service = serviceKV.getValue();
           if (!serviceComponentHosts.containsKey(service.getName())) {
             serviceComponentHosts.put(service.getName(),
-                new HashMap<String, Map<String, ServiceComponentHost>>());
+                new ConcurrentHashMap<String, Map<String, ServiceComponentHost>>());
           }
           for (Entry<String, ServiceComponent> svcComponent : service.getServiceComponents().entrySet()) {
             ServiceComponent comp = svcComponent.getValue();
@@ -344,7 +349,7 @@ public class ClusterImpl implements Cluster {
             if (!serviceComponentHosts.get(service.getName()).containsKey(
                 componentName)) {
               serviceComponentHosts.get(service.getName()).put(componentName,
-                  new HashMap<String, ServiceComponentHost>());
+                  new ConcurrentHashMap<String, ServiceComponentHost>());
             }
             /** Get Service Host Components **/
             for (Entry<String, ServiceComponentHost> svchost : comp.getServiceComponentHosts().entrySet()) {
@@ -352,7 +357,7 @@ public class ClusterImpl implements Cluster {
               ServiceComponentHost svcHostComponent = svchost.getValue();
               if (!serviceComponentHostsByHost.containsKey(hostname)) {
                 serviceComponentHostsByHost.put(hostname,
-                    new ArrayList<ServiceComponentHost>());
+                    new CopyOnWriteArrayList<ServiceComponentHost>());
               }
               List<ServiceComponentHost> compList = serviceComponentHostsByHost.get(hostname);
               compList.add(svcHostComponent);
@@ -378,14 +383,14 @@ public class ClusterImpl implements Cluster {
 
       try {
         if (services == null) {
-          services = new TreeMap<String, Service>();
+          Map<String, Service> loadedServices = new ConcurrentSkipListMap<String, Service>();
           if (!clusterEntity.getClusterServiceEntities().isEmpty()) {
             for (ClusterServiceEntity serviceEntity : clusterEntity.getClusterServiceEntities()) {
               StackId stackId = getCurrentStackVersion();
               try {
                 if (ambariMetaInfo.getService(stackId.getStackName(),
                     stackId.getStackVersion(), serviceEntity.getServiceName()) != null) {
-                  services.put(serviceEntity.getServiceName(),
+                  loadedServices.put(serviceEntity.getServiceName(),
                       serviceFactory.createExisting(this, serviceEntity));
                 }
               } catch (AmbariException e) {
@@ -397,6 +402,7 @@ public class ClusterImpl implements Cluster {
               }
             }
           }
+          services = loadedServices;
         }
       } finally {
         clusterGlobalLock.writeLock().unlock();
@@ -410,13 +416,14 @@ public class ClusterImpl implements Cluster {
 
       try {
         if (clusterConfigGroups == null) {
-          clusterConfigGroups = new HashMap<Long, ConfigGroup>();
+          Map<Long, ConfigGroup> loadedConfigGroups = new ConcurrentHashMap<Long, ConfigGroup>();
           if (!clusterEntity.getConfigGroupEntities().isEmpty()) {
             for (ConfigGroupEntity configGroupEntity : clusterEntity.getConfigGroupEntities()) {
-              clusterConfigGroups.put(configGroupEntity.getGroupId(),
+              loadedConfigGroups.put(configGroupEntity.getGroupId(),
                   configGroupFactory.createExisting(this, configGroupEntity));
             }
           }
+          clusterConfigGroups = loadedConfigGroups;
         }
       } finally {
         clusterGlobalLock.writeLock().unlock();
@@ -429,13 +436,15 @@ public class ClusterImpl implements Cluster {
       clusterGlobalLock.writeLock().lock();
       try {
         if (requestExecutions == null) {
-          requestExecutions = new HashMap<Long, RequestExecution>();
+          Map<Long, RequestExecution> loadedRequestExecutions =
+              new ConcurrentHashMap<Long, RequestExecution>();
           if (!clusterEntity.getRequestScheduleEntities().isEmpty()) {
             for (RequestScheduleEntity scheduleEntity : clusterEntity.getRequestScheduleEntities()) {
-              requestExecutions.put(scheduleEntity.getScheduleId(),
+              loadedRequestExecutions.put(scheduleEntity.getScheduleId(),
                   requestExecutionFactory.createExisting(this, scheduleEntity));
             }
           }
+          requestExecutions = loadedRequestExecutions;
         }
       } finally {
         clusterGlobalLock.writeLock().unlock();
@@ -471,12 +480,7 @@ public class ClusterImpl implements Cluster {
   @Override
   public Map<Long, ConfigGroup> getConfigGroups() {
     loadConfigGroups();
-    clusterGlobalLock.readLock().lock();
-    try {
-      return Collections.unmodifiableMap(clusterConfigGroups);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
-    }
+    return Collections.unmodifiableMap(clusterConfigGroups);
   }
 
   @Override
@@ -485,24 +489,18 @@ public class ClusterImpl implements Cluster {
     Map<Long, ConfigGroup> configGroups = new HashMap<Long, ConfigGroup>();
     Map<Long, ConfigGroup> configGroupMap = getConfigGroups();
 
-    clusterGlobalLock.readLock().lock();
-    try {
-      Set<ConfigGroupHostMapping> hostMappingEntities = configGroupHostMappingDAO.findByHost(hostname);
-
-      if (hostMappingEntities != null && !hostMappingEntities.isEmpty()) {
-        for (ConfigGroupHostMapping entity : hostMappingEntities) {
-          ConfigGroup configGroup = configGroupMap.get(entity.getConfigGroupId());
-          if (configGroup != null
-              && !configGroups.containsKey(configGroup.getId())) {
-            configGroups.put(configGroup.getId(), configGroup);
-          }
+    Set<ConfigGroupHostMapping> hostMappingEntities = configGroupHostMappingDAO.findByHost(hostname);
+
+    if (hostMappingEntities != null && !hostMappingEntities.isEmpty()) {
+      for (ConfigGroupHostMapping entity : hostMappingEntities) {
+        ConfigGroup configGroup = configGroupMap.get(entity.getConfigGroupId());
+        if (configGroup != null
+            && !configGroups.containsKey(configGroup.getId())) {
+          configGroups.put(configGroup.getId(), configGroup);
         }
       }
-      return configGroups;
-
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+    return configGroups;
   }
 
   @Override
@@ -529,12 +527,7 @@ public class ClusterImpl implements Cluster {
   @Override
   public Map<Long, RequestExecution> getAllRequestExecutions() {
     loadRequestExecutions();
-    clusterGlobalLock.readLock().lock();
-    try {
-      return Collections.unmodifiableMap(requestExecutions);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
-    }
+    return Collections.unmodifiableMap(requestExecutions);
   }
 
   @Override
@@ -582,21 +575,22 @@ public class ClusterImpl implements Cluster {
   public ServiceComponentHost getServiceComponentHost(String serviceName,
       String serviceComponentName, String hostname) throws AmbariException {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!serviceComponentHosts.containsKey(serviceName)
-          || !serviceComponentHosts.get(serviceName).containsKey(
-              serviceComponentName)
-          || !serviceComponentHosts.get(serviceName).get(serviceComponentName).containsKey(
-              hostname)) {
-        throw new ServiceComponentHostNotFoundException(getClusterName(),
-            serviceName, serviceComponentName, hostname);
+
+    ServiceComponentHost serviceComponentHost = null;
+    Map<String, Map<String, ServiceComponentHost>> components =
+        serviceComponentHosts.get(serviceName);
+    if (null != components) {
+      Map<String, ServiceComponentHost> hosts = components.get(serviceComponentName);
+      if (null != hosts) {
+        serviceComponentHost = hosts.get(hostname);
       }
-      return serviceComponentHosts.get(serviceName).get(serviceComponentName).get(
-          hostname);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+
+    if (null == serviceComponentHost) {
+      throw new ServiceComponentHostNotFoundException(getClusterName(),
+          serviceName, serviceComponentName, hostname);
+    }
+    return serviceComponentHost;
   }
 
   @Override
@@ -656,12 +650,12 @@ public class ClusterImpl implements Cluster {
 
       if (!serviceComponentHosts.containsKey(serviceName)) {
         serviceComponentHosts.put(serviceName,
-            new HashMap<String, Map<String, ServiceComponentHost>>());
+            new ConcurrentHashMap<String, Map<String, ServiceComponentHost>>());
       }
 
       if (!serviceComponentHosts.get(serviceName).containsKey(componentName)) {
         serviceComponentHosts.get(serviceName).put(componentName,
-            new HashMap<String, ServiceComponentHost>());
+            new ConcurrentHashMap<String, ServiceComponentHost>());
       }
 
       if (serviceComponentHosts.get(serviceName).get(componentName).containsKey(
@@ -673,7 +667,7 @@ public class ClusterImpl implements Cluster {
 
       if (!serviceComponentHostsByHost.containsKey(hostname)) {
         serviceComponentHostsByHost.put(hostname,
-            new ArrayList<ServiceComponentHost>());
+            new CopyOnWriteArrayList<ServiceComponentHost>());
       }
 
       if (LOG.isDebugEnabled()) {
@@ -783,16 +777,11 @@ public class ClusterImpl implements Cluster {
   public List<ServiceComponentHost> getServiceComponentHosts(
     String hostname) {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (serviceComponentHostsByHost.containsKey(hostname)) {
-        return new CopyOnWriteArrayList<ServiceComponentHost>(
-            serviceComponentHostsByHost.get(hostname));
-      }
-      return new ArrayList<ServiceComponentHost>();
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    List<ServiceComponentHost> hostComponents = serviceComponentHostsByHost.get(hostname);
+    if (null != hostComponents) {
+      return new CopyOnWriteArrayList<ServiceComponentHost>(hostComponents);
     }
+    return new ArrayList<ServiceComponentHost>();
   }
 
   @Override
@@ -843,36 +832,22 @@ public class ClusterImpl implements Cluster {
   public Service getService(String serviceName)
     throws AmbariException {
     loadServices();
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!services.containsKey(serviceName)) {
-        throw new ServiceNotFoundException(getClusterName(), serviceName);
-      }
-      return services.get(serviceName);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Service service = services.get(serviceName);
+    if (null == service) {
+      throw new ServiceNotFoundException(getClusterName(), serviceName);
     }
+    return service;
   }
 
   @Override
   public Map<String, Service> getServices() {
     loadServices();
-    clusterGlobalLock.readLock().lock();
-    try {
-      return new HashMap<String, Service>(services);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
-    }
+    return new HashMap<String, Service>(services);
   }
 
   @Override
   public StackId getDesiredStackVersion() {
-    clusterGlobalLock.readLock().lock();
-    try {
-      return desiredStackVersion;
-    } finally {
-      clusterGlobalLock.readLock().unlock();
-    }
+    return desiredStackVersion;
   }
 
   @Override
@@ -1644,6 +1619,8 @@ public class ClusterImpl implements Cluster {
       }
 
       allConfigs.get(config.getType()).put(config.getTag(), config);
+      // a config may replace one with the same tag
+      configHelper.invalidateEffectiveConfigsCache();
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.state.alert.AlertCurrentIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link AlertCurrentFlushService} writes the latest timestamp and text
+ * of received alerts which did not change state. These updates are queued in
+ * the {@link AlertCurrentIndex} by the alert listener and written here
+ * periodically in a single transaction, so that the database sees one batch
+ * of updates per interval instead of a query and an update for every alert
+ * of every heartbeat.
+ * <p/>
+ * The queue depth and the flush latency are exposed over JMX.
+ */
+@AmbariService
+public class AlertCurrentFlushService extends AbstractScheduledService
+    implements AlertCurrentFlushServiceMBean {
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(AlertCurrentFlushService.class);
+
+  /**
+   * The JMX name of the service.
+   */
+  private static final String MBEAN_NAME = "org.apache.ambari.server:type=AlertCurrentFlushService";
+
+  /**
+   * Holds the queued updates.
+   */
+  @Inject
+  private AlertCurrentIndex m_currentIndex;
+
+  /**
+   * Used to write the updates.
+   */
+  @Inject
+  private AlertsDAO m_alertsDao;
+
+  /**
+   * The configuration instance to get the flush interval from.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  private volatile int m_lastFlushSize = 0;
+  private volatile long m_lastFlushLatency = 0L;
+  private volatile long m_maxFlushLatency = 0L;
+  private final AtomicLong m_flushedCount = new AtomicLong();
+  private final AtomicLong m_failedFlushCount = new AtomicLong();
+
+  /**
+   * Writes all queued updates. Updates that could not be written are queued
+   * again unless a newer update was queued in the meantime.
+   */
+  public synchronized void flush() {
+    List<AlertCurrentIndex.LatestUpdate> updates = m_currentIndex.drainLatest();
+    if (updates.isEmpty()) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    try {
+      Set<Long> removed = m_alertsDao.updateLatest(updates);
+      m_currentIndex.invalidate(removed);
+    } catch (RuntimeException exception) {
+      m_failedFlushCount.incrementAndGet();
+      LOG.error("Unable to write the latest timestamps of {} current alerts",
+          updates.size(), exception);
+
+      for (AlertCurrentIndex.LatestUpdate update : updates) {
+        m_currentIndex.queueLatest(update.getAlertId(), update.getTimestamp(),
+            update.getText());
+      }
+      return;
+    }
+
+    long latency = System.currentTimeMillis() - start;
+    m_lastFlushSize = updates.size();
+    m_lastFlushLatency = latency;
+    m_maxFlushLatency = Math.max(m_maxFlushLatency, latency);
+    m_flushedCount.addAndGet(updates.size());
+
+    LOG.debug("Wrote the latest timestamps of {} current alerts in {}ms",
+        updates.size(), latency);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Registers the service with the platform MBean server.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    super.startUp();
+
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(this, name);
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register {} with JMX", MBEAN_NAME, exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Writes the updates still queued.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    flush();
+    super.shutDown();
+  }
+
+  @Override
+  protected void runOneIteration() throws Exception {
+    flush();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Returns a schedule that runs every
+   * {@link Configuration#getAlertsCurrentFlushInterval()} seconds. When the
+   * interval is 0 the listener writes the updates itself and this service
+   * only checks once a minute for leftovers.
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = m_configuration.getAlertsCurrentFlushInterval();
+    if (interval <= 0) {
+      interval = 60L;
+    }
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.SECONDS);
+  }
+
+
+  // ----- AlertCurrentFlushServiceMBean -------------------------------------
+
+  @Override
+  public int getQueueSize() {
+    return m_currentIndex.getLatestQueueSize();
+  }
+
+  @Override
+  public int getIndexSize() {
+    return m_currentIndex.size();
+  }
+
+  @Override
+  public int getLastFlushSize() {
+    return m_lastFlushSize;
+  }
+
+  @Override
+  public long getLastFlushLatency() {
+    return m_lastFlushLatency;
+  }
+
+  @Override
+  public long getMaxFlushLatency() {
+    return m_maxFlushLatency;
+  }
+
+  @Override
+  public long getFlushedCount() {
+    return m_flushedCount.get();
+  }
+
+  @Override
+  public long getFailedFlushCount() {
+    return m_failedFlushCount.get();
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+/**
+ * The {@link AlertCurrentFlushServiceMBean} exposes the state of the
+ * {@link AlertCurrentFlushService} over JMX.
+ */
+public interface AlertCurrentFlushServiceMBean {
+
+  /**
+   * @return the number of current alerts with a latest timestamp waiting to
+   *         be written.
+   */
+  int getQueueSize();
+
+  /**
+   * @return the number of indexed current alerts.
+   */
+  int getIndexSize();
+
+  /**
+   * @return the number of updates written by the last flush.
+   */
+  int getLastFlushSize();
+
+  /**
+   * @return the time, in milliseconds, the last flush took.
+   */
+  long getLastFlushLatency();
+
+  /**
+   * @return the longest time, in milliseconds, a flush took.
+   */
+  long getMaxFlushLatency();
+
+  /**
+   * @return the number of updates written since the server started.
+   */
+  long getFlushedCount();
+
+  /**
+   * @return the number of flushes that failed since the server started.
+   */
+  long getFailedFlushCount();
+}
@@ -0,0 +1,557 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.actionmanager.ActionDBAccessor;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.dao.DaoUtils;
+import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.RequestDAO;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.utils.StageUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link HistoryPurgeService} removes finished requests, with their
+ * stages, tasks and execution commands, and alert history which is no longer
+ * current once they are older than the configured retention. Rows are removed
+ * in small batches so that no single transaction holds locks for long.
+ * <p/>
+ * When an archive directory is configured, each batch is first written to a
+ * gzipped file of JSON lines in that directory; a batch which could not be
+ * archived is not removed, and the archive of a batch which could not be
+ * removed is deleted. Purging is disabled until a retention is set.
+ * <p/>
+ * The number of purged rows and the reclaimed bytes are exposed over JMX.
+ */
+@AmbariService
+public class HistoryPurgeService extends AbstractScheduledService
+    implements HistoryPurgeServiceMBean {
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HistoryPurgeService.class);
+
+  /**
+   * The JMX name of the service.
+   */
+  private static final String MBEAN_NAME = "org.apache.ambari.server:type=HistoryPurgeService";
+
+  /**
+   * Alert history rows are small, so many more of them are removed at once
+   * than requests.
+   */
+  private static final int ALERT_BATCH_MULTIPLIER = 100;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Inject
+  private Configuration m_configuration;
+
+  @Inject
+  private RequestDAO m_requestDao;
+
+  @Inject
+  private HostRoleCommandDAO m_hostRoleCommandDao;
+
+  @Inject
+  private ExecutionCommandDAO m_executionCommandDao;
+
+  @Inject
+  private AlertsDAO m_alertsDao;
+
+  /**
+   * Used to discard the cached copies of removed tasks.
+   */
+  @Inject
+  private ActionDBAccessor m_actionDBAccessor;
+
+  private final AtomicLong m_purgedRequestCount = new AtomicLong();
+  private final AtomicLong m_purgedStageCount = new AtomicLong();
+  private final AtomicLong m_purgedTaskCount = new AtomicLong();
+  private final AtomicLong m_purgedAlertCount = new AtomicLong();
+  private final AtomicLong m_reclaimedBytes = new AtomicLong();
+  private final AtomicLong m_archiveFileCount = new AtomicLong();
+  private final AtomicLong m_failedPurgeCount = new AtomicLong();
+  private volatile long m_lastPurgeTime = 0L;
+  private volatile long m_lastPurgeDuration = 0L;
+
+  /**
+   * Removes the requests and alert history older than their configured
+   * retention. Failures are logged so that the next scheduled run tries
+   * again.
+   */
+  public synchronized void purge() {
+    long start = System.currentTimeMillis();
+
+    int requestDays = m_configuration.getPurgeRequestsRetentionDays();
+    if (requestDays > 0) {
+      try {
+        purgeRequests(start - TimeUnit.DAYS.toMillis(requestDays));
+      } catch (Exception exception) {
+        m_failedPurgeCount.incrementAndGet();
+        LOG.error("Unable to purge the requests older than {} days", requestDays,
+            exception);
+      }
+    }
+
+    int alertDays = m_configuration.getPurgeAlertsRetentionDays();
+    if (alertDays > 0) {
+      try {
+        purgeAlertHistory(start - TimeUnit.DAYS.toMillis(alertDays));
+      } catch (Exception exception) {
+        m_failedPurgeCount.incrementAndGet();
+        LOG.error("Unable to purge the alert history older than {} days",
+            alertDays, exception);
+      }
+    }
+
+    m_lastPurgeTime = System.currentTimeMillis();
+    m_lastPurgeDuration = m_lastPurgeTime - start;
+  }
+
+  /**
+   * Removes, batch by batch, the requests which finished before the
+   * specified time.
+   *
+   * @param endedBefore
+   *          the time, in milliseconds, before which the requests ended.
+   * @throws IOException
+   *           if a batch could not be archived.
+   */
+  void purgeRequests(long endedBefore) throws IOException {
+    int batchSize = getBatchSize(1);
+
+    List<Long> requestIds;
+    while (!(requestIds = m_requestDao.findFinishedRequestIds(endedBefore,
+        batchSize)).isEmpty()) {
+      File archiveFile = getArchiveFile("requests", requestIds.get(0),
+          requestIds.get(requestIds.size() - 1));
+
+      long bytes = 0L;
+      int stages = 0;
+      List<Long> taskIds = new ArrayList<Long>();
+      int removed = 0;
+      try {
+        Writer archive = openArchive(archiveFile);
+        try {
+          for (Long requestId : requestIds) {
+            RequestEntity request = m_requestDao.findByPK(requestId);
+            List<HostRoleCommandEntity> tasks = m_hostRoleCommandDao.findByRequest(requestId);
+            List<ExecutionCommandEntity> commands = m_executionCommandDao.findByRequestId(requestId);
+
+            bytes += getSize(request, tasks, commands, null != archive);
+            stages += request.getStages().size();
+            for (HostRoleCommandEntity task : tasks) {
+              taskIds.add(task.getTaskId());
+            }
+
+            if (null != archive) {
+              archive.write(StageUtils.getGson().toJson(toRow(request, tasks, commands)));
+              archive.write('\n');
+            }
+          }
+        } finally {
+          if (null != archive) {
+            archive.close();
+          }
+        }
+
+        removed = m_requestDao.removeRequests(requestIds);
+      } finally {
+        keepArchive(archiveFile, removed > 0);
+      }
+
+      if (removed == 0) {
+        break;
+      }
+
+      for (Long requestId : requestIds) {
+        m_hostRoleCommandDao.invalidateAggregateCounts(requestId);
+      }
+      m_actionDBAccessor.invalidateTasks(taskIds);
+
+      m_purgedRequestCount.addAndGet(removed);
+      m_purgedStageCount.addAndGet(stages);
+      m_purgedTaskCount.addAndGet(taskIds.size());
+      m_reclaimedBytes.addAndGet(bytes);
+
+      LOG.info("Purged {} requests with {} stages and {} tasks, about {} bytes",
+          removed, stages, taskIds.size(), bytes);
+
+      if (requestIds.size() < batchSize) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Removes, batch by batch, the alert history which was received before the
+   * specified time and is no longer current.
+   *
+   * @param receivedBefore
+   *          the time, in milliseconds, before which the alerts were received.
+   * @throws IOException
+   *           if a batch could not be archived.
+   */
+  void purgeAlertHistory(long receivedBefore) throws IOException {
+    int batchSize = getBatchSize(ALERT_BATCH_MULTIPLIER);
+
+    List<AlertHistoryEntity> history;
+    while (!(history = m_alertsDao.findHistoryBefore(receivedBefore,
+        batchSize)).isEmpty()) {
+      File archiveFile = getArchiveFile("alert-history",
+          history.get(0).getAlertId(), history.get(history.size() - 1).getAlertId());
+
+      long bytes = 0L;
+      List<Long> historyIds = new ArrayList<Long>(history.size());
+      int removed = 0;
+      try {
+        Writer archive = openArchive(archiveFile);
+        try {
+          for (AlertHistoryEntity entity : history) {
+            historyIds.add(entity.getAlertId());
+            bytes += length(entity.getAlertText()) + length(entity.getAlertLabel())
+                + length(entity.getAlertInstance());
+
+            if (null != archive) {
+              archive.write(StageUtils.getGson().toJson(toRow(entity)));
+              archive.write('\n');
+            }
+          }
+        } finally {
+          if (null != archive) {
+            archive.close();
+          }
+        }
+
+        removed = m_alertsDao.removeHistory(historyIds);
+      } finally {
+        keepArchive(archiveFile, removed > 0);
+      }
+
+      if (removed == 0) {
+        break;
+      }
+
+      m_purgedAlertCount.addAndGet(removed);
+      m_reclaimedBytes.addAndGet(bytes);
+
+      LOG.info("Purged {} alert history entries, about {} bytes", removed, bytes);
+
+      if (history.size() < batchSize) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Registers the service with the platform MBean server.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    super.startUp();
+
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(this, name);
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register {} with JMX", MBEAN_NAME, exception);
+    }
+  }
+
+  @Override
+  protected void runOneIteration() throws Exception {
+    purge();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Returns a schedule that runs every
+   * {@link Configuration#getPurgeInterval()} minutes, starting one interval
+   * after the server started.
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = m_configuration.getPurgeInterval();
+    if (interval <= 0) {
+      interval = 60L;
+    }
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Gets the number of rows removed at once, kept within the number of
+   * parameters every database accepts in an {@code IN} clause.
+   */
+  private int getBatchSize(int multiplier) {
+    int batchSize = Math.max(1, m_configuration.getPurgeBatchSize()) * multiplier;
+    return Math.min(batchSize, DaoUtils.ORACLE_LIST_LIMIT);
+  }
+
+  /**
+   * Gets the archive file for the batch with the specified ids.
+   *
+   * @return the file, or {@code null} if archiving is not configured.
+   */
+  private File getArchiveFile(String prefix, long firstId, long lastId) {
+    String archiveDir = m_configuration.getPurgeArchiveDir();
+    if (null == archiveDir || archiveDir.isEmpty()) {
+      return null;
+    }
+
+    return new File(archiveDir, String.format("%s-%d-%d-%d.json.gz", prefix,
+        firstId, lastId, System.currentTimeMillis()));
+  }
+
+  /**
+   * Opens a gzipped archive file, creating its directory if needed.
+   *
+   * @return the writer, or {@code null} if the file is {@code null}.
+   */
+  private Writer openArchive(File file) throws IOException {
+    if (null == file) {
+      return null;
+    }
+
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create the archive directory " + dir);
+    }
+
+    return new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(
+        file)), UTF_8);
+  }
+
+  /**
+   * Counts the archive file of a removed batch, or deletes the archive file of
+   * a batch which could not be archived or removed so that the archive only
+   * holds removed rows.
+   */
+  private void keepArchive(File file, boolean removed) {
+    if (null == file) {
+      return;
+    }
+
+    if (removed) {
+      m_archiveFileCount.incrementAndGet();
+    } else if (file.exists() && !file.delete()) {
+      LOG.warn("Unable to delete the archive {} of rows which were not removed",
+          file);
+    }
+  }
+
+  /**
+   * Gets the approximate size of the text and LOB columns of a request, its
+   * stages and its tasks. The output of the tasks is fetched lazily, so it is
+   * only counted when it is read anyway to be archived.
+   */
+  private long getSize(RequestEntity request,
+      List<HostRoleCommandEntity> tasks, List<ExecutionCommandEntity> commands,
+      boolean includeTaskOutput) {
+    long bytes = length(request.getInputs()) + length(request.getRequestContext());
+    for (ExecutionCommandEntity command : commands) {
+      bytes += length(command.getCommand());
+    }
+
+    for (StageEntity stage : request.getStages()) {
+      bytes += length(stage.getClusterHostInfo())
+          + length(stage.getCommandParamsStage())
+          + length(stage.getHostParamsStage());
+    }
+
+    if (includeTaskOutput) {
+      for (HostRoleCommandEntity task : tasks) {
+        bytes += length(task.getStdOut()) + length(task.getStdError())
+            + length(task.getStructuredOut());
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Converts a request, its stages and its tasks to a row of the archive.
+   */
+  private Map<String, Object> toRow(RequestEntity request,
+      List<HostRoleCommandEntity> tasks, List<ExecutionCommandEntity> commands) {
+    Map<Long, String> commandsByTask = new LinkedHashMap<Long, String>();
+    for (ExecutionCommandEntity command : commands) {
+      commandsByTask.put(command.getTaskId(), toString(command.getCommand()));
+    }
+
+    List<Map<String, Object>> stageRows = new ArrayList<Map<String, Object>>();
+    for (StageEntity stage : request.getStages()) {
+      Map<String, Object> stageRow = new LinkedHashMap<String, Object>();
+      stageRow.put("stage_id", stage.getStageId());
+      stageRow.put("request_context", stage.getRequestContext());
+      stageRow.put("log_info", stage.getLogInfo());
+      stageRow.put("cluster_host_info", stage.getClusterHostInfo());
+      stageRow.put("command_params", stage.getCommandParamsStage());
+      stageRow.put("host_params", stage.getHostParamsStage());
+      stageRows.add(stageRow);
+    }
+
+    List<Map<String, Object>> taskRows = new ArrayList<Map<String, Object>>();
+    for (HostRoleCommandEntity task : tasks) {
+      Map<String, Object> taskRow = new LinkedHashMap<String, Object>();
+      taskRow.put("task_id", task.getTaskId());
+      taskRow.put("stage_id", task.getStageId());
+      taskRow.put("host_name", task.getHostName());
+      taskRow.put("role", String.valueOf(task.getRole()));
+      taskRow.put("role_command", task.getRoleCommand());
+      taskRow.put("command_detail", task.getCommandDetail());
+      taskRow.put("status", task.getStatus());
+      taskRow.put("exitcode", task.getExitcode());
+      taskRow.put("start_time", task.getStartTime());
+      taskRow.put("end_time", task.getEndTime());
+      taskRow.put("std_out", toString(task.getStdOut()));
+      taskRow.put("std_error", toString(task.getStdError()));
+      taskRow.put("structured_out", toString(task.getStructuredOut()));
+      taskRow.put("command", commandsByTask.get(task.getTaskId()));
+      taskRows.add(taskRow);
+    }
+
+    Map<String, Object> row = new LinkedHashMap<String, Object>();
+    row.put("request_id", request.getRequestId());
+    row.put("cluster_id", request.getClusterId());
+    row.put("request_context", request.getRequestContext());
+    row.put("request_type", request.getRequestType());
+    row.put("command_name", request.getCommandName());
+    row.put("inputs", request.getInputs());
+    row.put("create_time", request.getCreateTime());
+    row.put("start_time", request.getStartTime());
+    row.put("end_time", request.getEndTime());
+    row.put("stages", stageRows);
+    row.put("tasks", taskRows);
+    return row;
+  }
+
+  /**
+   * Converts an alert history entry to a row of the archive.
+   */
+  private Map<String, Object> toRow(AlertHistoryEntity history) {
+    Map<String, Object> row = new LinkedHashMap<String, Object>();
+    row.put("alert_id", history.getAlertId());
+    row.put("cluster_id", history.getClusterId());
+    row.put("definition_name",
+        history.getAlertDefinition().getDefinitionName());
+    row.put("service_name", history.getServiceName());
+    row.put("component_name", history.getComponentName());
+    row.put("host_name", history.getHostName());
+    row.put("instance", history.getAlertInstance());
+    row.put("label", history.getAlertLabel());
+    row.put("state", history.getAlertState());
+    row.put("text", history.getAlertText());
+    row.put("timestamp", history.getAlertTimestamp());
+    return row;
+  }
+
+  private static long length(String value) {
+    return null == value ? 0L : value.length();
+  }
+
+  private static long length(byte[] value) {
+    return null == value ? 0L : value.length;
+  }
+
+  private static String toString(byte[] value) {
+    return null == value ? null : new String(value, UTF_8);
+  }
+
+  // ----- HistoryPurgeServiceMBean ------------------------------------------
+
+  @Override
+  public long getPurgedRequestCount() {
+    return m_purgedRequestCount.get();
+  }
+
+  @Override
+  public long getPurgedStageCount() {
+    return m_purgedStageCount.get();
+  }
+
+  @Override
+  public long getPurgedTaskCount() {
+    return m_purgedTaskCount.get();
+  }
+
+  @Override
+  public long getPurgedAlertCount() {
+    return m_purgedAlertCount.get();
+  }
+
+  @Override
+  public long getReclaimedBytes() {
+    return m_reclaimedBytes.get();
+  }
+
+  @Override
+  public long getArchiveFileCount() {
+    return m_archiveFileCount.get();
+  }
+
+  @Override
+  public long getLastPurgeTime() {
+    return m_lastPurgeTime;
+  }
+
+  @Override
+  public long getLastPurgeDuration() {
+    return m_lastPurgeDuration;
+  }
+
+  @Override
+  public long getFailedPurgeCount() {
+    return m_failedPurgeCount.get();
+  }
+}
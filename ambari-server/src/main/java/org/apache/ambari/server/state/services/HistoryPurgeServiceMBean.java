@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+/**
+ * The {@link HistoryPurgeServiceMBean} exposes the progress of the
+ * {@link HistoryPurgeService} over JMX.
+ */
+public interface HistoryPurgeServiceMBean {
+
+  /**
+   * @return the number of requests removed since the server started.
+   */
+  long getPurgedRequestCount();
+
+  /**
+   * @return the number of stages removed since the server started.
+   */
+  long getPurgedStageCount();
+
+  /**
+   * @return the number of tasks removed since the server started.
+   */
+  long getPurgedTaskCount();
+
+  /**
+   * @return the number of alert history entries removed since the server
+   *         started.
+   */
+  long getPurgedAlertCount();
+
+  /**
+   * @return the approximate number of bytes of text and LOB columns removed
+   *         since the server started. The output of tasks is only counted
+   *         when it is archived.
+   */
+  long getReclaimedBytes();
+
+  /**
+   * @return the number of archive files written since the server started.
+   */
+  long getArchiveFileCount();
+
+  /**
+   * @return the time, in milliseconds since the epoch, the last purge
+   *         finished, or 0 if none finished yet.
+   */
+  long getLastPurgeTime();
+
+  /**
+   * @return the time, in milliseconds, the last purge took.
+   */
+  long getLastPurgeDuration();
+
+  /**
+   * @return the number of purges that failed since the server started.
+   */
+  long getFailedPurgeCount();
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -39,7 +40,7 @@ import org.apache.ambari.server.state.PropertyInfo;
  * The elements within a service's configuration file.
  */
 @XmlRootElement(name="configuration")
-public class ConfigurationXml implements Validable{
+public class ConfigurationXml implements Validable, Serializable {
   
   @XmlAnyAttribute
   private Map<QName, String> attributes = new HashMap<QName, String>();
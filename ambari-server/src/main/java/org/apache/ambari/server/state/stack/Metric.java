@@ -17,7 +17,9 @@
  */
 package org.apache.ambari.server.state.stack;
 
-public class Metric {
+import java.io.Serializable;
+
+public class Metric implements Serializable {
   private String metric = null;
   private boolean pointInTime = false;
   private boolean temporal = false;
@@ -18,13 +18,14 @@
 
 package org.apache.ambari.server.state.stack;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Used to represent metrics for a stack component.
  */
-public class MetricDefinition {
+public class MetricDefinition implements Serializable {
   private String type = null;
   private Map<String, String> properties = null;
   private Map<String, Metric> metrics = null;
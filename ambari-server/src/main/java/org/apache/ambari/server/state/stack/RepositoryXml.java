@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -36,7 +37,7 @@ import org.apache.ambari.server.stack.Validable;
  */
 @XmlRootElement(name="reposinfo")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class RepositoryXml implements Validable{
+public class RepositoryXml implements Validable, Serializable {
 
   @XmlElement(name="latest")
   private String latestUri;
@@ -100,7 +101,7 @@ public class RepositoryXml implements Validable{
    * The <code>os</code> tag.
    */
   @XmlAccessorType(XmlAccessType.FIELD)
-  public static class Os {
+  public static class Os implements Serializable {
     @XmlAttribute(name="family")
     private String family;
     
@@ -129,7 +130,7 @@ public class RepositoryXml implements Validable{
    * The <code>repo</code> tag.
    */
   @XmlAccessorType(XmlAccessType.FIELD)
-  public static class Repo {
+  public static class Repo implements Serializable {
     private String baseurl = null;
     private String mirrorslist = null;
     private String repoid = null;
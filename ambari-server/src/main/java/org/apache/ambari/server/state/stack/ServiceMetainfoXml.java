@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
 import org.apache.ambari.server.state.ServiceInfo;
@@ -33,7 +34,7 @@ import org.apache.ambari.server.stack.Validable;
  */
 @XmlRootElement(name="metainfo")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ServiceMetainfoXml implements Validable{
+public class ServiceMetainfoXml implements Validable, Serializable {
 
   private String schemaVersion;
 
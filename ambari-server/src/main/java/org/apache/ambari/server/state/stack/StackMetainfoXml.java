@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -32,7 +33,7 @@ import org.apache.ambari.server.stack.Validable;
  */
 @XmlRootElement(name="metainfo")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class StackMetainfoXml implements Validable{
+public class StackMetainfoXml implements Validable, Serializable {
   
   @XmlElement(name="extends")
   private String extendsVersion = null;
@@ -94,7 +95,7 @@ public class StackMetainfoXml implements Validable{
   }
   
   @XmlAccessorType(XmlAccessType.FIELD)
-  public static class Version {
+  public static class Version implements Serializable {
     private Version() {
     }
     private boolean active = false;
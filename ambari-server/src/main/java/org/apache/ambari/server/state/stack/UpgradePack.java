@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -42,7 +43,7 @@ import org.apache.ambari.server.state.stack.upgrade.Task;
  */
 @XmlRootElement(name="upgrade")
 @XmlAccessorType(XmlAccessType.FIELD)
-public class UpgradePack {
+public class UpgradePack implements Serializable {
 
   @XmlElement(name="target")
   private String target;
@@ -179,7 +180,7 @@ public class UpgradePack {
   /**
    * A service definition that holds a list of components in the 'order' element.
    */
-  public static class OrderService {
+  public static class OrderService implements Serializable {
 
     @XmlAttribute(name="name")
     public String serviceName;
@@ -191,7 +192,7 @@ public class UpgradePack {
   /**
    * A service definition in the 'processing' element.
    */
-  public static class ProcessingService {
+  public static class ProcessingService implements Serializable {
 
     @XmlAttribute
     public String name;
@@ -205,7 +206,7 @@ public class UpgradePack {
   /**
    * A component definition in the 'processing/service' path.
    */
-  public static class ProcessingComponent {
+  public static class ProcessingComponent implements Serializable {
 
     @XmlAttribute
     public String name;
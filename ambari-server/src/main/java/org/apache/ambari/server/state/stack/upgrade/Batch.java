@@ -18,11 +18,12 @@
 package org.apache.ambari.server.state.stack.upgrade;
 
 import javax.xml.bind.annotation.XmlElement;
+import java.io.Serializable;
 
 /**
  *  Identifies how a component should be upgraded (optional)
  */
-public class Batch {
+public class Batch implements Serializable {
 
   @XmlElement(name="percent")
   public int percent;
@@ -17,6 +17,9 @@
  */
 package org.apache.ambari.server.state.stack.upgrade;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -56,19 +59,28 @@ public class ClusterGrouping extends Grouping {
   public List<ExecuteStage> executionStages;
 
   @XmlTransient
-  private ClusterBuilder m_builder = new ClusterBuilder();
+  private transient ClusterBuilder m_builder = new ClusterBuilder();
 
   @Override
   public ClusterBuilder getBuilder() {
     return m_builder;
   }
 
+  /**
+   * Creates the builder, which is not serialized, when this grouping is read
+   * from a stack definition snapshot.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    m_builder = new ClusterBuilder();
+  }
+
 
   /**
    * Represents a single-stage execution that happens as part of a cluster-wide
    * upgrade or downgrade.
    */
-  public static class ExecuteStage {
+  public static class ExecuteStage implements Serializable {
     @XmlAttribute(name="title")
     public String title;
 
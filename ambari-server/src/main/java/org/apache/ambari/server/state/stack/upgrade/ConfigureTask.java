@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack.upgrade;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -130,7 +131,7 @@ public class ConfigureTask extends ServerSideActionTask {
    */
   @XmlAccessorType(XmlAccessType.FIELD)
   @XmlType(name = "condition")
-  public static class Condition {
+  public static class Condition implements Serializable {
     @XmlAttribute(name = "type")
     private String conditionConfigType;
 
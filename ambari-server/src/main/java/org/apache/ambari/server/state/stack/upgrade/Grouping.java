@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.stack.upgrade;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -37,7 +38,7 @@ import org.apache.commons.lang.StringUtils;
  *
  */
 @XmlSeeAlso(value = { ColocatedGrouping.class, ClusterGrouping.class, ServiceCheckGrouping.class })
-public class Grouping {
+public class Grouping implements Serializable {
 
   @XmlAttribute(name="name")
   public String name;
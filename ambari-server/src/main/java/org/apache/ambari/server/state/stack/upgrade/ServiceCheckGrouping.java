@@ -17,6 +17,8 @@
  */
 package org.apache.ambari.server.state.stack.upgrade;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -58,13 +60,22 @@ public class ServiceCheckGrouping extends Grouping {
   @XmlElement(name="service")
   private Set<String> excludeServices = new HashSet<String>();
 
-  private ServiceCheckBuilder m_builder = new ServiceCheckBuilder();
+  private transient ServiceCheckBuilder m_builder = new ServiceCheckBuilder();
 
   @Override
   public ServiceCheckBuilder getBuilder() {
     return m_builder;
   }
 
+  /**
+   * Creates the builder, which is not serialized, when this grouping is read
+   * from a stack definition snapshot.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    m_builder = new ServiceCheckBuilder();
+  }
+
   /**
    * Used to build stages for service check groupings.
    */
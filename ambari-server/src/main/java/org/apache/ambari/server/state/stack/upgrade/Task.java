@@ -18,13 +18,14 @@
 package org.apache.ambari.server.state.stack.upgrade;
 
 import javax.xml.bind.annotation.XmlSeeAlso;
+import java.io.Serializable;
 
 
 /**
  * Base class to identify the items that could possibly occur during an upgrade
  */
 @XmlSeeAlso(value={ExecuteTask.class, ConfigureTask.class, ManualTask.class, RestartTask.class, ServerActionTask.class})
-public abstract class Task {
+public abstract class Task implements Serializable {
 
   /**
    * @return the type of the task
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 
@@ -48,6 +49,7 @@ import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.dao.DaoUtils;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.serveraction.MockServerAction;
 import org.apache.ambari.server.state.Clusters;
@@ -59,6 +61,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheStats;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
@@ -443,6 +446,52 @@ public class TestActionDBAccessorImpl {
 
   }
 
+  @Test
+  public void testFinishedTasksAreCached() throws Exception {
+    populateActionDB(db, hostName, requestId, stageId);
+
+    CommandReport commandReport = new CommandReport();
+    commandReport.setStatus(HostRoleStatus.COMPLETED.toString());
+    commandReport.setStdOut("");
+    commandReport.setStdErr("");
+    commandReport.setExitCode(0);
+    db.updateHostRoleState(hostName, requestId, stageId, Role.HBASE_MASTER.toString(), commandReport);
+    db.updateHostRoleState(hostName, requestId, stageId, Role.HBASE_REGIONSERVER.toString(), commandReport);
+
+    // the finished tasks were cached as they were written
+    CacheStats before = ((ActionDBAccessorImpl) db).getCacheStats();
+    List<HostRoleCommand> tasks = db.getRequestTasks(requestId);
+    CacheStats stats = ((ActionDBAccessorImpl) db).getCacheStats().minus(before);
+    assertEquals(2, tasks.size());
+    assertEquals(2, stats.hitCount());
+    assertEquals(0, stats.missCount());
+    for (HostRoleCommand task : tasks) {
+      assertEquals(HostRoleStatus.COMPLETED, task.getStatus());
+    }
+
+    // the counts of a finished request are read once
+    before = hostRoleCommandDAO.getAggregateCountsCacheStats();
+    Map<Long, HostRoleCommandStatusSummaryDTO> counts = hostRoleCommandDAO.findAggregateCounts(requestId);
+    assertEquals(counts, hostRoleCommandDAO.findAggregateCounts(requestId));
+    stats = hostRoleCommandDAO.getAggregateCountsCacheStats().minus(before);
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(Integer.valueOf(2), counts.get(stageId).getCounts().get(HostRoleStatus.COMPLETED));
+
+    // a retried task is neither cached nor counted from the cache
+    commandReport.setStatus(HostRoleStatus.IN_PROGRESS.toString());
+    db.updateHostRoleState(hostName, requestId, stageId, Role.HBASE_MASTER.toString(), commandReport);
+
+    before = ((ActionDBAccessorImpl) db).getCacheStats();
+    tasks = db.getRequestTasks(requestId);
+    stats = ((ActionDBAccessorImpl) db).getCacheStats().minus(before);
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+
+    counts = hostRoleCommandDAO.findAggregateCounts(requestId);
+    assertEquals(Integer.valueOf(1), counts.get(stageId).getCounts().get(HostRoleStatus.IN_PROGRESS));
+  }
+
   @Test
   public void testGetRequestsByStatus() throws AmbariException {
     List<Long> requestIds = new ArrayList<Long>();
@@ -22,12 +22,14 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -2239,6 +2241,246 @@ public class TestActionScheduler {
 
   }
 
+  /**
+   * Tests that stages of different requests are processed concurrently, and
+   * that a host is not given a stage while another stage on it is processed.
+   */
+  @Test
+  public void testConcurrentRequests() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Clusters fsm = mock(Clusters.class);
+    Cluster oneClusterMock = mock(Cluster.class);
+    Service serviceObj = mock(Service.class);
+    ServiceComponent scomp = mock(ServiceComponent.class);
+    ServiceComponentHost sch = mock(ServiceComponentHost.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    when(fsm.getCluster(anyString())).thenReturn(oneClusterMock);
+    when(oneClusterMock.getService(anyString())).thenReturn(serviceObj);
+    when(serviceObj.getServiceComponent(anyString())).thenReturn(scomp);
+    when(scomp.getServiceComponentHost(anyString())).thenReturn(sch);
+    when(serviceObj.getCluster()).thenReturn(oneClusterMock);
+
+    HashMap<String, ServiceComponentHost> hosts =
+        new HashMap<String, ServiceComponentHost>();
+    hosts.put("host1", sch);
+    hosts.put("host2", sch);
+    when(scomp.getServiceComponentHosts()).thenReturn(hosts);
+
+    Host host = mock(Host.class);
+    when(fsm.getHost(anyString())).thenReturn(host);
+    when(host.getState()).thenReturn(HostState.HEALTHY);
+
+    final Stage stage1 = getStageWithSingleTask("host1", "cluster1", Role.NAMENODE,
+        RoleCommand.START, Service.Type.HDFS, 1, 1, 1);
+    Stage stage2 = getStageWithSingleTask("host2", "cluster1", Role.DATANODE,
+        RoleCommand.START, Service.Type.HDFS, 2, 2, 2);
+    Stage stage3 = getStageWithSingleTask("host1", "cluster1", Role.DATANODE,
+        RoleCommand.START, Service.Type.HDFS, 3, 3, 3);
+
+    final List<Stage> stagesInProgress = new ArrayList<Stage>();
+    stagesInProgress.add(stage1);
+    stagesInProgress.add(stage2);
+
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    when(db.getCommandsInProgressCount()).thenReturn(1);
+    when(db.getStagesInProgress()).thenReturn(stagesInProgress);
+
+    RequestEntity request = mock(RequestEntity.class);
+    when(request.isExclusive()).thenReturn(false);
+    when(db.getRequestEntity(anyLong())).thenReturn(request);
+
+    // processing the first request takes until it is released
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        if (invocation.getArguments()[0] == stage1) {
+          release.await(10, TimeUnit.SECONDS);
+        }
+        return null;
+      }
+    }).when(db).bulkHostRoleScheduled(any(Stage.class), anyListOf(ExecutionCommand.class));
+
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.ACTION_SCHEDULER_THREADS_KEY, "2");
+    Configuration conf = new Configuration(properties);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db, aq, fsm, 3,
+        new HostsMap((String) null), unitOfWork, null, conf);
+    scheduler.setTaskTimeoutAdjustment(false);
+
+    // the second request is not held back by the first one
+    scheduler.doWork();
+    waitForProcessingRequests(scheduler, 1);
+    assertEquals(1, aq.size("host2"));
+    assertEquals(0, aq.size("host1"));
+
+    // host1 is still taken by the first request
+    stagesInProgress.clear();
+    stagesInProgress.add(stage3);
+    scheduler.doWork();
+    assertEquals(1, scheduler.getProcessingRequestCount());
+
+    release.countDown();
+    waitForProcessingRequests(scheduler, 0);
+    assertEquals("1-1", ((ExecutionCommand) aq.dequeue("host1")).getCommandId());
+
+    scheduler.doWork();
+    waitForProcessingRequests(scheduler, 0);
+    assertEquals("3-3", ((ExecutionCommand) aq.dequeue("host1")).getCommandId());
+
+    assertEquals(3, scheduler.getProcessedStageCount());
+    assertEquals(3, scheduler.getScheduledCommandCount());
+  }
+
+  /**
+   * Tests that a request cancelled while a worker processes one of its stages
+   * is cancelled once the worker is done, so that the commands queued by the
+   * worker are dequeued and cancelled.
+   */
+  @Test
+  public void testCancelRequestWhileStageIsProcessed() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Clusters fsm = mock(Clusters.class);
+    Cluster oneClusterMock = mock(Cluster.class);
+    Service serviceObj = mock(Service.class);
+    ServiceComponent scomp = mock(ServiceComponent.class);
+    ServiceComponentHost sch = mock(ServiceComponentHost.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    when(fsm.getCluster(anyString())).thenReturn(oneClusterMock);
+    when(oneClusterMock.getService(anyString())).thenReturn(serviceObj);
+    when(serviceObj.getServiceComponent(anyString())).thenReturn(scomp);
+    when(scomp.getServiceComponentHost(anyString())).thenReturn(sch);
+    when(serviceObj.getCluster()).thenReturn(oneClusterMock);
+
+    HashMap<String, ServiceComponentHost> hosts =
+        new HashMap<String, ServiceComponentHost>();
+    hosts.put(hostname, sch);
+    when(scomp.getServiceComponentHosts()).thenReturn(hosts);
+
+    Host host = mock(Host.class);
+    when(fsm.getHost(anyString())).thenReturn(host);
+    when(host.getState()).thenReturn(HostState.HEALTHY);
+    when(host.getHostName()).thenReturn(hostname);
+
+    long requestId = 1;
+    int taskId = 1;
+    final Stage stage = getStageWithSingleTask(hostname, "cluster1", Role.NAMENODE,
+        RoleCommand.START, Service.Type.HDFS, taskId, 1, (int) requestId);
+
+    final List<Stage> stagesInProgress = new ArrayList<Stage>();
+    stagesInProgress.add(stage);
+
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    when(db.getCommandsInProgressCount()).thenReturn(1);
+    when(db.getStagesInProgress()).thenReturn(stagesInProgress);
+    when(db.getRequestTasks(anyLong())).thenReturn(stage.getOrderedHostRoleCommands());
+    when(db.getAllStages(anyLong())).thenReturn(Collections.singletonList(stage));
+
+    RequestEntity request = mock(RequestEntity.class);
+    when(request.isExclusive()).thenReturn(false);
+    when(db.getRequestEntity(anyLong())).thenReturn(request);
+
+    // the worker is held while it persists the scheduled commands
+    final CountDownLatch scheduling = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        scheduling.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        return null;
+      }
+    }).when(db).bulkHostRoleScheduled(any(Stage.class), anyListOf(ExecutionCommand.class));
+
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        for (HostRoleCommand command : stage.getOrderedHostRoleCommands()) {
+          if (!command.getStatus().isCompletedState()) {
+            command.setStatus(HostRoleStatus.ABORTED);
+          }
+        }
+        return null;
+      }
+    }).when(db).abortOperation(anyLong());
+
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.ACTION_SCHEDULER_THREADS_KEY, "2");
+    Configuration conf = new Configuration(properties);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db, aq, fsm, 3,
+        new HostsMap((String) null), unitOfWork, null, conf);
+    scheduler.setTaskTimeoutAdjustment(false);
+
+    scheduler.doWork();
+    assertTrue(scheduling.await(10, TimeUnit.SECONDS));
+
+    // the cancellation waits for the worker
+    scheduler.scheduleCancellingRequest(requestId, "Some reason");
+    scheduler.doWork();
+    verify(db, never()).getRequestTasks(requestId);
+    assertEquals(1, scheduler.getProcessingRequestCount());
+
+    release.countDown();
+    waitForProcessingRequests(scheduler, 0);
+    assertEquals(1, aq.size(hostname));
+
+    stagesInProgress.clear();
+    scheduler.doWork();
+
+    // the queued command is replaced by its cancel command
+    assertEquals(HostRoleStatus.ABORTED, stage.getHostRoleStatus(hostname, "NAMENODE"));
+    assertEquals(1, aq.size(hostname));
+    CancelCommand cancelCommand = (CancelCommand) aq.dequeue(hostname);
+    assertEquals(taskId, cancelCommand.getTargetTaskId());
+    assertEquals("Some reason", cancelCommand.getReason());
+  }
+
+  private void waitForProcessingRequests(ActionScheduler scheduler, int count)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (scheduler.getProcessingRequestCount() != count
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, scheduler.getProcessingRequestCount());
+  }
+
+  /**
+   * Tests that an idle scheduler only reads the database again after a request
+   * was reported to it.
+   */
+  @Test
+  public void testIdleSchedulerDoesNotPollDatabase() throws Exception {
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    when(db.getCommandsInProgressCount()).thenReturn(0);
+    when(db.getRequestEntity(1L)).thenReturn(null);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db,
+        new ActionQueue(), mock(Clusters.class), 3, new HostsMap((String) null),
+        unitOfWork, null, new Configuration(new Properties()));
+
+    // the first iteration reads what is in progress from the database
+    scheduler.doWork();
+    scheduler.doWork();
+    verify(db, times(1)).getCommandsInProgressCount();
+
+    // the request is not committed yet, so it is kept until it is
+    scheduler.awake(1L);
+    scheduler.doWork();
+    scheduler.doWork();
+    verify(db, times(3)).getCommandsInProgressCount();
+
+    // once committed without anything in progress, the request is finished
+    when(db.getRequestEntity(1L)).thenReturn(mock(RequestEntity.class));
+    scheduler.doWork();
+    scheduler.doWork();
+    verify(db, times(4)).getCommandsInProgressCount();
+    verify(db, never()).getStagesInProgress();
+  }
+
   @Test
   public void testAbortHolding() {
     UnitOfWork unitOfWork = EasyMock.createMock(UnitOfWork.class);
@@ -18,6 +18,9 @@
 package org.apache.ambari.server.agent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -263,4 +266,80 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  @Test
+  public void testCommandListener() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+    final List<String> notified = new ArrayList<String>();
+    ActionQueue.CommandListener listener = new ActionQueue.CommandListener() {
+      @Override
+      public void onCommandsQueued(String hostname) {
+        notified.add(hostname);
+      }
+    };
+
+    assertTrue(queue.addCommandListener(c6401, listener));
+
+    // status commands and other hosts do not wake the listener
+    queue.enqueue(c6401, new StatusCommand());
+    queue.enqueue("c6402.ambari.apache.org", new ExecutionCommand());
+    assertTrue(notified.isEmpty());
+    assertFalse(queue.hasPendingCommands(c6401));
+
+    queue.enqueue(c6401, new ExecutionCommand());
+    assertEquals(1, notified.size());
+    assertEquals(c6401, notified.get(0));
+
+    // listeners are called once
+    queue.enqueue(c6401, new ExecutionCommand());
+    assertEquals(1, notified.size());
+
+    // commands already queued
+    assertTrue(queue.hasPendingCommands(c6401));
+    assertFalse(queue.addCommandListener(c6401, listener));
+
+    queue.dequeueAll(c6401);
+    assertTrue(queue.addCommandListener(c6401, listener));
+    queue.removeCommandListener(c6401, listener);
+    queue.enqueue(c6401, new ExecutionCommand());
+    assertEquals(1, notified.size());
+  }
+
+  @Test
+  public void testDequeueCommandId() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+
+    ExecutionCommand first = new ExecutionCommand();
+    first.setCommandId("1-1");
+    ExecutionCommand second = new ExecutionCommand();
+    second.setCommandId("1-2");
+    StatusCommand status = new StatusCommand();
+
+    queue.enqueue(c6401, first);
+    queue.enqueue(c6401, status);
+    queue.enqueue(c6401, second);
+
+    assertEquals(3, queue.size(c6401));
+    assertEquals(2, queue.size(c6401, AgentCommandType.EXECUTION_COMMAND));
+    assertEquals(1, queue.size(c6401, AgentCommandType.STATUS_COMMAND));
+    assertTrue(queue.getOldestCommandAge(c6401) >= 0);
+
+    assertNull(queue.dequeue(c6401, "1-3"));
+    assertSame(second, queue.dequeue(c6401, "1-2"));
+    assertNull(queue.dequeue(c6401, "1-2"));
+    assertEquals(1, queue.size(c6401, AgentCommandType.EXECUTION_COMMAND));
+
+    // the remaining commands keep their order
+    List<AgentCommand> commands = queue.dequeueAll(c6401);
+    assertEquals(2, commands.size());
+    assertSame(first, commands.get(0));
+    assertSame(status, commands.get(1));
+
+    assertEquals(0, queue.size(c6401));
+    assertEquals(0, queue.size(c6401, AgentCommandType.STATUS_COMMAND));
+    assertEquals(0L, queue.getOldestCommandAge(c6401));
+    assertEquals(0L, queue.getOldestCommandAge("c6402.ambari.apache.org"));
+  }
 }
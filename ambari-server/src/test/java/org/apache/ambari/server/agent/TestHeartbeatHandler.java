@@ -208,6 +208,47 @@ public class TestHeartbeatHandler {
     assertEquals(0, aq.dequeueAll(DummyHostname1).size());
   }
 
+  @Test
+  public void testClusterHostInfoSentOncePerHash() throws Exception {
+    ActionManager am = getMockActionManager();
+    replay(am);
+    ActionQueue aq = new ActionQueue();
+    HeartBeatHandler handler = new HeartBeatHandler(clusters, aq, am, injector);
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<String, Set<String>>();
+    clusterHostInfo.put("all_hosts", Collections.singleton(DummyHostname1));
+
+    for (String hash : new String[] {"a", "a", "b"}) {
+      ExecutionCommand command = new ExecutionCommand();
+      command.setClusterHostInfo(clusterHostInfo);
+      command.setClusterHostInfoHash(hash);
+      aq.enqueue(DummyHostname1, command);
+    }
+
+    // the agent keeps "b" and receives "a" with the first command
+    HeartBeatResponse response = new HeartBeatResponse();
+    handler.sendCommands(DummyHostname1, response, Collections.singletonList("b"));
+    List<ExecutionCommand> commands = response.getExecutionCommands();
+    assertEquals(3, commands.size());
+    assertEquals(clusterHostInfo, commands.get(0).getClusterHostInfo());
+    assertTrue(commands.get(1).getClusterHostInfo().isEmpty());
+    assertTrue(commands.get(2).getClusterHostInfo().isEmpty());
+
+    // agents which do not keep the maps receive them with every command
+    for (int i = 0; i < 2; i++) {
+      ExecutionCommand command = new ExecutionCommand();
+      command.setClusterHostInfo(clusterHostInfo);
+      command.setClusterHostInfoHash("a");
+      aq.enqueue(DummyHostname1, command);
+    }
+
+    response = new HeartBeatResponse();
+    handler.sendCommands(DummyHostname1, response, null);
+    for (ExecutionCommand command : response.getExecutionCommands()) {
+      assertEquals(clusterHostInfo, command.getClusterHostInfo());
+    }
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testHeartbeatWithConfigs() throws Exception {
@@ -609,6 +650,71 @@ public class TestHeartbeatHandler {
     assertEquals(SecurityState.UNSECURED, serviceComponentHost3.getSecurityState());
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testStatusHeartbeatDelta() throws Exception {
+    Cluster cluster = getDummyCluster();
+
+    @SuppressWarnings("serial")
+    Set<String> hostNames = new HashSet<String>(){{
+      add(DummyHostname1);
+    }};
+    clusters.mapHostsToCluster(hostNames, DummyCluster);
+    Service hdfs = cluster.addService(HDFS);
+    hdfs.persist();
+    hdfs.addServiceComponent(DATANODE).persist();
+    hdfs.getServiceComponent(DATANODE).addServiceComponentHost(DummyHostname1).persist();
+    hdfs.addServiceComponent(NAMENODE).persist();
+    hdfs.getServiceComponent(NAMENODE).addServiceComponentHost(DummyHostname1).persist();
+
+    ActionQueue aq = new ActionQueue();
+
+    ServiceComponentHost serviceComponentHost1 = clusters.getCluster(DummyCluster).getService(HDFS).
+            getServiceComponent(DATANODE).getServiceComponentHost(DummyHostname1);
+    ServiceComponentHost serviceComponentHost2 = clusters.getCluster(DummyCluster).getService(HDFS).
+            getServiceComponent(NAMENODE).getServiceComponentHost(DummyHostname1);
+    serviceComponentHost1.setState(State.INSTALLED);
+    serviceComponentHost2.setState(State.STARTED);
+
+    ActionManager am = getMockActionManager();
+    expect(am.getTasks(anyObject(List.class))).andReturn(
+        new ArrayList<HostRoleCommand>()).anyTimes();
+    replay(am);
+
+    HeartBeatHandler handler = getHeartBeatHandler(am, aq);
+    Host hostObject = clusters.getHost(DummyHostname1);
+    assertEquals(HostState.WAITING_FOR_HOST_STATUS_UPDATES, hostObject.getState());
+
+    // nothing changed on the agent
+    HeartBeat hb = new HeartBeat();
+    hb.setTimestamp(System.currentTimeMillis());
+    hb.setResponseId(0);
+    hb.setHostname(DummyHostname1);
+    hb.setNodeStatus(new HostStatus(Status.HEALTHY, DummyHostStatus));
+    hb.setReports(new ArrayList<CommandReport>());
+    hb.setComponentStatus(new ArrayList<ComponentStatus>());
+    hb.setComponentStatusDelta(true);
+
+    handler.handleHeartBeat(hb);
+    assertEquals(HostState.HEALTHY, hostObject.getState());
+
+    // only the DATANODE changed
+    ComponentStatus componentStatus = new ComponentStatus();
+    componentStatus.setClusterName(DummyCluster);
+    componentStatus.setServiceName(HDFS);
+    componentStatus.setMessage(DummyHostStatus);
+    componentStatus.setStatus(State.STARTED.name());
+    componentStatus.setSecurityState(SecurityState.UNSECURED.name());
+    componentStatus.setComponentName(DATANODE);
+
+    hb.setResponseId(1);
+    hb.setComponentStatus(Collections.singletonList(componentStatus));
+
+    handler.handleHeartBeat(hb);
+    assertEquals(State.STARTED, serviceComponentHost1.getState());
+    assertEquals(State.STARTED, serviceComponentHost2.getState());
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testStatusHeartbeatWithAnnotation() throws Exception {
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.agent.HeartbeatProcessor.HeartbeatTask;
+import org.apache.ambari.server.agent.HeartbeatProcessor.Stage;
+import org.junit.Test;
+
+import com.google.inject.persist.UnitOfWork;
+
+public class TestHeartbeatProcessor {
+
+  @Test
+  public void testSynchronousProcessing() throws Exception {
+    final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+    HeartbeatProcessor processor = new HeartbeatProcessor(0, 10, new RecordingUnitOfWork(processed));
+    assertFalse(processor.isAsynchronous());
+
+    processor.submit("h1", new HeartbeatTask() {
+      @Override
+      public void process() {
+        processed.add("h1");
+      }
+    });
+
+    // the request thread is already in a unit of work
+    assertEquals(Collections.singletonList("h1"), processed);
+
+    try {
+      processor.submit("h1", new HeartbeatTask() {
+        @Override
+        public void process() throws AmbariException {
+          throw new AmbariException("failed");
+        }
+      });
+      fail("Expected the failure on the calling thread");
+    } catch (AmbariException expected) {
+      // expected
+    }
+
+    assertEquals(2L, processor.getProcessedHeartbeatCount());
+    assertEquals(1L, processor.getFailedHeartbeatCount());
+  }
+
+  @Test
+  public void testPerHostOrdering() throws Exception {
+    HeartbeatProcessor processor = new HeartbeatProcessor(4, 100,
+        new RecordingUnitOfWork(Collections.synchronizedList(new ArrayList<String>())));
+    assertTrue(processor.isAsynchronous());
+
+    final int hosts = 10;
+    final int heartbeats = 50;
+    final CountDownLatch done = new CountDownLatch(hosts * heartbeats);
+    final Map<String, List<Integer>> processed = new HashMap<String, List<Integer>>();
+    for (int h = 0; h < hosts; h++) {
+      processed.put("h" + h, Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+
+    for (int i = 0; i < heartbeats; i++) {
+      for (int h = 0; h < hosts; h++) {
+        final String hostname = "h" + h;
+        final int responseId = i;
+        processor.submit(hostname, new HeartbeatTask() {
+          @Override
+          public void process() throws AmbariException {
+            processed.get(hostname).add(responseId);
+            done.countDown();
+            if (responseId % 10 == 0) {
+              throw new AmbariException("failed");
+            }
+          }
+        });
+      }
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    for (List<Integer> responseIds : processed.values()) {
+      assertEquals(heartbeats, responseIds.size());
+      for (int i = 0; i < heartbeats; i++) {
+        assertEquals(Integer.valueOf(i), responseIds.get(i));
+      }
+    }
+
+    // the counters are updated once the last task returns
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (processor.getProcessedHeartbeatCount() < hosts * heartbeats
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+
+    assertEquals(hosts * heartbeats, processor.getProcessedHeartbeatCount());
+    assertEquals(hosts * heartbeats / 10, processor.getFailedHeartbeatCount());
+    assertEquals(hosts * heartbeats, processor.getTimer(Stage.QUEUE).getCount());
+  }
+
+  @Test
+  public void testUnitOfWorkWrapsEachTask() throws Exception {
+    final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+    HeartbeatProcessor processor = new HeartbeatProcessor(1, 10, new RecordingUnitOfWork(processed));
+
+    processor.submit("h1", new HeartbeatTask() {
+      @Override
+      public void process() {
+        processed.add("h1");
+      }
+    });
+    processor.submit("h2", new HeartbeatTask() {
+      @Override
+      public void process() throws AmbariException {
+        processed.add("h2");
+        throw new AmbariException("failed");
+      }
+    });
+
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (processor.getProcessedHeartbeatCount() < 2
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+
+    assertEquals(2L, processor.getProcessedHeartbeatCount());
+    assertEquals(1L, processor.getFailedHeartbeatCount());
+    assertEquals(Arrays.asList("begin", "h1", "end", "begin", "h2", "end"), processed);
+  }
+
+  @Test
+  public void testStageTimer() throws Exception {
+    HeartbeatStageTimer timer = new HeartbeatStageTimer("test");
+    assertEquals(0.0, timer.get99thPercentileLatency(), 0.0);
+
+    for (int i = 0; i < 90; i++) {
+      timer.record(TimeUnit.MICROSECONDS.toNanos(500));
+    }
+    for (int i = 0; i < 10; i++) {
+      timer.record(TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    assertEquals(100L, timer.getCount());
+    assertEquals(1.0, timer.get50thPercentileLatency(), 0.0);
+    assertEquals(40.0, timer.get95thPercentileLatency(), 0.0);
+    assertEquals(40.0, timer.getMaxLatency(), 0.0);
+    assertEquals(4.45, timer.getAverageLatency(), 0.001);
+  }
+
+  /**
+   * Records the beginning and the end of each unit of work.
+   */
+  private static final class RecordingUnitOfWork implements UnitOfWork {
+    private final List<String> events;
+
+    private RecordingUnitOfWork(List<String> events) {
+      this.events = events;
+    }
+
+    @Override
+    public void begin() {
+      events.add("begin");
+    }
+
+    @Override
+    public void end() {
+      events.add("end");
+    }
+  }
+}
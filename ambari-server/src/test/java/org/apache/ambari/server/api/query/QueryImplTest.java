@@ -50,21 +50,28 @@ import org.apache.ambari.server.api.resources.SubResourceDefinition;
 import org.apache.ambari.server.api.services.Result;
 import org.apache.ambari.server.api.util.TreeNode;
 import org.apache.ambari.server.api.util.TreeNodeImpl;
+import org.apache.ambari.server.controller.internal.AbstractResourceProvider;
 import org.apache.ambari.server.controller.internal.ClusterControllerImpl;
 import org.apache.ambari.server.controller.internal.ClusterControllerImplTest;
 import org.apache.ambari.server.controller.internal.PageRequestImpl;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.BatchQueryResourceProvider;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.ResourceProvider;
 import org.apache.ambari.server.controller.spi.Schema;
 import org.apache.ambari.server.controller.spi.SortRequest;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.easymock.Capture;
 import org.junit.Assert;
 import org.junit.Test;
@@ -150,6 +157,48 @@ public class QueryImplTest {
     Assert.assertEquals(4, hostNode.getChildren().size());
   }
 
+  @Test
+  public void testExecute__Host_collection_batchedSubResources() throws Exception {
+    ResourceDefinition resourceDefinition = createNiceMock(ResourceDefinition.class);
+
+    Map<Resource.Type, String> mapIds = new HashMap<Resource.Type, String>();
+    mapIds.put(Resource.Type.Cluster, "cluster");
+    mapIds.put(Resource.Type.Host, null);
+
+    // expectations
+    expect(resourceDefinition.getType()).andReturn(Resource.Type.Host).anyTimes();
+    Set<SubResourceDefinition> setChildren = new HashSet<SubResourceDefinition>();
+    setChildren.add(new SubResourceDefinition(Resource.Type.HostComponent));
+
+    expect(resourceDefinition.getSubResourceDefinitions()).andReturn(setChildren).anyTimes();
+
+    replay(resourceDefinition);
+
+    BatchProviderModule providerModule = new BatchProviderModule();
+
+    //test
+    QueryImpl instance = new TestQuery(mapIds, resourceDefinition, new ClusterControllerImpl(providerModule));
+    instance.addProperty("host_components/HostRoles/state", null);
+
+    Result result = instance.execute();
+
+    verify(resourceDefinition);
+
+    // one provider call for the host components of all hosts
+    Assert.assertEquals(1, providerModule.hostComponentProvider.queryCount);
+
+    TreeNode<Resource> tree = result.getResultTree();
+    Assert.assertEquals(4, tree.getChildren().size());
+    for (TreeNode<Resource> hostNode : tree.getChildren()) {
+      Object hostName = hostNode.getObject().getPropertyValue("Hosts/host_name");
+      TreeNode<Resource> hostComponentsNode = hostNode.getChild("host_components");
+      Assert.assertEquals(2, hostComponentsNode.getChildren().size());
+      for (TreeNode<Resource> hostComponentNode : hostComponentsNode.getChildren()) {
+        Assert.assertEquals(hostName, hostComponentNode.getObject().getPropertyValue("HostRoles/host_name"));
+      }
+    }
+  }
+
   @Test
   public void testExecute__Stack_instance_noSpecifiedProps() throws Exception {
     ResourceDefinition resourceDefinition = new StackResourceDefinition();
@@ -769,6 +818,69 @@ public class QueryImplTest {
     Assert.assertNotNull(hostNode.getObject().getPropertyValue("c1/p3"));
   }
 
+  private static class BatchProviderModule extends ClusterControllerImplTest.TestProviderModule {
+    private final BatchHostComponentResourceProvider hostComponentProvider =
+        new BatchHostComponentResourceProvider();
+
+    @Override
+    public ResourceProvider getResourceProvider(Resource.Type type) {
+      return type == Resource.Type.HostComponent ? hostComponentProvider : super.getResourceProvider(type);
+    }
+  }
+
+  /**
+   * Returns two host components for each host of the predicate.
+   */
+  private static class BatchHostComponentResourceProvider extends AbstractResourceProvider
+      implements BatchQueryResourceProvider {
+
+    private int queryCount = 0;
+
+    private BatchHostComponentResourceProvider() {
+      super(PropertyHelper.getPropertyIds(Resource.Type.HostComponent),
+          PropertyHelper.getKeyPropertyIds(Resource.Type.HostComponent));
+    }
+
+    @Override
+    public Set<Resource> getResources(Request request, Predicate predicate)
+        throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+      queryCount++;
+
+      Set<Resource> resources = new HashSet<Resource>();
+      for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+        for (String componentName : new String[] {"DATANODE", "NODEMANAGER"}) {
+          ResourceImpl resource = new ResourceImpl(Resource.Type.HostComponent);
+          resource.setProperty("HostRoles/cluster_name", propertyMap.get("HostRoles/cluster_name"));
+          resource.setProperty("HostRoles/host_name", propertyMap.get("HostRoles/host_name"));
+          resource.setProperty("HostRoles/component_name", componentName);
+          resource.setProperty("HostRoles/state", "STARTED");
+          resources.add(resource);
+        }
+      }
+      return resources;
+    }
+
+    @Override
+    public RequestStatus createResources(Request request) {
+      throw new UnsupportedOperationException(); // not needed for testing
+    }
+
+    @Override
+    public RequestStatus updateResources(Request request, Predicate predicate) {
+      throw new UnsupportedOperationException(); // not needed for testing
+    }
+
+    @Override
+    public RequestStatus deleteResources(Predicate predicate) {
+      throw new UnsupportedOperationException(); // not needed for testing
+    }
+
+    @Override
+    protected Set<String> getPKPropertyIds() {
+      return Collections.emptySet();
+    }
+  }
+
   public static class TestQuery extends QueryImpl {
     public TestQuery(Map<Resource.Type, String> mapIds, ResourceDefinition resourceDefinition) {
       super(mapIds, resourceDefinition, new ClusterControllerImpl(new ClusterControllerImplTest.TestProviderModule()));
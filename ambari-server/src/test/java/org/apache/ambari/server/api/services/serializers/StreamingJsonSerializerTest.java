@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.api.services.serializers;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultStatus;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.junit.Test;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StreamingJsonSerializer unit tests
+ */
+public class StreamingJsonSerializerTest {
+
+  @Test
+  public void testSerialize() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+    mapRootProps.put("prop2", 2);
+
+    Map<String, Object> mapNestedProps = new LinkedHashMap<String, Object>();
+    mapNestedProps.put("nestedProp1", "nestedValue1");
+
+    Map<String, Object> mapCategoryProps = new LinkedHashMap<String, Object>();
+    mapCategoryProps.put("catProp1", "catValue1");
+    mapCategoryProps.put("catProp2", null);
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+    propertyMap.put("category/nested", mapNestedProps);
+    propertyMap.put("category", mapCategoryProps);
+
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Host).anyTimes();
+    replay(resource);
+
+    Object serialized = new StreamingJsonSerializer().serialize(createResult(resource));
+    assertTrue(serialized instanceof StreamingOutput);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) serialized).write(out);
+
+    String expected = "{\n" +
+        "  \"href\" : \"http://host/api/v1/hosts\",\n" +
+        "  \"itemTotal\" : \"2\",\n" +
+        "  \"items\" : [\n" +
+        "    {\n" +
+        "      \"href\" : \"http://host/api/v1/hosts/host1\",\n" +
+        "      \"prop1\" : \"value1\",\n" +
+        "      \"prop2\" : 2,\n" +
+        "      \"category\" : {\n" +
+        "        \"catProp1\" : \"catValue1\",\n" +
+        "        \"catProp2\" : null,\n" +
+        "        \"nested\" : {\n" +
+        "          \"nestedProp1\" : \"nestedValue1\"\n" +
+        "        }\n" +
+        "      }\n" +
+        "    },\n" +
+        "    {\n" +
+        "      \"href\" : \"http://host/api/v1/hosts/host2\",\n" +
+        "      \"prop1\" : \"value1\",\n" +
+        "      \"prop2\" : 2,\n" +
+        "      \"category\" : {\n" +
+        "        \"catProp1\" : \"catValue1\",\n" +
+        "        \"catProp2\" : null,\n" +
+        "        \"nested\" : {\n" +
+        "          \"nestedProp1\" : \"nestedValue1\"\n" +
+        "        }\n" +
+        "      }\n" +
+        "    }\n" +
+        "  ]\n" +
+        "}";
+
+    assertEquals(expected, out.toString("UTF-8").replace("\r", ""));
+
+    // same output as the buffering serializer
+    assertEquals(new JsonSerializer().serialize(createResult(resource)),
+        StreamingJsonSerializer.toString(new StreamingJsonSerializer().serialize(createResult(resource))));
+
+    verify(resource);
+  }
+
+  @Test
+  public void testSerializeError() throws Exception {
+    Result result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.BAD_REQUEST, "Invalid request"));
+
+    Object serialized = new StreamingJsonSerializer().serialize(result);
+
+    assertTrue(serialized instanceof String);
+    assertEquals("{\n" +
+        "  \"status\" : 400,\n" +
+        "  \"message\" : \"Invalid request\"\n" +
+        "}", serialized.toString().replace("\r", ""));
+  }
+
+  private static Result createResult(Resource resource) {
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> items = result.getResultTree().addChild(null, "items");
+    items.setProperty("href", "http://host/api/v1/hosts");
+    items.setProperty("count", "2");
+
+    items.addChild(resource, "host1").setProperty("href", "http://host/api/v1/hosts/host1");
+    items.addChild(resource, "host2").setProperty("href", "http://host/api/v1/hosts/host2");
+    return result;
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.ambari.server.api.services.stackadvisor.commands;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
@@ -35,10 +36,17 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.ws.rs.WebApplicationException;
 
+import org.apache.ambari.server.api.query.Query;
+import org.apache.ambari.server.api.resources.ResourceDefinition;
+import org.apache.ambari.server.api.resources.ResourceInstance;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorException;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest.StackAdvisorRequestBuilder;
@@ -46,6 +54,9 @@ import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequestExc
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorResponse;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRunner;
 import org.apache.ambari.server.api.services.stackadvisor.commands.StackAdvisorCommand.StackAdvisorData;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
+import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.commons.io.FileUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.annotate.JsonProperty;
@@ -236,6 +247,118 @@ public class StackAdvisorCommandTest {
     assertEquals(0, stackVersions.size());
   }
 
+  @Test
+  public void testGetHostsInformation() throws Exception {
+    File file = mock(File.class);
+    StackAdvisorRunner stackAdvisorRunner = mock(StackAdvisorRunner.class);
+    AmbariMetaInfo ambariMetaInfo = mock(AmbariMetaInfo.class);
+    Query query = mock(Query.class);
+    when(query.execute()).thenReturn(createHostsResult("host1"));
+    StackAdvisorCommand<TestResource> cmd = new LocalRequestStackAdvisorCommand(file, "test", 1,
+        stackAdvisorRunner, ambariMetaInfo, query);
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stack", "1.0.0")
+        .forHosts(Arrays.asList("host1")).build();
+
+    // goes through BaseService.handleRequest and the streaming serializer
+    String hostsJSON = cmd.getHostsInformation(request);
+
+    JsonNode hosts = cmd.mapper.readTree(hostsJSON).get("items");
+    assertEquals(1, hosts.size());
+    assertEquals("host1", hosts.get(0).get("Hosts").get("host_name").getTextValue());
+  }
+
+  @Test
+  public void testGetHostsInformation_unregisteredHost() throws Exception {
+    File file = mock(File.class);
+    StackAdvisorRunner stackAdvisorRunner = mock(StackAdvisorRunner.class);
+    AmbariMetaInfo ambariMetaInfo = mock(AmbariMetaInfo.class);
+    Query query = mock(Query.class);
+    when(query.execute()).thenReturn(createHostsResult("host1"));
+    StackAdvisorCommand<TestResource> cmd = new LocalRequestStackAdvisorCommand(file, "test", 1,
+        stackAdvisorRunner, ambariMetaInfo, query);
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stack", "1.0.0")
+        .forHosts(Arrays.asList("host1", "host2")).build();
+
+    try {
+      cmd.getHostsInformation(request);
+      fail("Expected StackAdvisorException");
+    } catch (StackAdvisorException e) {
+      assertTrue(e.getMessage().contains("host2"));
+    }
+  }
+
+  @Test
+  public void testGetServicesInformation_errorResponse() throws Exception {
+    File file = mock(File.class);
+    StackAdvisorRunner stackAdvisorRunner = mock(StackAdvisorRunner.class);
+    AmbariMetaInfo ambariMetaInfo = mock(AmbariMetaInfo.class);
+    Query query = mock(Query.class);
+    when(query.execute()).thenThrow(new NoSuchParentResourceException("No stack"));
+    StackAdvisorCommand<TestResource> cmd = new LocalRequestStackAdvisorCommand(file, "test", 1,
+        stackAdvisorRunner, ambariMetaInfo, query);
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stack", "1.0.0")
+        .forServices(Arrays.asList("HDFS")).build();
+
+    try {
+      cmd.getServicesInformation(request);
+      fail("Expected StackAdvisorException");
+    } catch (StackAdvisorException e) {
+      assertTrue(e.getMessage().contains("status=404"));
+      assertTrue(e.getMessage().contains("No stack"));
+    }
+  }
+
+  private static Result createHostsResult(String... hostNames) {
+    // a collection as returned by the query, named by the result post processor
+    Result result = new ResultImpl(true);
+    TreeNode<Resource> items = result.getResultTree();
+    items.setProperty("isCollection", "true");
+
+    for (String hostName : hostNames) {
+      Map<String, Object> hostProperties = new LinkedHashMap<String, Object>();
+      hostProperties.put("host_name", hostName);
+      Map<String, Map<String, Object>> propertiesMap = new LinkedHashMap<String, Map<String, Object>>();
+      propertiesMap.put("Hosts", hostProperties);
+
+      Resource resource = mock(Resource.class);
+      when(resource.getType()).thenReturn(Resource.Type.Host);
+      when(resource.getPropertiesMap()).thenReturn(propertiesMap);
+      items.addChild(resource, hostName).setProperty("href", "http://host/api/v1/hosts/" + hostName);
+    }
+    return result;
+  }
+
+  /**
+   * Runs the internal requests through the real request processing and
+   * serialization, with the given query in place of the cluster controller.
+   */
+  class LocalRequestStackAdvisorCommand extends TestStackAdvisorCommand {
+    private final Query query;
+
+    public LocalRequestStackAdvisorCommand(File recommendationsDir, String stackAdvisorScript,
+        int requestId, StackAdvisorRunner saRunner, AmbariMetaInfo metaInfo, Query query) {
+      super(recommendationsDir, stackAdvisorScript, requestId, saRunner, metaInfo);
+      this.query = query;
+    }
+
+    @Override
+    protected ResourceInstance createResource(Resource.Type type, Map<Resource.Type, String> mapIds) {
+      ResourceDefinition resourceDefinition = mock(ResourceDefinition.class);
+      when(resourceDefinition.getType()).thenReturn(type);
+      when(resourceDefinition.getPostProcessors())
+          .thenReturn(Collections.<ResourceDefinition.PostProcessor>emptyList());
+
+      ResourceInstance resource = mock(ResourceInstance.class);
+      when(resource.getQuery()).thenReturn(query);
+      when(resource.getResourceDefinition()).thenReturn(resourceDefinition);
+      when(resource.getSubResources()).thenReturn(Collections.<String, ResourceInstance>emptyMap());
+      return resource;
+    }
+  }
+
   class TestStackAdvisorCommand extends StackAdvisorCommand<TestResource> {
     public TestStackAdvisorCommand(File recommendationsDir, String stackAdvisorScript,
         int requestId, StackAdvisorRunner saRunner, AmbariMetaInfo metaInfo) {
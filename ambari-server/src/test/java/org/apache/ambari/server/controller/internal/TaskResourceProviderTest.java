@@ -202,6 +202,99 @@ public class TaskResourceProviderTest {
     verify(managementController);
   }
 
+  @Test
+  public void testGetResourcesOutputRange() throws Exception {
+    Resource.Type type = Resource.Type.Task;
+
+    AmbariManagementController managementController = createMock(AmbariManagementController.class);
+
+    Set<TaskStatusResponse> allResponse = new HashSet<TaskStatusResponse>();
+    allResponse.add(new TaskStatusResponse(100L, 100, 100L, "HostName100", "", "", "", 0, "stderr",
+        "0123456789", 0L, (short) 0, "commandDetail", "customCommandName", null, null));
+
+    // set expectations
+    expect(managementController.getTaskStatus(AbstractResourceProviderTest.Matcher.getTaskRequestSet(100L, 100L))).
+        andReturn(allResponse).once();
+
+    // replay
+    replay(managementController);
+
+    ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
+        type,
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type),
+        managementController);
+
+    Set<String> propertyIds = new HashSet<String>();
+    propertyIds.add(TaskResourceProvider.TASK_ID_PROPERTY_ID);
+    propertyIds.add(TaskResourceProvider.TASK_STOUT_PROPERTY_ID);
+
+    Predicate predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_OUTPUT_OFFSET_PROPERTY_ID).equals("-4").toPredicate();
+    Request request = PropertyHelper.getReadRequest(propertyIds);
+    Set<Resource> resources = provider.getResources(request, predicate);
+
+    Assert.assertEquals(1, resources.size());
+    Resource resource = resources.iterator().next();
+    Assert.assertEquals("6789", resource.getPropertyValue(TaskResourceProvider.TASK_STOUT_PROPERTY_ID));
+
+    // !!! not requested, so not read
+    Assert.assertNull(resource.getPropertyValue(TaskResourceProvider.TASK_STDERR_PROPERTY_ID));
+
+    Assert.assertEquals("234", TaskResourceProvider.getOutputRange("0123456789", 2, 3));
+    Assert.assertEquals("89", TaskResourceProvider.getOutputRange("0123456789", 8, 10));
+    Assert.assertEquals("", TaskResourceProvider.getOutputRange("0123456789", 20, null));
+    Assert.assertEquals("0123456789", TaskResourceProvider.getOutputRange("0123456789", -20, null));
+
+    // verify
+    verify(managementController);
+  }
+
+  @Test
+  public void testGetResourcesInvalidOutputRange() throws Exception {
+    Resource.Type type = Resource.Type.Task;
+
+    AmbariManagementController managementController = createMock(AmbariManagementController.class);
+
+    // replay
+    replay(managementController);
+
+    ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
+        type,
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type),
+        managementController);
+
+    Set<String> propertyIds = new HashSet<String>();
+    propertyIds.add(TaskResourceProvider.TASK_ID_PROPERTY_ID);
+    propertyIds.add(TaskResourceProvider.TASK_STOUT_PROPERTY_ID);
+    Request request = PropertyHelper.getReadRequest(propertyIds);
+
+    Predicate predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_OUTPUT_OFFSET_PROPERTY_ID).equals("abc").toPredicate();
+    try {
+      provider.getResources(request, predicate);
+      Assert.fail("Expected an IllegalArgumentException for a non-numeric offset");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").
+        and().property(TaskResourceProvider.TASK_OUTPUT_LENGTH_PROPERTY_ID).equals("-1").toPredicate();
+    try {
+      provider.getResources(request, predicate);
+      Assert.fail("Expected an IllegalArgumentException for a negative length");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // verify
+    verify(managementController);
+  }
+
   @Test
   public void testParseStructuredOutput() {
     Resource.Type type = Resource.Type.Task;
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics;
+
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MetricsRequestDispatcherTest {
+
+  private static final MetricsRequestDispatcher.ResponseParser<String> PARSER =
+      new MetricsRequestDispatcher.ResponseParser<String>() {
+        @Override
+        public String parse(InputStream in) throws IOException {
+          return String.valueOf((char) in.read());
+        }
+      };
+
+  @Test
+  public void testIdenticalRequestsAreCoalesced() throws Exception {
+    final MetricsRequestDispatcher dispatcher = new MetricsRequestDispatcher(4);
+    final BlockingStreamProvider streamProvider = new BlockingStreamProvider();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      Callable<String> read = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return dispatcher.read(streamProvider, "http://h1:50070/jmx", PARSER, 5000L);
+        }
+      };
+      Future<String> first = executor.submit(read);
+      Assert.assertTrue(streamProvider.started.await(5, TimeUnit.SECONDS));
+      Future<String> second = executor.submit(read);
+
+      // give the second caller time to find the request in flight
+      Thread.sleep(100L);
+      streamProvider.release.countDown();
+
+      Assert.assertEquals("x", first.get());
+      Assert.assertEquals("x", second.get());
+      Assert.assertEquals(1, streamProvider.reads.get());
+      Assert.assertEquals(0, dispatcher.getInFlightCount());
+    } finally {
+      streamProvider.release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRequestsPerHostAreLimited() throws Exception {
+    final MetricsRequestDispatcher dispatcher = new MetricsRequestDispatcher(1);
+    final BlockingStreamProvider streamProvider = new BlockingStreamProvider();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      Future<String> slow = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return dispatcher.read(streamProvider, "http://h1:50070/jmx", PARSER, 5000L);
+        }
+      });
+      Assert.assertTrue(streamProvider.started.await(5, TimeUnit.SECONDS));
+
+      try {
+        dispatcher.read(streamProvider, "http://h1:50075/jmx", PARSER, 50L);
+        Assert.fail("Expected the second request to the host to time out");
+      } catch (IOException e) {
+        // expected
+      }
+
+      streamProvider.release.countDown();
+      Assert.assertEquals("x", slow.get());
+
+      // other hosts are not affected, the slot of h1 is free again
+      Assert.assertEquals("x", dispatcher.read(streamProvider, "http://h2:50075/jmx", PARSER, 50L));
+      Assert.assertEquals("x", dispatcher.read(streamProvider, "http://h1:50075/jmx", PARSER, 50L));
+    } finally {
+      streamProvider.release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReadErrorsArePropagated() throws Exception {
+    MetricsRequestDispatcher dispatcher = new MetricsRequestDispatcher(4);
+    StreamProvider streamProvider = new StreamProvider() {
+      @Override
+      public InputStream readFrom(String spec) throws IOException {
+        throw new IOException("Connection refused");
+      }
+
+      @Override
+      public InputStream readFrom(String spec, String requestMethod, String params) throws IOException {
+        return readFrom(spec);
+      }
+    };
+
+    try {
+      dispatcher.read(streamProvider, "http://h1:50070/jmx", PARSER);
+      Assert.fail("Expected an IOException");
+    } catch (IOException e) {
+      Assert.assertEquals("Connection refused", e.getMessage());
+    }
+  }
+
+  /**
+   * Blocks the first read until released.
+   */
+  private static class BlockingStreamProvider implements StreamProvider {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public InputStream readFrom(String spec) throws IOException {
+      reads.incrementAndGet();
+      started.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return new ByteArrayInputStream("x".getBytes());
+    }
+
+    @Override
+    public InputStream readFrom(String spec, String requestMethod, String params) throws IOException {
+      return readFrom(spec);
+    }
+  }
+}
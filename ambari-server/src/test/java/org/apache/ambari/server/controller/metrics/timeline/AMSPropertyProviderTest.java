@@ -18,6 +18,7 @@
 package org.apache.ambari.server.controller.metrics.timeline;
 
 import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.internal.ResourceImpl;
 import org.apache.ambari.server.controller.internal.TemporalInfoImpl;
@@ -97,6 +98,49 @@ public class AMSPropertyProviderTest {
     Assert.assertEquals(111, val.length);
   }
 
+  @Test
+  public void testPopulateResourcesForSingleHostMetricWithoutEndTime() throws Exception {
+    TestStreamProvider streamProvider = new TestStreamProvider(SINGLE_HOST_METRICS_FILE_PATH);
+    TestMetricHostProvider metricHostProvider = new TestMetricHostProvider();
+    ComponentSSLConfiguration sslConfiguration = mock(ComponentSSLConfiguration.class);
+
+    Map<String, Map<String, PropertyInfo>> propertyIds = PropertyHelper.getMetricPropertyIds(Resource.Type.Host);
+    AMSPropertyProvider propertyProvider = new AMSHostPropertyProvider(
+      propertyIds,
+      streamProvider,
+      sslConfiguration,
+      metricHostProvider,
+      CLUSTER_NAME_PROPERTY_ID,
+      HOST_NAME_PROPERTY_ID
+    );
+
+    Resource resource = new ResourceImpl(Resource.Type.Host);
+    resource.setProperty(HOST_NAME_PROPERTY_ID, "h1");
+    Map<String, TemporalInfo> temporalInfoMap = new HashMap<String, TemporalInfo>();
+    temporalInfoMap.put(PROPERTY_ID1, new TemporalInfoImpl(1416445244701L, -1L, 1L));
+    Request request = PropertyHelper.getReadRequest(Collections.singleton(PROPERTY_ID1), temporalInfoMap);
+
+    TimelineMetricCache.instance().init(100000L, 60000L, 3600000L);
+    try {
+      Set<Resource> resources =
+        propertyProvider.populateResources(Collections.singleton(resource), request, null);
+      Assert.assertEquals(1, resources.size());
+      Resource res = resources.iterator().next();
+
+      // the end time is left out, so the collector reads up to now
+      URIBuilder uriBuilder = AMSPropertyProvider.getAMSUriBuilder("localhost", 8188);
+      uriBuilder.addParameter("metricNames", "cpu_user");
+      uriBuilder.addParameter("hostname", "h1");
+      uriBuilder.addParameter("appId", "HOST");
+      uriBuilder.addParameter("startTime", "1416445244701");
+      Assert.assertEquals(uriBuilder.toString(), streamProvider.getLastSpec());
+      Number[][] val = (Number[][]) res.getPropertyValue(PROPERTY_ID1);
+      Assert.assertEquals(111, val.length);
+    } finally {
+      TimelineMetricCache.instance().init(mock(Configuration.class));
+    }
+  }
+
   @Test
   public void testPopulateResourcesForSingleHostMetricPointInTime() throws
     Exception {
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimelineMetricCacheTest {
+  private static final long NOW = 1420000000000L;
+  private static final long HOUR = 3600000L;
+  private static final long OVERLAP = 60000L;
+
+  private TimelineMetricCache cache;
+  private TestFetcher fetcher;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new TimelineMetricCache();
+    cache.init(100000L, OVERLAP, HOUR);
+    fetcher = new TestFetcher();
+  }
+
+  @Test
+  public void testDisabledCacheReadsWholeRange() throws Exception {
+    TimelineMetricCache disabled = new TimelineMetricCache();
+    Assert.assertFalse(disabled.isEnabled());
+
+    disabled.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+    disabled.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+
+    Assert.assertEquals(2, fetcher.ranges.size());
+    Assert.assertArrayEquals(new long[] {NOW - HOUR, NOW}, fetcher.ranges.get(1));
+  }
+
+  @Test
+  public void testSlidingWindowReadsDeltaOnly() throws Exception {
+    TimelineMetrics first = cache.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+    TimelineMetrics second = cache.getTimelineMetrics("q", NOW - HOUR + 15000, NOW + 15000, fetcher);
+
+    Assert.assertEquals(2, fetcher.ranges.size());
+    Assert.assertArrayEquals(new long[] {NOW - HOUR, NOW}, fetcher.ranges.get(0));
+    Assert.assertArrayEquals(new long[] {NOW - OVERLAP, NOW + 15000}, fetcher.ranges.get(1));
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getDeltaHitCount());
+
+    // One datapoint per 10 seconds, inclusive bounds
+    Assert.assertEquals(361, first.getMetrics().get(0).getMetricValues().size());
+    TimelineMetric metric = second.getMetrics().get(0);
+    Assert.assertEquals(360, metric.getMetricValues().size());
+    Assert.assertEquals(NOW - HOUR + 20000, metric.getMetricValueSeries().getFirstTimestamp());
+    Assert.assertEquals(NOW + 10000, metric.getMetricValueSeries().getLastTimestamp());
+  }
+
+  @Test
+  public void testFetchedMetricsAreNotModified() throws Exception {
+    cache.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+    TimelineMetric fetched = fetcher.fetched.get(0).getMetrics().get(0);
+
+    cache.getTimelineMetrics("q", NOW - HOUR + 15000, NOW + 15000, fetcher);
+    cache.getTimelineMetrics("q", NOW - HOUR + 30000, NOW + 30000, fetcher);
+
+    // fetched results may be shared by coalesced requests
+    Assert.assertEquals(361, fetched.getMetricValueSeries().size());
+    Assert.assertEquals(NOW - HOUR, fetched.getMetricValueSeries().getFirstTimestamp());
+    Assert.assertEquals(NOW, fetched.getMetricValueSeries().getLastTimestamp());
+  }
+
+  @Test
+  public void testFirstRateOfDeltaIsNotMerged() throws Exception {
+    fetcher.metricName = "EventTakeSuccessCount._rate._avg";
+
+    cache.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+    TimelineMetrics second = cache.getTimelineMetrics("q", NOW - HOUR + 15000, NOW + 15000, fetcher);
+
+    Assert.assertArrayEquals(new long[] {NOW - OVERLAP, NOW + 15000}, fetcher.ranges.get(1));
+    TimelineMetric metric = second.getMetrics().get(0);
+    Assert.assertEquals(360, metric.getMetricValues().size());
+    for (Double value : metric.getMetricValues().values()) {
+      Assert.assertEquals(1.0, value, 0.0);
+    }
+  }
+
+  @Test
+  public void testWindowBeforeCachedRangeIsReadFully() throws Exception {
+    cache.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+    cache.getTimelineMetrics("q", NOW - HOUR - OVERLAP, NOW - OVERLAP, fetcher);
+
+    Assert.assertEquals(2, fetcher.ranges.size());
+    Assert.assertArrayEquals(new long[] {NOW - HOUR - OVERLAP, NOW - OVERLAP},
+      fetcher.ranges.get(1));
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testSecondsAreConvertedAndLongWindowsBypassCache() throws Exception {
+    cache.getTimelineMetrics("q", (NOW - HOUR) / 1000, NOW / 1000, fetcher);
+    Assert.assertArrayEquals(new long[] {NOW - HOUR, NOW}, fetcher.ranges.get(0));
+
+    cache.getTimelineMetrics("q", NOW - 24 * HOUR, NOW, fetcher);
+    cache.getTimelineMetrics("q", NOW - 24 * HOUR, NOW, fetcher);
+    Assert.assertEquals(3, fetcher.ranges.size());
+  }
+
+  @Test
+  public void testRangeWithoutEndBypassesCache() throws Exception {
+    cache.getTimelineMetrics("q", (NOW - HOUR) / 1000, -1, fetcher);
+    cache.getTimelineMetrics("q", (NOW - HOUR) / 1000, -1, fetcher);
+
+    Assert.assertEquals(2, fetcher.ranges.size());
+    Assert.assertArrayEquals(new long[] {NOW - HOUR, -1}, fetcher.ranges.get(1));
+    Assert.assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void testEntriesOverWeightAreEvicted() throws Exception {
+    cache.init(100L, OVERLAP, HOUR);
+
+    cache.getTimelineMetrics("q", NOW - HOUR, NOW, fetcher);
+    cache.getTimelineMetrics("q", NOW - HOUR + 15000, NOW + 15000, fetcher);
+
+    Assert.assertArrayEquals(new long[] {NOW - HOUR + 15000, NOW + 15000},
+      fetcher.ranges.get(1));
+    Assert.assertEquals(0, cache.getDeltaHitCount());
+  }
+
+  /**
+   * Returns one series with a datapoint every 10 seconds. Rate series have
+   * the value 1 except for the first datapoint, which is 0 like the
+   * collector returns it.
+   */
+  private static class TestFetcher implements TimelineMetricCache.MetricsFetcher {
+    private final List<long[]> ranges = new ArrayList<long[]>();
+    private final List<TimelineMetrics> fetched = new ArrayList<TimelineMetrics>();
+    private String metricName = "cpu_user";
+
+    @Override
+    public TimelineMetrics fetch(long startTime, long endTime) throws IOException {
+      ranges.add(new long[] {startTime, endTime});
+
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(metricName);
+      metric.setHostName("h1");
+      metric.setAppId("HOST");
+      metric.setStartTime(startTime);
+      for (long time = startTime - startTime % 10000; time <= endTime; time += 10000) {
+        if (time >= startTime) {
+          double value = time / 1000.0;
+          if (metricName.contains("._rate")) {
+            value = metric.getMetricValueSeries().isEmpty() ? 0.0 : 1.0;
+          }
+          metric.getMetricValueSeries().append(time, value);
+        }
+      }
+      TimelineMetrics metrics = new TimelineMetrics();
+      metrics.getMetrics().add(metric);
+      fetched.add(metrics);
+      return metrics;
+    }
+  }
+}
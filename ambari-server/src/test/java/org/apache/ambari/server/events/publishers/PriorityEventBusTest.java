@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Tests {@link PriorityEventBus}.
+ */
+public class PriorityEventBusTest {
+
+  /**
+   * Tests that queues with a higher priority are dispatched first.
+   */
+  @Test
+  public void testPriority() throws Exception {
+    PriorityEventBus bus = createBus("testPriority", 10);
+    bus.configureQueue(HighEvent.class, 10, 10, false);
+
+    Listener listener = new Listener(5);
+    bus.register(listener);
+
+    listener.block(bus);
+    bus.post(new TestEvent("low-1"));
+    bus.post(new TestEvent("low-2"));
+    bus.post(new HighEvent("high-1"));
+    bus.post(new TestEvent("low-3"));
+    listener.release();
+
+    Assert.assertTrue(listener.received.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(
+        list("blocker", "high-1", "low-1", "low-2", "low-3"),
+        listener.getNames());
+  }
+
+  /**
+   * Tests that a queued event is replaced by an event which supersedes it.
+   */
+  @Test
+  public void testCoalescing() throws Exception {
+    PriorityEventBus bus = createBus("testCoalescing", 10);
+
+    Listener listener = new Listener(4);
+    bus.register(listener);
+
+    listener.block(bus);
+    bus.post(new KeyedEvent("a-1", "a", true));
+    bus.post(new KeyedEvent("b-1", "b", true));
+    bus.post(new KeyedEvent("a-2", "a", true));
+    bus.post(new KeyedEvent("a-3", "a", false));
+    listener.release();
+
+    Assert.assertTrue(listener.received.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(list("blocker", "a-2", "b-1", "a-3"), listener.getNames());
+
+    EventQueueMBean queue = bus.getQueues().get(0);
+    Assert.assertEquals(1L, queue.getCoalescedCount());
+    Assert.assertEquals(4L, queue.getQueuedCount());
+  }
+
+  /**
+   * Tests that events are discarded when a queue that discards is full.
+   */
+  @Test
+  public void testDiscardWhenFull() throws Exception {
+    PriorityEventBus bus = createBus("testDiscardWhenFull", 10);
+    bus.configureQueue(HighEvent.class, 10, 1, true);
+
+    Listener listener = new Listener(2);
+    bus.register(listener);
+
+    listener.block(bus);
+    bus.post(new HighEvent("high-1"));
+    bus.post(new HighEvent("high-2"));
+    bus.post(new HighEvent("high-3"));
+    listener.release();
+
+    Assert.assertTrue(listener.received.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(list("blocker", "high-1"), listener.getNames());
+
+    EventQueueMBean queue = bus.getQueues().get(0);
+    Assert.assertEquals(HighEvent.class.getName(), queue.getEventType());
+    Assert.assertEquals(2L, queue.getDiscardedCount());
+  }
+
+  /**
+   * Tests the subscriber statistics.
+   */
+  @Test
+  public void testSubscriberStatistics() throws Exception {
+    PriorityEventBus bus = createBus("testSubscriberStatistics", 10);
+
+    Listener listener = new Listener(3);
+    bus.register(listener);
+
+    listener.block(bus);
+    bus.post(new TestEvent("event-1"));
+    bus.post(new TestEvent("event-2"));
+
+    EventSubscriberMBean subscriber = bus.getSubscribers().get(0);
+    Assert.assertEquals(2, subscriber.getBacklog());
+    Assert.assertEquals(2, bus.getQueuedEventCount());
+
+    listener.release();
+    Assert.assertTrue(listener.received.await(5, TimeUnit.SECONDS));
+
+    // the statistics are recorded once the listener returns
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (subscriber.getInvocationCount() < 3L && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+
+    Assert.assertEquals(0, subscriber.getBacklog());
+    Assert.assertEquals(3L, subscriber.getInvocationCount());
+    Assert.assertEquals(0L, subscriber.getFailureCount());
+    Assert.assertTrue(subscriber.getMaxLatency() >= subscriber.getAverageLatency());
+  }
+
+  private static PriorityEventBus createBus(String name, int defaultCapacity) {
+    return new PriorityEventBus(name, 1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "priority-event-bus-test");
+        thread.setDaemon(true);
+        return thread;
+      }
+    }, defaultCapacity);
+  }
+
+  private static List<String> list(String... names) {
+    List<String> list = new ArrayList<String>();
+    Collections.addAll(list, names);
+    return list;
+  }
+
+  /**
+   * Records the names of the events it receives. The first event blocks the
+   * worker thread until released, so that the following events queue up.
+   */
+  public static class Listener {
+    private final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch received;
+
+    private Listener(int expected) {
+      received = new CountDownLatch(expected);
+    }
+
+    @Subscribe
+    public void onEvent(TestEvent event) throws InterruptedException {
+      names.add(event.name);
+      if ("blocker".equals(event.name)) {
+        blocked.countDown();
+        release.await(5, TimeUnit.SECONDS);
+      }
+      received.countDown();
+    }
+
+    private void block(PriorityEventBus bus) throws InterruptedException {
+      bus.post(new TestEvent("blocker"));
+      Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    }
+
+    private void release() {
+      release.countDown();
+    }
+
+    private List<String> getNames() {
+      return new ArrayList<String>(names);
+    }
+  }
+
+  public static class TestEvent {
+    private final String name;
+
+    private TestEvent(String name) {
+      this.name = name;
+    }
+  }
+
+  public static class HighEvent extends TestEvent {
+    private HighEvent(String name) {
+      super(name);
+    }
+  }
+
+  public static class KeyedEvent extends TestEvent implements CoalescingEvent {
+    private final String key;
+    private final boolean refresh;
+
+    private KeyedEvent(String name, String key, boolean refresh) {
+      super(name);
+      this.key = key;
+      this.refresh = refresh;
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+      return key;
+    }
+
+    @Override
+    public boolean supersedes(CoalescingEvent queued) {
+      return refresh && ((KeyedEvent) queued).refresh;
+    }
+  }
+}
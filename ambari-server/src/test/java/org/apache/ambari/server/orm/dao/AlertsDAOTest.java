@@ -20,6 +20,7 @@ package org.apache.ambari.server.orm.dao;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -29,7 +30,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
 
@@ -1357,4 +1360,49 @@ public class AlertsDAOTest {
     currentAlerts = m_dao.findCurrent();
     assertEquals(4, currentAlerts.size());
   }
+
+  /**
+   * Tests that the history before a time is found in ascending order of ID
+   * and without the history of current alerts, and that it can be removed.
+   */
+  @Test
+  public void testFindAndRemoveHistoryBefore() throws Exception {
+    List<AlertCurrentEntity> currentAlerts = m_dao.findCurrent();
+    assertEquals(5, currentAlerts.size());
+    Set<Long> currentHistoryIds = new HashSet<Long>();
+    for (AlertCurrentEntity current : currentAlerts) {
+      currentHistoryIds.add(current.getAlertHistory().getAlertId());
+    }
+
+    // everything except the 5 current alerts
+    List<AlertHistoryEntity> history = m_dao.findHistoryBefore(Long.MAX_VALUE, 100);
+    assertEquals(45, history.size());
+    for (int i = 0; i < history.size(); i++) {
+      assertFalse(currentHistoryIds.contains(history.get(i).getAlertId()));
+      if (i > 0) {
+        assertTrue(history.get(i - 1).getAlertId() < history.get(i).getAlertId());
+      }
+    }
+
+    // only the 5 alerts received in the first 5 days
+    calendar.clear();
+    calendar.set(2014, Calendar.JANUARY, 6);
+    assertEquals(5, m_dao.findHistoryBefore(calendar.getTimeInMillis(), 100).size());
+
+    // the limit
+    List<AlertHistoryEntity> batch = m_dao.findHistoryBefore(Long.MAX_VALUE, 10);
+    assertEquals(10, batch.size());
+    assertEquals(history.get(0).getAlertId(), batch.get(0).getAlertId());
+
+    List<Long> batchIds = new ArrayList<Long>();
+    for (AlertHistoryEntity entity : batch) {
+      batchIds.add(entity.getAlertId());
+    }
+    assertEquals(10, m_dao.removeHistory(batchIds));
+    assertEquals(0, m_dao.removeHistory(new ArrayList<Long>()));
+
+    assertEquals(40, m_dao.findAll().size());
+    assertEquals(35, m_dao.findHistoryBefore(Long.MAX_VALUE, 100).size());
+    assertEquals(5, m_dao.findCurrent().size());
+  }
 }
@@ -36,6 +36,7 @@ import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.RequestScheduleEntity;
 import org.apache.ambari.server.orm.entities.ResourceEntity;
 import org.apache.ambari.server.orm.entities.ResourceTypeEntity;
 import org.apache.ambari.server.orm.entities.StageEntity;
@@ -132,6 +133,67 @@ public class RequestDAOTest {
     Assert.assertEquals(calc3.getStatus(), calc4.getStatus());
   }
 
+  @Test
+  public void testRemoveFinishedRequests() throws Exception {
+    createGraph();
+
+    RequestEntity requestEntity = requestDAO.findByPK(100L);
+    requestEntity.setEndTime(1000L);
+    requestDAO.merge(requestEntity);
+
+    // !!! tasks are still in progress
+    Assert.assertTrue(requestDAO.findFinishedRequestIds(2000L, 10).isEmpty());
+
+    for (HostRoleCommandEntity task : hostRoleCommandDAO.findByRequest(100L)) {
+      task.setStatus(HostRoleStatus.COMPLETED);
+      hostRoleCommandDAO.merge(task);
+    }
+
+    Assert.assertTrue(requestDAO.findFinishedRequestIds(1000L, 10).isEmpty());
+    List<Long> requestIds = requestDAO.findFinishedRequestIds(2000L, 10);
+    Assert.assertEquals(Collections.singletonList(100L), requestIds);
+
+    Assert.assertEquals(1, requestDAO.removeRequests(requestIds));
+    Assert.assertNull(requestDAO.findByPK(100L));
+    Assert.assertTrue(hostRoleCommandDAO.findByRequest(100L).isEmpty());
+    Assert.assertTrue(stageDAO.findByRequestId(100L).isEmpty());
+    Assert.assertTrue(hostDAO.findByName("test_host1").getHostRoleCommandEntities().isEmpty());
+  }
+
+  @Test
+  public void testRemoveScheduledRequest() throws Exception {
+    createGraph();
+    RequestScheduleDAO requestScheduleDAO = injector.getInstance(RequestScheduleDAO.class);
+
+    ClusterEntity clusterEntity = clusterDAO.findByName("test_cluster1");
+    RequestScheduleEntity scheduleEntity = new RequestScheduleEntity();
+    scheduleEntity.setClusterEntity(clusterEntity);
+    scheduleEntity.setClusterId(clusterEntity.getClusterId());
+    scheduleEntity.setStatus("COMPLETED");
+    scheduleEntity.setRequestEntities(new ArrayList<RequestEntity>());
+    requestScheduleDAO.create(scheduleEntity);
+
+    RequestEntity requestEntity = requestDAO.findByPK(100L);
+    requestEntity.setRequestScheduleEntity(scheduleEntity);
+    requestEntity.setRequestScheduleId(scheduleEntity.getScheduleId());
+    requestEntity.setEndTime(1000L);
+    requestEntity = requestDAO.merge(requestEntity);
+    scheduleEntity.getRequestEntities().add(requestEntity);
+    requestScheduleDAO.merge(scheduleEntity);
+
+    for (HostRoleCommandEntity task : hostRoleCommandDAO.findByRequest(100L)) {
+      task.setStatus(HostRoleStatus.COMPLETED);
+      hostRoleCommandDAO.merge(task);
+    }
+
+    // !!! load the schedule with its requests into the shared cache
+    Long scheduleId = scheduleEntity.getScheduleId();
+    Assert.assertEquals(1, requestScheduleDAO.findById(scheduleId).getRequestEntities().size());
+
+    Assert.assertEquals(1, requestDAO.removeRequests(Collections.singletonList(100L)));
+    Assert.assertTrue(requestScheduleDAO.findById(scheduleId).getRequestEntities().isEmpty());
+  }
+
   private void createGraph() {
     OrmTestHelper helper = injector.getInstance(OrmTestHelper.class);
     helper.createDefaultData();
@@ -19,14 +19,26 @@
 package org.apache.ambari.server.stack;
 
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.metadata.ActionMetadata;
 import org.apache.ambari.server.orm.dao.MetainfoDAO;
+import org.apache.ambari.server.state.ComponentInfo;
+import org.apache.ambari.server.state.PropertyInfo;
+import org.apache.ambari.server.state.ServiceInfo;
 import org.apache.ambari.server.state.StackInfo;
 import org.apache.ambari.server.state.stack.OsFamily;
+import org.apache.ambari.server.state.stack.ServiceMetainfoXml;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
@@ -36,6 +48,9 @@ import static org.junit.Assert.*;
  */
 public class StackManagerMiscTest  {
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void testCycleDetection() throws Exception {
     MetainfoDAO dao = createNiceMock(MetainfoDAO.class);
@@ -88,4 +103,157 @@ public class StackManagerMiscTest  {
 
     verify(dao, actionMetadata, osFamily);
   }
+
+  /**
+   * This test ensures the stacks parsed on several threads are identical to the stacks
+   * parsed on a single thread, and kept in directory order.
+   */
+  @Test
+  public void testParsingIsIndependentOfThreadCount() throws Exception {
+    String stacks = ClassLoader.getSystemClassLoader().getResource("stacks").getPath();
+    String stacksWithCommonServices = ClassLoader.getSystemClassLoader().getResource(
+        "stacks_with_common_services").getPath();
+    String commonServices = ClassLoader.getSystemClassLoader().getResource("common-services").getPath();
+
+    assertSameStacks(new File(stacks), null);
+    assertSameStacks(new File(stacksWithCommonServices), new File(commonServices));
+  }
+
+  /**
+   * This test ensures an exception thrown while parsing a directory on a parsing thread
+   * reaches the caller unchanged.
+   */
+  @Test
+  public void testParseExceptionReachesCaller() throws Exception {
+    String singleStack = ClassLoader.getSystemClassLoader().getResource("single_stack").getPath();
+    File commonServices = temporaryFolder.newFolder("common-services");
+    assertTrue(new File(commonServices, "BROKEN" + File.separator + "1.0").mkdirs());
+
+    try {
+      new StackManager(new File(singleStack), commonServices, createStackContext(), 4);
+      fail("Expected exception due to a common service without metainfo.xml");
+    } catch (AmbariException e) {
+      // expected
+      assertTrue(e.getMessage().startsWith("Stack Definition Service at '"));
+      assertTrue(e.getMessage().contains("BROKEN"));
+      assertNull(e.getCause());
+    }
+  }
+
+  /**
+   * This test ensures a second stack manager built on unchanged stack definitions
+   * reads all of them from the snapshot of the first one, without parsing any file.
+   */
+  @Test
+  public void testSnapshotSkipsParsingOfUnchangedStacks() throws Exception {
+    File stackRoot = new File(ClassLoader.getSystemClassLoader().getResource(
+        "stacks_with_common_services").getPath());
+    File commonServicesRoot = new File(ClassLoader.getSystemClassLoader().getResource(
+        "common-services").getPath());
+    File snapshotFile = new File(temporaryFolder.getRoot(), "stacks.snapshot");
+
+    StackManager parsed = new StackManager(stackRoot, commonServicesRoot, createStackContext(), 4,
+        snapshotFile, new ModuleFileUnmarshaller());
+    assertTrue(snapshotFile.isFile());
+
+    ModuleFileUnmarshaller unmarshaller = createStrictMock(ModuleFileUnmarshaller.class);
+    replay(unmarshaller);
+
+    StackManager restored = new StackManager(stackRoot, commonServicesRoot, createStackContext(), 4,
+        snapshotFile, unmarshaller);
+
+    verify(unmarshaller);
+    assertEquals(describe(parsed.getStacks()), describe(restored.getStacks()));
+  }
+
+  /**
+   * This test ensures only the stack definition files which changed since the snapshot
+   * was saved are parsed again.
+   */
+  @Test
+  public void testSnapshotParsesChangedFiles() throws Exception {
+    File stackRoot = temporaryFolder.newFolder("stacks");
+    FileUtils.copyDirectory(new File(ClassLoader.getSystemClassLoader().getResource(
+        "single_stack").getPath()), stackRoot);
+    File snapshotFile = new File(temporaryFolder.getRoot(), "stacks.snapshot");
+
+    new StackManager(stackRoot, null, createStackContext(), 1, snapshotFile, new ModuleFileUnmarshaller());
+
+    File serviceMetaInfo = new File(stackRoot.getAbsolutePath() + File.separator + "ABC" + File.separator +
+        "1.0.0" + File.separator + "services" + File.separator + "HDFS" + File.separator + "metainfo.xml");
+    assertTrue(serviceMetaInfo.setLastModified(serviceMetaInfo.lastModified() - 60000L));
+
+    ModuleFileUnmarshaller unmarshaller = createStrictMock(ModuleFileUnmarshaller.class);
+    expect(unmarshaller.unmarshal(ServiceMetainfoXml.class, serviceMetaInfo)).andReturn(
+        new ModuleFileUnmarshaller().unmarshal(ServiceMetainfoXml.class, serviceMetaInfo));
+    replay(unmarshaller);
+
+    StackManager stackManager = new StackManager(stackRoot, null, createStackContext(), 1,
+        snapshotFile, unmarshaller);
+
+    verify(unmarshaller);
+    assertNotNull(stackManager.getStack("ABC", "1.0.0").getService("HDFS"));
+  }
+
+  private void assertSameStacks(File stackRoot, File commonServicesRoot) throws Exception {
+    List<String> expectedStackIds = new ArrayList<String>();
+    for (File stack : stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      if (stack.isFile()) {
+        continue;
+      }
+      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+        if (stackFolder.isDirectory()) {
+          expectedStackIds.add(stack.getName() + StackManager.PATH_DELIMITER + stackFolder.getName());
+        }
+      }
+    }
+
+    StackManager sequential = new StackManager(stackRoot, commonServicesRoot, createStackContext(), 1);
+    StackManager concurrent = new StackManager(stackRoot, commonServicesRoot, createStackContext(), 8);
+
+    List<String> stackIds = new ArrayList<String>();
+    for (StackInfo stack : concurrent.getStacks()) {
+      stackIds.add(stack.getName() + StackManager.PATH_DELIMITER + stack.getVersion());
+    }
+    assertEquals(expectedStackIds, stackIds);
+    assertEquals(describe(sequential.getStacks()), describe(concurrent.getStacks()));
+  }
+
+  /**
+   * Describes the stacks in order, and their services sorted by name since the
+   * services of a stack are not kept in directory order.
+   */
+  private List<String> describe(Collection<StackInfo> stacks) {
+    List<String> description = new ArrayList<String>();
+    for (StackInfo stack : stacks) {
+      description.add(stack.getName() + StackManager.PATH_DELIMITER + stack.getVersion());
+
+      List<String> services = new ArrayList<String>();
+      for (ServiceInfo service : stack.getServices()) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(service.getName()).append(' ').append(service.getVersion());
+        for (ComponentInfo component : service.getComponents()) {
+          builder.append(' ').append(component.getName()).append(':').append(component.getCategory());
+        }
+        for (PropertyInfo property : service.getProperties()) {
+          builder.append(' ').append(property.getFilename()).append(':').append(property.getName())
+              .append('=').append(property.getValue());
+        }
+        services.add(builder.toString());
+      }
+      Collections.sort(services);
+      description.addAll(services);
+    }
+    return description;
+  }
+
+  private StackContext createStackContext() {
+    MetainfoDAO dao = createNiceMock(MetainfoDAO.class);
+    ActionMetadata actionMetadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+    replay(dao, actionMetadata, config);
+    return new StackContext(dao, actionMetadata, new OsFamily(config));
+  }
 }
@@ -269,6 +269,34 @@ public class ConfigHelperTest {
       Assert.assertEquals("30", coreProps.get("ipc.client.connect.max.retries"));
     }
 
+    @Test
+    public void testCachedEffectiveProperties() throws Exception {
+      Map<String, Map<String, String>> tags = configHelper.getEffectiveDesiredTags(cluster, "h1");
+
+      Map<String, Map<String, String>> propertyMap = configHelper
+          .getCachedEffectiveConfigProperties(cluster, tags);
+      Assert.assertEquals(configHelper.getEffectiveConfigProperties(cluster, tags), propertyMap);
+      Assert.assertSame(propertyMap, configHelper.getCachedEffectiveConfigProperties(cluster,
+          new HashMap<String, Map<String, String>>(tags)));
+
+      Map<String, Map<String, Map<String, String>>> attributes = configHelper
+          .getCachedEffectiveConfigAttributes(cluster, tags);
+      Assert.assertEquals(configHelper.getEffectiveConfigAttributes(cluster, tags), attributes);
+      Assert.assertSame(attributes, configHelper.getCachedEffectiveConfigAttributes(cluster, tags));
+
+      try {
+        propertyMap.get("global").put("namenode_heapsize", "1111");
+        Assert.fail("Cached properties should not be modifiable");
+      } catch (UnsupportedOperationException e) {
+        // expected
+      }
+
+      // configurations changed
+      configHelper.invalidateStaleConfigsCache();
+      Assert.assertNotSame(propertyMap, configHelper.getCachedEffectiveConfigProperties(cluster, tags));
+      Assert.assertNotSame(attributes, configHelper.getCachedEffectiveConfigAttributes(cluster, tags));
+    }
+
     @Test
     public void testEffectivePropertiesAttributesWithOverrides() throws Exception {
       final Config config1 = new ConfigImpl("core-site");
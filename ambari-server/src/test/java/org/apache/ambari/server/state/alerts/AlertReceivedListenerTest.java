@@ -38,8 +38,10 @@ import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ServiceComponentFactory;
 import org.apache.ambari.server.state.ServiceComponentHostFactory;
 import org.apache.ambari.server.state.ServiceFactory;
+import org.apache.ambari.server.state.alert.AlertCurrentIndex;
 import org.apache.ambari.server.state.alert.Scope;
 import org.apache.ambari.server.state.alert.SourceType;
+import org.apache.ambari.server.state.services.AlertCurrentFlushService;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -158,6 +160,66 @@ public class AlertReceivedListenerTest {
     assertEquals(0, allCurrent.size());
   }
 
+  /**
+   * Tests that the latest timestamp and text of alerts which did not change
+   * state are queued and written in a batch.
+   */
+  @Test
+  public void testLatestTimestampIsWrittenInBatches() {
+    String definitionName = ALERT_DEFINITION + "1";
+    String componentName = "DATANODE";
+
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+    AlertCurrentIndex index = m_injector.getInstance(AlertCurrentIndex.class);
+    AlertCurrentFlushService flushService = m_injector.getInstance(AlertCurrentFlushService.class);
+
+    for (long timestamp = 1L; timestamp <= 3L; timestamp++) {
+      Alert alert = new Alert(definitionName, null, "HDFS", componentName,
+          HOST1, AlertState.OK);
+
+      alert.setCluster(m_cluster.getClusterName());
+      alert.setLabel(ALERT_LABEL);
+      alert.setText("HDFS " + componentName + " is OK " + timestamp);
+      alert.setTimestamp(timestamp);
+
+      listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alert));
+    }
+
+    // the first alert created the current alert, the others are queued
+    AlertCurrentEntity current = m_dao.findCurrentByHostAndName(
+        m_cluster.getClusterId(), HOST1, definitionName);
+    assertEquals(1L, current.getLatestTimestamp().longValue());
+    assertEquals(1, index.size());
+    assertEquals(1, index.getLatestQueueSize());
+
+    flushService.flush();
+
+    current = m_dao.findCurrentByHostAndName(m_cluster.getClusterId(), HOST1,
+        definitionName);
+    assertEquals(3L, current.getLatestTimestamp().longValue());
+    assertEquals("HDFS " + componentName + " is OK 3", current.getLatestText());
+    assertEquals(0, index.getLatestQueueSize());
+    assertEquals(1, m_dao.findAll(m_cluster.getClusterId()).size());
+
+    // a state change is written right away
+    Alert critical = new Alert(definitionName, null, "HDFS", componentName,
+        HOST1, AlertState.CRITICAL);
+
+    critical.setCluster(m_cluster.getClusterName());
+    critical.setLabel(ALERT_LABEL);
+    critical.setText("HDFS " + componentName + " is CRITICAL");
+    critical.setTimestamp(4L);
+
+    listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), critical));
+
+    current = m_dao.findCurrentByHostAndName(m_cluster.getClusterId(), HOST1,
+        definitionName);
+    assertEquals(AlertState.CRITICAL, current.getAlertHistory().getAlertState());
+    assertEquals(4L, current.getLatestTimestamp().longValue());
+    assertEquals(2, m_dao.findAll(m_cluster.getClusterId()).size());
+    assertEquals(0, index.getLatestQueueSize());
+  }
+
   /**
    * Tests an invalid host is being reported in an alert.
    */
@@ -65,6 +65,7 @@ import org.apache.ambari.server.state.alert.Reporting.ReportTemplate;
 import org.apache.ambari.server.state.alert.Scope;
 import org.apache.ambari.server.state.alert.Source;
 import org.apache.ambari.server.state.alert.SourceType;
+import org.apache.ambari.server.state.services.AlertCurrentFlushService;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -204,6 +205,9 @@ public class AlertDataManagerTest {
 
     listener.onAlertEvent(event3);
 
+    // the latest timestamp of an unchanged alert is written in batches
+    m_injector.getInstance(AlertCurrentFlushService.class).flush();
+
     current = m_dao.findCurrentByHostAndName(m_cluster.getClusterId(), HOST1,
         ALERT_DEFINITION);
     assertNotNull(current);
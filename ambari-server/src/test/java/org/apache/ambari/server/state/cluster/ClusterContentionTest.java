@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.RepositoryVersionState;
+import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
+import org.apache.ambari.server.state.ServiceComponentFactory;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.ServiceComponentHostFactory;
+import org.apache.ambari.server.state.ServiceFactory;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.State;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Measures the contention between the topology lookups made by heartbeats and
+ * API reads and a writer holding the global cluster lock. Before the topology
+ * maps of {@link ClusterImpl} became concurrent, every lookup waited for the
+ * writer to release the lock.
+ */
+public class ClusterContentionTest {
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterContentionTest.class);
+
+  private static final int NUMBER_OF_HOSTS = 100;
+  private static final int NUMBER_OF_READERS = 8;
+  private static final int ITERATIONS = 50;
+
+  @Inject
+  private Injector injector;
+
+  @Inject
+  private Clusters clusters;
+
+  @Inject
+  private ServiceFactory serviceFactory;
+
+  @Inject
+  private ServiceComponentFactory serviceComponentFactory;
+
+  @Inject
+  private ServiceComponentHostFactory serviceComponentHostFactory;
+
+  @Inject
+  private AmbariMetaInfo metaInfo;
+
+  @Inject
+  private OrmTestHelper helper;
+
+  private StackId stackId = new StackId("HDP-0.1");
+
+  private Cluster cluster;
+
+  private List<String> hostNames = new ArrayList<String>(NUMBER_OF_HOSTS);
+
+  /**
+   * Creates 100 hosts with a NAMENODE and a DATANODE each.
+   *
+   * @throws Exception
+   */
+  @Before
+  public void setup() throws Exception {
+    injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    injector.getInstance(GuiceJpaInitializer.class);
+    injector.injectMembers(this);
+    clusters.addCluster("c1");
+    cluster = clusters.getCluster("c1");
+    cluster.setDesiredStackVersion(stackId);
+    helper.getOrCreateRepositoryVersion(stackId.getStackName(), stackId.getStackVersion());
+    cluster.createClusterVersion(stackId.getStackName(),
+        stackId.getStackVersion(), "admin", RepositoryVersionState.UPGRADING);
+
+    metaInfo.init();
+
+    Service service = serviceFactory.createNew(cluster, "HDFS");
+    cluster.addService(service);
+    service.persist();
+
+    ServiceComponent nameNode = addServiceComponent(service, "NAMENODE");
+    ServiceComponent dataNode = addServiceComponent(service, "DATANODE");
+
+    for (int i = 0; i < NUMBER_OF_HOSTS; i++) {
+      String hostName = "c64-" + i;
+      hostNames.add(hostName);
+
+      clusters.addHost(hostName);
+      setOsFamily(clusters.getHost(hostName), "redhat", "6.4");
+      clusters.getHost(hostName).persist();
+      clusters.mapHostToCluster(hostName, "c1");
+
+      addServiceComponentHost(nameNode, hostName);
+      addServiceComponentHost(dataNode, hostName);
+    }
+
+    ((ClusterImpl) cluster).loadServiceHostComponents();
+  }
+
+  @After
+  public void teardown() {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * Tests that topology lookups complete while a writer holds the global
+   * cluster lock, and logs the lookup throughput with and without the writer.
+   *
+   * @throws Exception
+   */
+  @Test(timeout = 60000)
+  public void testLookupsDuringClusterWrite() throws Exception {
+    long uncontended = runReaders();
+
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        cluster.getClusterGlobalLock().writeLock().lock();
+        try {
+          locked.countDown();
+          release.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+        } finally {
+          cluster.getClusterGlobalLock().writeLock().unlock();
+        }
+      }
+    };
+
+    writer.start();
+    Assert.assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+    long contended;
+    try {
+      contended = runReaders();
+    } finally {
+      release.countDown();
+      writer.join();
+    }
+
+    LOG.info("{} readers did {} lookups in {}ms without a writer and in {}ms while the cluster was locked",
+        NUMBER_OF_READERS, NUMBER_OF_READERS * ITERATIONS * NUMBER_OF_HOSTS * 4,
+        TimeUnit.NANOSECONDS.toMillis(uncontended),
+        TimeUnit.NANOSECONDS.toMillis(contended));
+  }
+
+  /**
+   * Runs the readers to completion, failing if they take too long.
+   *
+   * @return the elapsed time, in nanoseconds.
+   */
+  private long runReaders() throws Exception {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final AtomicLong lookups = new AtomicLong();
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < NUMBER_OF_READERS; i++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+              for (String hostName : hostNames) {
+                Assert.assertEquals(2, cluster.getServiceComponentHosts(hostName).size());
+                cluster.getServiceComponentHost("HDFS", "DATANODE", hostName);
+                cluster.getService("HDFS");
+                cluster.getDesiredStackVersion();
+                lookups.addAndGet(4);
+              }
+            }
+          } catch (Throwable throwable) {
+            failure.set(throwable);
+          }
+        }
+      });
+    }
+
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(20));
+      Assert.assertFalse("Lookups blocked on the cluster lock", thread.isAlive());
+    }
+
+    long elapsed = System.nanoTime() - start;
+    if (null != failure.get()) {
+      throw new AssertionError(failure.get());
+    }
+
+    Assert.assertEquals(NUMBER_OF_READERS * ITERATIONS * NUMBER_OF_HOSTS * 4,
+        lookups.get());
+    return elapsed;
+  }
+
+  private void setOsFamily(Host host, String osFamily, String osVersion) {
+    Map<String, String> hostAttributes = new HashMap<String, String>(2);
+    hostAttributes.put("os_family", osFamily);
+    hostAttributes.put("os_release_version", osVersion);
+    host.setHostAttributes(hostAttributes);
+  }
+
+  private ServiceComponent addServiceComponent(Service service,
+      String componentName) throws AmbariException {
+    ServiceComponent serviceComponent = serviceComponentFactory.createNew(
+        service, componentName);
+    service.addServiceComponent(serviceComponent);
+    serviceComponent.setDesiredState(State.INSTALLED);
+    serviceComponent.persist();
+    return serviceComponent;
+  }
+
+  private void addServiceComponentHost(ServiceComponent serviceComponent,
+      String hostName) throws AmbariException {
+    ServiceComponentHost sch = serviceComponentHostFactory.createNew(
+        serviceComponent, hostName);
+
+    serviceComponent.addServiceComponentHost(sch);
+    sch.setDesiredState(State.INSTALLED);
+    sch.setState(State.INSTALLED);
+    sch.setDesiredStackVersion(stackId);
+    sch.setStackVersion(stackId);
+    sch.persist();
+  }
+}
@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.ambari.server.actionmanager.ActionDBAccessor;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.RequestDAO;
+import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.RequestEntity;
+import org.apache.ambari.server.orm.entities.StageEntity;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests {@link HistoryPurgeService}.
+ */
+public class HistoryPurgeServiceTest {
+
+  private static final String CLUSTER_HOST_INFO = "{\"all_hosts\":[\"c6401.ambari.apache.org\"]}";
+
+  @Rule
+  public TemporaryFolder m_temporaryFolder = new TemporaryFolder();
+
+  private Configuration m_configuration;
+  private RequestDAO m_requestDao;
+  private HostRoleCommandDAO m_hostRoleCommandDao;
+  private ExecutionCommandDAO m_executionCommandDao;
+  private AlertsDAO m_alertsDao;
+  private ActionDBAccessor m_actionDBAccessor;
+  private HistoryPurgeService m_service;
+
+  @Before
+  public void setup() throws Exception {
+    m_configuration = createNiceMock(Configuration.class);
+    m_requestDao = createMock(RequestDAO.class);
+    m_hostRoleCommandDao = createMock(HostRoleCommandDAO.class);
+    m_executionCommandDao = createMock(ExecutionCommandDAO.class);
+    m_alertsDao = createMock(AlertsDAO.class);
+    m_actionDBAccessor = createMock(ActionDBAccessor.class);
+
+    Injector injector = Guice.createInjector(new MockModule());
+    m_service = injector.getInstance(HistoryPurgeService.class);
+  }
+
+  /**
+   * Tests that requests are removed batch by batch until a batch is not full.
+   */
+  @Test
+  public void testPurgeRequestsInBatches() throws Exception {
+    expectConfiguration(30, 0, 2, null);
+
+    expect(m_requestDao.findFinishedRequestIds(anyLong(), eq(2))).andReturn(
+        Arrays.asList(1L, 2L)).andReturn(Arrays.asList(3L));
+    expectRequest(1L);
+    expectRequest(2L);
+    expectRequest(3L);
+    expect(m_requestDao.removeRequests(Arrays.asList(1L, 2L))).andReturn(2);
+    expect(m_requestDao.removeRequests(Arrays.asList(3L))).andReturn(1);
+
+    m_actionDBAccessor.invalidateTasks(Arrays.asList(10L, 20L));
+    m_actionDBAccessor.invalidateTasks(Arrays.asList(30L));
+
+    replayAll();
+    m_service.purge();
+    verifyAll();
+
+    assertEquals(3L, m_service.getPurgedRequestCount());
+    assertEquals(3L, m_service.getPurgedStageCount());
+    assertEquals(3L, m_service.getPurgedTaskCount());
+    assertEquals(0L, m_service.getPurgedAlertCount());
+
+    // the task output is not read when it is not archived
+    long requestBytes = "Request 1".length() + CLUSTER_HOST_INFO.length();
+    assertEquals(3 * requestBytes, m_service.getReclaimedBytes());
+    assertEquals(0L, m_service.getArchiveFileCount());
+    assertEquals(0L, m_service.getFailedPurgeCount());
+    assertTrue(m_service.getLastPurgeTime() > 0L);
+  }
+
+  /**
+   * Tests that purging stops when a batch could not be removed, rather than
+   * finding the same batch again.
+   */
+  @Test
+  public void testPurgeStopsWhenNothingRemoved() throws Exception {
+    expectConfiguration(30, 0, 2, null);
+
+    expect(m_requestDao.findFinishedRequestIds(anyLong(), eq(2))).andReturn(
+        Arrays.asList(1L, 2L));
+    expectRequest(1L);
+    expectRequest(2L);
+    expect(m_requestDao.removeRequests(Arrays.asList(1L, 2L))).andReturn(0);
+
+    replayAll();
+    m_service.purge();
+    verifyAll();
+
+    assertEquals(0L, m_service.getPurgedRequestCount());
+    assertEquals(0L, m_service.getPurgedTaskCount());
+    assertEquals(0L, m_service.getReclaimedBytes());
+  }
+
+  /**
+   * Tests that alert history is removed in batches of the alert batch size.
+   */
+  @Test
+  public void testPurgeAlertHistoryInBatches() throws Exception {
+    expectConfiguration(0, 30, 1, null);
+
+    List<AlertHistoryEntity> first = createHistory(1L, 100);
+    List<AlertHistoryEntity> second = createHistory(101L, 5);
+    expect(m_alertsDao.findHistoryBefore(anyLong(), eq(100))).andReturn(first).andReturn(
+        second);
+    expect(m_alertsDao.removeHistory(getIds(first))).andReturn(100);
+    expect(m_alertsDao.removeHistory(getIds(second))).andReturn(5);
+
+    replayAll();
+    m_service.purge();
+    verifyAll();
+
+    assertEquals(0L, m_service.getPurgedRequestCount());
+    assertEquals(105L, m_service.getPurgedAlertCount());
+    assertTrue(m_service.getReclaimedBytes() > 0L);
+    assertEquals(0L, m_service.getFailedPurgeCount());
+  }
+
+  /**
+   * Tests that every removed batch is written to an archive file.
+   */
+  @Test
+  public void testArchive() throws Exception {
+    File archiveDir = new File(m_temporaryFolder.getRoot(), "archive");
+    expectConfiguration(30, 30, 2, archiveDir.getAbsolutePath());
+
+    expect(m_requestDao.findFinishedRequestIds(anyLong(), eq(2))).andReturn(
+        Arrays.asList(1L));
+    expectRequest(1L);
+    expect(m_requestDao.removeRequests(Arrays.asList(1L))).andReturn(1);
+    m_actionDBAccessor.invalidateTasks(Arrays.asList(10L));
+
+    List<AlertHistoryEntity> history = createHistory(1L, 3);
+    expect(m_alertsDao.findHistoryBefore(anyLong(), eq(200))).andReturn(history);
+    expect(m_alertsDao.removeHistory(getIds(history))).andReturn(3);
+
+    replayAll();
+    m_service.purge();
+    verifyAll();
+
+    assertEquals(2L, m_service.getArchiveFileCount());
+    assertEquals(0L, m_service.getFailedPurgeCount());
+
+    File[] files = archiveDir.listFiles();
+    assertEquals(2, files.length);
+    for (File file : files) {
+      List<String> rows = readArchive(file);
+      if (file.getName().startsWith("requests-1-1-")) {
+        assertEquals(1, rows.size());
+        assertTrue(rows.get(0).contains("\"request_id\":1"));
+      } else {
+        assertTrue(file.getName().startsWith("alert-history-1-3-"));
+        assertEquals(3, rows.size());
+        assertTrue(rows.get(2).contains("\"alert_id\":3"));
+      }
+    }
+  }
+
+  /**
+   * Tests that a batch which could not be archived is not removed.
+   */
+  @Test
+  public void testNoRemovalWhenArchivingFails() throws Exception {
+    File archiveDir = m_temporaryFolder.newFile("archive");
+    expectConfiguration(30, 0, 2, archiveDir.getAbsolutePath());
+
+    expect(m_requestDao.findFinishedRequestIds(anyLong(), eq(2))).andReturn(
+        Arrays.asList(1L));
+
+    replayAll();
+    m_service.purge();
+    verifyAll();
+
+    assertEquals(0L, m_service.getPurgedRequestCount());
+    assertEquals(0L, m_service.getArchiveFileCount());
+    assertEquals(1L, m_service.getFailedPurgeCount());
+  }
+
+  /**
+   * Tests that the archive of a batch which could not be removed is deleted.
+   */
+  @Test
+  public void testArchiveDeletedWhenRemovalFails() throws Exception {
+    File archiveDir = m_temporaryFolder.newFolder("archive");
+    expectConfiguration(30, 30, 2, archiveDir.getAbsolutePath());
+
+    expect(m_requestDao.findFinishedRequestIds(anyLong(), eq(2))).andReturn(
+        Arrays.asList(1L));
+    expectRequest(1L);
+    expect(m_requestDao.removeRequests(Arrays.asList(1L))).andThrow(
+        new RuntimeException("Unable to remove"));
+
+    List<AlertHistoryEntity> history = createHistory(1L, 3);
+    expect(m_alertsDao.findHistoryBefore(anyLong(), eq(200))).andReturn(history);
+    expect(m_alertsDao.removeHistory(getIds(history))).andReturn(0);
+
+    replayAll();
+    m_service.purge();
+    verifyAll();
+
+    assertEquals(0, archiveDir.listFiles().length);
+    assertEquals(0L, m_service.getArchiveFileCount());
+    assertEquals(0L, m_service.getPurgedRequestCount());
+    assertEquals(0L, m_service.getPurgedAlertCount());
+    assertEquals(1L, m_service.getFailedPurgeCount());
+  }
+
+  private void expectConfiguration(int requestDays, int alertDays,
+      int batchSize, String archiveDir) {
+    expect(m_configuration.getPurgeRequestsRetentionDays()).andReturn(
+        requestDays).anyTimes();
+    expect(m_configuration.getPurgeAlertsRetentionDays()).andReturn(alertDays).anyTimes();
+    expect(m_configuration.getPurgeBatchSize()).andReturn(batchSize).anyTimes();
+    expect(m_configuration.getPurgeArchiveDir()).andReturn(archiveDir).anyTimes();
+  }
+
+  /**
+   * Expects the lookups of a request with one stage and one task whose id is
+   * ten times the request id.
+   */
+  private void expectRequest(long requestId) {
+    StageEntity stage = new StageEntity();
+    stage.setStageId(1L);
+    stage.setClusterHostInfo(CLUSTER_HOST_INFO);
+
+    RequestEntity request = new RequestEntity();
+    request.setRequestId(requestId);
+    request.setRequestContext("Request " + requestId);
+    request.setStages(Collections.singletonList(stage));
+
+    HostRoleCommandEntity task = new HostRoleCommandEntity();
+    task.setRequestId(requestId);
+    task.setTaskId(requestId * 10);
+    task.setStdOut("output".getBytes());
+
+    expect(m_requestDao.findByPK(requestId)).andReturn(request);
+    expect(m_hostRoleCommandDao.findByRequest(requestId)).andReturn(
+        Collections.singletonList(task));
+    expect(m_executionCommandDao.findByRequestId(requestId)).andReturn(
+        Collections.<ExecutionCommandEntity> emptyList());
+
+    m_hostRoleCommandDao.invalidateAggregateCounts(requestId);
+    expectLastCall().anyTimes();
+  }
+
+  private List<AlertHistoryEntity> createHistory(long firstId, int count) {
+    AlertDefinitionEntity definition = new AlertDefinitionEntity();
+    definition.setDefinitionName("alert_definition");
+
+    List<AlertHistoryEntity> history = new ArrayList<AlertHistoryEntity>();
+    for (long id = firstId; id < firstId + count; id++) {
+      AlertHistoryEntity entity = new AlertHistoryEntity();
+      entity.setAlertId(id);
+      entity.setAlertDefinition(definition);
+      entity.setAlertText("Alert " + id);
+      history.add(entity);
+    }
+    return history;
+  }
+
+  private List<Long> getIds(List<AlertHistoryEntity> history) {
+    List<Long> ids = new ArrayList<Long>();
+    for (AlertHistoryEntity entity : history) {
+      ids.add(entity.getAlertId());
+    }
+    return ids;
+  }
+
+  private List<String> readArchive(File file) throws Exception {
+    List<String> rows = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        rows.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return rows;
+  }
+
+  private void replayAll() {
+    replay(m_configuration, m_requestDao, m_hostRoleCommandDao,
+        m_executionCommandDao, m_alertsDao, m_actionDBAccessor);
+  }
+
+  private void verifyAll() {
+    verify(m_requestDao, m_hostRoleCommandDao, m_executionCommandDao,
+        m_alertsDao, m_actionDBAccessor);
+  }
+
+  /**
+   * Binds the mocks used by the service.
+   */
+  private class MockModule extends AbstractModule {
+    @Override
+    protected void configure() {
+      bind(Configuration.class).toInstance(m_configuration);
+      bind(RequestDAO.class).toInstance(m_requestDao);
+      bind(HostRoleCommandDAO.class).toInstance(m_hostRoleCommandDao);
+      bind(ExecutionCommandDAO.class).toInstance(m_executionCommandDao);
+      bind(AlertsDAO.class).toInstance(m_alertsDao);
+      bind(ActionDBAccessor.class).toInstance(m_actionDBAccessor);
+    }
+  }
+}